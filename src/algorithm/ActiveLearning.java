@@ -55,6 +55,12 @@ public class ActiveLearning {
 	 */
 	DistanceMeasure distanceMeasure;
 
+	/**
+	 * The maximal number of cached distances. 0 means no cache, which is the
+	 * default.
+	 */
+	long distanceCacheSize;
+
 	/**
 	 * The instance is unhandled yet.
 	 */
@@ -95,6 +101,16 @@ public class ActiveLearning {
 	 */
 	private int[] querySequence;
 
+	/**
+	 * The nearest queried instance of each instance.
+	 */
+	NearestQueriedIndex nearestQueriedIndex;
+
+	/**
+	 * Label statistics of blocks being learned.
+	 */
+	BlockStatistics blockStatistics;
+
 	/**
 	 * The actual number of queries.
 	 */
@@ -102,9 +118,10 @@ public class ActiveLearning {
 
 	/**
 	 * Remaining queries provided by the oracle. The value is not initialized in
-	 * this class.
+	 * this class. It is only consumed in the synchronized query method, and
+	 * volatile so that concurrent learners see the exhaustion.
 	 */
-	int numRemainingQueries;
+	volatile int numRemainingQueries;
 
 	/**
 	 * The default label. It is useful when we have no idea which label should
@@ -165,6 +182,7 @@ public class ActiveLearning {
 		numQueries = 0;
 		instanceStatusArray = new int[numInstances];
 		Arrays.fill(instanceStatusArray, UNHANDLED);
+		blockStatistics = new BlockStatistics(numInstances, numClasses);
 		
 		kValue = 1;
 	}// Of the constructor
@@ -192,6 +210,7 @@ public class ActiveLearning {
 		numQueries = 0;
 		Arrays.fill(predicts, UNHANDLED);
 		Arrays.fill(instanceStatusArray, UNHANDLED);
+		blockStatistics.reset();
 
 		if (disorder) {
 			SimpleTools
@@ -253,8 +272,33 @@ public class ActiveLearning {
 	 */
 	public void setDistanceMeasure(int paraDistanceMeasure) {
 		distanceMeasure = new DistanceMeasure(data, paraDistanceMeasure);
+		if (distanceCacheSize > 0) {
+			distanceMeasure = new CachedDistanceMeasure(distanceMeasure, distanceCacheSize);
+		} // Of if
+
+		nearestQueriedIndex = new NearestQueriedIndex(distanceMeasure, numInstances);
+		for (int i = 0; i < numQueries; i++) {
+			nearestQueriedIndex.addQueried(querySequence[i]);
+		} // Of for i
 	}// Of setDistanceMeasure
 
+	/**
+	 ************************* 
+	 * Cache distances between instances. It should be invoked before any
+	 * clustering algorithm is set since they share the distance measure. The
+	 * cache is opt-in: densities and masters are mostly found with k-d trees,
+	 * and a lookup costs more than a Euclidean distance of a few attributes.
+	 * It pays off only for expensive measures.
+	 * 
+	 * @param paraDistanceCacheSize
+	 *            The maximal number of cached distances. 0 means no cache.
+	 ************************* 
+	 */
+	public void setDistanceCacheSize(long paraDistanceCacheSize) {
+		distanceCacheSize = paraDistanceCacheSize;
+		setDistanceMeasure(distanceMeasure.getMeasure());
+	}// Of setDistanceCacheSize
+
 	/**
 	 ************************* 
 	 * Get the distance measure.
@@ -343,7 +387,8 @@ public class ActiveLearning {
 
 	/**
 	 ************************* 
-	 * Query a label under control.
+	 * Query a label under control. It is synchronized so that the budget is
+	 * checked and consumed atomically when blocks are learned concurrently.
 	 * 
 	 * @param paraIndex
 	 *            The index of the queried instance.
@@ -353,7 +398,7 @@ public class ActiveLearning {
 	 *             If an instance is queried more than one time.
 	 ************************* 
 	 */
-	public void query(int paraIndex) throws LabelUsedUpException,
+	public synchronized void query(int paraIndex) throws LabelUsedUpException,
 			DuplicateQueryException {
 		// No more queries are permitted.
 		if (numRemainingQueries <= 0) {
@@ -375,6 +420,8 @@ public class ActiveLearning {
 
 		querySequence[numQueries] = paraIndex;
 		numQueries++;
+		nearestQueriedIndex.addQueried(paraIndex);
+		blockStatistics.addQueried(paraIndex, predicts[paraIndex]);
 
 		// System.out.print(" q(" + paraIndex + ")");
 	}// Of query
@@ -610,7 +657,20 @@ public class ActiveLearning {
 			System.exit(0);
 		}//Of if
 
-		// Step 3. Construct the queried array. This approach saves time.
+		// Step 3. The index is valid if it holds exactly the queried ones.
+		if (tempNumQueried == nearestQueriedIndex.getNumQueried()) {
+			for (int i = 0; i < numInstances; i++) {
+				if (instanceStatusArray[i] != UNHANDLED) {
+					continue;
+				} // Of if
+
+				predicts[i] = predicts[nearestQueriedIndex.nearest(i)];
+				changeInstanceStatus(i, KNN_PREDICTED);
+			} // Of for i
+			return;
+		} // Of if
+
+		// Step 4. Construct the queried array. This approach saves time.
 		int[] tempQueriedArray = new int[tempNumQueried];
 		int tempCounter = 0;
 		for (int i = 0; i < numInstances; i++) {
@@ -620,7 +680,7 @@ public class ActiveLearning {
 			} // Of if
 		} // Of for i
 
-		// Step 3. Find the nearest neighbor.
+		// Step 5. Find the nearest neighbor.
 		double tempMinDistance;
 		double tempDistance;
 		int tempClosest;
@@ -665,15 +725,13 @@ public class ActiveLearning {
 		tempDistances[0] = -1;
 
 		// Step 2. Find neighbors
-		DistanceMeasure tempMeasure = new DistanceMeasure(data,
-				DistanceMeasure.EUCLIDEAN);
 		double tempCurrentDistance;
 		for (int i = 0; i < numInstances; i++) {
-			if (predicts[i] != QUERIED) {
+			if (instanceStatusArray[i] != QUERIED) {
 				continue;
 			} // Of if
 
-			tempCurrentDistance = tempMeasure.distance(paraIndex, i);
+			tempCurrentDistance = distanceMeasure.distance(paraIndex, i);
 			for (int j = paraK;; j--) {
 				if (tempCurrentDistance < tempDistances[j]) {
 					tempDistances[j + 1] = tempDistances[j];
@@ -0,0 +1,348 @@
+package algorithm;
+
+import java.util.Arrays;
+
+import common.BlockView;
+
+/**
+ * Label statistics of the blocks being learned. Each registered block keeps
+ * its number of queried instances, the class histogram and the list of queried
+ * members. They are updated when an instance is queried and when a block is
+ * split, so purity checks do not rescan the block. A block is recognized by its
+ * first instance and its size, so it should be a view passed to register() or
+ * split() and not partitioned afterwards.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class BlockStatistics {
+	/**
+	 * The number of classes.
+	 */
+	int numClasses;
+
+	/**
+	 * The block of each instance, -1 if not registered.
+	 */
+	int[] blockIds;
+
+	/**
+	 * The position of each instance in its block.
+	 */
+	int[] positions;
+
+	/**
+	 * The next queried instance in the same block, -1 for the last one.
+	 */
+	int[] nextQueried;
+
+	/**
+	 * The number of blocks.
+	 */
+	int numBlocks;
+
+	/**
+	 * The size of each block.
+	 */
+	int[] blockSizes;
+
+	/**
+	 * The number of queried instances of each block.
+	 */
+	int[] numQueried;
+
+	/**
+	 * The first queried instance of each block, -1 if none.
+	 */
+	int[] firstQueried;
+
+	/**
+	 * The class histogram of queried instances of each block. The counter of
+	 * class j of block i is histograms[i * numClasses + j].
+	 */
+	int[] histograms;
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraNumInstances
+	 *            The number of instances.
+	 * @param paraNumClasses
+	 *            The number of classes.
+	 ********************
+	 */
+	public BlockStatistics(int paraNumInstances, int paraNumClasses) {
+		numClasses = paraNumClasses;
+		blockIds = new int[paraNumInstances];
+		positions = new int[paraNumInstances];
+		nextQueried = new int[paraNumInstances];
+
+		// A binary block tree has less than 2n blocks.
+		int tempCapacity = paraNumInstances * 2 + 1;
+		blockSizes = new int[tempCapacity];
+		numQueried = new int[tempCapacity];
+		firstQueried = new int[tempCapacity];
+		histograms = new int[tempCapacity * numClasses];
+		reset();
+	}// Of the constructor
+
+	/**
+	 ********************
+	 * Forget all blocks.
+	 ********************
+	 */
+	public synchronized void reset() {
+		Arrays.fill(blockIds, -1);
+		numBlocks = 0;
+	}// Of reset
+
+	/**
+	 ********************
+	 * Allocate a new block.
+	 *
+	 * @param paraSize
+	 *            The size of the block.
+	 * @return The id of the block.
+	 ********************
+	 */
+	private int newBlock(int paraSize) {
+		if (numBlocks == blockSizes.length) {
+			int tempCapacity = numBlocks * 2;
+			blockSizes = Arrays.copyOf(blockSizes, tempCapacity);
+			numQueried = Arrays.copyOf(numQueried, tempCapacity);
+			firstQueried = Arrays.copyOf(firstQueried, tempCapacity);
+			histograms = Arrays.copyOf(histograms, tempCapacity * numClasses);
+		} // Of if
+
+		int resultId = numBlocks;
+		numBlocks++;
+		blockSizes[resultId] = paraSize;
+		numQueried[resultId] = 0;
+		firstQueried[resultId] = -1;
+		Arrays.fill(histograms, resultId * numClasses, (resultId + 1) * numClasses, 0);
+
+		return resultId;
+	}// Of newBlock
+
+	/**
+	 ********************
+	 * Append a queried instance to its block.
+	 *
+	 * @param paraBlockId
+	 *            The block.
+	 * @param paraInstance
+	 *            The queried instance.
+	 * @param paraLabel
+	 *            The label of the instance.
+	 ********************
+	 */
+	private void append(int paraBlockId, int paraInstance, int paraLabel) {
+		nextQueried[paraInstance] = firstQueried[paraBlockId];
+		firstQueried[paraBlockId] = paraInstance;
+		numQueried[paraBlockId]++;
+		histograms[paraBlockId * numClasses + paraLabel]++;
+	}// Of append
+
+	/**
+	 ********************
+	 * Register a block with one scan.
+	 *
+	 * @param paraBlock
+	 *            The block.
+	 * @param paraStatusArray
+	 *            The status of each instance.
+	 * @param paraPredicts
+	 *            The labels of queried instances.
+	 * @return The id of the block.
+	 ********************
+	 */
+	public synchronized int register(BlockView paraBlock, int[] paraStatusArray, int[] paraPredicts) {
+		int resultId = newBlock(paraBlock.length());
+		for (int i = 0; i < paraBlock.length(); i++) {
+			blockIds[paraBlock.get(i)] = resultId;
+			positions[paraBlock.get(i)] = i;
+			if (paraStatusArray[paraBlock.get(i)] == ActiveLearning.QUERIED) {
+				append(resultId, paraBlock.get(i), paraPredicts[paraBlock.get(i)]);
+			} // Of if
+		} // Of for i
+
+		return resultId;
+	}// Of register
+
+	/**
+	 ********************
+	 * Register the sub-blocks of a registered block. They should form a
+	 * partition of the block. Queried instances are moved without scanning.
+	 *
+	 * @param paraSubBlocks
+	 *            The sub-blocks.
+	 * @param paraPredicts
+	 *            The labels of queried instances.
+	 ********************
+	 */
+	public synchronized void split(BlockView[] paraSubBlocks, int[] paraPredicts) {
+		int tempParent = blockIds[paraSubBlocks[0].get(0)];
+		if (tempParent < 0) {
+			return;
+		} // Of if
+
+		// Step 1. Assign instances to the sub-blocks.
+		int tempId;
+		for (int i = 0; i < paraSubBlocks.length; i++) {
+			tempId = newBlock(paraSubBlocks[i].length());
+			for (int j = 0; j < paraSubBlocks[i].length(); j++) {
+				blockIds[paraSubBlocks[i].get(j)] = tempId;
+				positions[paraSubBlocks[i].get(j)] = j;
+			} // Of for j
+		} // Of for i
+
+		// Step 2. Move queried instances.
+		int tempNext;
+		for (int tempInstance = firstQueried[tempParent]; tempInstance != -1; tempInstance = tempNext) {
+			tempNext = nextQueried[tempInstance];
+			append(blockIds[tempInstance], tempInstance, paraPredicts[tempInstance]);
+		} // Of for tempInstance
+		firstQueried[tempParent] = -1;
+		numQueried[tempParent] = 0;
+	}// Of split
+
+	/**
+	 ********************
+	 * An instance is queried.
+	 *
+	 * @param paraInstance
+	 *            The instance.
+	 * @param paraLabel
+	 *            The label.
+	 ********************
+	 */
+	public synchronized void addQueried(int paraInstance, int paraLabel) {
+		if (blockIds[paraInstance] >= 0) {
+			append(blockIds[paraInstance], paraInstance, paraLabel);
+		} // Of if
+	}// Of addQueried
+
+	/**
+	 ********************
+	 * Get the id of a registered block.
+	 *
+	 * @param paraBlock
+	 *            The block.
+	 * @return The id, -1 if the block is not registered.
+	 ********************
+	 */
+	public synchronized int getBlockId(BlockView paraBlock) {
+		if (paraBlock.length() == 0) {
+			return -1;
+		} // Of if
+
+		int resultId = blockIds[paraBlock.get(0)];
+		if ((resultId < 0) || (blockSizes[resultId] != paraBlock.length())) {
+			return -1;
+		} // Of if
+
+		return resultId;
+	}// Of getBlockId
+
+	/**
+	 ********************
+	 * Get the number of queried instances.
+	 *
+	 * @param paraBlockId
+	 *            The block.
+	 * @return The number.
+	 ********************
+	 */
+	public synchronized int getNumQueried(int paraBlockId) {
+		return numQueried[paraBlockId];
+	}// Of getNumQueried
+
+	/**
+	 ********************
+	 * Get the number of different labels of queried instances.
+	 *
+	 * @param paraBlockId
+	 *            The block.
+	 * @return The number.
+	 ********************
+	 */
+	public synchronized int getNumLabels(int paraBlockId) {
+		int resultNumLabels = 0;
+		for (int i = paraBlockId * numClasses; i < (paraBlockId + 1) * numClasses; i++) {
+			if (histograms[i] > 0) {
+				resultNumLabels++;
+			} // Of if
+		} // Of for i
+
+		return resultNumLabels;
+	}// Of getNumLabels
+
+	/**
+	 ********************
+	 * Get the only label of queried instances.
+	 *
+	 * @param paraBlockId
+	 *            The block.
+	 * @return The label, -1 if nothing is queried or the labels are different.
+	 ********************
+	 */
+	public synchronized int getPureLabel(int paraBlockId) {
+		int resultLabel = -1;
+		for (int i = 0; i < numClasses; i++) {
+			if (histograms[paraBlockId * numClasses + i] == 0) {
+				continue;
+			} // Of if
+
+			if (resultLabel != -1) {
+				return -1;
+			} // Of if
+			resultLabel = i;
+		} // Of for i
+
+		return resultLabel;
+	}// Of getPureLabel
+
+	/**
+	 ********************
+	 * Get the class histogram of queried instances.
+	 *
+	 * @param paraBlockId
+	 *            The block.
+	 * @return A copy of the histogram.
+	 ********************
+	 */
+	public synchronized int[] getHistogram(int paraBlockId) {
+		return Arrays.copyOfRange(histograms, paraBlockId * numClasses, (paraBlockId + 1) * numClasses);
+	}// Of getHistogram
+
+	/**
+	 ********************
+	 * Get the positions of queried instances in the block.
+	 *
+	 * @param paraBlockId
+	 *            The block.
+	 * @return The positions in ascending order.
+	 ********************
+	 */
+	public synchronized int[] getQueriedPositions(int paraBlockId) {
+		int[] resultPositions = new int[numQueried[paraBlockId]];
+		int tempCounter = 0;
+		for (int tempInstance = firstQueried[paraBlockId]; tempInstance != -1; tempInstance = nextQueried[tempInstance]) {
+			resultPositions[tempCounter] = positions[tempInstance];
+			tempCounter++;
+		} // Of for tempInstance
+		Arrays.sort(resultPositions);
+
+		return resultPositions;
+	}// Of getQueriedPositions
+}// Of class BlockStatistics
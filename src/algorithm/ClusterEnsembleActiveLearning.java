@@ -2,7 +2,8 @@ package algorithm;
 
 import java.util.Arrays;
 
-import common.SimpleTools;
+import clustering.ClusteringResult;
+import common.BlockView;
 import exception.DuplicateQueryException;
 import exception.LabelUsedUpException;
 import exception.UnableToClusterInKException;
@@ -19,7 +20,7 @@ import exception.UnableToClusterInKException;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 20, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class ClusterEnsembleActiveLearning extends
@@ -66,7 +67,7 @@ public class ClusterEnsembleActiveLearning extends
 	public String learn() {
 		String resultMessage = "";
 		try {
-			learnBlock(wholeBlock);
+			learnBlock(new BlockView(numInstances));
 		} catch (Exception ee) {
 			resultMessage += ee;
 		}// Of try
@@ -112,32 +113,32 @@ public class ClusterEnsembleActiveLearning extends
 	 *             If an instance has been queried multiple times.
 	 ************************* 
 	 */
-	public void learnBlock(int[] paraBlock) throws LabelUsedUpException,
+	public void learnBlock(BlockView paraBlock) throws LabelUsedUpException,
 			DuplicateQueryException {
 		// Step 1. Select instances to label.
 		// May change later!
 		System.out
 				.println("ClusterEnsembleActiveLearning\r\nHandling a block with "
-						+ paraBlock.length + " instances.");
-		int tempNumInstancesToLabel = (int) Math.sqrt(paraBlock.length);
+						+ paraBlock.length() + " instances.");
+		int tempNumInstancesToLabel = (int) Math.sqrt(paraBlock.length());
 		selectCriticalAndLabel(paraBlock, tempNumInstancesToLabel);
 
 		// Step 2. Classify if pure.
 		boolean tempPure = true;
 		int tempFirstLabel = -1;
 		int tempFirstLabelIndex = -1;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 				// if (isQueried(paraBlock[i])) {
-				tempFirstLabel = predicts[paraBlock[i]];
+				tempFirstLabel = predicts[paraBlock.get(i)];
 				tempFirstLabelIndex = i;
 				break;
 			}// Of if
 		}// Of for i
 
-		for (int i = tempFirstLabelIndex + 1; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				if (predicts[paraBlock[i]] != tempFirstLabel) {
+		for (int i = tempFirstLabelIndex + 1; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
+				if (predicts[paraBlock.get(i)] != tempFirstLabel) {
 					tempPure = false;
 					break;
 				}// Of if
@@ -147,30 +148,30 @@ public class ClusterEnsembleActiveLearning extends
 		if (tempPure) {
 			int tempPredicted = 0;
 			// Now classify
-			for (int i = 0; i < paraBlock.length; i++) {
-				if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+			for (int i = 0; i < paraBlock.length(); i++) {
+				if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 					continue;
 				} else {
-					predicts[paraBlock[i]] = tempFirstLabel;
-					instanceStatusArray[paraBlock[i]] = PURE_BLOCK_PREDICTED;
+					predicts[paraBlock.get(i)] = tempFirstLabel;
+					instanceStatusArray[paraBlock.get(i)] = PURE_BLOCK_PREDICTED;
 					tempPredicted++;
 				}// Of if
 			}// Of for i
-			System.out.println("Pure block with " + paraBlock.length
+			System.out.println("Pure block with " + paraBlock.length()
 					+ " instances and " + tempPredicted + " predicted as "
 					+ tempFirstLabel);
 			System.out.print("Queried: ");
-			for (int i = 0; i < paraBlock.length; i++) {
-				if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+			for (int i = 0; i < paraBlock.length(); i++) {
+				if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 
 					// if (isQueried(paraBlock[i])) {
-					System.out.print(paraBlock[i] + "("
-							+ data.instance(paraBlock[i]).value(numConditions)
+					System.out.print(paraBlock.get(i) + "("
+							+ data.instance(paraBlock.get(i)).value(numConditions)
 							+ "), ");
 				}// Of if
 			}// Of for i
 			System.out.println();
-			System.out.println("Whole block" + Arrays.toString(paraBlock));
+			System.out.println("Whole block" + paraBlock);
 
 			finalNumBlocks++;
 
@@ -179,9 +180,9 @@ public class ClusterEnsembleActiveLearning extends
 
 		// Step 3. Pre-clustering and obtain the set family through
 		// intersection.
-		int[][] tempCurrentIntersections = null;
-		int[][] tempFinalBlocks = null;
-		int[][] tempCurrentAlgorithmBlocks = null;
+		ClusteringResult tempCurrentIntersections = null;
+		ClusteringResult tempFinalBlocks = null;
+		ClusteringResult tempCurrentAlgorithmBlocks = null;
 		boolean tempFirstAlgorithm = true;
 
 		for (int i = 0; i < NUM_ALGORITHMS; i++) {
@@ -214,17 +215,16 @@ public class ClusterEnsembleActiveLearning extends
 			// Try to intersect
 			System.out.println("\r\n Compute intersection");
 
-			System.out.println(Arrays.deepToString(tempFinalBlocks));
+			System.out.println(tempFinalBlocks);
 			System.out.println("intersects");
-			System.out.println(Arrays.deepToString(tempCurrentAlgorithmBlocks));
+			System.out.println(tempCurrentAlgorithmBlocks);
 
-			tempCurrentIntersections = SimpleTools
-					.binarySetFamilyMaximalIntersection(tempFinalBlocks,
-							tempCurrentAlgorithmBlocks);
-			double tempOringialSize = tempFinalBlocks[0].length
-					+ tempFinalBlocks[1].length;
-			double tempNewSize = tempCurrentIntersections[0].length
-					+ tempCurrentIntersections[1].length;
+			tempCurrentIntersections = tempFinalBlocks
+					.intersect(tempCurrentAlgorithmBlocks);
+			double tempOringialSize = tempFinalBlocks.getBlockSize(0)
+					+ tempFinalBlocks.getBlockSize(1);
+			double tempNewSize = tempCurrentIntersections.getBlockSize(0)
+					+ tempCurrentIntersections.getBlockSize(1);
 			double tempFraction = tempNewSize / tempOringialSize;
 			System.out.println("\r\ntempFraction = " + tempFraction);
 			if (tempFraction > 0.8) {
@@ -233,17 +233,19 @@ public class ClusterEnsembleActiveLearning extends
 			}// Of if
 		}// Of for i
 
-		System.out.println("Splitting a block with " + paraBlock.length
+		System.out.println("Splitting a block with " + paraBlock.length()
 				+ " instances.\r\nThe new blocks are: ");
-		System.out.println(Arrays.deepToString(tempFinalBlocks));
+		System.out.println(tempFinalBlocks);
 
 		if (tempFinalBlocks == null) {
 			return;
 		}// Of if
 
 		// Step 4. Learn these two blocks.
-		learnBlock(tempFinalBlocks[0]);
-		learnBlock(tempFinalBlocks[1]);
+		// Instances out of the intersections are in the third block, if any.
+		BlockView[] tempSubBlocks = tempFinalBlocks.split();
+		learnBlock(tempSubBlocks[0]);
+		learnBlock(tempSubBlocks[1]);
 	}// Of learnBlock
 
 	/**
@@ -3,7 +3,8 @@ package algorithm;
 import java.util.Arrays;
 
 import common.DistanceMeasure;
-import common.SimpleTools;
+import clustering.ClusteringResult;
+import common.BlockView;
 import exception.DuplicateQueryException;
 import exception.LabelUsedUpException;
 import exception.UnableToClusterInKException;
@@ -21,7 +22,7 @@ import exception.UnableToClusterInKException;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 20, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedActiveLearning {
@@ -60,7 +61,7 @@ public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedAc
 		
 		String resultMessage = "";
 		try {
-			learnBlock(wholeBlock);
+			learnBlock(new BlockView(numInstances));
 		} catch (Exception ee) {
 			resultMessage += ee;
 		} // Of try
@@ -97,13 +98,13 @@ public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedAc
 	 *                                 times.
 	 ************************* 
 	 */
-	public void learnBlock(int[] paraBlock) throws LabelUsedUpException, DuplicateQueryException {
+	public void learnBlock(BlockView paraBlock) throws LabelUsedUpException, DuplicateQueryException {
 		// Step 1. Select instances to label.
 		// May change later!
 		System.out
-				.println("ClusterEnsembleActiveLearningRJ\r\nHandling a block with " + paraBlock.length + " instances.");
-		System.out.println("and the block is :" + Arrays.toString(paraBlock));
-		int tempNumInstancesToLabel = (int) Math.sqrt(paraBlock.length);
+				.println("ClusterEnsembleActiveLearningRJ\r\nHandling a block with " + paraBlock.length() + " instances.");
+		System.out.println("and the block is :" + paraBlock);
+		int tempNumInstancesToLabel = (int) Math.sqrt(paraBlock.length());
 		//????
 		selectCriticalAndLabel(paraBlock, tempNumInstancesToLabel);
 
@@ -111,20 +112,20 @@ public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedAc
 		boolean tempPure = true;
 		int tempFirstLabel = -1;
 		int tempFirstLabelIndex = -1;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 				// if (isQueried(paraBlock[i])) {
-				tempFirstLabel = predicts[paraBlock[i]];
+				tempFirstLabel = predicts[paraBlock.get(i)];
 				tempFirstLabelIndex = i;
 				break;
 			} // Of if
 		} // Of for i
 
-		for (int i = tempFirstLabelIndex + 1; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		for (int i = tempFirstLabelIndex + 1; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 
 				// if (isQueried(paraBlock[i])) {
-				if (predicts[paraBlock[i]] != tempFirstLabel) {
+				if (predicts[paraBlock.get(i)] != tempFirstLabel) {
 					tempPure = false;
 					break;
 				} // Of if
@@ -144,27 +145,27 @@ public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedAc
 //			} // Of for i
 			
 			//tag
-			for (int i = 0; i < paraBlock.length; i++) {
-				if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+			for (int i = 0; i < paraBlock.length(); i++) {
+				if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 					System.out.println("the queried is :" + i + "in the tempPure");
 					continue;
 				} else {
-					predicts[paraBlock[i]] = tempFirstLabel;
+					predicts[paraBlock.get(i)] = tempFirstLabel;
 					tempPredicted++;
 				}//of else
 			} // Of for i
-			System.out.println("Pure block with " + paraBlock.length + " instances and " + tempPredicted
+			System.out.println("Pure block with " + paraBlock.length() + " instances and " + tempPredicted
 					+ " predicted as " + tempFirstLabel);
 			System.out.print("Queried: ");
-			for (int i = 0; i < paraBlock.length; i++) {
-				if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+			for (int i = 0; i < paraBlock.length(); i++) {
+				if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 
 					// if (isQueried(paraBlock[i])) {
-					System.out.print(paraBlock[i] + "(" + data.instance(paraBlock[i]).value(numConditions) + "), ");
+					System.out.print(paraBlock.get(i) + "(" + data.instance(paraBlock.get(i)).value(numConditions) + "), ");
 				} // Of if
 			} // Of for i
 			System.out.println();
-			System.out.println("Whole block" + Arrays.toString(paraBlock));
+			System.out.println("Whole block" + paraBlock);
 
 			finalNumBlocks++;
 
@@ -172,9 +173,9 @@ public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedAc
 		} // Of if
 
 		// Step 3. Pre-clustering and obtain the set family through intersection.
-		int[][] tempCurrentIntersections = null;
-		int[][] tempFinalBlocks = null;
-		int[][] tempCurrentAlgorithmBlocks = null;
+		ClusteringResult tempCurrentIntersections = null;
+		ClusteringResult tempFinalBlocks = null;
+		ClusteringResult tempCurrentAlgorithmBlocks = null;
 		boolean tempFirstAlgorithm = true;
 
 		for (int i = 0; i < NUM_ALGORITHMS; i++) {
@@ -204,15 +205,14 @@ public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedAc
 
 			// Try to intersect
 			System.out.println("\r\n Compute intersection");
-			tempCurrentIntersections = SimpleTools.binarySetFamilyMaximalIntersection(tempFinalBlocks,
-					tempCurrentAlgorithmBlocks);
+			tempCurrentIntersections = tempFinalBlocks.intersect(tempCurrentAlgorithmBlocks);
 //			System.out.println("the remain instances [0] is : " + Arrays.toString(SimpleTools.setMinus(tempCurrentIntersections[0], tempFinalBlocks[0], tempCurrentAlgorithmBlocks[0])));
 //			System.out.println("the remain instances [1] is : " + SimpleTools.setMinus(tempCurrentIntersections[1], tempFinalBlocks[1], tempCurrentAlgorithmBlocks[1]));
-			System.out.println("the array before intersection is " + Arrays.deepToString(tempFinalBlocks) + " \rand "
-					+ Arrays.deepToString(tempCurrentAlgorithmBlocks));
-			System.out.println("the intersection array is :" + Arrays.deepToString(tempCurrentIntersections));
-			double tempOringialSize = tempFinalBlocks[0].length + tempFinalBlocks[1].length;
-			double tempNewSize = tempCurrentIntersections[0].length + tempCurrentIntersections[1].length;
+			System.out.println("the array before intersection is " + tempFinalBlocks + " \rand "
+					+ tempCurrentAlgorithmBlocks);
+			System.out.println("the intersection array is :" + tempCurrentIntersections);
+			double tempOringialSize = tempFinalBlocks.getBlockSize(0) + tempFinalBlocks.getBlockSize(1);
+			double tempNewSize = tempCurrentIntersections.getBlockSize(0) + tempCurrentIntersections.getBlockSize(1);
 			double tempFraction = tempNewSize / tempOringialSize;
 			System.out.println("\r\ntempFraction = " + tempFraction);
 			if (tempFraction > 0.9) {
@@ -221,16 +221,18 @@ public class ClusterEnsembleActiveLearningRJ extends ClusteringAlgorithmsBasedAc
 			
 		} // Of for i
 
-		System.out.println("Splitting a block with " + paraBlock.length + " instances.\r\nThe new blocks are: ");
-		System.out.println(Arrays.deepToString(tempFinalBlocks));
+		System.out.println("Splitting a block with " + paraBlock.length() + " instances.\r\nThe new blocks are: ");
+		System.out.println(tempFinalBlocks);
 
 		if (tempFinalBlocks == null) {
 			return;
 		} // Of if
 
 		// Step 4. Learn these two blocks.
-		learnBlock(tempFinalBlocks[0]);
-		learnBlock(tempFinalBlocks[1]);
+		// Instances out of the intersections are in the third block, if any.
+		BlockView[] tempSubBlocks = tempFinalBlocks.split();
+		learnBlock(tempSubBlocks[0]);
+		learnBlock(tempSubBlocks[1]);
 	}// Of learnBlock
 
 	
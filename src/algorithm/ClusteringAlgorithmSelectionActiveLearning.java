@@ -1,7 +1,12 @@
 package algorithm;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
 
+import clustering.Clustering;
+import clustering.ClusteringResult;
 import common.*;
 import exception.*;
 
@@ -17,7 +22,7 @@ import exception.*;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 20, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class ClusteringAlgorithmSelectionActiveLearning extends
@@ -28,6 +33,23 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 	 */
 	double neighorBasedWeight;
 
+	/**
+	 * Run candidate clustering algorithms concurrently for each block.
+	 */
+	boolean concurrentSelection;
+
+	/**
+	 * The time limit in milliseconds for concurrent selection on one block. 0
+	 * means no limit.
+	 */
+	long selectionTimeout;
+
+	/**
+	 * The nearest queried instances within the block being split, shared by
+	 * all candidate partitions.
+	 */
+	NearestQueriedTable nearestQueriedTable;
+
 	/**
 	 ********************
 	 * The constructor.
@@ -65,6 +87,8 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		// isQueriedArray = new boolean[data.numInstances()];
 
 		setNeighorBasedWeight(paraNeighborBasedWeight);
+		nearestQueriedTable = new NearestQueriedTable(numInstances,
+				NearestQueriedTable.DEFAULT_LIST_LENGTH);
 
 		// Prepare
 		// setDc(0.5);
@@ -96,6 +120,165 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		neighorBasedWeight = paraWeight;
 	}// Of setNeighorBasedWeight
 
+	/**
+	 ************************* 
+	 * Run candidate clustering algorithms concurrently or not.
+	 * 
+	 * @param paraConcurrentSelection
+	 *            True for concurrent selection.
+	 ************************* 
+	 */
+	public void setConcurrentSelection(boolean paraConcurrentSelection) {
+		concurrentSelection = paraConcurrentSelection;
+	}// Of setConcurrentSelection
+
+	/**
+	 ************************* 
+	 * Set the time limit for concurrent selection on one block. Algorithms not
+	 * finished in time are considered failed for the block.
+	 * 
+	 * @param paraSelectionTimeout
+	 *            The time limit in milliseconds. 0 means no limit.
+	 ************************* 
+	 */
+	public void setSelectionTimeout(long paraSelectionTimeout) {
+		selectionTimeout = paraSelectionTimeout;
+	}// Of setSelectionTimeout
+
+	/**
+	 ************************* 
+	 * Cluster the block in two using each available algorithm. The
+	 * algorithms are independent given the block, so they may run
+	 * concurrently on the shared fork-join pool.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraExceptions
+	 *            For storing the reason of failure of each algorithm. It may be
+	 *            null.
+	 * @return The result of each algorithm, null for unavailable or failed
+	 *         ones. None of them is split.
+	 ************************* 
+	 */
+	public ClusteringResult[] clusterInTwoByAvailableAlgorithms(BlockView paraBlock, Exception[] paraExceptions) {
+		return clusterInTwoByAlgorithms(paraBlock, availableAlgorithms, paraExceptions);
+	}// Of clusterInTwoByAvailableAlgorithms
+
+	/**
+	 ************************* 
+	 * Cluster the block in two using each of the given algorithms.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraAlgorithms
+	 *            Which algorithms to run. They should be available.
+	 * @param paraExceptions
+	 *            For storing the reason of failure of each algorithm. It may be
+	 *            null.
+	 * @return The result of each algorithm, null for others or failed ones.
+	 *         None of them is split.
+	 ************************* 
+	 */
+	public ClusteringResult[] clusterInTwoByAlgorithms(BlockView paraBlock, boolean[] paraAlgorithms,
+			Exception[] paraExceptions) {
+		ClusteringResult[] resultBlocks = new ClusteringResult[NUM_ALGORITHMS];
+
+		// Step 1. One after another.
+		if (!concurrentSelection) {
+			for (int i = 0; i < NUM_ALGORITHMS; i++) {
+				if (!paraAlgorithms[i]) {
+					continue;
+				} // Of if
+
+				try {
+					SimpleTools.processTrackingOutput("Cluster in two using algorithm " + i + "... ");
+					resultBlocks[i] = clusterInTwo(paraBlock, i);
+					SimpleTools.processTrackingOutput(" done.\r\n");
+				} catch (UnableToClusterInKException ee) {
+					if (paraExceptions != null) {
+						paraExceptions[i] = ee;
+					} // Of if
+				} // Of try
+			} // Of for i
+
+			return resultBlocks;
+		} // Of if
+
+		// Step 2. Submit. Objects are constructed in this thread.
+		Clustering[] tempAlgorithms = new Clustering[NUM_ALGORITHMS];
+		List<Future<ClusteringResult>> tempFutures = new ArrayList<Future<ClusteringResult>>(NUM_ALGORITHMS);
+		// Each task writes its own element. They are copied only for tasks
+		// finished in time, so late failures are ignored.
+		final Exception[] tempExceptions = new Exception[NUM_ALGORITHMS];
+		for (int i = 0; i < NUM_ALGORITHMS; i++) {
+			if (!paraAlgorithms[i]) {
+				tempFutures.add(null);
+				continue;
+			} // Of if
+
+			setClusteringAlgorithm(i);
+			tempAlgorithms[i] = currentClusteringAlgorithm;
+			final Clustering tempAlgorithm = currentClusteringAlgorithm;
+			final int tempIndex = i;
+			final BlockView tempBlock = paraBlock;
+			tempFutures.add(Common.forkJoinPool.submit(new Callable<ClusteringResult>() {
+				public ClusteringResult call() {
+					try {
+						return clusterInTwo(tempBlock, tempAlgorithm, tempIndex);
+					} catch (UnableToClusterInKException ee) {
+						tempExceptions[tempIndex] = ee;
+						return null;
+					} // Of try
+				}// Of call
+			}));
+		} // Of for i
+
+		// Step 3. Gather in the order of algorithms.
+		long tempDeadline = System.currentTimeMillis() + selectionTimeout;
+		long tempRemaining;
+		Future<ClusteringResult> tempFuture;
+		for (int i = 0; i < NUM_ALGORITHMS; i++) {
+			tempFuture = tempFutures.get(i);
+			if (tempFuture == null) {
+				continue;
+			} // Of if
+
+			try {
+				if (selectionTimeout <= 0) {
+					resultBlocks[i] = tempFuture.get();
+				} else {
+					tempRemaining = Math.max(0, tempDeadline - System.currentTimeMillis());
+					resultBlocks[i] = tempFuture.get(tempRemaining, TimeUnit.MILLISECONDS);
+				} // Of if
+
+				if (paraExceptions != null) {
+					paraExceptions[i] = tempExceptions[i];
+				} // Of if
+			} catch (TimeoutException ee) {
+				// Fork-join tasks are not interrupted, so the algorithm stops
+				// at its next check and releases the worker. The object is
+				// still in use, never share it again.
+				tempAlgorithms[i].cancel();
+				tempFuture.cancel(false);
+				discardClusteringAlgorithm(i);
+				SimpleTools.processTrackingOutput("Algorithm " + i + " is out of time.\r\n");
+				if (paraExceptions != null) {
+					paraExceptions[i] = ee;
+				} // Of if
+			} catch (ExecutionException ee) {
+				System.out.println("Error occurred in clusterInTwoByAlgorithms(BlockView, boolean[], Exception[]): "
+						+ ee.getCause());
+				ee.getCause().printStackTrace();
+				System.exit(0);
+			} catch (InterruptedException ee) {
+				System.out.println("Error occurred in clusterInTwoByAlgorithms(BlockView, boolean[], Exception[]): " + ee);
+				System.exit(0);
+			} // Of try
+		} // Of for i
+
+		return resultBlocks;
+	}// Of clusterInTwoByAlgorithms
+
 	/**
 	 ************************* 
 	 * Learn. The main process.
@@ -104,9 +287,11 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 	public String learn() {
 		Arrays.fill(algorithmWinArray, 0);
 		finalNumBlocks = 0;
+		blockStatistics.reset();
+		blockStatistics.register(wholeBlock, instanceStatusArray, predicts);
 
 		try {
-			learnBlock(wholeBlock);
+			learnBlock(new BlockView(numInstances));
 		} catch (Exception ee) {
 			System.out
 					.println("Error occurred in ClusteringAlgorithmSelectionActiveLearning.learn()"
@@ -139,10 +324,10 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 	 *             If an instance is queried more than one time.
 	 ************************* 
 	 */
-	public void learnBlock(int[] paraBlock) throws LabelUsedUpException,
+	public void learnBlock(BlockView paraBlock) throws LabelUsedUpException,
 			DuplicateQueryException {
 		// Step 1. Select instances to label.
-		if (paraBlock.length <= smallBlockThreshold) {
+		if (paraBlock.length() <= smallBlockThreshold) {
 			//Do not handle them now.
 			return;
 		} // Of if
@@ -150,7 +335,7 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		// Step 1. Select instances to label.
 		// System.out.println("Handling a block with " + paraBlock.length + "
 		// instances.\r\n");
-		int tempNumInstancesToLabel = (int) Math.sqrt(paraBlock.length);
+		int tempNumInstancesToLabel = (int) Math.sqrt(paraBlock.length());
 		selectCriticalAndLabel(paraBlock, tempNumInstancesToLabel);
 
 		// Step 2. Classify if pure
@@ -164,23 +349,15 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		int[] tempBestAlgorithmArray = new int[NUM_ALGORITHMS];
 		int tempNumBestAlgorithms = 0;
 
-		int[][] tempBestBlocks = null;
+		ClusteringResult tempBestBlocks = null;
 		double tempBestEntropy = Double.MAX_VALUE;
-		int[][] tempNewBlocks = null;
+		ClusteringResult tempNewBlocks = null;
 		double tempEntropy;
 
+		ClusteringResult[] tempAllNewBlocks = clusterInTwoByAvailableAlgorithms(paraBlock, null);
+		prepareNearestQueriedTable(paraBlock);
 		for (int i = 0; i < NUM_ALGORITHMS; i++) {
-			// Is this algorithm available?
-			if (!availableAlgorithms[i]) {
-				continue;
-			} // Of if
-
-			try {
-				tempNewBlocks = clusterInTwo(paraBlock, i);
-			} catch (UnableToClusterInKException ee) {
-				continue;
-			} // Of try
-
+			tempNewBlocks = tempAllNewBlocks[i];
 			if (tempNewBlocks == null) {
 				// Some algorithm may fail on some blocks.
 				continue;
@@ -190,10 +367,10 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 
 			System.out
 					.println("Algorithm " + i + " entropy: " + tempEntropy
-							+ " for " + paraBlock.length
+							+ " for " + paraBlock.length()
 							+ " instances splitted to "
-							+ tempNewBlocks[0].length + " + "
-							+ tempNewBlocks[1].length);
+							+ tempNewBlocks.getBlockSize(0) + " + "
+							+ tempNewBlocks.getBlockSize(1));
 			if (tempBestEntropy > tempEntropy) {
 				tempBestEntropy = tempEntropy;
 				tempNumBestAlgorithms = 0;
@@ -212,7 +389,7 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		// test 4");
 		if (tempNumBestAlgorithms == 0) {
 			System.out.println("No algorithm can handle this block: "
-					+ Arrays.toString(paraBlock));
+					+ paraBlock);
 			System.exit(0);
 		} // Of if
 
@@ -220,9 +397,11 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 			algorithmWinArray[tempBestAlgorithmArray[i]]++;
 		} // Of for i
 
-		// Step 4. Learn these two blocks.
-		learnBlock(tempBestBlocks[0]);
-		learnBlock(tempBestBlocks[1]);
+		// Step 4. Learn these two blocks. Only the best result is split.
+		BlockView[] tempSubBlocks = tempBestBlocks.split();
+		blockStatistics.split(tempSubBlocks, predicts);
+		learnBlock(tempSubBlocks[0]);
+		learnBlock(tempSubBlocks[1]);
 	}// Of learnBlock
 
 	/**
@@ -287,6 +466,25 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		System.out.println("The center is: " + tempCenterIndex);
 	}// Of testGetCloseCenterInstance
 
+	/**
+	 ************************* 
+	 * Prepare the nearest queried instances within the block, so that weighted
+	 * entropies of its sub-blocks need no distance computation in most cases.
+	 * It should be invoked again if some instances are queried in between.
+	 * 
+	 * @param paraBlock
+	 *            The block to split.
+	 ************************* 
+	 */
+	public void prepareNearestQueriedTable(BlockView paraBlock) {
+		if (neighorBasedWeight < 1e-6) {
+			return;
+		} // Of if
+
+		nearestQueriedTable.prepare(distanceMeasure, paraBlock,
+				instanceStatusArray);
+	}// Of prepareNearestQueriedTable
+
 	/**
 	 ************************* 
 	 * Compute the weighted entropy of the blocks. If one block is empty, the
@@ -294,11 +492,11 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 	 * using 1NN within the block.
 	 * 
 	 * @param paraBlocks
-	 *            The given blocks.
+	 *            The given blocks, not split yet.
 	 * @return The weighted entropy.
 	 ************************* 
 	 */
-	public double computeWeightedEntropy(int[][] paraBlocks) {
+	public double computeWeightedEntropy(ClusteringResult paraBlocks) {
 		// Step 0. Handle the situation when weight is 0.
 		if (neighorBasedWeight < 1e-6) {
 			return computeEntropy(paraBlocks);
@@ -307,18 +505,18 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		double tempNumInstances = 0;
 		double resultEntropy = 0;
 
-		for (int i = 0; i < paraBlocks.length; i++) {
-			if (paraBlocks[i].length == 0) {
+		for (int i = 0; i < paraBlocks.getNumBlocks(); i++) {
+			if (paraBlocks.getBlockSize(i) == 0) {
 				// The block is not split at all.
 				return data.numClasses() / 2;
 			} // Of if
-			tempNumInstances += paraBlocks[i].length;
+			tempNumInstances += paraBlocks.getBlockSize(i);
 		} // Of for i
 
 		double tempEntropy;
-		for (int i = 0; i < paraBlocks.length; i++) {
-			tempEntropy = computeWeightedEntropy(paraBlocks[i]);
-			resultEntropy += tempEntropy * paraBlocks[i].length
+		for (int i = 0; i < paraBlocks.getNumBlocks(); i++) {
+			tempEntropy = computeWeightedEntropy(paraBlocks, i);
+			resultEntropy += tempEntropy * paraBlocks.getBlockSize(i)
 					/ tempNumInstances;
 		} // Of for i
 
@@ -327,25 +525,30 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 
 	/**
 	 ************************* 
-	 * Compute the weighted entropy of the block. Unknown labels are predicted
-	 * using 1NN.
+	 * Compute the weighted entropy of a block of the result. Unknown labels are
+	 * predicted using 1NN.
 	 * 
-	 * @param paraBlock
-	 *            The given block.
+	 * @param paraBlocks
+	 *            The given blocks, not split yet.
+	 * @param paraIndex
+	 *            The index of the block.
 	 * @return The weighted entropy.
 	 ************************* 
 	 */
-	public double computeWeightedEntropy(int[] paraBlock) {
+	public double computeWeightedEntropy(ClusteringResult paraBlocks, int paraIndex) {
 		// Step 0. Handle the situation when weight is 0.
 		if (neighorBasedWeight < 1e-6) {
-			return computeEntropy(paraBlock);
+			return computeEntropy(paraBlocks, paraIndex);
 		} // Of if
 
 		// Step 1. Which instances are already queried in this block?
+		BlockView tempBlock = paraBlocks.getBlock();
+		int tempBlockSize = paraBlocks.getBlockSize(paraIndex);
 		int tempNumQueries = 0;
 		int[] tempQueriedInstances;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		for (int i = 0; i < tempBlock.length(); i++) {
+			if ((paraBlocks.getClusterIndex(i) == paraIndex)
+					&& (instanceStatusArray[tempBlock.get(i)] == QUERIED)) {
 				tempNumQueries++;
 			} // Of if
 		} // Of for i
@@ -358,9 +561,10 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 
 		tempQueriedInstances = new int[tempNumQueries];
 		int tempCounter = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				tempQueriedInstances[tempCounter] = paraBlock[i];
+		for (int i = 0; i < tempBlock.length(); i++) {
+			if ((paraBlocks.getClusterIndex(i) == paraIndex)
+					&& (instanceStatusArray[tempBlock.get(i)] == QUERIED)) {
+				tempQueriedInstances[tempCounter] = tempBlock.get(i);
 				tempCounter++;
 			} // Of if
 		} // Of for i
@@ -389,15 +593,27 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		double[] tempPredictionDistribution = new double[numClasses];
 		double tempDistance, tempMinimalDistance;
 		int tempClosestNeighbor;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		boolean tempTableAvailable = nearestQueriedTable.markSubBlock(
+				paraBlocks, paraIndex, instanceStatusArray);
+		for (int i = 0; i < tempBlock.length(); i++) {
+			if ((paraBlocks.getClusterIndex(i) != paraIndex)
+					|| (instanceStatusArray[tempBlock.get(i)] == QUERIED)) {
 				continue;
 			} // Of if
 
+			if (tempTableAvailable) {
+				tempClosestNeighbor = nearestQueriedTable.nearest(tempBlock.get(i));
+				if (tempClosestNeighbor != -1) {
+					tempPredictionDistribution[predicts[tempClosestNeighbor]]++;
+					continue;
+				} // Of if
+			} // Of if
+
+			// Scan if the table does not know.
 			tempMinimalDistance = Double.MAX_VALUE;
 			tempClosestNeighbor = -1;
 			for (int j = 0; j < tempNumQueries; j++) {
-				tempDistance = distanceMeasure.distance(paraBlock[i],
+				tempDistance = distanceMeasure.distance(tempBlock.get(i),
 						tempQueriedInstances[j]);
 				if (tempDistance < tempMinimalDistance) {
 					tempMinimalDistance = tempDistance;
@@ -416,7 +632,7 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 
 		// Step 5. Compute the weighted entropy.
 		double tempWeightedTotal = tempNumQueries + neighorBasedWeight
-				* (paraBlock.length - tempNumQueries);
+				* (tempBlockSize - tempNumQueries);
 		// System.out.println("tempWeightedTotal = " + tempWeightedTotal);
 		double tempValue = 0;
 		double tempEntropy = 0;
@@ -444,26 +660,26 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 	 * one block is empty, the entropy of the block will be numClasses/2.
 	 * 
 	 * @param paraBlocks
-	 *            The given blocks.
+	 *            The given blocks, not split yet.
 	 * @return The entropy.
 	 ************************* 
 	 */
-	public double computeEntropy(int[][] paraBlocks) {
+	public double computeEntropy(ClusteringResult paraBlocks) {
 		double tempNumInstances = 0;
 		double resultEntropy = 0;
 
-		for (int i = 0; i < paraBlocks.length; i++) {
-			if (paraBlocks[i].length == 0) {
+		for (int i = 0; i < paraBlocks.getNumBlocks(); i++) {
+			if (paraBlocks.getBlockSize(i) == 0) {
 				// The block is not split at all.
 				return data.numClasses() / 2;
 			} // Of if
-			tempNumInstances += paraBlocks[i].length;
+			tempNumInstances += paraBlocks.getBlockSize(i);
 		} // Of for i
 
 		double tempEntropy;
-		for (int i = 0; i < paraBlocks.length; i++) {
-			tempEntropy = computeEntropy(paraBlocks[i]);
-			resultEntropy += tempEntropy * paraBlocks[i].length
+		for (int i = 0; i < paraBlocks.getNumBlocks(); i++) {
+			tempEntropy = computeEntropy(paraBlocks, i);
+			resultEntropy += tempEntropy * paraBlocks.getBlockSize(i)
 					/ tempNumInstances;
 		} // Of for i
 
@@ -472,18 +688,23 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 
 	/**
 	 ************************* 
-	 * Compute the entropy of the block. Only consider labeled instances.
+	 * Compute the entropy of a block of the result. Only consider labeled
+	 * instances.
 	 * 
-	 * @param paraBlock
-	 *            The given block.
+	 * @param paraBlocks
+	 *            The given blocks, not split yet.
+	 * @param paraIndex
+	 *            The index of the block.
 	 * @return The entropy.
 	 ************************* 
 	 */
-	public double computeEntropy(int[] paraBlock) {
+	public double computeEntropy(ClusteringResult paraBlocks, int paraIndex) {
 		// Step 1. Which instances are already queried in this block?
+		BlockView tempBlock = paraBlocks.getBlock();
 		int tempNumQueries = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		for (int i = 0; i < tempBlock.length(); i++) {
+			if ((paraBlocks.getClusterIndex(i) == paraIndex)
+					&& (instanceStatusArray[tempBlock.get(i)] == QUERIED)) {
 				tempNumQueries++;
 			} // Of if
 		} // Of for i
@@ -495,13 +716,14 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 
 		// Step 1. Statistics on queried labels.
 		double[] tempQueryDistribution = new double[numClasses];
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				tempQueryDistribution[predicts[paraBlock[i]]]++;
+		for (int i = 0; i < tempBlock.length(); i++) {
+			if ((paraBlocks.getClusterIndex(i) == paraIndex)
+					&& (instanceStatusArray[tempBlock.get(i)] == QUERIED)) {
+				tempQueryDistribution[predicts[tempBlock.get(i)]]++;
 			} // Of if
 		} // Of for i
 
-		SimpleTools.variableTrackingOutput("" + paraBlock.length
+		SimpleTools.variableTrackingOutput("" + paraBlocks.getBlockSize(paraIndex)
 				+ " instances, the queried instance distribution is: "
 				+ Arrays.toString(tempQueryDistribution));
 
@@ -518,7 +740,7 @@ public class ClusteringAlgorithmSelectionActiveLearning extends
 		} // Of for i
 
 		SimpleTools.processTrackingOutput("computeEntropy() with "
-				+ paraBlock.length + " instances, tempEntropy = " + tempEntropy
+				+ paraBlocks.getBlockSize(paraIndex) + " instances, tempEntropy = " + tempEntropy
 				+ ", distribution = " + Arrays.toString(tempQueryDistribution));
 		return tempEntropy;
 	}// Of computeEntropy
@@ -5,6 +5,7 @@ import clustering.DensityPeaks;
 import clustering.FCM;
 import clustering.SmaleHierarchical;
 import clustering.KMeans;
+import clustering.MiniBatchKMeans;
 import clustering.RandomWalks;
 import clustering.WekaDBScan;
 import clustering.WekaHierarchical;
@@ -102,7 +103,11 @@ public class ClusteringAlgorithmsBasedActiveLearning extends
 				.processTrackingOutput("densityPeaksGaussian initialized.\r\n");
 
 		if (availableAlgorithms[KMEANS_CLUSTERING]) {
-			kMeans = new KMeans(data, distanceMeasure);
+			if (numInstances > MiniBatchKMeans.FULL_BATCH_THRESHOLD) {
+				kMeans = new MiniBatchKMeans(data, distanceMeasure);
+			} else {
+				kMeans = new KMeans(data, distanceMeasure);
+			} // Of if
 			SimpleTools.processTrackingOutput("kMeans initialized.\r\n");
 		}// Of if
 
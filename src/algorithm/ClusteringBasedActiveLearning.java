@@ -1,17 +1,24 @@
 package algorithm;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
 
 import clustering.Clustering;
+import clustering.ClusteringResult;
 import clustering.SmaleDBScan;
 import clustering.DensityPeaks;
 import clustering.FCM;
 import clustering.SmaleHierarchical;
 import clustering.KMeans;
+import clustering.MiniBatchKMeans;
 import clustering.RandomWalks;
 import clustering.WekaDBScan;
 import clustering.WekaHierarchical;
 import common.BlockQueue;
+import common.BlockView;
+import common.Common;
 import common.DistanceMeasure;
 import common.SimpleTools;
 import exception.*;
@@ -29,13 +36,14 @@ import exception.*;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: June 20, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 public class ClusteringBasedActiveLearning extends ActiveLearning {
 	/**
-	 * The whole block.
+	 * The whole block. It should not be split, and each block tree starts from
+	 * a new one.
 	 */
-	int[] wholeBlock;
+	BlockView wholeBlock;
 
 	/**
 	 * How many blocks has been obtained.
@@ -67,7 +75,7 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	/**
 	 * Small blocks. They are handled at the end of the learning process.
 	 */
-	int[][] smallBlocks;
+	BlockView[] smallBlocks;
 
 	/**
 	 * The density peaks algorithm with Gaussian kernel.
@@ -189,6 +197,27 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 */
 	double adaptiveRatio;
 
+	/**
+	 * Learn the block tree in the fork-join pool.
+	 */
+	boolean parallelLearning;
+
+	/**
+	 * Query in the same order as sequential learning when learning in
+	 * parallel. Only splits run in the pool.
+	 */
+	boolean deterministicReplay;
+
+	/**
+	 * The number of pure blocks in the last learning.
+	 */
+	int numPureBlocks;
+
+	/**
+	 * The size sum of pure blocks in the last learning.
+	 */
+	int pureBlocksSizeSum;
+
 	/**
 	 ********************
 	 * The constructor.
@@ -221,10 +250,7 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		adaptiveRatio = paraAdaptiveRatio;
 
 		// Should be initialized in other places.
-		wholeBlock = new int[numInstances];
-		for (int i = 0; i < numInstances; i++) {
-			wholeBlock[i] = i;
-		} // Of for i
+		wholeBlock = new BlockView(numInstances);
 
 		finalNumBlocks = 0;
 
@@ -236,7 +262,7 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		numRemainingQueries = 1000;
 
 		numSmallBlocks = 0;
-		smallBlocks = new int[numInstances][];
+		smallBlocks = new BlockView[numInstances];
 		// numDefaultLabeled = 0;
 
 		kMeans = null;
@@ -293,7 +319,11 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		switch (paraAlgorithm) {
 		case KMEANS_CLUSTERING:
 			if (kMeans == null) {
-				kMeans = new KMeans(data, distanceMeasure);
+				if (numInstances > MiniBatchKMeans.FULL_BATCH_THRESHOLD) {
+					kMeans = new MiniBatchKMeans(data, distanceMeasure);
+				} else {
+					kMeans = new KMeans(data, distanceMeasure);
+				} // Of if
 			} // Of if
 			currentClusteringAlgorithm = kMeans;
 			break;
@@ -341,6 +371,57 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		}// Of switch
 	}// Of setClusteringAlgorithm
 
+	/**
+	 ************************* 
+	 * Discard the object of the given algorithm. A new one will be constructed
+	 * when it is set again. Density based ones are replaced with copies
+	 * sharing the densities, so densities are not computed again. It is useful
+	 * when the object is still in use by another thread.
+	 * 
+	 * @param paraAlgorithm
+	 *            The given algorithm.
+	 ************************* 
+	 */
+	public void discardClusteringAlgorithm(int paraAlgorithm) {
+		switch (paraAlgorithm) {
+		case KMEANS_CLUSTERING:
+			kMeans = null;
+			break;
+		case FCM_CLUSTERING:
+			fcm = null;
+			break;
+		case DBSCAN_CLUSTERING:
+			if (dbScan != null) {
+				dbScan = new SmaleDBScan(dbScan);
+			} // Of if
+			break;
+		case DP_CUTOFF_CLUSTERING:
+			if (densityPeaksCutoff != null) {
+				densityPeaksCutoff = new DensityPeaks(densityPeaksCutoff);
+			} // Of if
+			break;
+		case DP_GAUSSIAN_CLUSTERING:
+			// It is always required for critical instance selection.
+			if (densityPeaksGaussian != null) {
+				densityPeaksGaussian = new DensityPeaks(densityPeaksGaussian);
+			} // Of if
+			break;
+		case HIERARCHICAL_CLUSTERING:
+			hierarchical = null;
+			break;
+		case RANDOM_WALK_CLUSTERING:
+			randomWalks = null;
+			break;
+		default:
+			System.out.println("Unsupported algorithm: " + paraAlgorithm);
+			System.exit(0);
+		}// Of switch
+
+		if (currentClusteringAlgorithmIndex == paraAlgorithm) {
+			currentClusteringAlgorithm = null;
+		} // Of if
+	}// Of discardClusteringAlgorithm
+
 	/**
 	 ************************* 
 	 * Set the instance selection strategy.
@@ -376,6 +457,21 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		queryAmountStrategy = paraQueryAmountStrategy;
 	}// Of setQueryAmountStrategy
 
+	/**
+	 ************************* 
+	 * Set the parallel learning mode. Sequential by default.
+	 * 
+	 * @param paraParallelLearning
+	 *            Learn the block tree in the fork-join pool or not.
+	 * @param paraDeterministicReplay
+	 *            Keep the query order of sequential learning or not.
+	 ************************* 
+	 */
+	public void setParallelLearning(boolean paraParallelLearning, boolean paraDeterministicReplay) {
+		parallelLearning = paraParallelLearning;
+		deterministicReplay = paraDeterministicReplay;
+	}// Of setParallelLearning
+
 	/**
 	 ************************* 
 	 * Select critical instances and label. The number of required labels is
@@ -390,8 +486,8 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 * @see #getBlockPureThreshold(int);
 	 ************************* 
 	 */
-	public void selectCriticalAndLabel(int[] paraBlock) throws LabelUsedUpException, DuplicateQueryException {
-		int tempNumRequiredLabels = getBlockPureThreshold(paraBlock.length);
+	public void selectCriticalAndLabel(BlockView paraBlock) throws LabelUsedUpException, DuplicateQueryException {
+		int tempNumRequiredLabels = getBlockPureThreshold(paraBlock.length());
 		selectCriticalAndLabel(paraBlock, tempNumRequiredLabels);
 	}// Of selectCriticalAndLabel
 
@@ -409,16 +505,16 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *             If an instance is queried more than one time.
 	 ************************* 
 	 */
-	public void selectCriticalAndLabel(int[] paraBlock, int paraTotalLabels)
+	public void selectCriticalAndLabel(BlockView paraBlock, int paraTotalLabels)
 			throws LabelUsedUpException, DuplicateQueryException {
 		// Leave small blocks along
-		if (paraBlock.length <= smallBlockThreshold) {
+		if (paraBlock.length() <= smallBlockThreshold) {
 			return;
 		} // Of if
 		
 		//No more than the block length
-		if (paraTotalLabels > paraBlock.length) {
-			paraTotalLabels = paraBlock.length;
+		if (paraTotalLabels > paraBlock.length()) {
+			paraTotalLabels = paraBlock.length();
 		}//Of if
 
 		// Step 1. Check number of existing labels
@@ -426,28 +522,41 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		boolean tempIsFirst = true;
 		int tempFirstLabel = -1;
 		int tempCurrentLabel;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				if (queryAmountStrategy == IMPURE_QUERIES) {
-					if (tempIsFirst) {
-						tempFirstLabel = predicts[paraBlock[i]];
-						tempIsFirst = false;
-					} else {
-						tempCurrentLabel = predicts[paraBlock[i]];
-						if (tempCurrentLabel != tempFirstLabel) {
-							// Impure, do not select any instance
-							return;
+		int tempBlockId = blockStatistics.getBlockId(paraBlock);
+		if (tempBlockId >= 0) {
+			tempNumExistingLabels = blockStatistics.getNumQueried(tempBlockId);
+			if ((queryAmountStrategy == IMPURE_QUERIES) && (tempNumExistingLabels > 0)) {
+				tempFirstLabel = blockStatistics.getPureLabel(tempBlockId);
+				if (tempFirstLabel == -1) {
+					// Impure, do not select any instance
+					return;
+				} // Of if
+				tempIsFirst = false;
+			} // Of if
+		} else {
+			for (int i = 0; i < paraBlock.length(); i++) {
+				if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
+					if (queryAmountStrategy == IMPURE_QUERIES) {
+						if (tempIsFirst) {
+							tempFirstLabel = predicts[paraBlock.get(i)];
+							tempIsFirst = false;
+						} else {
+							tempCurrentLabel = predicts[paraBlock.get(i)];
+							if (tempCurrentLabel != tempFirstLabel) {
+								// Impure, do not select any instance
+								return;
+							} // Of if
 						} // Of if
 					} // Of if
+					tempNumExistingLabels++;
 				} // Of if
-				tempNumExistingLabels++;
-			} // Of if
-		} // Of for i
+			} // Of for i
+		} // Of if
 
 		SimpleTools.variableTrackingOutput("tempNumExistingLabels = " + tempNumExistingLabels);
 
 		int tempRequiredLabels = paraTotalLabels - tempNumExistingLabels;
-		SimpleTools.variableTrackingOutput("paraBlock length = " + paraBlock.length + ", paraTotalLabels = "
+		SimpleTools.variableTrackingOutput("paraBlock length = " + paraBlock.length() + ", paraTotalLabels = "
 				+ paraTotalLabels + ", tempNumExistingLabels = " + tempNumExistingLabels + ", Require "
 				+ tempRequiredLabels + " labels.");
 		if (tempRequiredLabels <= 0) {
@@ -482,7 +591,7 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *             If an instance is queried more than one time.
 	 ************************* 
 	 */
-	public void selectCriticalDensityPeaks(int[] paraBlock, int paraRequiredLabels)
+	public void selectCriticalDensityPeaks(BlockView paraBlock, int paraRequiredLabels)
 			throws LabelUsedUpException, DuplicateQueryException {
 		// Nothing to select.
 		if (paraRequiredLabels < 1) {
@@ -490,15 +599,15 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		} // Of if
 
 		SimpleTools.processTrackingOutput(
-				"Plan to label " + paraRequiredLabels + " while the block has " + paraBlock.length + " instances.");
+				"Plan to label " + paraRequiredLabels + " while the block has " + paraBlock.length() + " instances.");
 
 		// Queries in this method.
 		int tempQueries = 0;
 
-		if (paraRequiredLabels >= paraBlock.length) {
-			for (int i = 0; i < paraBlock.length; i++) {
+		if (paraRequiredLabels >= paraBlock.length()) {
+			for (int i = 0; i < paraBlock.length(); i++) {
 				try {
-					query(paraBlock[i]);
+					query(paraBlock.get(i));
 				} catch (DuplicateQueryException ee) {
 					// Ignore it.
 				} // Of try
@@ -551,9 +660,9 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *             If an instance is queried more than one time.
 	 ************************* 
 	 */
-	public void selectCriticalDensityPeaks(int[] paraBlock, int paraRequiredLabels, boolean paraIsFirst,
+	public void selectCriticalDensityPeaks(BlockView paraBlock, int paraRequiredLabels, boolean paraIsFirst,
 			int paraFirstLabel) throws LabelUsedUpException, DuplicateQueryException {
-		int tempPureThrehold = getBlockPureThreshold(paraBlock.length);
+		int tempPureThrehold = getBlockPureThreshold(paraBlock.length());
 		// In the first round, we may query more than sqrt(n) labels.
 		if (tempPureThrehold < paraRequiredLabels) {
 			tempPureThrehold = paraRequiredLabels;
@@ -602,7 +711,7 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *             If an instance is queried more than one time.
 	 ************************* 
 	 */
-	public void selectCriticalMaxTotalDistance(int[] paraBlock, int paraRequiredLabels, boolean paraIsFirst,
+	public void selectCriticalMaxTotalDistance(BlockView paraBlock, int paraRequiredLabels, boolean paraIsFirst,
 			int paraFirstLabel) throws LabelUsedUpException, DuplicateQueryException {
 		// Nothing to select.
 		if (paraRequiredLabels < 1) {
@@ -610,21 +719,21 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		} // Of if
 		
 		//No more than the size of the block.
-		if (paraRequiredLabels > paraBlock.length) {
-			paraRequiredLabels = paraBlock.length;
+		if (paraRequiredLabels > paraBlock.length()) {
+			paraRequiredLabels = paraBlock.length();
 		}//Of if
 
 		// Step 1. Obtain labeled instances.
 		int tempNumLabeled = 0;
-		int[] tempLabeled = new int[paraBlock.length];
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				tempLabeled[tempNumLabeled] = paraBlock[i];
+		int[] tempLabeled = new int[paraBlock.length()];
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
+				tempLabeled[tempNumLabeled] = paraBlock.get(i);
 				tempNumLabeled++;
 			} // Of if
 		} // Of for i
 
-		SimpleTools.consoleOutput("selectCriticalMaxTotalDistance for a block with length " + paraBlock.length + " and "
+		SimpleTools.consoleOutput("selectCriticalMaxTotalDistance for a block with length " + paraBlock.length() + " and "
 				+ tempNumLabeled + " labeled instances.");
 
 		// Step 2. Select and label
@@ -633,13 +742,13 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		for (int i = 0; i < paraRequiredLabels; i++) {
 			tempBestIndex = -1;
 			tempMaxTotalDistance = -1;
-			for (int j = 0; j < paraBlock.length; j++) {
-				if (instanceStatusArray[paraBlock[j]] == QUERIED) {
+			for (int j = 0; j < paraBlock.length(); j++) {
+				if (instanceStatusArray[paraBlock.get(j)] == QUERIED) {
 					continue;
 				} // Of if
 				double tempCurrentTotalDistance = 0;
 				for (int k = 0; k < tempNumLabeled; k++) {
-					tempCurrentTotalDistance += distanceMeasure.distance(paraBlock[j], paraBlock[k]);
+					tempCurrentTotalDistance += distanceMeasure.distance(paraBlock.get(j), paraBlock.get(k));
 				} // Of for k
 				if (tempCurrentTotalDistance > tempMaxTotalDistance) {
 					tempMaxTotalDistance = tempCurrentTotalDistance;
@@ -648,22 +757,22 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 			} // Of for j
 				// Now label it.
 			SimpleTools.consoleOutput("tempBestIndex = " + tempBestIndex);
-			tempLabeled[tempNumLabeled] = paraBlock[tempBestIndex];
+			tempLabeled[tempNumLabeled] = paraBlock.get(tempBestIndex);
 			tempNumLabeled++;
 
 			// SimpleTools.processTrackingOutput("Querying " +
 			// paraBlock[tempBestIndex] + "(MaxTotalDistance), ");
 
 			// Now label it.
-			query(paraBlock[tempBestIndex]);
+			query(paraBlock.get(tempBestIndex));
 
 			int tempCurrentLabel;
 			if (queryAmountStrategy == IMPURE_QUERIES) {
 				if (paraIsFirst) {
-					paraFirstLabel = predicts[paraBlock[tempBestIndex]];
+					paraFirstLabel = predicts[paraBlock.get(tempBestIndex)];
 					paraIsFirst = false;
 				} else {
-					tempCurrentLabel = predicts[paraBlock[tempBestIndex]];
+					tempCurrentLabel = predicts[paraBlock.get(tempBestIndex)];
 					if (tempCurrentLabel != paraFirstLabel) {
 						// Impure, do not select any instance
 						return;
@@ -681,15 +790,16 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *            The given block.
 	 * @param paraAlgorithmIndex
 	 *            The given algorithm.
-	 * @return Two blocks
+	 * @return The result, not split yet.
 	 * @throws UnableToClusterInKException
 	 *             If the clustered result contains only one block (the other is
 	 *             empty).
 	 ************************* 
 	 */
-	public int[][] clusterInTwo(int[] paraBlock, int paraAlgorithmIndex) throws UnableToClusterInKException {
+	public ClusteringResult clusterInTwo(BlockView paraBlock, int paraAlgorithmIndex)
+			throws UnableToClusterInKException {
 		setClusteringAlgorithm(paraAlgorithmIndex);
-		return clusterInTwo(paraBlock);
+		return clusterInTwo(paraBlock, currentClusteringAlgorithm, currentClusteringAlgorithmIndex);
 	}// Of clusterInTwo
 
 	/**
@@ -701,11 +811,16 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 * @return Two blocks
 	 ************************* 
 	 */
-	public int[] getQueriedArray(int[] paraBlock) {
-		int[] tempQueriedArray = new int[paraBlock.length];
+	public int[] getQueriedArray(BlockView paraBlock) {
+		int tempBlockId = blockStatistics.getBlockId(paraBlock);
+		if (tempBlockId >= 0) {
+			return blockStatistics.getQueriedPositions(tempBlockId);
+		} // Of if
+
+		int[] tempQueriedArray = new int[paraBlock.length()];
 		int tempSize = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 				tempQueriedArray[tempSize] = i;
 				tempSize++;
 			} // Of if
@@ -720,7 +835,8 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 
 	/**
 	 ************************* 
-	 * Cluster the given block in two using density peaks.
+	 * Split the given block in two using the current algorithm. The block is
+	 * partitioned in place.
 	 * 
 	 * @param paraBlock
 	 *            The given block.
@@ -730,24 +846,46 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *             empty).
 	 ************************* 
 	 */
-	public int[][] clusterInTwo(int[] paraBlock) throws UnableToClusterInKException {
+	public BlockView[] clusterInTwo(BlockView paraBlock) throws UnableToClusterInKException {
+		return clusterInTwo(paraBlock, currentClusteringAlgorithm, currentClusteringAlgorithmIndex).split();
+	}// Of clusterInTwo
+
+	/**
+	 ************************* 
+	 * Cluster the given block in two using the given algorithm object. The
+	 * current algorithm is not changed, and the block is not split, so
+	 * different algorithms can run concurrently as long as no label is
+	 * queried.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraAlgorithm
+	 *            The given algorithm.
+	 * @param paraAlgorithmIndex
+	 *            The index of the algorithm, for error messages.
+	 * @return The result, not split yet.
+	 * @throws UnableToClusterInKException
+	 *             If the clustered result contains only one block (the other is
+	 *             empty).
+	 ************************* 
+	 */
+	public ClusteringResult clusterInTwo(BlockView paraBlock, Clustering paraAlgorithm, int paraAlgorithmIndex)
+			throws UnableToClusterInKException {
 		int[] tempQueriedArray = getQueriedArray(paraBlock);
-		int[][] resultBlocks = currentClusteringAlgorithm.clusterInTwo(paraBlock, tempQueriedArray);
+		ClusteringResult resultBlocks = paraAlgorithm.clusterInTwo(paraBlock, tempQueriedArray);
 
 		if (resultBlocks == null) {
 			throw new UnableToClusterInKException(
-					"Error occurred in ClusteringBasedActiveLearning.clusterInTwo(int[]):\r\n" + "Algorithm #"
-							+ currentClusteringAlgorithmIndex + " cannot handle this block: "
-							+ Arrays.toString(paraBlock));
+					"Error occurred in ClusteringBasedActiveLearning.clusterInTwo(BlockView):\r\n" + "Algorithm #"
+							+ paraAlgorithmIndex + " cannot handle this block: " + paraBlock);
 		} // Of if
 
-		System.out.println("Block lengths = " + resultBlocks[0].length + ", " + resultBlocks[1].length);
+		System.out.println("Block lengths = " + resultBlocks.getBlockSize(0) + ", " + resultBlocks.getBlockSize(1));
 
-		if ((resultBlocks[0].length == 0) || (resultBlocks[1].length == 0)) {
+		if ((resultBlocks.getBlockSize(0) == 0) || (resultBlocks.getBlockSize(1) == 0)) {
 			throw new UnableToClusterInKException(
-					"Error occurred in ClusteringBasedActiveLearning.clusterInTwo(int[]):\r\n" + "Algorithm #"
-							+ currentClusteringAlgorithmIndex + " obtains the whole block and an empty block: "
-							+ Arrays.toString(paraBlock));
+					"Error occurred in ClusteringBasedActiveLearning.clusterInTwo(BlockView):\r\n" + "Algorithm #"
+							+ paraAlgorithmIndex + " obtains the whole block and an empty block: " + paraBlock);
 		} // Of if
 
 		return resultBlocks;
@@ -784,13 +922,46 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 * @return Pure or not.
 	 ************************* 
 	 */
-	boolean classifyIfPure(int[] paraBlock) {
+	boolean classifyIfPure(BlockView paraBlock) {
+		// Step 1. Obtain the only label.
+		int tempFirstLabel = getPureLabel(paraBlock);
+		if (tempFirstLabel == -1) {
+			return false;
+		} // Of if
+
+		// Step 2. Classify.
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] != QUERIED) {
+				predicts[paraBlock.get(i)] = tempFirstLabel;
+				changeInstanceStatus(paraBlock.get(i), PURE_BLOCK_PREDICTED);
+			} // Of if
+		} // Of for i
+
+		return true;
+	}// Of classifyIfPure
+
+	/**
+	 ************************* 
+	 * Get the only label of queried instances in the block. Registered blocks
+	 * are looked up in the block statistics, and others are scanned.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @return The label, -1 if nothing is queried or the block is impure.
+	 ************************* 
+	 */
+	int getPureLabel(BlockView paraBlock) {
+		int tempBlockId = blockStatistics.getBlockId(paraBlock);
+		if (tempBlockId >= 0) {
+			return blockStatistics.getPureLabel(tempBlockId);
+		} // Of if
+
 		// Step 1. Obtain the first label.
 		int tempFirstLabel = -1;
 		int tempFirstLabelIndex = -1;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				tempFirstLabel = predicts[paraBlock[i]];
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
+				tempFirstLabel = predicts[paraBlock.get(i)];
 				tempFirstLabelIndex = i;
 				break;
 			} // Of if
@@ -798,31 +969,23 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 
 		if (tempFirstLabel == UNHANDLED) {
 			// No label has been handled/queried in this block.
-			return false;
+			return -1;
 		} // Of if
 
 		// Step 2. Check the purity.
-		for (int i = tempFirstLabelIndex + 1; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				if (predicts[paraBlock[i]] != tempFirstLabel) {
+		for (int i = tempFirstLabelIndex + 1; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
+				if (predicts[paraBlock.get(i)] != tempFirstLabel) {
 					// It is impure.
-					SimpleTools.variableTrackingOutput("" + paraBlock[i] + ": paraBlock[" + i + "] has label "
-							+ predicts[paraBlock[i]] + " different from " + tempFirstLabel);
-					return false;
+					SimpleTools.variableTrackingOutput("" + paraBlock.get(i) + ": paraBlock[" + i + "] has label "
+							+ predicts[paraBlock.get(i)] + " different from " + tempFirstLabel);
+					return -1;
 				} // Of if
 			} // Of if
 		} // Of for i
 
-		// Step 3. Classify.
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] != QUERIED) {
-				predicts[paraBlock[i]] = tempFirstLabel;
-				changeInstanceStatus(paraBlock[i], PURE_BLOCK_PREDICTED);
-			} // Of if
-		} // Of for i
-
-		return true;
-	}// Of classifyIfPure
+		return tempFirstLabel;
+	}// Of getPureLabel
 
 	/**
 	 ************************* 
@@ -833,13 +996,13 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *            The given block.
 	 ************************* 
 	 */
-	void classifyByVotings(int[] paraBlock) {
+	void classifyByVotings(BlockView paraBlock) {
 		int[] tempCountArray = new int[data.classAttribute().numValues()];
 
 		// Step 1. Statistics
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (predicts[paraBlock[i]] >= 0) {
-				tempCountArray[predicts[paraBlock[i]]]++;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (predicts[paraBlock.get(i)] >= 0) {
+				tempCountArray[predicts[paraBlock.get(i)]]++;
 			} // Of if
 		} // Of for i
 
@@ -854,9 +1017,9 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		} // Of for i
 
 		// Step 3. Classify others
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (predicts[paraBlock[i]] < 0) {
-				predicts[paraBlock[i]] = tempMajority;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (predicts[paraBlock.get(i)] < 0) {
+				predicts[paraBlock.get(i)] = tempMajority;
 			} // Of if
 		} // Of for i
 	}// Of classifyByVotings
@@ -898,11 +1061,11 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 *            The given block.
 	 ************************* 
 	 */
-	public void oneNnUnhandled(int[] paraBlock) {
+	public void oneNnUnhandled(BlockView paraBlock) {
 		// Step 1. How many instances have been queried?
 		int tempNumQueried = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
 				tempNumQueried++;
 			} // Of if
 		} // Of for i
@@ -911,17 +1074,17 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		if (tempNumQueried == 0) {
 			try {
 				// Label one and classify others if there is still label to use.
-				query(paraBlock[0]);
-				int tempLabel = predicts[paraBlock[0]];
-				for (int i = 1; i < paraBlock.length; i++) {
-					predicts[paraBlock[i]] = tempLabel;
-					changeInstanceStatus(paraBlock[i], KNN_PREDICTED);
+				query(paraBlock.get(0));
+				int tempLabel = predicts[paraBlock.get(0)];
+				for (int i = 1; i < paraBlock.length(); i++) {
+					predicts[paraBlock.get(i)] = tempLabel;
+					changeInstanceStatus(paraBlock.get(i), KNN_PREDICTED);
 				} // Of for i
 			} catch (LabelUsedUpException ee1) {
 				// No more query, so use default label.
-				for (int i = 0; i < paraBlock.length; i++) {
-					predicts[paraBlock[i]] = DEFAULT_LABEL;
-					changeInstanceStatus(paraBlock[i], DEFAULT_LABELED);
+				for (int i = 0; i < paraBlock.length(); i++) {
+					predicts[paraBlock.get(i)] = DEFAULT_LABEL;
+					changeInstanceStatus(paraBlock.get(i), DEFAULT_LABELED);
 				} // Of for i
 			} catch (DuplicateQueryException ee2) {
 				System.out.println("Internal error occurred in ClusteringBasedActiveLearning.oneNnUnhandled(int[])");
@@ -930,23 +1093,37 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 			return;
 		} // Of if
 
-		// Step 3. Construct the queried array. This approach saves time when
+		// Step 3. If all queried instances are in this block, the nearest one
+		// is maintained by the index.
+		if (tempNumQueried == nearestQueriedIndex.getNumQueried()) {
+			for (int i = 0; i < paraBlock.length(); i++) {
+				if (instanceStatusArray[paraBlock.get(i)] != UNHANDLED) {
+					continue;
+				} // Of if
+
+				predicts[paraBlock.get(i)] = predicts[nearestQueriedIndex.nearest(paraBlock.get(i))];
+				changeInstanceStatus(paraBlock.get(i), KNN_PREDICTED);
+			} // Of for i
+			return;
+		} // Of if
+
+		// Step 4. Construct the queried array. This approach saves time when
 		// the block is big and tempNumQueried is small.
 		int[] tempQueriedArray = new int[tempNumQueried];
 		int tempCounter = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] == QUERIED) {
-				tempQueriedArray[tempCounter] = paraBlock[i];
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] == QUERIED) {
+				tempQueriedArray[tempCounter] = paraBlock.get(i);
 				tempCounter++;
 			} // Of if
 		} // Of for i
 
-		// Step 3. Find the nearest neighbor.
+		// Step 5. Find the nearest neighbor.
 		double tempMinDistance;
 		double tempDistance;
 		int tempClosest;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (instanceStatusArray[paraBlock[i]] != UNHANDLED) {
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (instanceStatusArray[paraBlock.get(i)] != UNHANDLED) {
 				continue;
 			} // Of if
 
@@ -954,15 +1131,15 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 			tempClosest = -1;
 
 			for (int j = 0; j < tempNumQueried; j++) {
-				tempDistance = distanceMeasure.distance(paraBlock[i], tempQueriedArray[j]);
+				tempDistance = distanceMeasure.distance(paraBlock.get(i), tempQueriedArray[j]);
 				if (tempMinDistance > tempDistance) {
 					tempMinDistance = tempDistance;
 					tempClosest = tempQueriedArray[j];
 				} // Of if
 			} // Of for j
 
-			predicts[paraBlock[i]] = predicts[tempClosest];
-			changeInstanceStatus(paraBlock[i], KNN_PREDICTED);
+			predicts[paraBlock.get(i)] = predicts[tempClosest];
+			changeInstanceStatus(paraBlock.get(i), KNN_PREDICTED);
 		} // Of for i
 	}// Of oneNnUnhandled
 
@@ -978,10 +1155,12 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		// Step 1. Initialize. Half are representative instances. Test only. May
 		// change later.
 		Arrays.fill(instanceStatusArray, UNHANDLED);
+		blockStatistics.reset();
+		blockStatistics.register(wholeBlock, instanceStatusArray, predicts);
 		numSmallBlocks = 0;
 		int tempNumRepresentativeLabels = numRemainingQueries / 2;
-		int tempNumPureBlocks = 0;
-		int tempPureBlocksSizeSum = 0;
+		numPureBlocks = 0;
+		pureBlocksSizeSum = 0;
 
 		// Step 2. Select representative instances to label
 		int tempStrategy = instanceSelectionStrategy;
@@ -1002,99 +1181,33 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		// Now restore.
 		instanceSelectionStrategy = tempStrategy;
 
-		// Step 3. Select edge/far instances to label
-		BlockQueue tempQueue = new BlockQueue();
-		tempQueue.enqueue(wholeBlock);
-		SimpleTools.processTrackingOutput("Enqueue " + wholeBlock.length + " (" + wholeBlock[0] + ", ...); ");
-		int[] tempBlock = null;
-		int tempAvailableLabels;
-		boolean tempCurrentBlockUnfinished = false;
-
-		while (!tempQueue.isEmpty()) {
-			// Step 3.1 Take out a block to process
-			tempBlock = tempQueue.dequeue();
-			SimpleTools.processTrackingOutput("Dequeue " + tempBlock.length + " (" + tempBlock[0] + ", ...); ");
-
-			// Step 3.2 Select critical instances to label
-			tempAvailableLabels = getBlockPureThreshold(tempBlock.length);
-			try {
-				selectCriticalAndLabel(tempBlock, tempAvailableLabels);
-			} catch (LabelUsedUpException ee1) {
-				SimpleTools.consoleOutput(ee1.toString());
-				tempCurrentBlockUnfinished = true;
-				break;
-			} catch (Exception ee2) {
-				System.out.println("Internal error: " + ee2);
-				ee2.printStackTrace();
-				System.exit(0);
-			} // Of try
-
-			// Step 3.3 Classify if pure
-			boolean tempPure = classifyIfPure(tempBlock);
-			if (tempPure) {
-				tempNumPureBlocks++;
-				tempPureBlocksSizeSum += tempBlock.length;
-				SimpleTools.processTrackingOutput(
-						"\r\nPure block " + tempBlock.length + " (" + tempBlock[0] + ", ...) \r\n");
-				continue;
-			} // Of if
-
-			// Step 3.4 Split in two using the current algorithm
-			int[][] tempNewBlocks = null;
-			try {
-				tempNewBlocks = clusterInTwo(tempBlock);
-			} catch (UnableToClusterInKException ee) {
-				// Attention: Some algorithm may fail on some blocks. Use 1NN.
-				oneNnUnhandled(tempBlock);
-				continue;
-			} // Of try
-
-			// Step 3.5 Learn these two blocks.
-			if (tempNewBlocks[0].length > smallBlockThreshold) {
-				tempQueue.enqueue(tempNewBlocks[0]);
-				SimpleTools.processTrackingOutput(
-						"Enqueue " + tempNewBlocks[0].length + " (" + tempNewBlocks[0][0] + ", ...); ");
-			} else {
-				smallBlocks[numSmallBlocks] = tempNewBlocks[0];
-				numSmallBlocks++;
-			} // Of if
-
-			if (tempNewBlocks[1].length > smallBlockThreshold) {
-				SimpleTools.processTrackingOutput(
-						"Enqueue " + tempNewBlocks[1].length + " (" + tempNewBlocks[1][0] + ", ...); ");
-				tempQueue.enqueue(tempNewBlocks[1]);
-			} else {
-				smallBlocks[numSmallBlocks] = tempNewBlocks[1];
-				numSmallBlocks++;
-			} // Of if
-
-			// Step 3.6 Any more labels?
-			if (numRemainingQueries <= 0) {
-				break;
-			} // Of if
-		} // Of while
-
-		if (tempCurrentBlockUnfinished) {
-			SimpleTools.processTrackingOutput(
-					"Unfinished block " + tempBlock.length + " (" + tempBlock[0] + ", ...) classfied by 1NN.\r\n");
-			oneNnUnhandled(tempBlock);
+		// Step 3. Select edge/far instances to label. Blocks left in the queue
+		// are not finished.
+		BlockQueue tempQueue;
+		if (!parallelLearning) {
+			tempQueue = learnBlocksSequentially();
+		} else if (deterministicReplay) {
+			tempQueue = learnBlocksWithReplay();
+		} else {
+			tempQueue = learnBlocksInParallel();
 		} // Of if
 
 		// Step 4. Classify other instances even if the block is impure
 		SimpleTools.processTrackingOutput("Now handle remaining blocks in the queue using 1NN.\r\n");
+		BlockView tempBlock;
 		while (!tempQueue.isEmpty()) {
 			// Step 4.1 Take out a block to process
 			tempBlock = tempQueue.dequeue();
 
 			// Step 4.2 1NN prediction
-			SimpleTools.processTrackingOutput("" + tempBlock.length + ", ");
+			SimpleTools.processTrackingOutput("" + tempBlock.length() + ", ");
 			oneNnUnhandled(tempBlock);
 		} // Of while
 
 		// Step 5. Handle small blocks.
 		SimpleTools.processTrackingOutput("Now handle small blocks.\r\n");
 		for (int i = 0; i < numSmallBlocks; i++) {
-			SimpleTools.processTrackingOutput("" + smallBlocks[i].length + ", ");
+			SimpleTools.processTrackingOutput("" + smallBlocks[i].length() + ", ");
 			oneNnUnhandled(smallBlocks[i]);
 		} // Of for i
 
@@ -1106,8 +1219,8 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		resultMessage += ", queries = " + getNumQueries(); // numQueries
 		resultMessage += ", accuracy = " + computeAccuracy(); // accuracy
 		resultMessage += ", final number of blocks = " + finalNumBlocks;
-		resultMessage += ", number of pure blocks = " + tempNumPureBlocks;
-		resultMessage += ", pure blocks size sum = " + tempPureBlocksSizeSum;
+		resultMessage += ", number of pure blocks = " + numPureBlocks;
+		resultMessage += ", pure blocks size sum = " + pureBlocksSizeSum;
 		resultMessage += ", number of small blocks = " + numSmallBlocks;
 		resultMessage += ", misclassified = " + getNumMisclassified();
 		resultMessage += ", misclassified in pure blocks = " + getNumMisclassified(PURE_BLOCK_PREDICTED);
@@ -1119,6 +1232,357 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 		return resultMessage;
 	}// Of learn
 
+	/**
+	 ************************* 
+	 * Label critical instances of the block, and classify it if it is pure.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @return Pure or not.
+	 * @throws LabelUsedUpException
+	 *             If labels are used up.
+	 ************************* 
+	 */
+	boolean labelAndClassifyIfPure(BlockView paraBlock) throws LabelUsedUpException {
+		// Step 1. Select critical instances to label
+		int tempAvailableLabels = getBlockPureThreshold(paraBlock.length());
+		try {
+			selectCriticalAndLabel(paraBlock, tempAvailableLabels);
+		} catch (DuplicateQueryException ee) {
+			System.out.println("Internal error: " + ee);
+			ee.printStackTrace();
+			System.exit(0);
+		} // Of try
+
+		// Step 2. Classify if pure
+		if (!classifyIfPure(paraBlock)) {
+			return false;
+		} // Of if
+
+		synchronized (this) {
+			numPureBlocks++;
+			pureBlocksSizeSum += paraBlock.length();
+		} // Of synchronized
+		SimpleTools.processTrackingOutput("\r\nPure block " + paraBlock.length() + " (" + paraBlock.get(0) + ", ...) \r\n");
+		return true;
+	}// Of labelAndClassifyIfPure
+
+	/**
+	 ************************* 
+	 * Enqueue a new block, or keep it as a small block.
+	 * 
+	 * @param paraQueue
+	 *            The queue of blocks to learn.
+	 * @param paraBlock
+	 *            The new block.
+	 ************************* 
+	 */
+	void enqueueOrKeepSmall(BlockQueue paraQueue, BlockView paraBlock) {
+		if (paraBlock.length() > smallBlockThreshold) {
+			SimpleTools.processTrackingOutput("Enqueue " + paraBlock.length() + " (" + paraBlock.get(0) + ", ...); ");
+			paraQueue.enqueue(paraBlock);
+		} else {
+			smallBlocks[numSmallBlocks] = paraBlock;
+			numSmallBlocks++;
+		} // Of if
+	}// Of enqueueOrKeepSmall
+
+	/**
+	 ************************* 
+	 * Learn the blocks one by one with a queue.
+	 * 
+	 * @return The queue of blocks left for 1NN.
+	 ************************* 
+	 */
+	BlockQueue learnBlocksSequentially() {
+		BlockQueue resultQueue = new BlockQueue();
+		BlockView tempRoot = new BlockView(numInstances);
+		resultQueue.enqueue(tempRoot);
+		SimpleTools.processTrackingOutput("Enqueue " + tempRoot.length() + " (" + tempRoot.get(0) + ", ...); ");
+		BlockView tempBlock = null;
+
+		while (!resultQueue.isEmpty()) {
+			// Step 1. Take out a block to process
+			tempBlock = resultQueue.dequeue();
+			SimpleTools.processTrackingOutput("Dequeue " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...); ");
+
+			// Step 2. Select critical instances to label, and classify if pure
+			try {
+				if (labelAndClassifyIfPure(tempBlock)) {
+					continue;
+				} // Of if
+			} catch (LabelUsedUpException ee) {
+				SimpleTools.consoleOutput(ee.toString());
+				SimpleTools.processTrackingOutput(
+						"Unfinished block " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...) classfied by 1NN.\r\n");
+				oneNnUnhandled(tempBlock);
+				break;
+			} // Of try
+
+			// Step 3. Split in two using the current algorithm
+			BlockView[] tempNewBlocks = null;
+			try {
+				tempNewBlocks = clusterInTwo(tempBlock);
+			} catch (UnableToClusterInKException ee) {
+				// Attention: Some algorithm may fail on some blocks. Use 1NN.
+				oneNnUnhandled(tempBlock);
+				continue;
+			} // Of try
+
+			// Step 4. Learn these two blocks.
+			blockStatistics.split(tempNewBlocks, predicts);
+			enqueueOrKeepSmall(resultQueue, tempNewBlocks[0]);
+			enqueueOrKeepSmall(resultQueue, tempNewBlocks[1]);
+
+			// Step 5. Any more labels?
+			if (numRemainingQueries <= 0) {
+				break;
+			} // Of if
+		} // Of while
+
+		return resultQueue;
+	}// Of learnBlocksSequentially
+
+	/**
+	 ************************* 
+	 * Learn the blocks with the same queries in the same order as
+	 * learnBlocksSequentially(), while splits run in the fork-join pool. A block
+	 * only depends on its own labels, so it is split in the background while
+	 * the next blocks are labeled in this thread. The results are taken in the
+	 * order of submission. The pipeline is drained whenever the sequential
+	 * learner could behave differently, i.e., labels are used up, or the block
+	 * has no label and a failed split would query. Exactly the same as the
+	 * sequential one for clustering algorithms not drawing random numbers.
+	 * 
+	 * @return The queue of blocks left for 1NN.
+	 ************************* 
+	 */
+	BlockQueue learnBlocksWithReplay() {
+		BlockQueue resultQueue = new BlockQueue();
+		resultQueue.enqueue(new BlockView(numInstances));
+		BlockQueue tempPendingBlocks = new BlockQueue();
+		List<Future<ClusteringResult>> tempFutures = new ArrayList<Future<ClusteringResult>>();
+		int tempNumTaken = 0;
+		BlockView tempBlock = null;
+		boolean tempStop = false;
+
+		while (!tempStop) {
+			// Step 1. Take the oldest split if nothing else can be labeled.
+			if (resultQueue.isEmpty()) {
+				if (tempPendingBlocks.isEmpty()) {
+					break;
+				} // Of if
+				takeSplit(resultQueue, tempPendingBlocks.dequeue(), tempFutures.get(tempNumTaken));
+				tempNumTaken++;
+				continue;
+			} // Of if
+
+			// Step 2. Select critical instances to label, and classify if pure
+			tempBlock = resultQueue.dequeue();
+			try {
+				if (labelAndClassifyIfPure(tempBlock)) {
+					continue;
+				} // Of if
+			} catch (LabelUsedUpException ee) {
+				SimpleTools.consoleOutput(ee.toString());
+				// Earlier splits are taken before, as the sequential one.
+				while (!tempPendingBlocks.isEmpty()) {
+					takeSplit(resultQueue, tempPendingBlocks.dequeue(), tempFutures.get(tempNumTaken));
+					tempNumTaken++;
+				} // Of while
+				oneNnUnhandled(tempBlock);
+				break;
+			} // Of try
+
+			// Step 3. Cluster in the background, and split in this thread.
+			final BlockView tempSplitBlock = tempBlock;
+			final Clustering tempAlgorithm = currentClusteringAlgorithm;
+			final int tempAlgorithmIndex = currentClusteringAlgorithmIndex;
+			tempFutures.add(Common.forkJoinPool.submit(new Callable<ClusteringResult>() {
+				public ClusteringResult call() {
+					try {
+						return clusterInTwo(tempSplitBlock, tempAlgorithm, tempAlgorithmIndex);
+					} catch (UnableToClusterInKException ee) {
+						return null;
+					} // Of try
+				}// Of call
+			}));
+			tempPendingBlocks.enqueue(tempBlock);
+
+			// Step 4. Drain if the sequential learner may query or stop here.
+			if ((numRemainingQueries <= 0) || (getQueriedArray(tempBlock).length == 0)) {
+				while (tempPendingBlocks.getLength() > 1) {
+					takeSplit(resultQueue, tempPendingBlocks.dequeue(), tempFutures.get(tempNumTaken));
+					tempNumTaken++;
+				} // Of while
+
+				// Only the current block may stop the learning.
+				tempStop = takeSplit(resultQueue, tempPendingBlocks.dequeue(), tempFutures.get(tempNumTaken));
+				tempNumTaken++;
+			} // Of if
+		} // Of while
+
+		return resultQueue;
+	}// Of learnBlocksWithReplay
+
+	/**
+	 ************************* 
+	 * Take the split of a block submitted by learnBlocksWithReplay().
+	 * 
+	 * @param paraQueue
+	 *            The queue of blocks to learn.
+	 * @param paraBlock
+	 *            The split block.
+	 * @param paraFuture
+	 *            The future of the split.
+	 * @return True if labels are used up after a successful split, so the
+	 *         learning should stop.
+	 ************************* 
+	 */
+	boolean takeSplit(BlockQueue paraQueue, BlockView paraBlock, Future<ClusteringResult> paraFuture) {
+		ClusteringResult tempResult = null;
+		try {
+			tempResult = paraFuture.get();
+		} catch (ExecutionException ee) {
+			System.out.println("Error occurred in takeSplit(BlockQueue, int[], Future): " + ee.getCause());
+			ee.getCause().printStackTrace();
+			System.exit(0);
+		} catch (InterruptedException ee) {
+			System.out.println("Error occurred in takeSplit(BlockQueue, int[], Future): " + ee);
+			System.exit(0);
+		} // Of try
+
+		if (tempResult == null) {
+			// Attention: Some algorithm may fail on some blocks. Use 1NN.
+			oneNnUnhandled(paraBlock);
+			return false;
+		} // Of if
+
+		BlockView[] tempNewBlocks = tempResult.split();
+		blockStatistics.split(tempNewBlocks, predicts);
+		enqueueOrKeepSmall(paraQueue, tempNewBlocks[0]);
+		enqueueOrKeepSmall(paraQueue, tempNewBlocks[1]);
+
+		return numRemainingQueries <= 0;
+	}// Of takeSplit
+
+	/**
+	 ************************* 
+	 * Learn the block tree in the fork-join pool. The two sub-blocks of a split
+	 * are learned by two tasks. Blocks are disjoint, so each task only changes
+	 * the predictions and status of its own instances, while queries are
+	 * synchronized. The query order depends on the scheduling. Blocks unable
+	 * to split or without labels are left for 1NN after all tasks finish.
+	 * 
+	 * @return The queue of blocks left for 1NN.
+	 ************************* 
+	 */
+	BlockQueue learnBlocksInParallel() {
+		BlockQueue resultQueue = new BlockQueue();
+		Common.forkJoinPool.invoke(new BlockLearningTask(new BlockView(numInstances), resultQueue));
+		return resultQueue;
+	}// Of learnBlocksInParallel
+
+	/**
+	 * Learn a block and its sub-blocks. Used by learnBlocksInParallel().
+	 */
+	class BlockLearningTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The block to learn.
+		 */
+		BlockView block;
+
+		/**
+		 * Blocks left for 1NN. Shared by all tasks.
+		 */
+		BlockQueue leftQueue;
+
+		/**
+		 ********************
+		 * The constructor.
+		 * 
+		 * @param paraBlock
+		 *            The block to learn.
+		 * @param paraLeftQueue
+		 *            Blocks left for 1NN.
+		 ********************
+		 */
+		BlockLearningTask(BlockView paraBlock, BlockQueue paraLeftQueue) {
+			block = paraBlock;
+			leftQueue = paraLeftQueue;
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Label, classify or split the block.
+		 ********************
+		 */
+		protected void compute() {
+			// Step 1. Select critical instances to label, and classify if pure
+			if (numRemainingQueries <= 0) {
+				leave();
+				return;
+			} // Of if
+
+			try {
+				if (labelAndClassifyIfPure(block)) {
+					return;
+				} // Of if
+			} catch (LabelUsedUpException ee) {
+				leave();
+				return;
+			} // Of try
+
+			// Step 2. Split in two using the current algorithm
+			BlockView[] tempNewBlocks = null;
+			try {
+				tempNewBlocks = clusterInTwo(block);
+			} catch (UnableToClusterInKException ee) {
+				// Attention: Some algorithm may fail on some blocks. Use 1NN.
+				leave();
+				return;
+			} // Of try
+
+			// Step 3. Learn these two blocks.
+			blockStatistics.split(tempNewBlocks, predicts);
+			BlockLearningTask[] tempTasks = new BlockLearningTask[2];
+			int tempNumTasks = 0;
+			synchronized (ClusteringBasedActiveLearning.this) {
+				for (int i = 0; i < 2; i++) {
+					if (tempNewBlocks[i].length() > smallBlockThreshold) {
+						tempTasks[tempNumTasks] = new BlockLearningTask(tempNewBlocks[i], leftQueue);
+						tempNumTasks++;
+					} else {
+						smallBlocks[numSmallBlocks] = tempNewBlocks[i];
+						numSmallBlocks++;
+					} // Of if
+				} // Of for i
+			} // Of synchronized
+
+			if (tempNumTasks == 2) {
+				invokeAll(tempTasks[0], tempTasks[1]);
+			} else if (tempNumTasks == 1) {
+				tempTasks[0].compute();
+			} // Of if
+		}// Of compute
+
+		/**
+		 ********************
+		 * Leave the block for 1NN.
+		 ********************
+		 */
+		void leave() {
+			synchronized (leftQueue) {
+				leftQueue.enqueue(block);
+			} // Of synchronized
+		}// Of leave
+	}// Of class BlockLearningTask
+
 	/**
 	 ************************* 
 	 * 1NN classification using the same queries as the active learner. For test
@@ -1147,18 +1611,20 @@ public class ClusteringBasedActiveLearning extends ActiveLearning {
 	 * @return Imbalance or not.
 	 ************************* 
 	 */
-	public static boolean areBlocksImbalance(int[][] paraBlocks) {
+	public static boolean areBlocksImbalance(ClusteringResult paraBlocks) {
 		// Step 1. Check tiny blocks.
-		if ((paraBlocks[0].length <= TINY_BLOCK_THRESHOLD) || (paraBlocks[1].length <= TINY_BLOCK_THRESHOLD)) {
+		int tempFirstSize = paraBlocks.getBlockSize(0);
+		int tempSecondSize = paraBlocks.getBlockSize(1);
+		if ((tempFirstSize <= TINY_BLOCK_THRESHOLD) || (tempSecondSize <= TINY_BLOCK_THRESHOLD)) {
 			return true;
 		} // Of if
 
 		// Step 2. Check imbalance blocks.
 		double tempProportion;
-		if (paraBlocks[0].length < paraBlocks[1].length) {
-			tempProportion = (paraBlocks[1].length + 0.0) / paraBlocks[0].length;
+		if (tempFirstSize < tempSecondSize) {
+			tempProportion = (tempSecondSize + 0.0) / tempFirstSize;
 		} else {
-			tempProportion = (paraBlocks[0].length + 0.0) / paraBlocks[1].length;
+			tempProportion = (tempFirstSize + 0.0) / tempSecondSize;
 		} // Of if
 
 		if (tempProportion >= IMBALANCE_THRESHOLD) {
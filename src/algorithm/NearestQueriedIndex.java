@@ -0,0 +1,159 @@
+package algorithm;
+
+import java.util.Arrays;
+
+import common.DistanceMeasure;
+
+/**
+ * Maintain the nearest queried instance of each instance. Queried instances
+ * are appended when they are queried. The nearest one of an instance is
+ * refreshed against instances queried since its last refresh, so each pair is
+ * compared at most once, and repeated 1NN sweeps are cheap. For equal
+ * distances, the instance with smaller index is preferred, the same as a scan
+ * in ascending order. Methods are synchronized, so instances may be queried
+ * by one thread while 1NN sweeps run in others.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class NearestQueriedIndex {
+	/**
+	 * The distance measure.
+	 */
+	DistanceMeasure distanceMeasure;
+
+	/**
+	 * Queried instances in the query order.
+	 */
+	int[] queriedInstances;
+
+	/**
+	 * The number of queried instances.
+	 */
+	int numQueried;
+
+	/**
+	 * The nearest queried instance of each instance, -1 if unknown.
+	 */
+	int[] nearests;
+
+	/**
+	 * The distance to the nearest queried instance.
+	 */
+	double[] nearestDistances;
+
+	/**
+	 * The number of queried instances compared with each instance.
+	 */
+	int[] numCompared;
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure.
+	 * @param paraNumInstances
+	 *            The number of instances.
+	 ********************
+	 */
+	public NearestQueriedIndex(DistanceMeasure paraDistanceMeasure, int paraNumInstances) {
+		distanceMeasure = paraDistanceMeasure;
+		queriedInstances = new int[paraNumInstances];
+		nearests = new int[paraNumInstances];
+		nearestDistances = new double[paraNumInstances];
+		numCompared = new int[paraNumInstances];
+		reset();
+	}// Of the constructor
+
+	/**
+	 ********************
+	 * Forget all queried instances.
+	 ********************
+	 */
+	public synchronized void reset() {
+		numQueried = 0;
+		Arrays.fill(nearests, -1);
+		Arrays.fill(nearestDistances, Double.MAX_VALUE);
+		Arrays.fill(numCompared, 0);
+	}// Of reset
+
+	/**
+	 ********************
+	 * Append a queried instance.
+	 *
+	 * @param paraIndex
+	 *            The queried instance.
+	 ********************
+	 */
+	public synchronized void addQueried(int paraIndex) {
+		queriedInstances[numQueried] = paraIndex;
+		numQueried++;
+	}// Of addQueried
+
+	/**
+	 ********************
+	 * Get the number of queried instances.
+	 *
+	 * @return The number of queried instances.
+	 ********************
+	 */
+	public synchronized int getNumQueried() {
+		return numQueried;
+	}// Of getNumQueried
+
+	/**
+	 ********************
+	 * Get the nearest queried instance. Only instances queried since the last
+	 * invocation for the same instance are compared.
+	 *
+	 * @param paraIndex
+	 *            The given instance.
+	 * @return The nearest queried instance, -1 if nothing is queried.
+	 ********************
+	 */
+	public synchronized int nearest(int paraIndex) {
+		int tempNearest = nearests[paraIndex];
+		double tempMinimalDistance = nearestDistances[paraIndex];
+		double tempDistance;
+		int tempQueried;
+		for (int i = numCompared[paraIndex]; i < numQueried; i++) {
+			tempQueried = queriedInstances[i];
+			tempDistance = distanceMeasure.distance(paraIndex, tempQueried);
+			if ((tempDistance < tempMinimalDistance)
+					|| ((tempDistance == tempMinimalDistance) && (tempQueried < tempNearest))) {
+				tempMinimalDistance = tempDistance;
+				tempNearest = tempQueried;
+			} // Of if
+		} // Of for i
+
+		nearests[paraIndex] = tempNearest;
+		nearestDistances[paraIndex] = tempMinimalDistance;
+		numCompared[paraIndex] = numQueried;
+
+		return tempNearest;
+	}// Of nearest
+
+	/**
+	 ********************
+	 * Get the distance to the nearest queried instance.
+	 *
+	 * @param paraIndex
+	 *            The given instance.
+	 * @return The distance, Double.MAX_VALUE if nothing is queried.
+	 ********************
+	 */
+	public synchronized double nearestDistance(int paraIndex) {
+		nearest(paraIndex);
+		return nearestDistances[paraIndex];
+	}// Of nearestDistance
+}// Of class NearestQueriedIndex
@@ -0,0 +1,318 @@
+package algorithm;
+
+import clustering.ClusteringResult;
+import common.BlockView;
+import common.DistanceMeasure;
+
+/**
+ * The nearest queried instances of each instance of a block. It is prepared
+ * once for a block, and serves 1NN of all candidate sub-blocks of it, so
+ * candidate partitions are scored without distance computation in most cases.
+ * Each instance keeps a short list of its nearest queried instances in the
+ * block. The nearest one within a sub-block is the first one in the list
+ * belonging to the sub-block. If there is no such one, or the answer may be
+ * tied with an instance beyond the list, -1 is returned and the caller should
+ * scan. Newly queried instances are inserted incrementally when the same block
+ * is prepared again, so the block should not be partitioned in between.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class NearestQueriedTable {
+	/**
+	 * The default length of the list of each instance.
+	 */
+	public static final int DEFAULT_LIST_LENGTH = 8;
+
+	/**
+	 * The length of the list of each instance.
+	 */
+	int listLength;
+
+	/**
+	 * The distance measure of the table.
+	 */
+	DistanceMeasure distanceMeasure;
+
+	/**
+	 * The block of the table, compared by identity.
+	 */
+	BlockView block;
+
+	/**
+	 * The position of each instance in the block.
+	 */
+	int[] positions;
+
+	/**
+	 * Instances of the block are marked with the current table stamp.
+	 */
+	int[] tableStamps;
+
+	/**
+	 * The current table stamp.
+	 */
+	int tableStamp;
+
+	/**
+	 * Queried instances in the table.
+	 */
+	int[] includedQueried;
+
+	/**
+	 * The number of queried instances in the table.
+	 */
+	int numIncluded;
+
+	/**
+	 * Is the instance in the table as a queried one?
+	 */
+	boolean[] included;
+
+	/**
+	 * The nearest queried instances of each position, in ascending order of
+	 * distance. The list of position i starts from i * listLength.
+	 */
+	int[] nearests;
+
+	/**
+	 * The respective distances.
+	 */
+	double[] nearestDistances;
+
+	/**
+	 * The length of the list of each position.
+	 */
+	int[] numNearests;
+
+	/**
+	 * Instances of the current sub-block are marked with the current sub-block
+	 * stamp.
+	 */
+	int[] subBlockStamps;
+
+	/**
+	 * The current sub-block stamp.
+	 */
+	int subBlockStamp;
+
+	/**
+	 * The position of each instance of the current sub-block in the clustered
+	 * block, which keeps the order of the sub-block.
+	 */
+	int[] subBlockPositions;
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraNumInstances
+	 *            The number of instances.
+	 * @param paraListLength
+	 *            The length of the list of each instance.
+	 ********************
+	 */
+	public NearestQueriedTable(int paraNumInstances, int paraListLength) {
+		listLength = paraListLength;
+		positions = new int[paraNumInstances];
+		tableStamps = new int[paraNumInstances];
+		includedQueried = new int[paraNumInstances];
+		included = new boolean[paraNumInstances];
+		subBlockStamps = new int[paraNumInstances];
+		subBlockPositions = new int[paraNumInstances];
+		tableStamp = 0;
+		subBlockStamp = 0;
+		block = null;
+	}// Of the constructor
+
+	/**
+	 ********************
+	 * Prepare the table for the block. If the table is for the same block,
+	 * only newly queried instances are inserted. The block should not be
+	 * partitioned since the last preparation.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure.
+	 * @param paraBlock
+	 *            The block.
+	 * @param paraStatusArray
+	 *            The status of each instance.
+	 ********************
+	 */
+	public void prepare(DistanceMeasure paraDistanceMeasure, BlockView paraBlock, int[] paraStatusArray) {
+		// Step 1. Rebuild for a new block, or if some status is reset.
+		boolean tempRebuild = (paraBlock != block) || (paraDistanceMeasure != distanceMeasure);
+		for (int i = 0; (!tempRebuild) && (i < numIncluded); i++) {
+			if (paraStatusArray[includedQueried[i]] != ActiveLearning.QUERIED) {
+				tempRebuild = true;
+			} // Of if
+		} // Of for i
+
+		if (tempRebuild) {
+			for (int i = 0; i < numIncluded; i++) {
+				included[includedQueried[i]] = false;
+			} // Of for i
+			numIncluded = 0;
+
+			distanceMeasure = paraDistanceMeasure;
+			block = paraBlock;
+			tableStamp++;
+			for (int i = 0; i < paraBlock.length(); i++) {
+				positions[paraBlock.get(i)] = i;
+				tableStamps[paraBlock.get(i)] = tableStamp;
+			} // Of for i
+
+			nearests = new int[paraBlock.length() * listLength];
+			nearestDistances = new double[paraBlock.length() * listLength];
+			numNearests = new int[paraBlock.length()];
+		} // Of if
+
+		// Step 2. Insert newly queried instances.
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if ((paraStatusArray[paraBlock.get(i)] == ActiveLearning.QUERIED) && !included[paraBlock.get(i)]) {
+				insert(paraBlock.get(i), paraStatusArray);
+			} // Of if
+		} // Of for i
+	}// Of prepare
+
+	/**
+	 ********************
+	 * Insert a queried instance to the lists of unqueried instances.
+	 *
+	 * @param paraQueried
+	 *            The queried instance.
+	 * @param paraStatusArray
+	 *            The status of each instance.
+	 ********************
+	 */
+	private void insert(int paraQueried, int[] paraStatusArray) {
+		included[paraQueried] = true;
+		includedQueried[numIncluded] = paraQueried;
+		numIncluded++;
+
+		double tempDistance;
+		int tempStart, tempEnd, j;
+		for (int i = 0; i < block.length(); i++) {
+			if (paraStatusArray[block.get(i)] == ActiveLearning.QUERIED) {
+				continue;
+			} // Of if
+
+			tempDistance = distanceMeasure.distance(block.get(i), paraQueried);
+			tempStart = i * listLength;
+			tempEnd = tempStart + numNearests[i];
+			if ((numNearests[i] == listLength) && (tempDistance >= nearestDistances[tempEnd - 1])) {
+				continue;
+			} // Of if
+
+			// Move the tail backward.
+			if (numNearests[i] < listLength) {
+				numNearests[i]++;
+				tempEnd++;
+			} // Of if
+			for (j = tempEnd - 1; (j > tempStart) && (nearestDistances[j - 1] > tempDistance); j--) {
+				nearests[j] = nearests[j - 1];
+				nearestDistances[j] = nearestDistances[j - 1];
+			} // Of for j
+			nearests[j] = paraQueried;
+			nearestDistances[j] = tempDistance;
+		} // Of for i
+	}// Of insert
+
+	/**
+	 ********************
+	 * Mark a sub-block of the prepared block for following nearest() calls.
+	 * The sub-block is a cluster of a result which is not split yet.
+	 *
+	 * @param paraBlocks
+	 *            The clustering result.
+	 * @param paraIndex
+	 *            The index of the sub-block.
+	 * @param paraStatusArray
+	 *            The status of each instance.
+	 * @return False if the table cannot serve the sub-block, i.e., it is not
+	 *         within the block, or some queried instances are not in the
+	 *         table.
+	 ********************
+	 */
+	public boolean markSubBlock(ClusteringResult paraBlocks, int paraIndex, int[] paraStatusArray) {
+		if (block == null) {
+			return false;
+		} // Of if
+
+		BlockView tempBlock = paraBlocks.getBlock();
+		int tempInstance;
+		subBlockStamp++;
+		for (int i = 0; i < tempBlock.length(); i++) {
+			if (paraBlocks.getClusterIndex(i) != paraIndex) {
+				continue;
+			} // Of if
+
+			tempInstance = tempBlock.get(i);
+			if (tableStamps[tempInstance] != tableStamp) {
+				return false;
+			} // Of if
+
+			if ((paraStatusArray[tempInstance] == ActiveLearning.QUERIED) && !included[tempInstance]) {
+				return false;
+			} // Of if
+
+			subBlockStamps[tempInstance] = subBlockStamp;
+			subBlockPositions[tempInstance] = i;
+		} // Of for i
+
+		return true;
+	}// Of markSubBlock
+
+	/**
+	 ********************
+	 * Get the nearest queried instance within the marked sub-block. For equal
+	 * distances, the one appearing first in the sub-block is preferred, the
+	 * same as a scan of the sub-block.
+	 *
+	 * @param paraInstance
+	 *            The given unqueried instance of the sub-block.
+	 * @return The nearest queried instance, -1 if unknown.
+	 ********************
+	 */
+	public int nearest(int paraInstance) {
+		int tempPosition = positions[paraInstance];
+		int tempStart = tempPosition * listLength;
+		int tempEnd = tempStart + numNearests[tempPosition];
+
+		int resultNearest = -1;
+		double tempMinimalDistance = 0;
+		int tempQueried;
+		for (int i = tempStart; i < tempEnd; i++) {
+			tempQueried = nearests[i];
+			if (subBlockStamps[tempQueried] != subBlockStamp) {
+				continue;
+			} // Of if
+
+			if (resultNearest == -1) {
+				resultNearest = tempQueried;
+				tempMinimalDistance = nearestDistances[i];
+			} else if (nearestDistances[i] > tempMinimalDistance) {
+				break;
+			} else if (subBlockPositions[tempQueried] < subBlockPositions[resultNearest]) {
+				resultNearest = tempQueried;
+			} // Of if
+		} // Of for i
+
+		// Some queried instance out of the list may have the same distance.
+		if ((resultNearest != -1) && (numNearests[tempPosition] == listLength)
+				&& (tempMinimalDistance >= nearestDistances[tempEnd - 1])) {
+			return -1;
+		} // Of if
+
+		return resultNearest;
+	}// Of nearest
+}// Of class NearestQueriedTable
@@ -2,7 +2,9 @@ package algorithm;
 
 import java.util.Arrays;
 
+import clustering.ClusteringResult;
 import common.BlockQueue;
+import common.BlockView;
 import common.SimpleTools;
 import exception.*;
 
@@ -22,7 +24,7 @@ import exception.*;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 20, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelectionActiveLearning {
@@ -51,6 +53,23 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 	 * Retrospect to select the clustering technique.
 	 */
 	boolean retrospect;
+
+	/**
+	 * The block split by the last computeBestSubBlocks(), compared by
+	 * identity.
+	 */
+	BlockView lastSplitBlock;
+
+	/**
+	 * Splits of lastSplitBlock by each algorithm. They are valid only if the
+	 * block is not partitioned, or merged back.
+	 */
+	ClusteringResult[] lastSplits;
+
+	/**
+	 * Exceptions of algorithms failed on lastSplitBlock.
+	 */
+	Exception[] lastSplitExceptions;
 	
 	/**
 	 ********************
@@ -106,6 +125,9 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 		super.reset();
 		numRemainingQueries = numTotalLabels;
 		bestAlgorithmArray = new int[NUM_ALGORITHMS];
+		lastSplitBlock = null;
+		lastSplits = null;
+		lastSplitExceptions = null;
 	}// Of reset
 
 	/**
@@ -115,47 +137,89 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 	 * 
 	 * @param paraBlock
 	 *            The current block.
-	 * @return The best sub-blocks.
+	 * @return The best result, not split yet.
 	 * @throws UnableToClusterInKException
 	 *             When all algorithms fail.
 	 ************************* 
 	 */
-	public int[][] computeBestSubBlocks(int[] paraBlock) throws UnableToClusterInKException {
+	public ClusteringResult computeBestSubBlocks(BlockView paraBlock) throws UnableToClusterInKException {
+		return computeBestSubBlocks(paraBlock, false);
+	}// Of computeBestSubBlocks
+
+	/**
+	 ************************* 
+	 * Compute the best clusters for the current block. If the block is the
+	 * same as the last one, e.g., in the retrospect stage, only algorithms
+	 * depending on queried labels run again, and splits of others are reused.
+	 * Entropies are always recomputed with the current labels.
+	 * 
+	 * @param paraBlock
+	 *            The current block.
+	 * @param paraReuseSplits
+	 *            Reuse label-independent splits of the last block or not.
+	 * @return The best result, not split yet.
+	 * @throws UnableToClusterInKException
+	 *             When all algorithms fail.
+	 ************************* 
+	 */
+	public ClusteringResult computeBestSubBlocks(BlockView paraBlock, boolean paraReuseSplits)
+			throws UnableToClusterInKException {
 		Arrays.fill(bestAlgorithmArray, -1);
 		numBestAlgorithms = 0;
 
-		int[][] resultBestBlocks = null;
+		ClusteringResult resultBestBlocks = null;
 		double tempBestEntropy = Double.MAX_VALUE;
-		int[][] tempNewBlocks = null;
+		ClusteringResult tempNewBlocks = null;
 		double tempEntropy;
-		for (int i = 0; i < NUM_ALGORITHMS; i++) {
-			// Is this algorithm available?
-			if (!availableAlgorithms[i]) {
-				continue;
-			} // Of if
+		Exception[] tempExceptions = new Exception[NUM_ALGORITHMS];
+		ClusteringResult[] tempAllNewBlocks;
+		if (paraReuseSplits && (paraBlock == lastSplitBlock)) {
+			boolean[] tempLabelDependent = new boolean[NUM_ALGORITHMS];
+			for (int i = 0; i < NUM_ALGORITHMS; i++) {
+				if (availableAlgorithms[i]) {
+					setClusteringAlgorithm(i);
+					tempLabelDependent[i] = currentClusteringAlgorithm.isLabelDependent();
+				} // Of if
+			} // Of for i
 
-			try {
-				SimpleTools.processTrackingOutput("Cluster in two using algorithm " + i + "... ");
-				tempNewBlocks = clusterInTwo(paraBlock, i);
-				SimpleTools.processTrackingOutput(" done.\r\n");
-			} catch (UnableToClusterInKException ee) {
-				System.out.println(ee);
+			tempAllNewBlocks = clusterInTwoByAlgorithms(paraBlock, tempLabelDependent, tempExceptions);
+			for (int i = 0; i < NUM_ALGORITHMS; i++) {
+				if (!tempLabelDependent[i]) {
+					tempAllNewBlocks[i] = lastSplits[i];
+					tempExceptions[i] = lastSplitExceptions[i];
+				} // Of if
+			} // Of for i
+		} else {
+			tempAllNewBlocks = clusterInTwoByAvailableAlgorithms(paraBlock, tempExceptions);
+		} // Of if
+		lastSplitBlock = paraBlock;
+		lastSplits = tempAllNewBlocks;
+		lastSplitExceptions = tempExceptions;
+		prepareNearestQueriedTable(paraBlock);
+
+		for (int i = 0; i < NUM_ALGORITHMS; i++) {
+			tempNewBlocks = tempAllNewBlocks[i];
+			if (tempNewBlocks == null) {
+				if (tempExceptions[i] != null) {
+					System.out.println(tempExceptions[i]);
+				} // Of if
 				// Some algorithm may fail on some blocks.
 				continue;
-			} // Of try
+			} // Of if
 
 			if (areBlocksImbalance(tempNewBlocks)) {
 				// Do not consider unbalanced blocks.
 				System.out.println("Algorithm " + i + " produces imbalance blocks with length "
-						+ tempNewBlocks[0].length + " vs. " + tempNewBlocks[1].length + ".\r\n");
+						+ tempNewBlocks.getBlockSize(0) + " vs. " + tempNewBlocks.getBlockSize(1) + ".\r\n");
 				continue;
 			} // Of if
 
 			tempEntropy = computeWeightedEntropy(tempNewBlocks);
 			// tempEntropy = computeEntropy(tempNewBlocks);
 
-			System.out.println("Algorithm " + i + " entropy: " + tempEntropy + " for " + paraBlock.length
-					+ " instances splitted to " + tempNewBlocks[0].length + " + " + tempNewBlocks[1].length);
+			System.out.println("Algorithm " + i + " entropy: " + tempEntropy + " for " + paraBlock.length()
+					+ " instances splitted to " + tempNewBlocks.getBlockSize(0) + " + "
+					+ tempNewBlocks.getBlockSize(1));
 			if (tempBestEntropy > tempEntropy) {
 				numBestAlgorithms = 0;
 				bestAlgorithmArray[numBestAlgorithms] = i;
@@ -174,7 +238,7 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 		if (resultBestBlocks == null) {
 			throw new UnableToClusterInKException(
 					"Error occurred in computeBestSubBlocks(). No algortihm can handle this block: "
-							+ Arrays.toString(paraBlock));
+							+ paraBlock);
 		} // Of if
 
 		return resultBestBlocks;
@@ -196,6 +260,8 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 		// Step 1. Initialize
 		Arrays.fill(instanceStatusArray, UNHANDLED);
 		finalNumBlocks = 0;
+		blockStatistics.reset();
+		blockStatistics.register(wholeBlock, instanceStatusArray, predicts);
 		numSmallBlocks = 0;
 		int tempNumPureBlocks = 0;
 		int tempPureBlocksSizeSum = 0;
@@ -221,16 +287,17 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 
 		// Step 3. Active learning with a queue
 		BlockQueue tempQueue = new BlockQueue();
-		tempQueue.enqueue(wholeBlock);
-		SimpleTools.processTrackingOutput("Enqueue " + wholeBlock.length + " (" + wholeBlock[0] + ", ...); ");
-		int[] tempBlock = null;
+		BlockView tempRoot = new BlockView(numInstances);
+		tempQueue.enqueue(tempRoot);
+		SimpleTools.processTrackingOutput("Enqueue " + tempRoot.length() + " (" + tempRoot.get(0) + ", ...); ");
+		BlockView tempBlock = null;
 		//int tempNumRequiredLabels;
 		boolean tempLabelUsedUp = false;
 
 		while (!tempQueue.isEmpty()) {
 			// Step 3.1 Take out a block to process
 			tempBlock = tempQueue.dequeue();
-			SimpleTools.processTrackingOutput("\r\nDequeue " + tempBlock.length + " (" + tempBlock[0] + ", ...); ");
+			SimpleTools.processTrackingOutput("\r\nDequeue " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...); ");
 
 			// Step 3.2 Select critical instances to label
 			//tempNumRequiredLabels = getBlockPureThreshold(tempBlock.length);
@@ -250,36 +317,38 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 			boolean tempPure = classifyIfPure(tempBlock);
 			if (tempPure) {
 				tempNumPureBlocks++;
-				tempPureBlocksSizeSum += tempBlock.length;
+				tempPureBlocksSizeSum += tempBlock.length();
 				SimpleTools.processTrackingOutput(
-						"\r\nPure block " + tempBlock.length + " (" + tempBlock[0] + ", ...) \r\n");
+						"\r\nPure block " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...) \r\n");
 
 				finalNumBlocks++;
-				SimpleTools.processTrackingOutput("Blocks " + finalNumBlocks + "(" + tempBlock.length + ")");
+				SimpleTools.processTrackingOutput("Blocks " + finalNumBlocks + "(" + tempBlock.length() + ")");
 				continue;
 			} // Of if
 
 			// Step 3.4 Split in two using the best algorithm
 			// Maybe more than one best algorithms
-			int[][] tempBestBlocks = null;
+			ClusteringResult tempBestResult = null;
 			try {
-				tempBestBlocks = computeBestSubBlocks(tempBlock);
+				tempBestResult = computeBestSubBlocks(tempBlock);
 			} catch (UnableToClusterInKException ee) {
 				System.out.println(
-						"No algorithm can handle this block: " + tempBlock.length + " (" + tempBlock[0] + "...)");
+						"No algorithm can handle this block: " + tempBlock.length() + " (" + tempBlock.get(0) + "...)");
 				//oneNnUnhandled(tempBlock);
 				finalNumBlocks ++;
 				System.out.println("finalNumBlocks = " + finalNumBlocks);
-				SimpleTools.processTrackingOutput("Blocks " + finalNumBlocks + "(" + tempBlock.length + ")");
+				SimpleTools.processTrackingOutput("Blocks " + finalNumBlocks + "(" + tempBlock.length() + ")");
 				continue;
 			} // Of try
 
 			int tempFirstRoundBestAlgorithm = bestAlgorithmArray[0];
 
+			BlockView[] tempBestBlocks;
 			if (retrospect) {
 				SimpleTools.processTrackingOutput("retrospect");
 				// Step 3.5 Retrospect. Important code, different from the
 				// superclass.
+				tempBestBlocks = tempBestResult.split();
 				for (int i = 0; i < 2; i++) {
 					//tempNumRequiredLabels = getBlockPureThreshold(tempBestBlocks[i].length);
 					try {
@@ -295,16 +364,18 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 					} // Of try
 				} // Of for i
 
+				// Merge back, so that splits of other algorithms are valid.
+				tempBestResult.merge();
 				if (tempLabelUsedUp) {
 					break;
 				} // Of if
 
 				// Step 3.6 This time let's really do it. Important code,
-				int[][] tempSecondRoundBestBlocks = null;
+				ClusteringResult tempSecondRoundBestResult = null;
 				try {
-					tempSecondRoundBestBlocks = computeBestSubBlocks(tempBlock);
+					tempSecondRoundBestResult = computeBestSubBlocks(tempBlock, true);
 					//Replace it if success.
-					tempBestBlocks = tempSecondRoundBestBlocks;
+					tempBestResult = tempSecondRoundBestResult;
 				} catch (UnableToClusterInKException ee) {
 					System.out.println("Internal error: UnableToClusterInK in the retrospect stage. Use that of the first round.");
 				} // Of try
@@ -315,20 +386,22 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 							+ tempSecondRoundBestAlgorithm);
 				} // Of if
 			} // Of if retrospect
+			tempBestBlocks = tempBestResult.split();
 			
 			for (int i = 0; i < numBestAlgorithms; i++) {
 				algorithmWinArray[bestAlgorithmArray[i]]++;
 			} // Of for i
 
-			SimpleTools.processTrackingOutput("Splitting a block with " + tempBlock.length
+			SimpleTools.processTrackingOutput("Splitting a block with " + tempBlock.length()
 					+ " instances. The best algorithm is: " + bestAlgorithmArray[0]);
-			SimpleTools.consoleOutput(Arrays.deepToString(tempBestBlocks));
+			SimpleTools.consoleOutput(Arrays.toString(tempBestBlocks));
 
 			// Step 3.5 Learn these two blocks.
+			blockStatistics.split(tempBestBlocks, predicts);
 			for (int i = 0; i < 2; i++) {
-				if (tempBestBlocks[i].length > smallBlockThreshold) {
+				if (tempBestBlocks[i].length() > smallBlockThreshold) {
 					SimpleTools.processTrackingOutput(
-							"Enqueue " + tempBestBlocks[i].length + " (" + tempBestBlocks[i][0] + ", ...); ");
+							"Enqueue " + tempBestBlocks[i].length() + " (" + tempBestBlocks[i].get(0) + ", ...); ");
 					tempQueue.enqueue(tempBestBlocks[i]);
 				} else {
 					smallBlocks[numSmallBlocks] = tempBestBlocks[i];
@@ -336,7 +409,7 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 					finalNumBlocks ++;
 					System.out.println("one more small, finalNumBlocks = " + finalNumBlocks);
 
-					SimpleTools.processTrackingOutput("Blocks " + finalNumBlocks + "(" + tempBlock.length + ")");
+					SimpleTools.processTrackingOutput("Blocks " + finalNumBlocks + "(" + tempBlock.length() + ")");
 				} // Of if
 			} // Of for i
 
@@ -386,7 +459,7 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 			SimpleTools.processTrackingOutput("\r\n num unhandled instances = " + tempSize);
 			//Step 6.2 Query the remaining number of labels.
 			try {
-				selectCriticalAndLabel(tempAllUnhandled, numRemainingQueries);
+				selectCriticalAndLabel(new BlockView(tempAllUnhandled), numRemainingQueries);
 				//selectCriticalAndLabel(tempAllUnhandled, numRepresentativeLabels);
 				//selectCriticalDensityPeaks(tempAllUnhandled, numRemainingQueries);
 			} catch (Exception ee) {
@@ -462,9 +535,10 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 
 		// Step 3. Select representative/far instances to label
 		BlockQueue tempQueue = new BlockQueue();
-		tempQueue.enqueue(wholeBlock);
-		SimpleTools.processTrackingOutput("Enqueue " + wholeBlock.length + " (" + wholeBlock[0] + ", ...); ");
-		int[] tempBlock = null;
+		BlockView tempRoot = new BlockView(numInstances);
+		tempQueue.enqueue(tempRoot);
+		SimpleTools.processTrackingOutput("Enqueue " + tempRoot.length() + " (" + tempRoot.get(0) + ", ...); ");
+		BlockView tempBlock = null;
 		int tempNumRequiredLabels;
 		boolean tempCurrentBlockUnfinished = false;
 		boolean tempLabelUsedUp = false;
@@ -472,10 +546,10 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 		while (!tempQueue.isEmpty()) {
 			// Step 3.1 Take out a block to process
 			tempBlock = tempQueue.dequeue();
-			SimpleTools.processTrackingOutput("\r\nDequeue " + tempBlock.length + " (" + tempBlock[0] + ", ...); ");
+			SimpleTools.processTrackingOutput("\r\nDequeue " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...); ");
 
 			// Step 3.2 Select critical instances to label
-			tempNumRequiredLabels = getBlockPureThreshold(tempBlock.length);
+			tempNumRequiredLabels = getBlockPureThreshold(tempBlock.length());
 			try {
 				selectCriticalAndLabel(tempBlock, tempNumRequiredLabels);
 			} catch (LabelUsedUpException ee1) {
@@ -492,20 +566,20 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 			boolean tempPure = classifyIfPure(tempBlock);
 			if (tempPure) {
 				tempNumPureBlocks++;
-				tempPureBlocksSizeSum += tempBlock.length;
+				tempPureBlocksSizeSum += tempBlock.length();
 				SimpleTools.processTrackingOutput(
-						"\r\nPure block " + tempBlock.length + " (" + tempBlock[0] + ", ...) \r\n");
+						"\r\nPure block " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...) \r\n");
 				continue;
 			} // Of if
 
 			// Step 3.4 Split in two using the best algorithm
 			// Maybe more than one best algorithms
-			int[][] tempBestBlocks = null;
+			ClusteringResult tempBestResult = null;
 			try {
-				tempBestBlocks = computeBestSubBlocks(tempBlock);
+				tempBestResult = computeBestSubBlocks(tempBlock);
 			} catch (UnableToClusterInKException ee) {
 				System.out.println(
-						"No algorithm can handle this block: " + tempBlock.length + " (" + tempBlock[0] + "...)");
+						"No algorithm can handle this block: " + tempBlock.length() + " (" + tempBlock.get(0) + "...)");
 				System.out.println(" Use 1NN!");
 				oneNnUnhandled(tempBlock);
 				continue;
@@ -518,12 +592,14 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 			// System.exit(0);
 			// } // Of if
 
+			BlockView[] tempBestBlocks;
 			if (retrospect) {
 				SimpleTools.processTrackingOutput("retrospect");
 				// Step 3.5 Retrospect. Important code, different from the
 				// superclass.
+				tempBestBlocks = tempBestResult.split();
 				for (int i = 0; i < 2; i++) {
-					tempNumRequiredLabels = getBlockPureThreshold(tempBestBlocks[i].length);
+					tempNumRequiredLabels = getBlockPureThreshold(tempBestBlocks[i].length());
 					try {
 						selectCriticalAndLabel(tempBestBlocks[i], tempNumRequiredLabels);
 					} catch (LabelUsedUpException ee1) {
@@ -538,6 +614,8 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 					} // Of try
 				} // Of for i
 
+				// Merge back, so that splits of other algorithms are valid.
+				tempBestResult.merge();
 				if (tempLabelUsedUp) {
 					break;
 				} // Of if
@@ -545,7 +623,7 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 				// Step 3.6 This time let's really do it. Important code,
 				// different from the superclass.
 				try {
-					tempBestBlocks = computeBestSubBlocks(tempBlock);
+					tempBestResult = computeBestSubBlocks(tempBlock, true);
 				} catch (UnableToClusterInKException ee) {
 					System.out.println("Internal error: UnableToClusterInK in the retrospect stage.");
 					System.exit(0);
@@ -557,19 +635,20 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 				} // Of if
 
 			} // Of if retrospect
+			tempBestBlocks = tempBestResult.split();
 			for (int i = 0; i < numBestAlgorithms; i++) {
 				algorithmWinArray[bestAlgorithmArray[i]]++;
 			} // Of for i
 
-			SimpleTools.processTrackingOutput("Splitting a block with " + tempBlock.length
+			SimpleTools.processTrackingOutput("Splitting a block with " + tempBlock.length()
 					+ " instances. The best algorithm is: " + bestAlgorithmArray[0]);
-			SimpleTools.consoleOutput(Arrays.deepToString(tempBestBlocks));
+			SimpleTools.consoleOutput(Arrays.toString(tempBestBlocks));
 
 			// Step 3.5 Learn these two blocks.
 			for (int i = 0; i < 2; i++) {
-				if (tempBestBlocks[i].length > smallBlockThreshold) {
+				if (tempBestBlocks[i].length() > smallBlockThreshold) {
 					SimpleTools.processTrackingOutput(
-							"Enqueue " + tempBestBlocks[i].length + " (" + tempBestBlocks[i][0] + ", ...); ");
+							"Enqueue " + tempBestBlocks[i].length() + " (" + tempBestBlocks[i].get(0) + ", ...); ");
 					tempQueue.enqueue(tempBestBlocks[i]);
 				} else {
 					smallBlocks[numSmallBlocks] = tempBestBlocks[i];
@@ -585,7 +664,7 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 
 		if (tempCurrentBlockUnfinished) {
 			SimpleTools.processTrackingOutput(
-					"Unfinished block " + tempBlock.length + " (" + tempBlock[0] + ", ...) classfied by 1NN.\r\n");
+					"Unfinished block " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...) classfied by 1NN.\r\n");
 			oneNnUnhandled(tempBlock);
 		} // Of if
 
@@ -597,14 +676,14 @@ public class SpecifiedLabelsAlgorithmSelection extends ClusteringAlgorithmSelect
 
 			// Step 4.2 1NN prediction
 			SimpleTools.processTrackingOutput(
-					"Block " + tempBlock.length + " (" + tempBlock[0] + ", ...) classfied by 1NN.\r\n");
+					"Block " + tempBlock.length() + " (" + tempBlock.get(0) + ", ...) classfied by 1NN.\r\n");
 			oneNnUnhandled(tempBlock);
 		} // Of while
 
 		// Step 5. Handle small blocks.
 		SimpleTools.processTrackingOutput("Now handle small blocks.\r\n");
 		for (int i = 0; i < numSmallBlocks; i++) {
-			SimpleTools.processTrackingOutput("" + smallBlocks[i].length + ", ");
+			SimpleTools.processTrackingOutput("" + smallBlocks[i].length() + ", ");
 			oneNnUnhandled(smallBlocks[i]);
 		} // Of for i
 		
@@ -11,7 +11,9 @@ import weka.core.Instances;
 /**
  * The superclass of any clustering algorithm. It is able to compute the
  * accuracy of the clustering algorithm with the external class information. It
- * is abstract since clusterInK is not implemented.
+ * is abstract since clusterInK is not implemented. Results are returned as
+ * ClusteringResult objects and no per-invocation state is kept in fields, so
+ * the same object can cluster different blocks concurrently.
  * <p>
  * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
  * Copyright: The source code and all documents are open and free. PLEASE keep
@@ -22,7 +24,7 @@ import weka.core.Instances;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 20, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public abstract class Clustering {
@@ -62,14 +64,9 @@ public abstract class Clustering {
 	DistanceMeasure distanceMeasure;
 
 	/**
-	 * The whole block.
+	 * The whole block. It should not be split.
 	 */
-	int[] wholeBlock;
-
-	/**
-	 * The clusters.
-	 */
-	int[][] clusters;
+	BlockView wholeBlock;
 
 	/**
 	 * Data header, no instances.
@@ -83,6 +80,12 @@ public abstract class Clustering {
 	 */
 	boolean balanceTwoBlocks = true;
 
+	/**
+	 * Set by another thread to stop clustering. Iterations check it between
+	 * rounds.
+	 */
+	volatile boolean cancelled;
+
 	/**
 	 ********************
 	 * The constructor.
@@ -128,6 +131,26 @@ public abstract class Clustering {
 		initialize();
 	}// Of the constructor
 
+	/**
+	 ********************
+	 * The copy constructor. The data and the distance measure are shared. The
+	 * new object is not cancelled.
+	 * 
+	 * @param paraClustering
+	 *            The given object.
+	 ********************
+	 */
+	public Clustering(Clustering paraClustering) {
+		data = paraClustering.data;
+		distanceMeasure = paraClustering.distanceMeasure;
+		numInstances = paraClustering.numInstances;
+		numConditions = paraClustering.numConditions;
+		numClasses = paraClustering.numClasses;
+		wholeBlock = paraClustering.wholeBlock;
+		dataHeader = paraClustering.dataHeader;
+		balanceTwoBlocks = paraClustering.balanceTwoBlocks;
+	}// Of the copy constructor
+
 	/**
 	 ********************
 	 * Initialize.
@@ -138,15 +161,37 @@ public abstract class Clustering {
 		numConditions = data.numAttributes() - 1;
 		numClasses = data.attribute(numConditions).numValues();
 
-		wholeBlock = new int[numInstances];
-		for (int i = 0; i < numInstances; i++) {
-			wholeBlock[i] = i;
-		} // Of for i
+		wholeBlock = new BlockView(numInstances);
 
 		dataHeader = new Instances(data);
 		dataHeader.delete();
 	}// Of initialize
 
+	/**
+	 ************************* 
+	 * Cancel clustering. It is called by another thread, and the running
+	 * clusterInK() throws an exception at the next check. The object should
+	 * not be used any more.
+	 ************************* 
+	 */
+	public void cancel() {
+		cancelled = true;
+	}// Of cancel
+
+	/**
+	 ************************* 
+	 * Throw an exception if cancelled.
+	 * 
+	 * @throws UnableToClusterInKException
+	 *             If cancelled.
+	 ************************* 
+	 */
+	void checkCancelled() throws UnableToClusterInKException {
+		if (cancelled) {
+			throw new UnableToClusterInKException("Clustering is cancelled.");
+		} // Of if
+	}// Of checkCancelled
+
 	/**
 	 ************************* 
 	 * Get semi-maximal distance of a block.
@@ -156,18 +201,18 @@ public abstract class Clustering {
 	 * @return The distance.
 	 ************************* 
 	 */
-	public double getSemiMaximalDistance(int[] paraBlock) {
+	public double getSemiMaximalDistance(BlockView paraBlock) {
 		double resultMaxDistance = -1;
 		double tempDistance;
-		int tempLength = paraBlock.length;
+		int tempLength = paraBlock.length();
 		int tempPairs = TIMES_FOR_FARTHEST_PAIR * tempLength;
 		int tempFirst, tempSecond;
 		for (int i = 0; i < tempPairs; i++) {
 			tempFirst = (int) (Common.random.nextDouble() * tempLength);
 			tempSecond = (int) (Common.random.nextDouble() * tempLength);
 
-			tempDistance = distanceMeasure.distance(paraBlock[tempFirst],
-					paraBlock[tempSecond]);
+			tempDistance = distanceMeasure.distance(paraBlock.get(tempFirst),
+					paraBlock.get(tempSecond));
 			if (resultMaxDistance < tempDistance) {
 				resultMaxDistance = tempDistance;
 			} // Of if
@@ -175,6 +220,30 @@ public abstract class Clustering {
 		return resultMaxDistance;
 	}// Of getSemiMaximalDistance
 
+	/**
+	 ************************* 
+	 * Get the average distance of random pairs of a block.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @return The distance.
+	 ************************* 
+	 */
+	public double getSemiAverageDistance(BlockView paraBlock) {
+		double tempTotal = 0;
+		int tempLength = paraBlock.length();
+		int tempPairs = TIMES_FOR_FARTHEST_PAIR * tempLength;
+		int tempFirst, tempSecond;
+		for (int i = 0; i < tempPairs; i++) {
+			tempFirst = (int) (Common.random.nextDouble() * tempLength);
+			tempSecond = (int) (Common.random.nextDouble() * tempLength);
+
+			tempTotal += distanceMeasure.distance(paraBlock.get(tempFirst),
+					paraBlock.get(tempSecond));
+		} // Of for i
+		return tempTotal / tempPairs;
+	}// Of getSemiAverageDistance
+
 	/**
 	 ************************* 
 	 * Get a pair of instances with semi-maximal distance in a block.
@@ -184,10 +253,10 @@ public abstract class Clustering {
 	 * @return The point pair.
 	 ************************* 
 	 */
-	public double[][] getSemiMaximalDistancePair(int[] paraBlock) {
+	public double[][] getSemiMaximalDistancePair(BlockView paraBlock) {
 		double resultMaxDistance = -1;
 		double tempDistance;
-		int tempLength = paraBlock.length;
+		int tempLength = paraBlock.length();
 		int tempPairs = TIMES_FOR_FARTHEST_PAIR * tempLength;
 
 		int tempFirst, tempSecond;
@@ -197,8 +266,8 @@ public abstract class Clustering {
 			tempFirst = (int) (Common.random.nextDouble() * tempLength);
 			tempSecond = (int) (Common.random.nextDouble() * tempLength);
 
-			tempDistance = distanceMeasure.distance(paraBlock[tempFirst],
-					paraBlock[tempSecond]);
+			tempDistance = distanceMeasure.distance(paraBlock.get(tempFirst),
+					paraBlock.get(tempSecond));
 			if (resultMaxDistance < tempDistance) {
 				resultMaxDistance = tempDistance;
 				tempBestFirst = tempFirst;
@@ -208,8 +277,8 @@ public abstract class Clustering {
 
 		double[][] resultPair = new double[2][data.numAttributes() - 1];
 		for (int i = 0; i < resultPair[0].length; i++) {
-			resultPair[0][i] = data.instance(paraBlock[tempBestFirst]).value(i);
-			resultPair[1][i] = data.instance(paraBlock[tempBestSecond])
+			resultPair[0][i] = data.instance(paraBlock.get(tempBestFirst)).value(i);
+			resultPair[1][i] = data.instance(paraBlock.get(tempBestSecond))
 					.value(i);
 		} // Of for i
 
@@ -218,10 +287,12 @@ public abstract class Clustering {
 
 	/**
 	 ****************** 
-	 * Block information (e.g., with 0, 1, 2) to blocks (e.g., 3 blocks).
+	 * Block information (e.g., with 0, 1, 2) to blocks (e.g., 3 blocks). The
+	 * result is over a new permutation of all instances.
 	 * 
 	 * @param paraBlockInformation
-	 *            The block information.
+	 *            The block information. It is changed to the final block
+	 *            indices.
 	 * @param paraK
 	 *            The number of blocks.
 	 * @return The blocks.
@@ -229,10 +300,10 @@ public abstract class Clustering {
 	 *             If there is less blocks.
 	 ****************** 
 	 */
-	public int[][] blockInformationToBlocks(int[] paraBlockInformation,
+	public ClusteringResult blockInformationToResult(int[] paraBlockInformation,
 			int paraK) throws LessBlocksThanRequiredException {
-		return blockInformationToBlocks(wholeBlock, paraBlockInformation, paraK);
-	}// Of blockInformationToBlocks
+		return blockInformationToResult(new BlockView(numInstances), paraBlockInformation, paraK);
+	}// Of blockInformationToResult
 
 	/**
 	 ****************** 
@@ -243,7 +314,8 @@ public abstract class Clustering {
 	 * @param paraBlock
 	 *            The given block.
 	 * @param paraBlockInformation
-	 *            The block partition information
+	 *            The block partition information. It is changed to the final
+	 *            block indices.
 	 * @param paraK
 	 *            The final number of blocks.
 	 * @return The blocks.
@@ -251,11 +323,11 @@ public abstract class Clustering {
 	 *             If no enough blocks.
 	 ****************** 
 	 */
-	public static int[][] blockInformationToBlocks(int[] paraBlock,
+	public static ClusteringResult blockInformationToResult(BlockView paraBlock,
 			int[] paraBlockInformation, int paraK)
 			throws LessBlocksThanRequiredException {
 		SimpleTools.variableTrackingOutput("The paraBlock has "
-				+ paraBlock.length + " instances and the paraBlockInformation"
+				+ paraBlock.length() + " instances and the paraBlockInformation"
 				+ " has length " + paraBlockInformation.length);
 		// Step 1. Scan to see the maximal cluster number.
 		int tempOriginalClusters = 0;
@@ -310,42 +382,25 @@ public abstract class Clustering {
 		// System.out.println("tempTopIndices = " +
 		// Arrays.toString(tempTopIndices));
 
-		// Step 4. Construct result blocks.
-		int[][] resultBlocks = new int[paraK][];
-		int tempRemaining = paraBlock.length;
-		for (int i = 0; i < paraK - 1; i++) {
-			resultBlocks[i] = new int[tempTopSizes[i + 1]];
-			tempRemaining -= tempTopSizes[i + 1];
-		} // Of for i
-		resultBlocks[paraK - 1] = new int[tempRemaining];
+		// Step 4. Each original cluster goes to its top block or the last one.
+		int[] tempTargets = new int[tempOriginalClusters];
+		Arrays.fill(tempTargets, paraK - 1);
+		for (int j = 1; j < paraK; j++) {
+			tempTargets[tempTopIndices[j]] = j - 1;
+		} // Of for j
 
-		tempCounters = new int[paraK];
-		boolean tempFound;
 		for (int i = 0; i < paraBlockInformation.length; i++) {
-			tempFound = false;
-			for (int j = 1; j < paraK; j++) {
-				if (paraBlockInformation[i] == tempTopIndices[j]) {
-					resultBlocks[j - 1][tempCounters[j - 1]] = paraBlock[i];
-					tempCounters[j - 1]++;
-					tempFound = true;
-					break;
-				} // Of if
-			} // Of for j
-
-			// To the last block.
-			if (!tempFound) {
-				resultBlocks[paraK - 1][tempCounters[paraK - 1]] = paraBlock[i];
-				tempCounters[paraK - 1]++;
-			} // Of if
-
+			paraBlockInformation[i] = tempTargets[paraBlockInformation[i]];
 		} // Of for i
 
-		return resultBlocks;
-	}// Of blockInformationToBlocks
+		return new ClusteringResult(paraBlock, paraBlockInformation, paraK);
+	}// Of blockInformationToResult
 
 	/**
 	 ****************** 
-	 * Cluster into k blocks.
+	 * Cluster into k blocks. Implementations should be reentrant, i.e., keep
+	 * scratch state in local variables or a per-invocation context. The block
+	 * is only read, and it is partitioned when the result is split.
 	 * 
 	 * @param paraBlock
 	 *            The given block.
@@ -356,12 +411,32 @@ public abstract class Clustering {
 	 *             If fails to cluster.
 	 ****************** 
 	 */
-	public abstract int[][] clusterInK(int[] paraBlock, int paraK)
+	public abstract ClusteringResult clusterInK(BlockView paraBlock, int paraK)
 			throws UnableToClusterInKException;
 
 	/**
 	 ****************** 
-	 * Cluster into k blocks using the whole block.
+	 * Cluster into k blocks. The array is not copied, and it is reordered if
+	 * the result is split.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of sub-blocks.
+	 * @return The sub-blocks.
+	 * @throws UnableToClusterInKException
+	 *             If fails to cluster.
+	 ****************** 
+	 */
+	public ClusteringResult clusterInK(int[] paraBlock, int paraK)
+			throws UnableToClusterInKException {
+		return clusterInK(new BlockView(paraBlock), paraK);
+	}// Of clusterInK
+
+	/**
+	 ****************** 
+	 * Cluster into k blocks using the whole data. The result is over a new
+	 * permutation of all instances, so it can be split.
 	 * 
 	 * @param paraK
 	 *            The number of sub-blocks.
@@ -370,22 +445,21 @@ public abstract class Clustering {
 	 *             If fails to cluster.
 	 ****************** 
 	 */
-	public int[][] clusterInK(int paraK) throws UnableToClusterInKException {
-		return clusterInK(wholeBlock, paraK);
+	public ClusteringResult clusterInK(int paraK) throws UnableToClusterInKException {
+		return clusterInK(new BlockView(numInstances), paraK);
 	}// Of clusterInK
 
 	/**
 	 ****************** 
-	 * Cluster into 2 blocks.
+	 * Cluster into 2 blocks using the whole data.
 	 * 
 	 * @return The sub-blocks.
 	 * @throws UnableToClusterInKException
 	 *             If fails to cluster.
 	 ****************** 
 	 */
-	public int[][] clusterInTwo() throws UnableToClusterInKException {
-		clusters = clusterInK(wholeBlock, 2);
-		return clusters;
+	public ClusteringResult clusterInTwo() throws UnableToClusterInKException {
+		return clusterInK(2);
 	}// Of clusterInTwo
 
 	/**
@@ -399,10 +473,26 @@ public abstract class Clustering {
 	 *             If fails to cluster.
 	 ****************** 
 	 */
-	public int[][] clusterInTwo(int[] paraBlock)
+	public ClusteringResult clusterInTwo(BlockView paraBlock)
 			throws UnableToClusterInKException {
-		clusters = clusterInK(paraBlock, 2);
-		return clusters;
+		return clusterInK(paraBlock, 2);
+	}// Of clusterInTwo
+
+	/**
+	 ****************** 
+	 * Cluster into 2 blocks. The array is not copied, and it is reordered if
+	 * the result is split.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @return The sub-blocks.
+	 * @throws UnableToClusterInKException
+	 *             If fails to cluster.
+	 ****************** 
+	 */
+	public ClusteringResult clusterInTwo(int[] paraBlock)
+			throws UnableToClusterInKException {
+		return clusterInTwo(new BlockView(paraBlock));
 	}// Of clusterInTwo
 
 	/**
@@ -419,23 +509,54 @@ public abstract class Clustering {
 	 *             If fails to cluster.
 	 ************************* 
 	 */
-	public int[][] clusterInTwo(int[] paraBlock, int[] paraQueriedArray)
+	public ClusteringResult clusterInTwo(BlockView paraBlock, int[] paraQueriedArray)
 			throws UnableToClusterInKException {
 		return clusterInTwo(paraBlock);
 	}// Of clusterInTwo
 
+	/**
+	 ************************* 
+	 * Cluster the given block in two. The array is not copied, and it is
+	 * reordered if the result is split.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraQueriedArray
+	 *            The queried instance within the block.
+	 * @return Two sub-blocks
+	 * @throws UnableToClusterInKException
+	 *             If fails to cluster.
+	 ************************* 
+	 */
+	public ClusteringResult clusterInTwo(int[] paraBlock, int[] paraQueriedArray)
+			throws UnableToClusterInKException {
+		return clusterInTwo(new BlockView(paraBlock), paraQueriedArray);
+	}// Of clusterInTwo
+
+	/**
+	 ************************* 
+	 * Does clusterInTwo(BlockView, int[]) depend on the queried instances? If
+	 * not, the split of a block can be reused after more instances are queried.
+	 * 
+	 * @return True if the split depends on the queried instances.
+	 ************************* 
+	 */
+	public boolean isLabelDependent() {
+		return false;
+	}// Of isLabelDependent
+
 	/**
 	 ****************** 
 	 * Get the balance factor.
 	 * 
-	 * @param paraBlocks
-	 *            The given array with exactly 2 blocks.
+	 * @param paraResult
+	 *            The given result with exactly 2 blocks.
 	 * @return the balance factor.
 	 ****************** 
 	 */
-	public double getBalanceFactor(int[][] paraBlocks) {
-		double tempFirstSize = paraBlocks[0].length;
-		double tempSecondSize = paraBlocks[1].length;
+	public double getBalanceFactor(ClusteringResult paraResult) {
+		double tempFirstSize = paraResult.getBlockSize(0);
+		double tempSecondSize = paraResult.getBlockSize(1);
 		double tempFraction = 0;
 		if (tempFirstSize < tempSecondSize) {
 			tempFraction = tempFirstSize / tempSecondSize;
@@ -450,13 +571,13 @@ public abstract class Clustering {
 	 ****************** 
 	 * Is the blocks balanced?
 	 * 
-	 * @param paraBlocks
-	 *            The given array with exactly 2 blocks.
+	 * @param paraResult
+	 *            The given result with exactly 2 blocks.
 	 * @return True if balanced.
 	 ****************** 
 	 */
-	public boolean isBalanced(int[][] paraBlocks) {
-		double tempFraction = getBalanceFactor(paraBlocks);
+	public boolean isBalanced(ClusteringResult paraResult) {
+		double tempFraction = getBalanceFactor(paraResult);
 
 		if (tempFraction < FINE_BALANCE_THRESHOLD) {
 			return false;
@@ -470,36 +591,37 @@ public abstract class Clustering {
 	 * Compute the accuracy of the clusters. Use external evaluator, i.e., the
 	 * class information.
 	 * 
+	 * @param paraResult
+	 *            The clustering result.
 	 * @return The accuracy.
 	 ****************** 
 	 */
-	public double computeAccuracy() {
+	public double computeAccuracy(ClusteringResult paraResult) {
 		double resultAccuracy = 0;
 		double tempTotalInstances = 0;
-		int[] tempCounts = new int[data.numClasses()];
+		int tempNumClasses = data.numClasses();
+		int[] tempCounts = new int[paraResult.getNumBlocks() * tempNumClasses];
+		BlockView tempBlock = paraResult.getBlock();
 		int tempLabel;
 		int tempMax;
 		int tempCorrect = 0;
 
 		System.out.println("computeAccuracy() test 1");
-		for (int i = 0; i < clusters.length; i++) {
-			// Initialize
-			Arrays.fill(tempCounts, 0);
+		for (int i = 0; i < tempBlock.length(); i++) {
+			tempLabel = (int) data.instance(tempBlock.get(i)).classValue();
+			tempCounts[paraResult.getClusterIndex(i) * tempNumClasses + tempLabel]++;
+		} // Of for i
 
+		for (int i = 0; i < paraResult.getNumBlocks(); i++) {
 			System.out.println("computeAccuracy() test 1.1");
-			tempTotalInstances += clusters[i].length;
-			for (int j = 0; j < clusters[i].length; j++) {
-				tempLabel = (int) data.instance(clusters[i][j]).classValue();
-				tempCounts[tempLabel]++;
-			} // Of for j
-
+			tempTotalInstances += paraResult.getBlockSize(i);
 			tempMax = 0;
-			for (int j = 0; j < tempCounts.length; j++) {
-				if (tempMax < tempCounts[j]) {
-					tempMax = tempCounts[j];
+			for (int j = 0; j < tempNumClasses; j++) {
+				if (tempMax < tempCounts[i * tempNumClasses + j]) {
+					tempMax = tempCounts[i * tempNumClasses + j];
 				} // Of if
 			} // Of for j
-			System.out.println("Block size = " + clusters[i].length
+			System.out.println("Block size = " + paraResult.getBlockSize(i)
 					+ ", correct = " + tempMax);
 			tempCorrect += tempMax;
 		} // Of for i
@@ -518,10 +640,10 @@ public abstract class Clustering {
 	 * @return The the subset.
 	 ****************** 
 	 */
-	public Instances constructSubset(int[] paraBlock) {
+	public Instances constructSubset(BlockView paraBlock) {
 		Instances resultData = new Instances(dataHeader);
 		Instance tempInstance;
-		for (int i = 0; i < paraBlock.length; i++) {
+		for (int i = 0; i < paraBlock.length(); i++) {
 			tempInstance = new Instance(data.instance(i));
 			resultData.add(tempInstance);
 		}// Of for i
@@ -549,14 +671,14 @@ public abstract class Clustering {
 			SimpleTools.consoleOutput("\r\n");
 		} // Of for i
 
-		int[][] tempPartition = null;
+		ClusteringResult tempPartition = null;
 		try {
 			tempPartition = clusterInTwo(tempBlock);
 		} catch (UnableToClusterInKException ee) {
 			System.out.println(ee);
 		} // Of try
 		System.out.println("With clusterInTwo, the partition is: "
-				+ Arrays.deepToString(tempPartition));
+				+ tempPartition);
 	}// Of testClusterInTwo
 
 	/**
@@ -574,7 +696,7 @@ public abstract class Clustering {
 		// int[] tempBlock = {1, 3, 49, 56, 88, 89, 99};
 
 		// int[] tempBlock = wholeBlock;
-		int[][] tempPartition = null;
+		ClusteringResult tempPartition = null;
 
 		try {
 			tempPartition = clusterInK(paraK);
@@ -584,9 +706,9 @@ public abstract class Clustering {
 		} // Of try
 
 		System.out.println("For the full dataset, the partition is: "
-				+ Arrays.deepToString(tempPartition));
+				+ tempPartition);
 
-		double tempAccuracy = computeAccuracy();
+		double tempAccuracy = computeAccuracy(tempPartition);
 		// System.out.println("For the whole dataset, the clusters are "
 		// + Arrays.deepToString(clusters));
 		System.out.println("The accuracy is: " + tempAccuracy);
@@ -594,24 +716,23 @@ public abstract class Clustering {
 
 	/**
 	 ************************* 
-	 * Test the blockInformationToBlocks method.
+	 * Test the blockInformationToResult method.
 	 ************************* 
 	 */
-	public static void testBlockInformationToBlocks() {
+	public static void testBlockInformationToResult() {
 		int[] tempBlock = { 1, 3, 49, 56, 88, 89, 99, 121, 123, 133 };
 		int[] tempBlockInformation = { 1, 3, 4, 0, 3, 2, 2, 1, 4, 3 };
 
-		int[][] tempBlocks = null;
+		ClusteringResult tempResult = null;
 		try {
-			tempBlocks = blockInformationToBlocks(tempBlock,
+			tempResult = blockInformationToResult(new BlockView(tempBlock),
 					tempBlockInformation, 3);
 		} catch (LessBlocksThanRequiredException ee) {
 			System.out.println(ee);
-		} // Of testBlockInformationToBlocks
+		} // Of testBlockInformationToResult
 
-		System.out.println("The final blocks are:"
-				+ Arrays.deepToString(tempBlocks));
-	}// Of testBlockInformationToBlocks
+		System.out.println("The final blocks are:" + tempResult);
+	}// Of testBlockInformationToResult
 
 	/**
 	 ************************* 
@@ -622,7 +743,7 @@ public abstract class Clustering {
 	 ************************* 
 	 */
 	public static void main(String args[]) {
-		testBlockInformationToBlocks();
+		testBlockInformationToResult();
 	}// Of main
 
 }// Of class Clustering
@@ -0,0 +1,223 @@
+package clustering;
+
+import java.util.Arrays;
+
+import common.BlockView;
+
+/**
+ * The result of one clustering invocation. Clusterers keep scratch state of an
+ * invocation in local variables or a per-invocation context, and only return
+ * the cluster index of each position of the block in this object, so that the
+ * same clusterer can be invoked for different blocks concurrently. Nothing is
+ * moved until the result is split, so that candidate results of the same
+ * block can be compared, and only the chosen one partitions the block in
+ * place.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public final class ClusteringResult {
+	/**
+	 * The clustered block.
+	 */
+	private final BlockView block;
+
+	/**
+	 * The cluster index of each position of the block, in [0, k).
+	 */
+	private final int[] clusterIndices;
+
+	/**
+	 * The size of each cluster.
+	 */
+	private final int[] sizes;
+
+	/**
+	 * The sub-blocks, null before the split.
+	 */
+	private BlockView[] subBlocks;
+
+	/**
+	 ********************
+	 * The constructor. The given array should not be changed by the caller
+	 * afterwards.
+	 *
+	 * @param paraBlock
+	 *            The clustered block.
+	 * @param paraClusterIndices
+	 *            The cluster index of each position of the block, in [0,
+	 *            paraK).
+	 * @param paraK
+	 *            The number of clusters.
+	 ********************
+	 */
+	public ClusteringResult(BlockView paraBlock, int[] paraClusterIndices, int paraK) {
+		block = paraBlock;
+		clusterIndices = paraClusterIndices;
+		sizes = new int[paraK];
+		for (int i = 0; i < paraBlock.length(); i++) {
+			sizes[paraClusterIndices[i]]++;
+		} // Of for i
+	}// Of the constructor
+
+	/**
+	 ********************
+	 * Get the number of blocks.
+	 *
+	 * @return The number of blocks.
+	 ********************
+	 */
+	public int getNumBlocks() {
+		return sizes.length;
+	}// Of getNumBlocks
+
+	/**
+	 ********************
+	 * Get the size of the given block.
+	 *
+	 * @param paraIndex
+	 *            The index of the block.
+	 * @return The size.
+	 ********************
+	 */
+	public int getBlockSize(int paraIndex) {
+		return sizes[paraIndex];
+	}// Of getBlockSize
+
+	/**
+	 ********************
+	 * Get the clustered block.
+	 *
+	 * @return The block.
+	 ********************
+	 */
+	public BlockView getBlock() {
+		return block;
+	}// Of getBlock
+
+	/**
+	 ********************
+	 * Get the block of the instance at the given position before the split.
+	 *
+	 * @param paraPosition
+	 *            The position within the clustered block.
+	 * @return The index of the block.
+	 ********************
+	 */
+	public int getClusterIndex(int paraPosition) {
+		return clusterIndices[paraPosition];
+	}// Of getClusterIndex
+
+	/**
+	 ********************
+	 * Partition the clustered block in place. Instances of a sub-block keep
+	 * their order in the block. Only one result of a block should be split,
+	 * and later invocations return the same sub-blocks.
+	 *
+	 * @return The sub-blocks, some of which may be empty.
+	 ********************
+	 */
+	public synchronized BlockView[] split() {
+		if (subBlocks == null) {
+			subBlocks = block.partition(clusterIndices, sizes);
+		} // Of if
+
+		return subBlocks;
+	}// Of split
+
+	/**
+	 ********************
+	 * Undo the split, so that the block and other results of it are valid
+	 * again. Sub-blocks of the split should not be used afterwards.
+	 ********************
+	 */
+	public synchronized void merge() {
+		if (subBlocks != null) {
+			block.merge(clusterIndices, sizes);
+			subBlocks = null;
+		} // Of if
+	}// Of merge
+
+	/**
+	 ********************
+	 * Intersect with another result of the same block, both with two blocks
+	 * in the first two. The first blocks are paired with the second or first
+	 * ones of the other result, whichever keeps more than half of the first
+	 * block, the same as SimpleTools.binarySetFamilyMaximalIntersection().
+	 * Instances out of both intersections are in the third block.
+	 *
+	 * @param paraResult
+	 *            The other result.
+	 * @return The intersections, neither of the results is split.
+	 ********************
+	 */
+	public ClusteringResult intersect(ClusteringResult paraResult) {
+		// Step 1. Pair the blocks.
+		int tempIntersectionSize = 0;
+		for (int i = 0; i < block.length(); i++) {
+			if ((clusterIndices[i] == 0) && (paraResult.clusterIndices[i] == 0)) {
+				tempIntersectionSize++;
+			} // Of if
+		} // Of for i
+		int tempPairOfFirst = (tempIntersectionSize > sizes[0] / 2) ? 0 : 1;
+
+		// Step 2. Intersect.
+		int[] tempClusterIndices = new int[block.length()];
+		for (int i = 0; i < block.length(); i++) {
+			if ((clusterIndices[i] == 0) && (paraResult.clusterIndices[i] == tempPairOfFirst)) {
+				tempClusterIndices[i] = 0;
+			} else if ((clusterIndices[i] == 1) && (paraResult.clusterIndices[i] == 1 - tempPairOfFirst)) {
+				tempClusterIndices[i] = 1;
+			} else {
+				tempClusterIndices[i] = 2;
+			} // Of if
+		} // Of for i
+
+		return new ClusteringResult(block, tempClusterIndices, 3);
+	}// Of intersect
+
+	/**
+	 ********************
+	 * Show the blocks. The block is not partitioned.
+	 ********************
+	 */
+	public synchronized String toString() {
+		if (subBlocks != null) {
+			return Arrays.toString(subBlocks);
+		} // Of if
+
+		StringBuilder resultBuilder = new StringBuilder("[");
+		boolean tempFirst;
+		for (int i = 0; i < sizes.length; i++) {
+			if (i > 0) {
+				resultBuilder.append(", ");
+			} // Of if
+			resultBuilder.append("[");
+			tempFirst = true;
+			for (int j = 0; j < block.length(); j++) {
+				if (clusterIndices[j] != i) {
+					continue;
+				} // Of if
+
+				if (!tempFirst) {
+					resultBuilder.append(", ");
+				} // Of if
+				resultBuilder.append(block.get(j));
+				tempFirst = false;
+			} // Of for j
+			resultBuilder.append("]");
+		} // Of for i
+		resultBuilder.append("]");
+
+		return resultBuilder.toString();
+	}// Of toString
+}// Of class ClusteringResult
@@ -1,7 +1,9 @@
 package clustering;
 
 import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
 
+import common.BlockView;
 import common.Common;
 import common.DistanceMeasure;
 import common.SimpleTools;
@@ -10,7 +12,10 @@ import weka.core.Instances;
 
 /**
  * The super class of any density-based clustering algorithms. It help setting
- * the radius dc.
+ * the radius dc. The dc, the densities and the smaller blocks are kept in one
+ * DensityState object, which is replaced rather than changed, so that each
+ * invocation reads a consistent state while different blocks are clustered
+ * concurrently.
  * <p>
  * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
  * Copyright: The source code and all documents are open and free. PLEASE keep
@@ -21,25 +26,15 @@ import weka.core.Instances;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 10, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public abstract class DensityClustering extends Clustering {
 	/**
-	 * The distance threshold for density computation. For the density peak and
-	 * DBScan algorithms.
+	 * The current dc, densities and smaller blocks. Each invocation reads it
+	 * once.
 	 */
-	double dc;
-
-	/**
-	 * The diameter of the current block.
-	 */
-	double diameter;
-
-	/**
-	 * The average distance of the current block.
-	 */
-	double averageDistance;
+	volatile DensityState state;
 
 	/**
 	 * Compute the dc using the diameter.
@@ -76,14 +71,26 @@ public abstract class DensityClustering extends Clustering {
 	public static final int SPEED_UP_THRESHOLD = 1000;
 
 	/**
-	 * The max distance which cannot be exceeded..
+	 * The number of kMeans restarts for smaller blocks.
 	 */
-	public static final double MAXIMAL_DISTANCE = 1e10;
+	public static final int NUM_KMEANS_RESTARTS = 4;
 
 	/**
-	 * The density of each instance. For the density peak algorithm.
+	 * The number of instances of a tile for brute-force density computation.
 	 */
-	double[] densities;
+	public static final int DENSITY_TILE_SIZE = 256;
+
+	/**
+	 * The number of accumulators for brute-force density computation. It is
+	 * fixed instead of the number of threads, so densities do not depend on
+	 * scheduling.
+	 */
+	public static final int NUM_DENSITY_ACCUMULATORS = 8;
+
+	/**
+	 * The max distance which cannot be exceeded..
+	 */
+	public static final double MAXIMAL_DISTANCE = 1e10;
 
 	/**
 	 * Use cutoff kenrel to compute the density.
@@ -100,11 +107,6 @@ public abstract class DensityClustering extends Clustering {
 	 */
 	int kernel = 1;
 
-	/**
-	 * Smaller blocks for speed up. It is produced by the kMeans algorithm now.
-	 */
-	int[][] smallerBlocks;
-
 	/**
 	 ********************
 	 * The constructor.
@@ -159,19 +161,34 @@ public abstract class DensityClustering extends Clustering {
 		initialize();
 	}// Of the second constructor
 
+	/**
+	 ********************
+	 * The copy constructor. The density state is immutable and shared, so
+	 * densities are not computed again.
+	 * 
+	 * @param paraClustering
+	 *            The given object.
+	 ********************
+	 */
+	public DensityClustering(DensityClustering paraClustering) {
+		super(paraClustering);
+
+		dcScheme = paraClustering.dcScheme;
+		dcRatio = paraClustering.dcRatio;
+		kernel = paraClustering.kernel;
+		state = paraClustering.state;
+	}// Of the copy constructor
+
 	/**
 	 ********************
 	 * Initialize.
 	 ********************
 	 */
 	private void initialize() {
+		state = new DensityState(0, 0, 0, new double[numInstances], null);
 		setAdaptiveDc(dcRatio);
-		densities = new double[numInstances];
-		Arrays.fill(densities, 0);
-
-		smallerBlocks = null;
 		computeDensityEfficiently();
-		SimpleTools.variableTrackingOutput("The densities are: " + densities[0] + "...\r\n");
+		SimpleTools.variableTrackingOutput("The densities are: " + state.densities[0] + "...\r\n");
 	}// Of initialize
 
 	/**
@@ -196,50 +213,91 @@ public abstract class DensityClustering extends Clustering {
 	 *            The ratio of the average distance.
 	 ************************* 
 	 */
-	public void setAdaptiveDc(int[] paraBlock, double paraRatio) {
+	public synchronized void setAdaptiveDc(BlockView paraBlock, double paraRatio) {
+		double[] tempStatistics = new double[2];
+		double tempDc = computeAdaptiveDc(paraBlock, paraRatio, tempStatistics);
 		dcRatio = paraRatio;
+		DensityState tempState = state;
+		state = new DensityState(tempDc, tempStatistics[0], tempStatistics[1], tempState.densities,
+				tempState.smallerBlocks);
+	}// Of setAdaptiveDc
+
+	/**
+	 ************************* 
+	 * Compute dc adaptively according to the block. No field is changed, so it
+	 * can be invoked for different blocks concurrently.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraRatio
+	 *            The ratio of the diameter or the average distance.
+	 * @return The dc.
+	 ************************* 
+	 */
+	public double computeAdaptiveDc(BlockView paraBlock, double paraRatio) {
+		return computeAdaptiveDc(paraBlock, paraRatio, new double[2]);
+	}// Of computeAdaptiveDc
+
+	/**
+	 ************************* 
+	 * Compute dc adaptively according to the block.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraRatio
+	 *            The ratio of the diameter or the average distance.
+	 * @param paraStatistics
+	 *            For returning the diameter and the average distance.
+	 * @return The dc.
+	 ************************* 
+	 */
+	double computeAdaptiveDc(BlockView paraBlock, double paraRatio, double[] paraStatistics) {
 		double tempTotal = 0;
 		int tempFirst, tempSecond;
-		int tempLength = paraBlock.length;
+		int tempLength = paraBlock.length();
 		int tempPairs = TIMES_FOR_FARTHEST_PAIR * tempLength;
-		diameter = -1;
+		double tempDiameter = -1;
 		double tempDistance;
 
 		for (int i = 0; i < tempPairs; i++) {
 			tempFirst = (int) (Common.random.nextDouble() * tempLength);
 			tempSecond = (int) (Common.random.nextDouble() * tempLength);
 
-			tempDistance = distanceMeasure.distance(paraBlock[tempFirst], paraBlock[tempSecond]);
+			tempDistance = distanceMeasure.distance(paraBlock.get(tempFirst), paraBlock.get(tempSecond));
 
 			tempTotal += tempDistance;
-			if (diameter < tempDistance) {
-				diameter = tempDistance;
+			if (tempDiameter < tempDistance) {
+				tempDiameter = tempDistance;
 			} // Of if
 
 			if (tempTotal > MAXIMAL_DISTANCE) {
-				System.out.println("Error occurred in DensityClustering.setAdaptiveDc()");
+				System.out.println("Error occurred in DensityClustering.computeAdaptiveDc()");
 				System.out.println("The distance between " + data.instance(tempFirst) + " and "
 						+ data.instance(tempSecond) + " is infinity" + "(" + tempTotal + ")");
 				System.exit(0);
 			} // Of if
 		} // Of for i
 
-		averageDistance = tempTotal / tempPairs;
+		double tempAverageDistance = tempTotal / tempPairs;
+		paraStatistics[0] = tempDiameter;
+		paraStatistics[1] = tempAverageDistance;
 
-		dc = -1;
+		double resultDc = -1;
 		if (dcScheme == DIAMETER_FOR_DC) {
-			dc = diameter * dcRatio;
+			resultDc = tempDiameter * paraRatio;
 		} else if (dcScheme == AVERAGE_FOR_DC) {
-			dc = averageDistance * dcRatio;
+			resultDc = tempAverageDistance * paraRatio;
 		} else {
-			System.out.println("Fatal error in Clustering.setAdaptiveDc(int[], int, double):"
+			System.out.println("Fatal error in DensityClustering.computeAdaptiveDc(int[], double, double[]):"
 					+ "\r\nUnsupported dcScheme: " + dcScheme);
 			System.exit(0);
 		} // Of if
 
 		SimpleTools.consoleOutput("tempTotal = " + tempTotal + ", tempPairs = " + tempPairs + ", paraRatio = "
-				+ paraRatio + ", dc = " + dc);
-	}// Of setAdaptiveDc
+				+ paraRatio + ", dc = " + resultDc);
+
+		return resultDc;
+	}// Of computeAdaptiveDc
 
 	/**
 	 ************************* 
@@ -249,10 +307,23 @@ public abstract class DensityClustering extends Clustering {
 	 *            The given dc.
 	 ************************* 
 	 */
-	public void setDc(double paraDc) {
-		dc = paraDc;
+	public synchronized void setDc(double paraDc) {
+		DensityState tempState = state;
+		state = new DensityState(paraDc, tempState.diameter, tempState.averageDistance, tempState.densities,
+				tempState.smallerBlocks);
 	}// Of setDc
 
+	/**
+	 ************************* 
+	 * Get dc.
+	 * 
+	 * @return The current dc.
+	 ************************* 
+	 */
+	public double getDc() {
+		return state.dc;
+	}// Of getDc
+
 	/**
 	 ********************
 	 * Get the density of the specified instance.
@@ -263,7 +334,7 @@ public abstract class DensityClustering extends Clustering {
 	 ********************
 	 */
 	public double getDensity(int paraIndex) {
-		return densities[paraIndex];
+		return state.densities[paraIndex];
 	}// Of getDensity
 
 	/**
@@ -273,25 +344,45 @@ public abstract class DensityClustering extends Clustering {
 	 */
 	public void testComputeDensity() {
 		computeDensityEfficiently();
-		SimpleTools.consoleOutput("dc = " + dc);
-		SimpleTools.consoleOutput("The density array is: " + Arrays.toString(densities));
+		SimpleTools.consoleOutput("dc = " + state.dc);
+		SimpleTools.consoleOutput("The density array is: " + Arrays.toString(state.densities));
 	}// Of testComputeDensity
 
 	/**
 	 ****************** 
-	 * Compute the densities of instances in the given block.
+	 * Compute the densities of instances in the given block. A new state is
+	 * published.
 	 * @param paraBlock The given block.
 	 ****************** 
 	 */
-	public void computeDensities(int[] paraBlock) {
+	public synchronized void computeDensities(BlockView paraBlock) {
+		DensityState tempState = state;
+		double[] tempDensities = tempState.densities.clone();
+		computeDensities(paraBlock, tempState.dc, tempDensities);
+		state = tempState.withDensities(tempDensities, tempState.smallerBlocks);
+	}// Of computeDensities
+
+	/**
+	 ****************** 
+	 * Compute the densities of instances in the given block.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraDc
+	 *            The dc.
+	 * @param paraDensities
+	 *            The densities to update.
+	 ****************** 
+	 */
+	void computeDensities(BlockView paraBlock, double paraDc, double[] paraDensities) {
 		switch (kernel) {
 		case CUTOFF_KERNEL:
 			SimpleTools.processTrackingOutput("CUTOFF_KERNEL ");
-			computeDensitiesCutoff(paraBlock);
+			computeDensitiesCutoff(paraBlock, paraDc, paraDensities);
 			break;
 		case GAUSSIAN_KERNEL:
 			SimpleTools.processTrackingOutput("GAUSSIAN_KERNEL ");
-			computeDensitiesGaussian(paraBlock);
+			computeDensitiesGaussian(paraBlock, paraDc, paraDensities);
 			break;
 		default:
 			System.out.println("Unsupported kernel: " + kernel);
@@ -315,96 +406,384 @@ public abstract class DensityClustering extends Clustering {
 	 * @param paraBlock
 	 *            The given block for density computation. The density of each
 	 *            instance in the block is computed, and only other instances in
-	 *            the same block is considered.
+	 *            the same block is considered. A new state is published.
 	 ****************** 
 	 */
-	public void computeDensitiesCutoff(int[] paraBlock) {
+	public synchronized void computeDensitiesCutoff(BlockView paraBlock) {
+		DensityState tempState = state;
+		double[] tempDensities = tempState.densities.clone();
+		computeDensitiesCutoff(paraBlock, tempState.dc, tempDensities);
+		state = tempState.withDensities(tempDensities, tempState.smallerBlocks);
+	}// Of computeDensitiesCutoff
+
+	/**
+	 ****************** 
+	 * Compute the densities using cutoff.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraDc
+	 *            The dc.
+	 * @param paraDensities
+	 *            The densities to update.
+	 ****************** 
+	 */
+	void computeDensitiesCutoff(BlockView paraBlock, double paraDc, double[] paraDensities) {
 		// SimpleTools.processTrackingOutput(
-		// "Compute densities using cutoff for a block with " + paraBlock.length
+		// "Compute densities using cutoff for a block with " + paraBlock.length()
 		// + " instances.\r\n");
 
-		double tempDistance;
+		// Count neighbors with a k-d tree for low-dimensional data.
+		if (KdTree.isApplicable(distanceMeasure, paraBlock.length())) {
+			KdTree tempTree = new KdTree(distanceMeasure, paraBlock);
+			for (int i = 0; i < paraBlock.length(); i++) {
+				paraDensities[paraBlock.get(i)] += tempTree.rangeCount(i, paraDc);
+			} // Of for i
+
+			SimpleTools.variableTrackingOutput("The densities are " + Arrays.toString(paraDensities));
+			return;
+		} // Of if
+
 		// Compute the densities.
-		for (int i = 0; i < paraBlock.length; i++) {
-			for (int j = 0; j < paraBlock.length; j++) {
-				tempDistance = distanceMeasure.distance(paraBlock[i], paraBlock[j]);
-				if (tempDistance <= dc) {
-					densities[paraBlock[i]]++;
-				} // Of if
-			} // Of for j
+		double[] tempSums = computeKernelSums(paraBlock, CUTOFF_KERNEL, paraDc);
+		for (int i = 0; i < paraBlock.length(); i++) {
+			paraDensities[paraBlock.get(i)] += tempSums[i];
 		} // Of for i
 
-		SimpleTools.variableTrackingOutput("The densities are " + Arrays.toString(densities));
+		SimpleTools.variableTrackingOutput("The densities are " + Arrays.toString(paraDensities));
 	}// Of computeDensitiesCutoff
 
 	/**
 	 ****************** 
-	 * Compute the densities using Gaussian kernel.
+	 * Compute the densities using Gaussian kernel. A new state is published.
 	 * @param paraBlock The given block.
 	 ****************** 
 	 */
-	public void computeDensitiesGaussian(int[] paraBlock) {
+	public synchronized void computeDensitiesGaussian(BlockView paraBlock) {
+		DensityState tempState = state;
+		double[] tempDensities = tempState.densities.clone();
+		computeDensitiesGaussian(paraBlock, tempState.dc, tempDensities);
+		state = tempState.withDensities(tempDensities, tempState.smallerBlocks);
+	}// Of computeDensitiesGaussian
+
+	/**
+	 ****************** 
+	 * Compute the densities using Gaussian kernel.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraDc
+	 *            The dc.
+	 * @param paraDensities
+	 *            The densities to update.
+	 ****************** 
+	 */
+	void computeDensitiesGaussian(BlockView paraBlock, double paraDc, double[] paraDensities) {
 		// SimpleTools
 		// .processTrackingOutput("computeDensitiesGaussian for a block with " +
-		// paraBlock.length + " instances.\r\n");
-
-		double tempDistance;
+		// paraBlock.length() + " instances.\r\n");
 
 		// Compute the densities.
-		for (int i = 0; i < paraBlock.length; i++) {
-			densities[paraBlock[i]] = 0;
-			for (int j = 0; j < paraBlock.length; j++) {
-				tempDistance = distanceMeasure.distance(paraBlock[i], paraBlock[j]);
-				densities[paraBlock[i]] += Math.exp(-tempDistance * tempDistance / dc / dc);
-			} // Of for j
+		double[] tempSums = computeKernelSums(paraBlock, GAUSSIAN_KERNEL, paraDc);
+		for (int i = 0; i < paraBlock.length(); i++) {
+			paraDensities[paraBlock.get(i)] = tempSums[i];
 		} // Of for i
 
-		SimpleTools.variableTrackingOutput("The densities are " + Arrays.toString(densities) + "\r\n");
+		SimpleTools.variableTrackingOutput("The densities are " + Arrays.toString(paraDensities) + "\r\n");
 	}// Of computeDensitiesGaussian
 
 	/**
 	 ****************** 
-	 * Compute the densities.
+	 * Sum the kernel over all pairs of the block, including each instance with
+	 * itself. Each unordered pair is computed once and added to both ends. The
+	 * pair space is cut into square tiles of DENSITY_TILE_SIZE, and rows of
+	 * tiles are dealt to NUM_DENSITY_ACCUMULATORS accumulators in turn, which
+	 * run in the fork-join pool and are summed in order.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraKernel
+	 *            CUTOFF_KERNEL or GAUSSIAN_KERNEL.
+	 * @param paraDc
+	 *            The dc.
+	 * @return The sum of each instance of the block.
+	 ****************** 
+	 */
+	double[] computeKernelSums(BlockView paraBlock, int paraKernel, double paraDc) {
+		// Step 1. Copy features of the block for locality.
+		KernelContext tempContext = new KernelContext(paraBlock, paraKernel, paraDc);
+		int tempMeasure = distanceMeasure.getMeasure();
+		double[] tempFeatures = distanceMeasure.getFeatures();
+		if ((tempFeatures != null)
+				&& ((tempMeasure == DistanceMeasure.EUCLIDEAN) || (tempMeasure == DistanceMeasure.MANHATTAN))) {
+			tempContext.features = new double[paraBlock.length() * numConditions];
+			for (int i = 0; i < paraBlock.length(); i++) {
+				System.arraycopy(tempFeatures, paraBlock.get(i) * numConditions, tempContext.features,
+						i * numConditions, numConditions);
+			} // Of for i
+		} // Of if
+
+		// Step 2. Accumulate.
+		int tempNumTiles = (paraBlock.length() + DENSITY_TILE_SIZE - 1) / DENSITY_TILE_SIZE;
+		int tempNumAccumulators = Math.max(1, Math.min(NUM_DENSITY_ACCUMULATORS, tempNumTiles));
+		final KernelTask[] tempTasks = new KernelTask[tempNumAccumulators];
+		for (int i = 0; i < tempNumAccumulators; i++) {
+			tempTasks[i] = new KernelTask(tempContext, i, tempNumAccumulators);
+		} // Of for i
+		if (tempNumAccumulators == 1) {
+			tempTasks[0].compute();
+		} else {
+			Common.forkJoinPool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				protected void compute() {
+					invokeAll(tempTasks);
+				}// Of compute
+			});
+		} // Of if
+
+		// Step 3. Sum accumulators in order.
+		double[] resultSums = tempTasks[0].sums;
+		for (int i = 1; i < tempNumAccumulators; i++) {
+			for (int j = 0; j < resultSums.length; j++) {
+				resultSums[j] += tempTasks[i].sums[j];
+			} // Of for j
+		} // Of for i
+
+		Common.runtimes += (long) paraBlock.length() * (paraBlock.length() - 1) / 2 * numConditions;
+
+		return resultSums;
+	}// Of computeKernelSums
+
+	/**
+	 * The shared state of one invocation of computeKernelSums().
+	 */
+	class KernelContext {
+		/**
+		 * The given block.
+		 */
+		final BlockView block;
+
+		/**
+		 * The kernel.
+		 */
+		final int kernel;
+
+		/**
+		 * The dc.
+		 */
+		final double dc;
+
+		/**
+		 * Features of the block, packed row-major. Null if distances are
+		 * computed by the distance measure.
+		 */
+		double[] features;
+
+		/**
+		 ****************** 
+		 * The constructor.
+		 * 
+		 * @param paraBlock
+		 *            The given block.
+		 * @param paraKernel
+		 *            The kernel.
+		 * @param paraDc
+		 *            The dc.
+		 ****************** 
+		 */
+		KernelContext(BlockView paraBlock, int paraKernel, double paraDc) {
+			block = paraBlock;
+			kernel = paraKernel;
+			dc = paraDc;
+		}// Of the constructor
+
+		/**
+		 ****************** 
+		 * The distance between two positions of the block, the same as the
+		 * distance measure.
+		 * 
+		 * @param paraFirst
+		 *            The first position.
+		 * @param paraSecond
+		 *            The second position.
+		 * @return The distance.
+		 ****************** 
+		 */
+		double distance(int paraFirst, int paraSecond) {
+			if (features == null) {
+				return distanceMeasure.distance(block.get(paraFirst), block.get(paraSecond));
+			} // Of if
+
+			int tempFirstOffset = paraFirst * numConditions;
+			int tempSecondOffset = paraSecond * numConditions;
+			double tempDifference;
+			double resultDistance = 0;
+			if (distanceMeasure.getMeasure() == DistanceMeasure.EUCLIDEAN) {
+				for (int i = 0; i < numConditions; i++) {
+					tempDifference = features[tempFirstOffset + i] - features[tempSecondOffset + i];
+					resultDistance += tempDifference * tempDifference;
+				} // Of for i
+				return Math.sqrt(resultDistance);
+			} // Of if
+
+			for (int i = 0; i < numConditions; i++) {
+				resultDistance += Math.abs(features[tempFirstOffset + i] - features[tempSecondOffset + i]);
+			} // Of for i
+			return resultDistance;
+		}// Of distance
+	}// Of class KernelContext
+
+	/**
+	 * Accumulate kernel values of some rows of tiles.
+	 */
+	class KernelTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The shared state.
+		 */
+		KernelContext context;
+
+		/**
+		 * The first row of tiles.
+		 */
+		int firstTile;
+
+		/**
+		 * Rows of tiles firstTile, firstTile + tileStep, ... are handled.
+		 */
+		int tileStep;
+
+		/**
+		 * The accumulator.
+		 */
+		double[] sums;
+
+		/**
+		 ****************** 
+		 * The constructor.
+		 * 
+		 * @param paraContext
+		 *            The shared state.
+		 * @param paraFirstTile
+		 *            The first row of tiles.
+		 * @param paraTileStep
+		 *            The step of rows of tiles.
+		 ****************** 
+		 */
+		KernelTask(KernelContext paraContext, int paraFirstTile, int paraTileStep) {
+			context = paraContext;
+			firstTile = paraFirstTile;
+			tileStep = paraTileStep;
+			sums = new double[paraContext.block.length()];
+		}// Of the constructor
+
+		/**
+		 ****************** 
+		 * Handle tiles (I, J) with J >= I for the rows I of this task.
+		 ****************** 
+		 */
+		protected void compute() {
+			int tempLength = context.block.length();
+			boolean tempGaussian = context.kernel == GAUSSIAN_KERNEL;
+			double tempDc = context.dc;
+			double tempFactor = 1 / tempDc / tempDc;
+			double tempDistance, tempValue;
+			int tempRowEnd, tempColumnEnd;
+			for (int tempRowStart = firstTile * DENSITY_TILE_SIZE; tempRowStart < tempLength; tempRowStart += tileStep
+					* DENSITY_TILE_SIZE) {
+				tempRowEnd = Math.min(tempRowStart + DENSITY_TILE_SIZE, tempLength);
+				for (int tempColumnStart = tempRowStart; tempColumnStart < tempLength; tempColumnStart += DENSITY_TILE_SIZE) {
+					tempColumnEnd = Math.min(tempColumnStart + DENSITY_TILE_SIZE, tempLength);
+					for (int i = tempRowStart; i < tempRowEnd; i++) {
+						// The diagonal tile only has the upper triangle.
+						for (int j = Math.max(tempColumnStart, i + 1); j < tempColumnEnd; j++) {
+							tempDistance = context.distance(i, j);
+							if (tempGaussian) {
+								tempValue = Math.exp(-tempDistance * tempDistance * tempFactor);
+							} else if (tempDistance <= tempDc) {
+								tempValue = 1;
+							} else {
+								continue;
+							} // Of if
+							sums[i] += tempValue;
+							sums[j] += tempValue;
+						} // Of for j
+					} // Of for i
+				} // Of for tempColumnStart
+
+				// Each instance with itself.
+				for (int i = tempRowStart; i < tempRowEnd; i++) {
+					if (tempGaussian || (tempDc >= 0)) {
+						sums[i] += 1;
+					} // Of if
+				} // Of for i
+			} // Of for tempRowStart
+		}// Of compute
+	}// Of class KernelTask
+
+	/**
+	 ****************** 
+	 * Compute smaller blocks using kMeans. They are null if kMeans fails. A new
+	 * state is published.
 	 * 
 	 * @param paraK
 	 *            The number of blocks.
 	 ****************** 
 	 */
-	public void computeSmallerBlocks(int paraK) {
-		KMeans tempKMeans = new KMeans(data, distanceMeasure);
-		// Try at most 5 times.
-		boolean tempSuccess = false;
-		for (int i = 0; i < 5; i++) {
-			try {
-				smallerBlocks = tempKMeans.clusterInK(paraK);
-				tempSuccess = true;
-			} catch (UnableToClusterInKException ee) {
-				System.out.println("Error occurred in DensityClustering.computeDensityEfficiently().\r\n" + ee);
-			} // Of try
-
-			if (tempSuccess) {
-				break;
+	public synchronized void computeSmallerBlocks(int paraK) {
+		DensityState tempState = state;
+		state = tempState.withDensities(tempState.densities, clusterSmallerBlocks(paraK));
+	}// Of computeSmallerBlocks
+
+	/**
+	 ****************** 
+	 * Cluster the whole data into smaller blocks using kMeans.
+	 * 
+	 * @param paraK
+	 *            The number of blocks.
+	 * @return The blocks, null if kMeans fails.
+	 ****************** 
+	 */
+	BlockView[] clusterSmallerBlocks(int paraK) {
+		try {
+			if (numInstances > MiniBatchKMeans.FULL_BATCH_THRESHOLD) {
+				// Restarts of full sweeps are too slow.
+				MiniBatchKMeans tempKMeans = new MiniBatchKMeans(data, distanceMeasure);
+				return tempKMeans.clusterInK(paraK).split();
 			} // Of if
-		} // Of for
 
-		if (!tempSuccess) {
-			System.out.println("Failed after trying 5 times.");
-			System.exit(0);
-		} // Of if
-	}// Of computeSmallerBlocks
+			KMeans tempKMeans = new KMeans(data, distanceMeasure);
+			// k may be up to 100 for the whole data.
+			tempKMeans.setAccelerated(true);
+			return tempKMeans.clusterInKWithRestarts(new BlockView(numInstances), paraK, NUM_KMEANS_RESTARTS)
+					.split();
+		} catch (UnableToClusterInKException ee) {
+			// Empty clusters are repaired, so it only happens for tiny data.
+			System.out.println("Error occurred in DensityClustering.computeSmallerBlocks().\r\n" + ee);
+			return null;
+		} // Of try
+	}// Of clusterSmallerBlocks
 
 	/**
 	 ************************* 
 	 * Compute the density of each instance efficiently. It is implemented by
-	 * first clustering using kMeans, where k = sqrt{n}
+	 * first clustering using kMeans, where k = sqrt{n}. A new state is
+	 * published.
 	 ************************* 
 	 */
-	public void computeDensityEfficiently() {
-		Arrays.fill(densities, 0);
+	public synchronized void computeDensityEfficiently() {
+		DensityState tempState = state;
+		double[] tempDensities = new double[numInstances];
 		// Unnecessary to speed up.
 		if (numInstances <= SPEED_UP_THRESHOLD) {
 			SimpleTools.processTrackingOutput("" + numInstances + " instances, small data, no need to speed up.\r\n");
-			computeDensities(wholeBlock);
+			computeDensities(wholeBlock, tempState.dc, tempDensities);
+			state = tempState.withDensities(tempDensities, null);
 			return;
 		} // Of if
 
@@ -420,14 +799,94 @@ public abstract class DensityClustering extends Clustering {
 
 		// int tempK = (int)Math.sqrt(numInstances);
 
-		computeSmallerBlocks(tempK);
-		for (int i = 0; i < tempK; i++) {
-			computeDensities(smallerBlocks[i]);
-			SimpleTools.processTrackingOutput("" + i + ": " + smallerBlocks[i].length + " instances.\r\n");
+		BlockView[] tempSmallerBlocks = clusterSmallerBlocks(tempK);
+		if (tempSmallerBlocks == null) {
+			computeDensities(wholeBlock, tempState.dc, tempDensities);
+			state = tempState.withDensities(tempDensities, null);
+			return;
+		} // Of if
+
+		for (int i = 0; i < tempSmallerBlocks.length; i++) {
+			computeDensities(tempSmallerBlocks[i], tempState.dc, tempDensities);
+			SimpleTools.processTrackingOutput("" + i + ": " + tempSmallerBlocks[i].length() + " instances.\r\n");
 		} // Of for i
+		state = tempState.withDensities(tempDensities, tempSmallerBlocks);
 
 		SimpleTools.processTrackingOutput("DensityClustering.computeDensityEfficiently() finished.\r\n");
 		SimpleTools.processTrackingOutput(
-				"densities = [" + densities[0] + ", ..., " + densities[numInstances - 1] + "]\r\n");
+				"densities = [" + tempDensities[0] + ", ..., " + tempDensities[numInstances - 1] + "]\r\n");
 	}// Of computeDensityEfficiently
+
+	/**
+	 * The dc, the densities and the smaller blocks. A state is never changed
+	 * after being published.
+	 */
+	static class DensityState {
+		/**
+		 * The distance threshold for density computation. For the density
+		 * peak and DBScan algorithms.
+		 */
+		final double dc;
+
+		/**
+		 * The diameter of the block for dc.
+		 */
+		final double diameter;
+
+		/**
+		 * The average distance of the block for dc.
+		 */
+		final double averageDistance;
+
+		/**
+		 * The density of each instance. For the density peak algorithm.
+		 */
+		final double[] densities;
+
+		/**
+		 * Smaller blocks for speed up. It is produced by the kMeans algorithm
+		 * now.
+		 */
+		final BlockView[] smallerBlocks;
+
+		/**
+		 ****************** 
+		 * The constructor.
+		 * 
+		 * @param paraDc
+		 *            The dc.
+		 * @param paraDiameter
+		 *            The diameter.
+		 * @param paraAverageDistance
+		 *            The average distance.
+		 * @param paraDensities
+		 *            The densities.
+		 * @param paraSmallerBlocks
+		 *            The smaller blocks.
+		 ****************** 
+		 */
+		DensityState(double paraDc, double paraDiameter, double paraAverageDistance, double[] paraDensities,
+				BlockView[] paraSmallerBlocks) {
+			dc = paraDc;
+			diameter = paraDiameter;
+			averageDistance = paraAverageDistance;
+			densities = paraDensities;
+			smallerBlocks = paraSmallerBlocks;
+		}// Of the constructor
+
+		/**
+		 ****************** 
+		 * A state with the same dc and new densities.
+		 * 
+		 * @param paraDensities
+		 *            The densities.
+		 * @param paraSmallerBlocks
+		 *            The smaller blocks.
+		 * @return The new state.
+		 ****************** 
+		 */
+		DensityState withDensities(double[] paraDensities, BlockView[] paraSmallerBlocks) {
+			return new DensityState(dc, diameter, averageDistance, paraDensities, paraSmallerBlocks);
+		}// Of withDensities
+	}// Of class DensityState
 }// Of DensityClustering
@@ -18,7 +18,7 @@ import weka.core.Instances;
  * <p>
  * Progress: The simple version finished. Kernels may be added in the future<br>
  * Written time: April 10, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class DensityPeaks extends DensityClustering {
@@ -33,14 +33,23 @@ public class DensityPeaks extends DensityClustering {
 	double maxDistance;
 
 	/**
-	 * The master of each instance.
+	 * Resolve all masters of a block with the k-d tree if more than
+	 * 1/MAX_AFFECTED_DIVISOR of them are not given by global masters.
 	 */
-	private int[] masters;
+	public static final int MAX_AFFECTED_DIVISOR = 8;
 
 	/**
-	 * The distance to master.
+	 * The exact master tree of the whole data set, shared by blocks. Null
+	 * before the first use.
 	 */
-	double[] distancesToMaster;
+	private GlobalMasters globalMasters;
+
+	/**
+	 * The position within the block of each instance for the current thread,
+	 * -1 if not in the block. Entries are reset after use, so that each block
+	 * costs its own size rather than the size of the data set.
+	 */
+	static final ThreadLocal<int[]> POSITIONS = new ThreadLocal<int[]>();
 
 	/**
 	 ********************
@@ -86,6 +95,24 @@ public class DensityPeaks extends DensityClustering {
 		initialize();
 	}// Of the constructor
 
+	/**
+	 ********************
+	 * The copy constructor. Densities and global masters are shared rather
+	 * than computed again.
+	 * 
+	 * @param paraDensityPeaks
+	 *            The given object.
+	 ********************
+	 */
+	public DensityPeaks(DensityPeaks paraDensityPeaks) {
+		super(paraDensityPeaks);
+
+		maxDistance = paraDensityPeaks.maxDistance;
+		synchronized (paraDensityPeaks) {
+			globalMasters = paraDensityPeaks.globalMasters;
+		} // Of synchronized
+	}// Of the copy constructor
+
 	/**
 	 ********************
 	 * Initialize.
@@ -94,11 +121,7 @@ public class DensityPeaks extends DensityClustering {
 	private void initialize() {
 		maxDistance = MAX_DISTANCE_ROOT;
 		balanceTwoBlocks = true;
-
-		SimpleTools.processTrackingOutput("Computing masters ... ");
-		computeMastersEfficiently();
-		SimpleTools.processTrackingOutput("done.\r\n");
-		SimpleTools.variableTrackingOutput("The masters are: " + Arrays.toString(masters));
+		// Masters are computed for each block on demand.
 		// computePriority();
 	}// Of initialize
 
@@ -112,11 +135,13 @@ public class DensityPeaks extends DensityClustering {
 	 * @return Two blocks
 	 ************************* 
 	 */
-	public int[][] clusterInK(int[] paraBlock, int paraK) {
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK) {
 		// The density of each instance is computed and stored already.
+		DensityState tempState = state;
 
 		// Step 1. Compute the master tree.
-		int tempRoot = computeMasters(paraBlock);
+		MasterTree tempTree = computeMasters(paraBlock, tempState);
+		int tempRoot = tempTree.root;
 
 		// Step 3. Compute new (paraK - 1) roots for clustering
 		// The indices 1 to paraK - 1 are useful
@@ -127,14 +152,14 @@ public class DensityPeaks extends DensityClustering {
 		tempMultiplixes[0] = Double.MAX_VALUE;
 
 		double tempMultiplex;
-		for (int i = 0; i < paraBlock.length; i++) {
+		for (int i = 0; i < paraBlock.length(); i++) {
 			// Do not compare with the root.
-			if (masters[i] == -1) {
+			if (tempTree.masters[i] == -1) {
 				continue;
 			} // Of if
 
 			// Attention: Outliers have density 1.
-			tempMultiplex = (densities[paraBlock[i]] - 0.99) * distancesToMaster[i];
+			tempMultiplex = (tempState.densities[paraBlock.get(i)] - 0.99) * tempTree.distancesToMaster[i];
 			for (int j = paraK - 1;; j--) {
 				if (tempMultiplixes[j] < tempMultiplex) {
 					// Move forward the tail
@@ -153,7 +178,7 @@ public class DensityPeaks extends DensityClustering {
 		// Arrays.toString(tempNewRoots));
 
 		// Step 4. Now cluster in k.
-		int[] tempClusterIndices = new int[paraBlock.length];
+		int[] tempClusterIndices = new int[paraBlock.length()];
 		Arrays.fill(tempClusterIndices, -1);
 		// The roots
 		for (int i = 0; i < paraK; i++) {
@@ -165,33 +190,11 @@ public class DensityPeaks extends DensityClustering {
 				continue;
 			} // Of if
 
-			tempClusterIndices[i] = coincideWithMaster(masters[i], masters, tempClusterIndices);
+			tempClusterIndices[i] = coincideWithMaster(tempTree.masters[i], tempTree.masters, tempClusterIndices);
 		} // Of for i
 
 		// Step 5. Obtain the blocks.
-		int[] tempBlockSizes = new int[paraK];
-		// int tempFirstBlockSize = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			tempBlockSizes[tempClusterIndices[i]]++;
-		} // Of for i
-		clusters = new int[paraK][];
-		for (int i = 0; i < clusters.length; i++) {
-			clusters[i] = new int[tempBlockSizes[i]];
-		} // Of for i
-
-		int[] tempBlockIndices = new int[paraK];
-		int tempBlockIndex;
-		for (int i = 0; i < paraBlock.length; i++) {
-			// System.out.println("i = " + i
-			// + ", tempClusterIndices[i] = " + tempClusterIndices[i]
-			// + ", tempBlockIndices[tempClusterIndices[i]] = " +
-			// tempBlockIndices[tempClusterIndices[i]]);
-			tempBlockIndex = tempClusterIndices[i];
-			clusters[tempClusterIndices[i]][tempBlockIndices[tempBlockIndex]] = paraBlock[i];
-			tempBlockIndices[tempClusterIndices[i]]++;
-		} // Of for i
-
-		return clusters;
+		return new ClusteringResult(paraBlock, tempClusterIndices, paraK);
 	}// Of clusterInK
 
 	/**
@@ -203,19 +206,19 @@ public class DensityPeaks extends DensityClustering {
 	 *            The given block.
 	 * @param paraQueriedArray
 	 *            The queried instance within the block. The indices should be a
-	 *            subset of [0 .. paraBlock.length - 1].
+	 *            subset of [0 .. paraBlock.length() - 1].
 	 * @return Two blocks
 	 ************************* 
 	 */
-	public int[][] clusterInTwo(int[] paraBlock, int[] paraQueriedArray) throws UnableToClusterInKException {
+	public ClusteringResult clusterInTwo(BlockView paraBlock, int[] paraQueriedArray) throws UnableToClusterInKException {
 		SimpleTools.processTrackingOutput(
 				"DensityPeaks.clusterInTwo(int[], int[]), " + paraQueriedArray.length + " queried\r\n");
 		// Step 1. Check whether or not there are different labels.
 		boolean tempHasDifferentLabels = false;
-		int tempFirstLabel = (int) data.instance(paraBlock[paraQueriedArray[0]]).classValue();
+		int tempFirstLabel = (int) data.instance(paraBlock.get(paraQueriedArray[0])).classValue();
 		int tempCurrentLabel;
 		for (int i = 1; i < paraQueriedArray.length; i++) {
-			tempCurrentLabel = (int) data.instance(paraBlock[paraQueriedArray[i]]).classValue();
+			tempCurrentLabel = (int) data.instance(paraBlock.get(paraQueriedArray[i])).classValue();
 			if (tempCurrentLabel != tempFirstLabel) {
 				tempHasDifferentLabels = true;
 				break;
@@ -228,8 +231,10 @@ public class DensityPeaks extends DensityClustering {
 		} // Of if
 
 		// The density of each instance is computed and stored already.
+		DensityState tempState = state;
 		// Step 2. Compute the master tree.
-		int tempRoot = computeMasters(paraBlock);
+		MasterTree tempTree = computeMasters(paraBlock, tempState);
+		int tempRoot = tempTree.root;
 		
 		// Step 3. The root and respective label.
 		int[] tempNewRoots = new int[2];
@@ -241,7 +246,7 @@ public class DensityPeaks extends DensityClustering {
 		for (int i = 0; i < paraQueriedArray.length; i++) {
 			if (tempRoot == paraQueriedArray[i]) {
 				tempRootQueried = true;
-				tempRootLabel = (int) data.instance(paraBlock[tempRoot]).classValue();
+				tempRootLabel = (int) data.instance(paraBlock.get(tempRoot)).classValue();
 				break;
 			} // Of if
 		} // Of for i
@@ -252,13 +257,13 @@ public class DensityPeaks extends DensityClustering {
 			double tempMinimalDistance = Double.MAX_VALUE;
 			double tempDistance;
 			for (int i = 0; i < paraQueriedArray.length; i++) {
-				tempDistance = distanceMeasure.distance(paraBlock[tempRoot], paraBlock[paraQueriedArray[i]]);
+				tempDistance = distanceMeasure.distance(paraBlock.get(tempRoot), paraBlock.get(paraQueriedArray[i]));
 				if (tempMinimalDistance > tempDistance) {
 					tempMinimalDistance = tempDistance;
 					tempNearestToRootLabeled = paraQueriedArray[i];
 				} // Of if
 			} // Of for i
-			tempRootLabel = (int) data.instance(paraBlock[tempNearestToRootLabeled]).classValue();
+			tempRootLabel = (int) data.instance(paraBlock.get(tempNearestToRootLabeled)).classValue();
 		} // Of if
 
 		// Step 4. Compute candidate new roots with different label and highest representative.
@@ -270,11 +275,12 @@ public class DensityPeaks extends DensityClustering {
 		
 		double tempMultiplex;
 		for (int i = 0; i < paraQueriedArray.length; i++) {
-			if ((int) data.instance(paraBlock[paraQueriedArray[i]]).classValue() == tempRootLabel) {
+			if ((int) data.instance(paraBlock.get(paraQueriedArray[i])).classValue() == tempRootLabel) {
 				continue;
 			} // Of if
 
-			tempMultiplex = (densities[paraBlock[paraQueriedArray[i]]] - 0.99) * distancesToMaster[paraQueriedArray[i]];
+			tempMultiplex = (tempState.densities[paraBlock.get(paraQueriedArray[i])] - 0.99)
+					* tempTree.distancesToMaster[paraQueriedArray[i]];
 			for (int j = tempNumCandidates; ; j--) {
 				if (tempRepresentativeArray[j] < tempMultiplex) {
 					tempRepresentativeArray[j + 1] = tempRepresentativeArray[j];
@@ -288,6 +294,7 @@ public class DensityPeaks extends DensityClustering {
 		} // Of for i
 		
 		//Step 5. Try at most tempNumCandidates times to obtain balanced blocks.
+		ClusteringResult resultClusters = null;
 		double tempBestBalanceFactor = -1;
 		for (int i = 0; i < tempNumCandidates; i ++) {
 			//Step 5.1 Set the second root.
@@ -297,7 +304,7 @@ public class DensityPeaks extends DensityClustering {
 			}//Of if
 			
 			// Step 5.2 Now cluster in 2.
-			int[] tempClusterIndices = new int[paraBlock.length];
+			int[] tempClusterIndices = new int[paraBlock.length()];
 			Arrays.fill(tempClusterIndices, -1);
 
 			// The roots
@@ -310,20 +317,20 @@ public class DensityPeaks extends DensityClustering {
 					continue;
 				} // Of if
 
-				tempClusterIndices[j] = coincideWithMaster(masters[j], masters, tempClusterIndices);
+				tempClusterIndices[j] = coincideWithMaster(tempTree.masters[j], tempTree.masters, tempClusterIndices);
 			} // Of for i
 
-			int tempSecondLabel = (int) data.instance(paraBlock[tempNewRoots[1]]).classValue();
+			int tempSecondLabel = (int) data.instance(paraBlock.get(tempNewRoots[1])).classValue();
 			if (tempSecondLabel == tempRootLabel) {
 				System.out.println("The roots have the same label.");
 				System.exit(0);
 			} // Of if
 
-			int[][] tempClusters = null;
+			ClusteringResult tempClusters = null;
 			
 			// Step 5.2 Obtain the blocks.
 			try {
-				tempClusters = blockInformationToBlocks(paraBlock, tempClusterIndices, 2);
+				tempClusters = blockInformationToResult(paraBlock, tempClusterIndices, 2);
 			} catch (LessBlocksThanRequiredException ee) {
 				System.out.println("Internal error occurred in DensityPeaks.clusterInTwo().\r\n" + ee);
 				System.exit(0);
@@ -331,7 +338,7 @@ public class DensityPeaks extends DensityClustering {
 			
 			if (!balanceTwoBlocks) {
 				//Balancing not required.
-				clusters = tempClusters;
+				resultClusters = tempClusters;
 				break;
 			}//Of if
 			
@@ -341,7 +348,7 @@ public class DensityPeaks extends DensityClustering {
 					+ " with factor " + tempBalanceFactor + " ...\r\n");
 			if (tempBestBalanceFactor < tempBalanceFactor) {
 				tempBestBalanceFactor = tempBalanceFactor;
-				clusters = tempClusters;
+				resultClusters = tempClusters;
 			}//Of if
 
 			if (tempBalanceFactor > FINE_BALANCE_THRESHOLD) {
@@ -349,9 +356,20 @@ public class DensityPeaks extends DensityClustering {
 			}//Of if
 		}//Of for iteration
 
-		return clusters;
+		return resultClusters;
 	}// Of clusterInTwo
 
+	/**
+	 ************************* 
+	 * The split depends on the queried instances.
+	 * 
+	 * @return True.
+	 ************************* 
+	 */
+	public boolean isLabelDependent() {
+		return true;
+	}// Of isLabelDependent
+
 	/**
 	 ************************* 
 	 * The block of a node should be same as its master
@@ -394,34 +412,35 @@ public class DensityPeaks extends DensityClustering {
 	 * @return The array of critical instances.
 	 ****************** 
 	 */
-	public int[] computeCriticalInstances(int[] paraBlock, int paraK) {
+	public int[] computeCriticalInstances(BlockView paraBlock, int paraK) {
 		//No more than the size of the block.
-		if (paraK > paraBlock.length) {
-			paraK = paraBlock.length;
+		if (paraK > paraBlock.length()) {
+			paraK = paraBlock.length();
 		}//Of if
 		
 		// Initialize, recompute the master tree.
 		// The aim is to recompute distancesToMaster[].
-		computeMasters(paraBlock);
+		DensityState tempState = state;
+		MasterTree tempTree = computeMasters(paraBlock, tempState);
 
-		SimpleTools.variableTrackingOutput("The given block is " + Arrays.toString(paraBlock));
+		SimpleTools.variableTrackingOutput("The given block is " + paraBlock);
 		int[] tempIndices = new int[paraK + 2];
 		Arrays.fill(tempIndices, -1);
-		int tempNumInstances = paraBlock.length;
+		int tempNumInstances = paraBlock.length();
 		double[] tempTopPriorities = new double[paraK + 2];
 		Arrays.fill(tempTopPriorities, -1);
 		tempTopPriorities[0] = Double.MAX_VALUE;
 
 		double tempPriority;
 		for (int i = 0; i < tempNumInstances; i++) {
-			tempPriority = densities[paraBlock[i]] * distancesToMaster[i];
+			tempPriority = tempState.densities[paraBlock.get(i)] * tempTree.distancesToMaster[i];
 			for (int j = paraK;; j--) {
 				if (tempPriority > tempTopPriorities[j]) {
 					tempTopPriorities[j + 1] = tempTopPriorities[j];
 					tempIndices[j + 1] = tempIndices[j];
 				} else {
 					tempTopPriorities[j + 1] = tempPriority;
-					tempIndices[j + 1] = paraBlock[i];
+					tempIndices[j + 1] = paraBlock.get(i);
 					break;
 				} // Of if
 			} // Of for j
@@ -439,70 +458,81 @@ public class DensityPeaks extends DensityClustering {
 
 	/**
 	 ****************** 
-	 * Compute the masters efficiently.
+	 * Compute the masters of the whole data set efficiently. The master of
+	 * each instance is searched in its smaller block, and only the densest
+	 * ones of each smaller block search the whole data set, with one nearest
+	 * neighbor query each. The result is approximate, and computeMasters() is
+	 * used for exact ones.
+	 * 
+	 * @return The master tree, indicated by indices in the data set.
 	 ****************** 
 	 */
-	public void computeMastersEfficiently() {
+	public MasterTree computeMastersEfficiently() {
+		DensityState tempState = state;
+		BlockView[] smallerBlocks = tempState.smallerBlocks;
+		double[] densities = tempState.densities;
+
 		// Step 1. Check whether smaller blocks exist.
 		if (smallerBlocks == null) {
 			SimpleTools
 					.processTrackingOutput("Smaller blocks not generated, compute masters slowly in DensityPeaks.\r\n");
-			computeMasters(wholeBlock);
-			return;
+			return computeMasters(wholeBlock, tempState);
 		} // Of if
 
 		// Step 2. Initialize.
-		masters = new int[numInstances];
-		Arrays.fill(masters, -1);
-		distancesToMaster = new double[numInstances];
-		Arrays.fill(distancesToMaster, diameter);
+		int[] tempMasters = new int[numInstances];
+		Arrays.fill(tempMasters, -1);
+		double[] tempDistancesToMaster = new double[numInstances];
+		Arrays.fill(tempDistancesToMaster, tempState.diameter);
 
 		// Step 3. Compute masters of each instance in each block.
-		boolean tempHasInnerBlockMaster;
-		double tempDistance;
+		MasterTreeBuilder tempBuilder = new MasterTreeBuilder(distanceMeasure, densities);
+		int[] tempDensest = new int[numInstances];
+		int tempNumDensest = 0;
+		int[] tempBlockMasters;
+		double[] tempBlockDistancesToMaster;
+		double tempMaxDensity;
+		int tempInstance;
 		for (int i = 0; i < smallerBlocks.length; i++) {
 			SimpleTools.processTrackingOutput("block #" + i + ", ");
-			for (int j = 0; j < smallerBlocks[i].length; j++) {
-				// Step 3.1.1 Try to find a master in the same block.
-				tempHasInnerBlockMaster = false;
-				for (int k = 0; k < smallerBlocks[i].length; k++) {
-					if (densities[smallerBlocks[i][k]] > densities[smallerBlocks[i][j]]) {
-						tempHasInnerBlockMaster = true;
-						tempDistance = distanceMeasure.distance(smallerBlocks[i][j], smallerBlocks[i][k]);
-						if (distancesToMaster[smallerBlocks[i][j]] > tempDistance) {
-							distancesToMaster[smallerBlocks[i][j]] = tempDistance;
-							masters[smallerBlocks[i][j]] = smallerBlocks[i][k];
-						} // Of if
-					} // Of if
-				} // Of for k
-
-				if (tempHasInnerBlockMaster) {
-					continue;
-				} // Of if
+			// Step 3.1 Masters in the same block.
+			tempBlockMasters = new int[smallerBlocks[i].length()];
+			tempBlockDistancesToMaster = new double[smallerBlocks[i].length()];
+			tempBuilder.build(smallerBlocks[i], tempState.diameter, tempBlockMasters, tempBlockDistancesToMaster,
+					null);
+
+			tempMaxDensity = -Double.MAX_VALUE;
+			for (int j = 0; j < smallerBlocks[i].length(); j++) {
+				tempMaxDensity = Math.max(tempMaxDensity, densities[smallerBlocks[i].get(j)]);
+			} // Of for j
 
-				// SimpleTools.processTrackingOutput("#" + smallerBlocks[i][j] +
-				// " is maximal with "
-				// + densities[smallerBlocks[i][j]] + " \r\n");
-				// Step 3.1.2 Find the master in the whole dataset
-				for (int k = 0; k < numInstances; k++) {
-					if (densities[k] > densities[smallerBlocks[i][j]]) {
-						tempDistance = distanceMeasure.distance(smallerBlocks[i][j], k);
-						if (distancesToMaster[smallerBlocks[i][j]] > tempDistance) {
-							distancesToMaster[smallerBlocks[i][j]] = tempDistance;
-							masters[smallerBlocks[i][j]] = k;
-						} // Of if
+			for (int j = 0; j < smallerBlocks[i].length(); j++) {
+				tempInstance = smallerBlocks[i].get(j);
+				if (densities[tempInstance] < tempMaxDensity) {
+					if (tempBlockMasters[j] != -1) {
+						tempMasters[tempInstance] = smallerBlocks[i].get(tempBlockMasters[j]);
+						tempDistancesToMaster[tempInstance] = tempBlockDistancesToMaster[j];
 					} // Of if
-				} // Of for k
+				} else {
+					// The densest ones of the block are handled later.
+					tempDensest[tempNumDensest] = tempInstance;
+					tempNumDensest++;
+				} // Of if
 			} // Of for j
 		} // Of for i
 
+		// Step 3.2 The densest ones of each block. Find the master in the
+		// whole data set.
+		tempBuilder.resolveNearest(wholeBlock, Arrays.copyOf(tempDensest, tempNumDensest), tempState.diameter,
+				tempMasters, tempDistancesToMaster);
+
 		SimpleTools.processTrackingOutput("\r\n");
 
-		// Step 3. Only reserve one root.
+		// Step 4. Only reserve one root.
 		// The final root.
 		int tempRoot = 0;
 		for (int i = 0; i < numInstances; i++) {
-			if (masters[i] == -1) {
+			if (tempMasters[i] == -1) {
 				tempRoot = i;
 				break;
 			} // Of if
@@ -510,55 +540,67 @@ public class DensityPeaks extends DensityClustering {
 
 		// Others are not root.
 		for (int i = tempRoot + 1; i < numInstances; i++) {
-			if (masters[i] == -1) {
-				masters[i] = tempRoot;
-				distancesToMaster[i] = distanceMeasure.distance(i, tempRoot);
+			if (tempMasters[i] == -1) {
+				tempMasters[i] = tempRoot;
+				tempDistancesToMaster[i] = distanceMeasure.distance(i, tempRoot);
 			} // Of if
 		} // Of for i
 
-		SimpleTools.variableTrackingOutput("The masters are: " + Arrays.toString(masters));
-		SimpleTools.variableTrackingOutput("The distances to master are: " + Arrays.toString(distancesToMaster));
+		SimpleTools.variableTrackingOutput("The masters are: " + Arrays.toString(tempMasters));
+		SimpleTools.variableTrackingOutput("The distances to master are: " + Arrays.toString(tempDistancesToMaster));
 
 		SimpleTools.processTrackingOutput("computeMastersEfficiently() finished.\r\n");
+		return new MasterTree(tempMasters, tempDistancesToMaster, tempRoot);
 	}// Of computeMastersEfficiently
 
 	/**
 	 ****************** 
 	 * Compute the masters. At the same time, compute the distance to master.
+	 * No field is changed, except that the global master tree is computed at
+	 * the first invocation and reused for following blocks.
 	 * 
 	 * @param paraBlock
 	 *            The given block.
-	 * @return The root of the master tree, indicated by the index within the
+	 * @return The master tree of the block, indicated by indices within the
 	 *         block.
 	 ****************** 
 	 */
-	public int computeMasters(int[] paraBlock) {
+	public MasterTree computeMasters(BlockView paraBlock) {
+		return computeMasters(paraBlock, state);
+	}// Of computeMasters
+
+	/**
+	 ****************** 
+	 * Compute the masters with the given state.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraState
+	 *            The densities and the diameter.
+	 * @return The master tree of the block, indicated by indices within the
+	 *         block.
+	 ****************** 
+	 */
+	MasterTree computeMasters(BlockView paraBlock, DensityState paraState) {
 		// Step 1. Initialize.
-		int tempNumInstances = paraBlock.length;
-		masters = new int[tempNumInstances];
-		distancesToMaster = new double[tempNumInstances];
+		int tempNumInstances = paraBlock.length();
+		int[] tempMasters = new int[tempNumInstances];
+		double[] tempDistancesToMaster = new double[tempNumInstances];
 
 		// Step 2. Compute masters of each instance.
-		double tempDistance;
-		for (int i = 0; i < tempNumInstances; i++) {
-			masters[i] = -1;
-			distancesToMaster[i] = diameter;
-			for (int j = 0; j < tempNumInstances; j++) {
-				if (densities[paraBlock[j]] > densities[paraBlock[i]]) {
-					tempDistance = distanceMeasure.distance(paraBlock[i], paraBlock[j]);
-					if (distancesToMaster[i] > tempDistance) {
-						distancesToMaster[i] = tempDistance;
-						masters[i] = j;// **************
-					} // Of if
-				} // Of if
-			} // Of for j
-		} // Of for i
+		MasterTreeBuilder tempBuilder = new MasterTreeBuilder(distanceMeasure, paraState.densities);
+		GlobalMasters tempGlobal = getGlobalMasters(paraState, paraBlock.length());
+		if (tempGlobal == null) {
+			tempBuilder.build(paraBlock, paraState.diameter, tempMasters, tempDistancesToMaster, null);
+		} else {
+			restrictGlobalMasters(tempGlobal, paraBlock, tempMasters, tempDistancesToMaster, tempBuilder);
+		} // Of if
 
 		// Step 3. Only reserve one root.
 		// The final root.
 		int resultRoot = 0;
 		for (int i = 0; i < tempNumInstances; i++) {
-			if (masters[i] == -1) {
+			if (tempMasters[i] == -1) {
 				resultRoot = i;
 				break;
 			} // Of if
@@ -566,29 +608,237 @@ public class DensityPeaks extends DensityClustering {
 
 		// Others are not root.
 		for (int i = resultRoot + 1; i < tempNumInstances; i++) {
-			if (masters[i] == -1) {
-				SimpleTools.variableTrackingOutput("Fixing " + i + " with density " + densities[i]);
-				masters[i] = resultRoot;
-				distancesToMaster[i] = distanceMeasure.distance(i, resultRoot);
+			if (tempMasters[i] == -1) {
+				SimpleTools.variableTrackingOutput("Fixing " + i + " with density " + paraState.densities[paraBlock.get(i)]);
+				tempMasters[i] = resultRoot;
+				tempDistancesToMaster[i] = distanceMeasure.distance(paraBlock.get(i), paraBlock.get(resultRoot));
 			} // Of if
 		} // Of for i
 
-		SimpleTools.variableTrackingOutput("The masters are: " + Arrays.toString(masters));
-		SimpleTools.variableTrackingOutput("The distances to master are: " + Arrays.toString(distancesToMaster));
+		SimpleTools.variableTrackingOutput("The masters are: " + Arrays.toString(tempMasters));
+		SimpleTools.variableTrackingOutput("The distances to master are: " + Arrays.toString(tempDistancesToMaster));
 
-		return resultRoot;
+		return new MasterTree(tempMasters, tempDistancesToMaster, resultRoot);
 	}// Of computeMasters
 
+	/**
+	 ****************** 
+	 * Get the exact master tree of the whole data set, which is computed once
+	 * for the current densities. Unlike computeMastersEfficiently(), masters
+	 * are not restricted to smaller blocks.
+	 * 
+	 * @param paraState
+	 *            The densities and the diameter.
+	 * @param paraBlockSize
+	 *            The size of the block to be handled. For a small block, the
+	 *            tree is not computed if it takes the scan of the whole data
+	 *            set.
+	 * @return The tree, null if not available.
+	 ****************** 
+	 */
+	synchronized GlobalMasters getGlobalMasters(DensityState paraState, int paraBlockSize) {
+		if ((globalMasters != null) && (globalMasters.state == paraState)) {
+			return globalMasters;
+		} // Of if
+
+		if ((paraBlockSize * 2 < numInstances) && !KdTree.isApplicable(distanceMeasure, numInstances)) {
+			return null;
+		} // Of if
+
+		GlobalMasters resultMasters = new GlobalMasters(numInstances, paraState);
+		new MasterTreeBuilder(distanceMeasure, paraState.densities).build(wholeBlock, paraState.diameter,
+				resultMasters.masters, resultMasters.distancesToMaster, resultMasters.tied);
+		globalMasters = resultMasters;
+
+		return resultMasters;
+	}// Of getGlobalMasters
+
+	/**
+	 ****************** 
+	 * Compute masters of the block from the global ones. If the global master
+	 * of an instance is in the block, and no other denser instance has the
+	 * same distance, it is also the master within the block. Only other
+	 * instances are resolved with scans. If there are too many of them, the
+	 * block is handled as a whole.
+	 * 
+	 * @param paraGlobal
+	 *            The global masters.
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraMasters
+	 *            For storing the master of each instance, indicated by the index
+	 *            within the block.
+	 * @param paraDistancesToMaster
+	 *            For storing the distance to master.
+	 * @param paraBuilder
+	 *            The builder.
+	 ****************** 
+	 */
+	void restrictGlobalMasters(GlobalMasters paraGlobal, BlockView paraBlock, int[] paraMasters,
+			double[] paraDistancesToMaster, MasterTreeBuilder paraBuilder) {
+		// Step 1. The first position of each instance in the block.
+		int[] tempPositions = getPositions(numInstances);
+		for (int i = paraBlock.length() - 1; i >= 0; i--) {
+			tempPositions[paraBlock.get(i)] = i;
+		} // Of for i
+
+		// Step 2. Reuse global masters in the block.
+		int[] tempAffected = new int[paraBlock.length()];
+		int tempNumAffected = 0;
+		int tempGlobalMaster;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			tempGlobalMaster = paraGlobal.masters[paraBlock.get(i)];
+			if ((tempGlobalMaster != -1) && (!paraGlobal.tied[paraBlock.get(i)])
+					&& (tempPositions[tempGlobalMaster] != -1)) {
+				paraMasters[i] = tempPositions[tempGlobalMaster];
+				paraDistancesToMaster[i] = paraGlobal.distancesToMaster[paraBlock.get(i)];
+			} else {
+				tempAffected[tempNumAffected] = i;
+				tempNumAffected++;
+			} // Of if
+		} // Of for i
+
+		// Only touched entries are reset. It is done before the builder runs
+		// other tasks in this thread.
+		for (int i = 0; i < paraBlock.length(); i++) {
+			tempPositions[paraBlock.get(i)] = -1;
+		} // Of for i
+
+		// Step 3. Resolve others.
+		if ((tempNumAffected * MAX_AFFECTED_DIVISOR > paraBlock.length())
+				&& KdTree.isApplicable(distanceMeasure, paraBlock.length())) {
+			paraBuilder.build(paraBlock, paraGlobal.state.diameter, paraMasters, paraDistancesToMaster, null);
+		} else {
+			paraBuilder.resolve(paraBlock, Arrays.copyOf(tempAffected, tempNumAffected), paraGlobal.state.diameter,
+					paraMasters, paraDistancesToMaster);
+		} // Of if
+	}// Of restrictGlobalMasters
+
+	/**
+	 ****************** 
+	 * Get the position buffer of the current thread.
+	 * 
+	 * @param paraNumInstances
+	 *            The number of instances.
+	 * @return The buffer with enough space, all entries being -1.
+	 ****************** 
+	 */
+	static int[] getPositions(int paraNumInstances) {
+		int[] resultPositions = POSITIONS.get();
+		if ((resultPositions == null) || (resultPositions.length < paraNumInstances)) {
+			resultPositions = new int[paraNumInstances];
+			Arrays.fill(resultPositions, -1);
+			POSITIONS.set(resultPositions);
+		} // Of if
+
+		return resultPositions;
+	}// Of getPositions
+
+	/**
+	 * The exact master tree of the whole data set for given densities.
+	 */
+	static class GlobalMasters {
+		/**
+		 * The master of each instance, -1 if none.
+		 */
+		final int[] masters;
+
+		/**
+		 * The distance to master.
+		 */
+		final double[] distancesToMaster;
+
+		/**
+		 * Does another denser instance have the same distance as the master?
+		 */
+		final boolean[] tied;
+
+		/**
+		 * The state providing the densities and the bound of distances to
+		 * masters, i.e., the diameter.
+		 */
+		final DensityState state;
+
+		/**
+		 ****************** 
+		 * The constructor.
+		 * 
+		 * @param paraNumInstances
+		 *            The number of instances.
+		 * @param paraState
+		 *            The state of densities.
+		 ****************** 
+		 */
+		GlobalMasters(int paraNumInstances, DensityState paraState) {
+			masters = new int[paraNumInstances];
+			distancesToMaster = new double[paraNumInstances];
+			tied = new boolean[paraNumInstances];
+			state = paraState;
+		}// Of the constructor
+	}// Of class GlobalMasters
+
+	/**
+	 * The master tree of a block. It is produced by each invocation of
+	 * computeMasters(int[]), instead of being stored in fields, so that
+	 * different blocks can be handled concurrently.
+	 */
+	public static class MasterTree {
+		/**
+		 * The master of each instance, indicated by the index within the block.
+		 * -1 for the root.
+		 */
+		final int[] masters;
+
+		/**
+		 * The distance to master.
+		 */
+		final double[] distancesToMaster;
+
+		/**
+		 * The root, indicated by the index within the block.
+		 */
+		final int root;
+
+		/**
+		 ****************** 
+		 * The constructor.
+		 * 
+		 * @param paraMasters
+		 *            The master of each instance.
+		 * @param paraDistancesToMaster
+		 *            The distance to master.
+		 * @param paraRoot
+		 *            The root.
+		 ****************** 
+		 */
+		MasterTree(int[] paraMasters, double[] paraDistancesToMaster, int paraRoot) {
+			masters = paraMasters;
+			distancesToMaster = paraDistancesToMaster;
+			root = paraRoot;
+		}// Of the constructor
+
+		/**
+		 ****************** 
+		 * Get the root.
+		 * 
+		 * @return The root, indicated by the index within the block.
+		 ****************** 
+		 */
+		public int getRoot() {
+			return root;
+		}// Of getRoot
+	}// Of class MasterTree
+
 	/**
 	 ************************* 
 	 * Test the method.
 	 ************************* 
 	 */
 	public void testComputeDensityEfficiently() {
-		System.out.println("testComputeDensityEfficiently, dc = " + dc);
+		System.out.println("testComputeDensityEfficiently, dc = " + getDc());
 
 		computeDensityEfficiently();
-		System.out.println("If compute them efficiently, the densities are:\r\n" + Arrays.toString(densities));
+		System.out.println("If compute them efficiently, the densities are:\r\n" + Arrays.toString(state.densities));
 	}// Of testComputeDensityEfficiently
 
 	/**
@@ -597,18 +847,22 @@ public class DensityPeaks extends DensityClustering {
 	 ************************* 
 	 */
 	public void testClusterInTwo() {
-		// int[] tempBlock = { 1, 3, 49, 56, 88, 89, 99, 121, 123, 133 };
-		int[] tempBlock = wholeBlock;
+		// BlockView tempBlock = { 1, 3, 49, 56, 88, 89, 99, 121, 123, 133 };
+		BlockView tempBlock = wholeBlock;
 		int[] tempQueried = { 7, 60, 120 };
-		int[][] tempPartition = null;
+		ClusteringResult tempPartition = null;
 
 		try {
 			tempPartition = clusterInTwo(tempBlock, tempQueried);
 		} catch (UnableToClusterInKException ee) {
 			System.out.println(ee);
+			System.exit(0);
 		} // Of try
 
-		SimpleTools.consoleOutput("With density peaks, the partition is: " + Arrays.deepToString(tempPartition));
+		SimpleTools.consoleOutput("With density peaks, the partition is: " + tempPartition);
+
+		double tempAccuracy = computeAccuracy(tempPartition);
+		System.out.println("The accuracy is: " + tempAccuracy);
 	}// Of testClusterInTwo
 
 	/**
@@ -634,9 +888,6 @@ public class DensityPeaks extends DensityClustering {
 		densityPeaks.testClusterInTwo();
 		// densityPeaks.testClusterInK(2);
 
-		double tempAccuracy = densityPeaks.computeAccuracy();
-		System.out.println("The accuracy is: " + tempAccuracy);
-
 		// densityPeaks.testComputeDensityEfficiently();
 	}// Of main
 }// Of class DensityPeaks
@@ -1,7 +1,10 @@
 package clustering;
 
 import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
 
+import common.BlockView;
+import common.Common;
 import common.DistanceMeasure;
 import common.SimpleTools;
 import exception.LessBlocksThanRequiredException;
@@ -21,7 +24,7 @@ import weka.core.Instances;
  * <p>
  * Progress: The simple version finished. Kernels may be added in the future<br>
  * Written time: April 10, 2019. <br>
- * Last modify time: July 23, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class FCM extends MeansClustering {
@@ -31,6 +34,11 @@ public class FCM extends MeansClustering {
 	 */
 	public static final int BNUMBER = 2;
 
+	/**
+	 * The number of rows of a chunk for parallel computation.
+	 */
+	public static final int PARALLEL_CHUNK_SIZE = 2048;
+
 	/**
 	 ********************
 	 * The constructor.
@@ -61,89 +69,313 @@ public class FCM extends MeansClustering {
 
 	/**
 	 ********************
-	 * Calculate membership.
+	 * Calculate memberships of the given rows, and the contribution of them to
+	 * Jf. Each distance is computed once in the squared form, so pow() is not
+	 * required for BNUMBER = 2.
 	 * 
-	 * @param paraCurrentCenters
+	 * @param paraCenters
+	 *            The current centers.
 	 * @param paraBlock
-	 * @return Similarity of every instance to all centers.
+	 *            The given block.
+	 * @param paraMemberships
+	 *            The membership of instance i to center j is stored at i * c +
+	 *            j. To be filled.
+	 * @param paraStart
+	 *            The first row.
+	 * @param paraEnd
+	 *            The row after the last one.
+	 * @return The contribution to Jf.
 	 ********************
 	 */
-	double[][] calculateMembership(double[][] paraCurrentCenters, int[] paraBlock) {
-		double[][] memberShipMatrix = new double[paraBlock.length][paraCurrentCenters.length];
-		double tempDenominator = 0;
-		double tempNumerator = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			// Initialize.
-			tempDenominator = 0;
-			tempNumerator = 0;
-
-			// Compute the denominator for the current instance.
-			for (int j = 0; j < memberShipMatrix[0].length; j++) {
-				tempDenominator += Math.pow(distanceMeasure.euclideanDistance(paraBlock[i], paraCurrentCenters[j]),
-						-2 / (BNUMBER - 1));
+	double calculateMembership(double[][] paraCenters, BlockView paraBlock, double[] paraMemberships, int paraStart,
+			int paraEnd) {
+		double[] tempFeatures = distanceMeasure.getFeatures();
+		int tempNumCenters = paraCenters.length;
+		double resultJf = 0;
+		double tempSum, tempDifference, tempMembership;
+		double[] tempCenter;
+		int tempOffset, tempRow;
+		boolean tempAssigned;
+		// The squared distances of the current row.
+		double[] tempSquares = new double[tempNumCenters];
+		for (int i = paraStart; i < paraEnd; i++) {
+			// Step 1. Weights proportional to the memberships.
+			tempOffset = paraBlock.get(i) * numConditions;
+			tempRow = i * tempNumCenters;
+			tempSum = 0;
+			for (int j = 0; j < tempNumCenters; j++) {
+				tempCenter = paraCenters[j];
+				tempSquares[j] = 0;
+				for (int k = 0; k < numConditions; k++) {
+					tempDifference = tempFeatures[tempOffset + k] - tempCenter[k];
+					tempSquares[j] += tempDifference * tempDifference;
+				} // Of for k
+
+				if (BNUMBER == 2) {
+					paraMemberships[tempRow + j] = 1 / tempSquares[j];
+				} else {
+					paraMemberships[tempRow + j] = Math.pow(tempSquares[j], -1.0 / (BNUMBER - 1));
+				} // Of if
+				tempSum += paraMemberships[tempRow + j];
 			} // Of for j
 
-			// Compute the numerator for the current instance wrt. current
-			// center.
-			for (int j = 0; j < memberShipMatrix[0].length; j++) {
-				tempNumerator = Math.pow(distanceMeasure.euclideanDistance(paraBlock[i], paraCurrentCenters[j]),
-						-2 / (BNUMBER - 1));
-				memberShipMatrix[i][j] = tempNumerator / tempDenominator;
+			// Step 2. An instance coinciding with a center belongs to it only.
+			// Otherwise Infinity / Infinity would make Jf NaN.
+			if (Double.isInfinite(tempSum)) {
+				tempAssigned = false;
+				for (int j = 0; j < tempNumCenters; j++) {
+					paraMemberships[tempRow + j] = 0;
+					if (!tempAssigned && tempSquares[j] == 0) {
+						paraMemberships[tempRow + j] = 1;
+						tempAssigned = true;
+					} // Of if
+				} // Of for j
+				continue;
+			} // Of if
+
+			// Step 3. Normalize and accumulate Jf.
+			for (int j = 0; j < tempNumCenters; j++) {
+				tempMembership = paraMemberships[tempRow + j] / tempSum;
+				paraMemberships[tempRow + j] = tempMembership;
+				if (BNUMBER == 2) {
+					resultJf += tempMembership * tempMembership * tempSquares[j];
+				} else {
+					resultJf += Math.pow(tempMembership, BNUMBER) * tempSquares[j];
+				} // Of if
 			} // Of for j
 		} // Of for i
-		return memberShipMatrix;
+
+		return resultJf;
 	}// Of calculateMembership
 
 	/**
-	 *********************
-	 * Jf means linear planning formula
+	 ********************
+	 * Accumulate the weighted sums of the given rows for the next centers.
 	 * 
-	 * @param paraMemberShip
-	 *            The memberShip matrix
+	 * @param paraMemberships
+	 *            The memberships.
 	 * @param paraBlock
-	 * @param paraCenters
-	 * @return next Jf
-	 *********************
+	 *            The given block.
+	 * @param paraSums
+	 *            The weighted sum of center j is stored from j * (numConditions
+	 *            + 1), followed by the sum of weights. To be added.
+	 * @param paraStart
+	 *            The first row.
+	 * @param paraEnd
+	 *            The row after the last one.
+	 ********************
 	 */
-	double calculateJf(double[][] paraMemberShip, int[] paraBlock, double[][] paraCenters) {
-		double tempJfResult = 0;
-		for (int i = 0; i < paraMemberShip[0].length; i++) {
-			for (int j = 0; j < paraBlock.length; j++) {
-				tempJfResult += Math.pow(paraMemberShip[j][i], BNUMBER)
-						* Math.pow(distanceMeasure.euclideanDistance(paraBlock[j], paraCenters[i]), 2);
+	void accumulateCenters(double[] paraMemberships, BlockView paraBlock, double[] paraSums, int paraStart,
+			int paraEnd) {
+		double[] tempFeatures = distanceMeasure.getFeatures();
+		int tempNumCenters = paraSums.length / (numConditions + 1);
+		double tempWeight;
+		int tempOffset, tempSumOffset;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempOffset = paraBlock.get(i) * numConditions;
+			for (int j = 0; j < tempNumCenters; j++) {
+				tempWeight = paraMemberships[i * tempNumCenters + j];
+				if (BNUMBER == 2) {
+					tempWeight *= tempWeight;
+				} else {
+					tempWeight = Math.pow(tempWeight, BNUMBER);
+				} // Of if
+
+				tempSumOffset = j * (numConditions + 1);
+				for (int k = 0; k < numConditions; k++) {
+					paraSums[tempSumOffset + k] += tempWeight * tempFeatures[tempOffset + k];
+				} // Of for k
+				paraSums[tempSumOffset + numConditions] += tempWeight;
 			} // Of for j
 		} // Of for i
-		return tempJfResult;
-	}// Of calculateJf
+	}// Of accumulateCenters
+
+	/**
+	 * Process rows in chunks. Chunks are fixed by PARALLEL_CHUNK_SIZE rather
+	 * than the number of threads, and partial results are summed in the order
+	 * of chunks, so the result does not depend on scheduling.
+	 */
+	class RowsTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The given block.
+		 */
+		BlockView block;
+
+		/**
+		 * The current centers. Null for accumulating centers.
+		 */
+		double[][] centers;
+
+		/**
+		 * The memberships.
+		 */
+		double[] memberships;
+
+		/**
+		 * The partial Jf of each chunk.
+		 */
+		double[] chunkJfs;
+
+		/**
+		 * The partial weighted sums of each chunk.
+		 */
+		double[][] chunkSums;
+
+		/**
+		 * The first chunk.
+		 */
+		int firstChunk;
+
+		/**
+		 * The chunk after the last one.
+		 */
+		int lastChunk;
+
+		/**
+		 ********************
+		 * The constructor.
+		 * 
+		 * @param paraBlock
+		 *            The given block.
+		 * @param paraCenters
+		 *            The current centers for calculating memberships, null for
+		 *            accumulating centers.
+		 * @param paraMemberships
+		 *            The memberships.
+		 * @param paraChunkJfs
+		 *            The partial Jf of each chunk.
+		 * @param paraChunkSums
+		 *            The partial weighted sums of each chunk.
+		 * @param paraFirstChunk
+		 *            The first chunk.
+		 * @param paraLastChunk
+		 *            The chunk after the last one.
+		 ********************
+		 */
+		RowsTask(BlockView paraBlock, double[][] paraCenters, double[] paraMemberships, double[] paraChunkJfs,
+				double[][] paraChunkSums, int paraFirstChunk, int paraLastChunk) {
+			block = paraBlock;
+			centers = paraCenters;
+			memberships = paraMemberships;
+			chunkJfs = paraChunkJfs;
+			chunkSums = paraChunkSums;
+			firstChunk = paraFirstChunk;
+			lastChunk = paraLastChunk;
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Process the chunks.
+		 ********************
+		 */
+		protected void compute() {
+			if (lastChunk - firstChunk > 1) {
+				int tempMiddle = (firstChunk + lastChunk) / 2;
+				invokeAll(new RowsTask(block, centers, memberships, chunkJfs, chunkSums, firstChunk, tempMiddle),
+						new RowsTask(block, centers, memberships, chunkJfs, chunkSums, tempMiddle, lastChunk));
+				return;
+			} // Of if
+
+			int tempStart = firstChunk * PARALLEL_CHUNK_SIZE;
+			int tempEnd = Math.min(tempStart + PARALLEL_CHUNK_SIZE, block.length());
+			if (centers != null) {
+				chunkJfs[firstChunk] = calculateMembership(centers, block, memberships, tempStart, tempEnd);
+			} else {
+				Arrays.fill(chunkSums[firstChunk], 0);
+				accumulateCenters(memberships, block, chunkSums[firstChunk], tempStart, tempEnd);
+			} // Of if
+		}// Of compute
+	}// Of class RowsTask
+
+	/**
+	 ********************
+	 * Get the number of chunks.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @return The number of chunks.
+	 ********************
+	 */
+	int getNumChunks(BlockView paraBlock) {
+		return (paraBlock.length() + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+	}// Of getNumChunks
+
+	/**
+	 ********************
+	 * Calculate memberships of all instances, in parallel for big blocks.
+	 * 
+	 * @param paraCenters
+	 *            The current centers.
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraMemberships
+	 *            The memberships, to be filled.
+	 * @param paraChunkJfs
+	 *            The partial Jf of each chunk, as a buffer.
+	 * @return Jf.
+	 ********************
+	 */
+	double calculateMembership(double[][] paraCenters, BlockView paraBlock, double[] paraMemberships,
+			double[] paraChunkJfs) {
+		Common.runtimes += (long) paraBlock.length() * paraCenters.length * numConditions;
+		if (paraChunkJfs.length == 1) {
+			return calculateMembership(paraCenters, paraBlock, paraMemberships, 0, paraBlock.length());
+		} // Of if
+
+		Common.forkJoinPool.invoke(
+				new RowsTask(paraBlock, paraCenters, paraMemberships, paraChunkJfs, null, 0, paraChunkJfs.length));
+		double resultJf = 0;
+		for (int i = 0; i < paraChunkJfs.length; i++) {
+			resultJf += paraChunkJfs[i];
+		} // Of for i
+
+		return resultJf;
+	}// Of calculateMembership
 
 	/**
 	 ********************
-	 * Get the centers of the next round.
+	 * Get the centers of the next round, in parallel for big blocks.
 	 * 
-	 * @param paraMemberShip
+	 * @param paraMemberships
+	 *            The memberships.
 	 * @param paraBlock
-	 * @return next center of iteration
+	 *            The given block.
+	 * @param paraChunkSums
+	 *            The partial weighted sums of each chunk, as a buffer.
+	 * @param paraCenters
+	 *            The centers to be overwritten.
 	 ********************
 	 */
-	double[][] iterationCenters(double[][] paraMemberShip, int[] paraBlock) {
-		double[][] NewCenters = new double[paraMemberShip[0].length][numConditions];
-		double tempDenominator;
-
-		for (int i = 0; i < paraMemberShip[0].length; i++) {
-			double[] tempNumerator = new double[numConditions];
-			tempDenominator = 0;
-			for (int j = 0; j < paraBlock.length; j++) {
-				tempDenominator += Math.pow(paraMemberShip[j][i], BNUMBER);
-				for (int k = 0; k < numConditions; k++) {
-					tempNumerator[k] += Math.pow(paraMemberShip[j][i], BNUMBER) * data.instance(paraBlock[j]).value(k);
-				} // Of for k
-			} // of for j
-			for (int l = 0; l < numConditions; l++) {
-				tempNumerator[l] /= tempDenominator;
-			} // Of for l
-			NewCenters[i] = tempNumerator;
+	void iterationCenters(double[] paraMemberships, BlockView paraBlock, double[][] paraChunkSums,
+			double[][] paraCenters) {
+		// Step 1. Weighted sums.
+		double[] tempSums = paraChunkSums[0];
+		if (paraChunkSums.length == 1) {
+			Arrays.fill(tempSums, 0);
+			accumulateCenters(paraMemberships, paraBlock, tempSums, 0, paraBlock.length());
+		} else {
+			Common.forkJoinPool.invoke(
+					new RowsTask(paraBlock, null, paraMemberships, null, paraChunkSums, 0, paraChunkSums.length));
+			for (int i = 1; i < paraChunkSums.length; i++) {
+				for (int j = 0; j < tempSums.length; j++) {
+					tempSums[j] += paraChunkSums[i][j];
+				} // Of for j
+			} // Of for i
+		} // Of if
+
+		// Step 2. Divide.
+		int tempSumOffset;
+		for (int i = 0; i < paraCenters.length; i++) {
+			tempSumOffset = i * (numConditions + 1);
+			for (int k = 0; k < numConditions; k++) {
+				paraCenters[i][k] = tempSums[tempSumOffset + k] / tempSums[tempSumOffset + numConditions];
+			} // Of for k
 		} // Of for i
-		return NewCenters;
 	}// Of iterationCenters
 
 	/**
@@ -159,42 +391,48 @@ public class FCM extends MeansClustering {
 	 *             When the algorithm fails.
 	 *********************
 	 */
-	public int[][] clusterInK(int[] paraBlock, double[][] paraCenters) throws UnableToClusterInKException {
-		int[][] result = null;
-		if (paraBlock.length == 2) {
-			result = new int[2][1];
-			result[0][0] = paraBlock[0];
-			result[1][0] = paraBlock[1];
-			return result;
+	public ClusteringResult clusterInK(BlockView paraBlock, double[][] paraCenters) throws UnableToClusterInKException {
+		if (paraBlock.length() == 2) {
+			return new ClusteringResult(paraBlock, new int[] { 0, 1 }, 2);
 		} // Of if
+
+		// Buffers reused by all rounds. The given centers are not changed.
+		int tempNumCenters = paraCenters.length;
 		double[][] tempCenters = paraCenters;
+		double[] tempMemberShip = new double[paraBlock.length() * tempNumCenters];
+		int tempNumChunks = getNumChunks(paraBlock);
+		double[] tempChunkJfs = new double[tempNumChunks];
+		double[][] tempChunkSums = new double[tempNumChunks][tempNumCenters * (numConditions + 1)];
 
 		double tempOldJfResult = Double.MAX_VALUE;
-		double[][] tempMemberShip = calculateMembership(tempCenters, paraBlock);
-		double tempNewJfResult = calculateJf(tempMemberShip, paraBlock, tempCenters);
-		while (tempNewJfResult - tempOldJfResult > 1e-6) {
+		double tempNewJfResult = calculateMembership(tempCenters, paraBlock, tempMemberShip, tempChunkJfs);
+		while (tempOldJfResult - tempNewJfResult > 1e-6) {
+			checkCancelled();
 			tempOldJfResult = tempNewJfResult;
-			tempCenters = iterationCenters(tempMemberShip, paraBlock);
-			tempMemberShip = calculateMembership(tempCenters, paraBlock);
-			tempNewJfResult = calculateJf(tempMemberShip, paraBlock, tempCenters);
+			if (tempCenters == paraCenters) {
+				tempCenters = new double[tempNumCenters][numConditions];
+			} // Of if
+			iterationCenters(tempMemberShip, paraBlock, tempChunkSums, tempCenters);
+			tempNewJfResult = calculateMembership(tempCenters, paraBlock, tempMemberShip, tempChunkJfs);
 		} // Of while
 
 		int tempClassificationMark = 0;
 		double tempClassificationComparison;
-		int[] tempResult = new int[paraBlock.length];
-		for (int i = 0; i < paraBlock.length; i++) {
+		int[] tempResult = new int[paraBlock.length()];
+		for (int i = 0; i < paraBlock.length(); i++) {
 			tempClassificationComparison = 0;
-			for (int j = 0; j < tempMemberShip[0].length; j++) {
-				if (tempClassificationComparison < tempMemberShip[i][j]) {
-					tempClassificationComparison = tempMemberShip[i][j];
+			for (int j = 0; j < tempNumCenters; j++) {
+				if (tempClassificationComparison < tempMemberShip[i * tempNumCenters + j]) {
+					tempClassificationComparison = tempMemberShip[i * tempNumCenters + j];
 					tempClassificationMark = j;
 				} // Of if
 			} // Of for j
 			tempResult[i] = tempClassificationMark;
 		} // Of for i
 
+		ClusteringResult result = null;
 		try {
-			result = blockInformationToBlocks(paraBlock, tempResult, tempCenters.length);
+			result = blockInformationToResult(paraBlock, tempResult, tempCenters.length);
 			// SimpleTools.processTrackingOutput("In FCM, lengths = " +
 			// result[0].length + ", " + result[1].length
 			// + ", tempCenters.length = " + tempCenters.length + ",
@@ -202,7 +440,7 @@ public class FCM extends MeansClustering {
 		} catch (LessBlocksThanRequiredException ee) {
 			SimpleTools.processTrackingOutput(ee + "\r\n");
 			throw new UnableToClusterInKException("FCM cannot cluster the block in " + tempCenters.length + ": "
-					+ paraBlock.length + " (" + paraBlock[0] + " ...)");
+					+ paraBlock.length() + " (" + paraBlock.get(0) + " ...)");
 		} // Of try
 
 		return result;
@@ -226,7 +464,7 @@ public class FCM extends MeansClustering {
 		for (int i = 0; i < tempFCM.numInstances; i++) {
 			tempIns[i] = i;
 		} // Of for i
-		int[][] test = null;
+		ClusteringResult test = null;
 		try {
 			test = tempFCM.clusterInTwo(tempIns);
 		} catch (Exception ee) {
@@ -234,7 +472,7 @@ public class FCM extends MeansClustering {
 			System.exit(0);
 		} // Of try
 
-		System.out.println(Arrays.deepToString(test));
+		System.out.println(test);
 	}// Of main
 
 }// Of class FCM
@@ -1,6 +1,8 @@
 package clustering;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
 
 import common.*;
 import exception.UnableToClusterInKException;
@@ -19,11 +21,26 @@ import weka.core.Instances;
  * <p>
  * Progress: The simple version finished.<br>
  * Written time: April 10, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class KMeans extends MeansClustering {
 
+	/**
+	 * The maximal number of rounds.
+	 */
+	public static final int MAX_ROUNDS = 50;
+
+	/**
+	 * The accelerated version stops if no center moves further than this.
+	 */
+	public static final double SHIFT_TOLERANCE = 1e-6;
+
+	/**
+	 * Skip distance computation using the triangle inequality or not.
+	 */
+	boolean accelerated;
+
 	/**
 	 ********************
 	 * The constructor for independent running.
@@ -52,6 +69,19 @@ public class KMeans extends MeansClustering {
 		super(paraData, paraDistanceMeasure);
 	}// Of the second constructor
 
+	/**
+	 ************************* 
+	 * Skip distance computation using the triangle inequality or not. It only
+	 * takes effect for Euclidean and Manhattan distances.
+	 * 
+	 * @param paraAccelerated
+	 *            True for the accelerated version.
+	 ************************* 
+	 */
+	public void setAccelerated(boolean paraAccelerated) {
+		accelerated = paraAccelerated;
+	}// Of setAccelerated
+
 	/**
 	 ************************* 
 	 * Cluster the given block in using kMeans.
@@ -63,78 +93,500 @@ public class KMeans extends MeansClustering {
 	 * @return Clusters
 	 ************************* 
 	 */
-	public int[][] clusterInK(int[] paraBlock, double[][] paraCenters) throws UnableToClusterInKException {
+	public ClusteringResult clusterInK(BlockView paraBlock, double[][] paraCenters) throws UnableToClusterInKException {
+		int[] tempAssignments = computeAssignments(paraBlock, paraCenters, false);
+		checkCancelled();
+
+		return partitionIfNoEmpty(paraBlock, tempAssignments, paraCenters.length);
+	}// Of clusterInK
+
+	/**
+	 ************************* 
+	 * Cluster the given block with a number of restarts running concurrently
+	 * in the common fork-join pool. Each restart is seeded by k-means++, and
+	 * empty clusters are repaired during iterations. The result with the
+	 * least inertia is kept.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of clusters.
+	 * @param paraNumRestarts
+	 *            The number of restarts.
+	 * @return Clusters
+	 * @throws UnableToClusterInKException
+	 *             If the block has less than paraK instances.
+	 ************************* 
+	 */
+	public ClusteringResult clusterInKWithRestarts(final BlockView paraBlock, final int paraK, int paraNumRestarts)
+			throws UnableToClusterInKException {
+		// Step 1. Seeds are drawn here so that the result does not depend on
+		// scheduling.
+		final long[] tempSeeds = new long[paraNumRestarts];
+		for (int i = 0; i < paraNumRestarts; i++) {
+			tempSeeds[i] = SimpleTools.random.nextLong();
+		} // Of for i
+
+		// Step 2. Run restarts concurrently.
+		final int[][] tempAllAssignments = new int[paraNumRestarts][];
+		final double[] tempInertias = new double[paraNumRestarts];
+		ForkJoinTask<?>[] tempTasks = new ForkJoinTask<?>[paraNumRestarts];
+		for (int i = 0; i < paraNumRestarts; i++) {
+			final int tempRestart = i;
+			tempTasks[i] = Common.forkJoinPool.submit(new Runnable() {
+				public void run() {
+					double[][] tempCenters = getPlusPlusCenters(paraBlock, paraK,
+							new Random(tempSeeds[tempRestart]));
+					int[] tempAssignments = computeAssignments(paraBlock, tempCenters, true);
+					tempAllAssignments[tempRestart] = tempAssignments;
+					tempInertias[tempRestart] = computeInertia(paraBlock, tempAssignments, paraK);
+				}// Of run
+			});
+		} // Of for i
+
+		// Step 3. Keep the best one.
+		int tempBest = -1;
+		for (int i = 0; i < paraNumRestarts; i++) {
+			tempTasks[i].join();
+			if ((tempBest == -1) || (tempInertias[i] < tempInertias[tempBest])) {
+				tempBest = i;
+			} // Of if
+		} // Of for i
+		checkCancelled();
+
+		return partitionIfNoEmpty(paraBlock, tempAllAssignments[tempBest], paraK);
+	}// Of clusterInKWithRestarts
+
+	/**
+	 ************************* 
+	 * Compute the assignments of kMeans. The given centers are not changed.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraCenters
+	 *            The given centers.
+	 * @param paraRepair
+	 *            Repair empty clusters or not.
+	 * @return The center index of each instance.
+	 ************************* 
+	 */
+	int[] computeAssignments(BlockView paraBlock, double[][] paraCenters, boolean paraRepair) {
+		int tempMeasure = distanceMeasure.getMeasure();
+		if (accelerated
+				&& ((tempMeasure == DistanceMeasure.EUCLIDEAN) || (tempMeasure == DistanceMeasure.MANHATTAN))) {
+			return computeAssignmentsAccelerated(paraBlock, paraCenters, paraRepair);
+		} // Of if
+
 		// Number of blocks.
 		int tempK = paraCenters.length;
-		int[][] tempBlocks = new int[tempK][paraBlock.length];
+		int[] resultAssignments = new int[paraBlock.length()];
+		double[] tempDistances = new double[paraBlock.length()];
 		int[] tempCounters = new int[tempK];
 		double[][] tempCenters = paraCenters;
 
 		// Step 2. Cluster
-		double[][] tempNewCenters;
-		// At most 50 rounds.
+		// Two buffers are used in turn, the given centers are not changed.
+		double[][] tempNewCenters = new double[tempK][numConditions];
+		double[][] tempSpareCenters = new double[tempK][numConditions];
+		double[][] tempSwap;
 		SimpleTools.processTrackingOutput("\r\nKMeans.clusterInK(), round ");
-		for (int round = 0; round < 50; round++) {
+		for (int round = 0; (round < MAX_ROUNDS) && !cancelled; round++) {
 			// Step 2.1. Partition the instances according to the centers.
 			SimpleTools.processTrackingOutput("" + round + ", ");
-			Arrays.fill(tempCounters, 0);
-			for (int i = 0; i < paraBlock.length; i++) {
-				int tempClosestCenterIndex = -1;
-				double tempMinimalDistance = Double.MAX_VALUE;
-				double tempDistance;
-				for (int j = 0; j < tempK; j++) {
-					tempDistance = distanceMeasure.distance(paraBlock[i], tempCenters[j]);
-					if (tempDistance < tempMinimalDistance) {
-						tempMinimalDistance = tempDistance;
-						tempClosestCenterIndex = j;
-					} // Of if
-				} // Of for j
-
-				tempBlocks[tempClosestCenterIndex][tempCounters[tempClosestCenterIndex]] = paraBlock[i];
-				tempCounters[tempClosestCenterIndex]++;
-			} // Of for i
+			assignToClosest(paraBlock, tempCenters, resultAssignments, tempCounters, tempDistances);
+			if (paraRepair) {
+				repairEmptyClusters(resultAssignments, tempCounters, tempDistances, null);
+			} // Of if
 
 			// Step 2.2. Obtain new centers.
-			tempNewCenters = new double[tempK][numConditions];
-			// The first center
-			double tempValue;
-			for (int i = 0; i < tempK; i++) {
-				for (int j = 0; j < tempCounters[i]; j++) {
-					for (int k = 0; k < numConditions; k++) {
-						tempValue = data.instance(tempBlocks[i][j]).value(k) / tempCounters[i];
-						// System.out.println("Adding " + tempValue + " for " +
-						// i + ", " + k);
-						tempNewCenters[i][k] += tempValue;
-					} // Of for k
-				} // Of for j
-			} // Of for i
+			computeCenters(paraBlock, resultAssignments, tempCounters, tempNewCenters);
 
 			// Step 2.3. The terminate condition
 			if (SimpleTools.doubleMatricesEqual(tempCenters, tempNewCenters)) {
 				break;
 			} // Of if
 
-			tempCenters = tempNewCenters;
+			tempSwap = tempNewCenters;
+			tempNewCenters = (tempCenters == paraCenters) ? tempSpareCenters : tempCenters;
+			tempCenters = tempSwap;
 		} // Of while
 
-		// Step 3. Compress
-		clusters = new int[tempK][];
+		return resultAssignments;
+	}// Of computeAssignments
 
-		for (int i = 0; i < tempK; i++) {
+	/**
+	 ************************* 
+	 * Assign each instance to the closest center.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraCenters
+	 *            The centers.
+	 * @param paraAssignments
+	 *            The center index of each instance, to be filled.
+	 * @param paraCounters
+	 *            The number of instances of each center, to be filled.
+	 * @param paraDistances
+	 *            The distance of each instance to its center, to be filled.
+	 ************************* 
+	 */
+	void assignToClosest(BlockView paraBlock, double[][] paraCenters, int[] paraAssignments,
+			int[] paraCounters, double[] paraDistances) {
+		Arrays.fill(paraCounters, 0);
+		int tempClosestCenterIndex;
+		double tempMinimalDistance, tempDistance;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			tempClosestCenterIndex = -1;
+			tempMinimalDistance = Double.MAX_VALUE;
+			for (int j = 0; j < paraCenters.length; j++) {
+				tempDistance = distanceMeasure.distance(paraBlock.get(i), paraCenters[j]);
+				if (tempDistance < tempMinimalDistance) {
+					tempMinimalDistance = tempDistance;
+					tempClosestCenterIndex = j;
+				} // Of if
+			} // Of for j
+
+			paraAssignments[i] = tempClosestCenterIndex;
+			paraCounters[tempClosestCenterIndex]++;
+			paraDistances[i] = tempMinimalDistance;
+		} // Of for i
+	}// Of assignToClosest
+
+	/**
+	 ************************* 
+	 * Repair empty clusters. Each empty cluster takes the instance farthest
+	 * from its center among clusters with more than one instance. The center
+	 * of the cluster is then the instance itself.
+	 * 
+	 * @param paraAssignments
+	 *            The center index of each instance.
+	 * @param paraCounters
+	 *            The number of instances of each center.
+	 * @param paraDistances
+	 *            The distance (or its upper bound) of each instance to its
+	 *            center. It is set to 0 for moved instances.
+	 * @param paraLowerBounds
+	 *            The lower bounds of the accelerated version, set to 0 for
+	 *            moved instances. Null for the standard version.
+	 ************************* 
+	 */
+	void repairEmptyClusters(int[] paraAssignments, int[] paraCounters, double[] paraDistances,
+			double[] paraLowerBounds) {
+		int tempFarthest;
+		for (int j = 0; j < paraCounters.length; j++) {
+			if (paraCounters[j] > 0) {
+				continue;
+			} // Of if
+
+			tempFarthest = -1;
+			for (int i = 0; i < paraAssignments.length; i++) {
+				if ((paraCounters[paraAssignments[i]] > 1)
+						&& ((tempFarthest == -1) || (paraDistances[i] > paraDistances[tempFarthest]))) {
+					tempFarthest = i;
+				} // Of if
+			} // Of for i
+
+			if (tempFarthest == -1) {
+				// Less instances than clusters.
+				return;
+			} // Of if
+
+			paraCounters[paraAssignments[tempFarthest]]--;
+			paraAssignments[tempFarthest] = j;
+			paraCounters[j]++;
+			paraDistances[tempFarthest] = 0;
+			if (paraLowerBounds != null) {
+				paraLowerBounds[tempFarthest] = 0;
+			} // Of if
+		} // Of for j
+	}// Of repairEmptyClusters
+
+	/**
+	 ************************* 
+	 * Compute the inertia, i.e., the sum of squared distances from instances to
+	 * the means of their clusters.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraAssignments
+	 *            The center index of each instance.
+	 * @param paraK
+	 *            The number of clusters.
+	 * @return The inertia.
+	 ************************* 
+	 */
+	private double computeInertia(BlockView paraBlock, int[] paraAssignments, int paraK) {
+		int[] tempCounters = new int[paraK];
+		for (int i = 0; i < paraAssignments.length; i++) {
+			tempCounters[paraAssignments[i]]++;
+		} // Of for i
+		double[][] tempCenters = new double[paraK][numConditions];
+		computeCenters(paraBlock, paraAssignments, tempCounters, tempCenters);
+
+		double resultInertia = 0;
+		double tempDistance;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			tempDistance = distanceMeasure.distance(paraBlock.get(i), tempCenters[paraAssignments[i]]);
+			resultInertia += tempDistance * tempDistance;
+		} // Of for i
+
+		return resultInertia;
+	}// Of computeInertia
+
+	/**
+	 ************************* 
+	 * Compute the mean of each cluster. A center without instances is all 0.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraAssignments
+	 *            The center index of each instance.
+	 * @param paraCounters
+	 *            The number of instances of each center.
+	 * @param paraCenters
+	 *            The centers to be overwritten.
+	 ************************* 
+	 */
+	private void computeCenters(BlockView paraBlock, int[] paraAssignments, int[] paraCounters,
+			double[][] paraCenters) {
+		for (int i = 0; i < paraCenters.length; i++) {
+			Arrays.fill(paraCenters[i], 0);
+		} // Of for i
+
+		double[] tempFeatures = distanceMeasure.getFeatures();
+		double[] tempCenter;
+		int tempOffset, tempCount;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			tempCenter = paraCenters[paraAssignments[i]];
+			tempCount = paraCounters[paraAssignments[i]];
+			tempOffset = paraBlock.get(i) * numConditions;
+			for (int k = 0; k < numConditions; k++) {
+				tempCenter[k] += tempFeatures[tempOffset + k] / tempCount;
+			} // Of for k
+		} // Of for i
+	}// Of computeCenters
+
+	/**
+	 ************************* 
+	 * Partition the block if no cluster is empty.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraAssignments
+	 *            The center index of each instance.
+	 * @param paraK
+	 *            The number of clusters.
+	 * @return Clusters.
+	 * @throws UnableToClusterInKException
+	 *             If some cluster is empty.
+	 ************************* 
+	 */
+	ClusteringResult partitionIfNoEmpty(BlockView paraBlock, int[] paraAssignments, int paraK)
+			throws UnableToClusterInKException {
+		int[] tempCounters = new int[paraK];
+		for (int i = 0; i < paraAssignments.length; i++) {
+			tempCounters[paraAssignments[i]]++;
+		} // Of for i
+
+		for (int i = 0; i < paraK; i++) {
 			if (tempCounters[i] == 0) {
 				throw new UnableToClusterInKException("Error occurred in KMeans.clusterInK(int[], double[][]): "
-						+ "Unable to cluster the following block in " + paraCenters.length + ": \r\n"
-						+ Arrays.toString(paraBlock));
+						+ "Unable to cluster the following block in " + paraK + ": \r\n"
+						+ paraBlock);
 			} // Of if
+		} // Of for i
 
-			clusters[i] = new int[tempCounters[i]];
-			for (int j = 0; j < tempCounters[i]; j++) {
-				clusters[i][j] = tempBlocks[i][j];
-			} // Of for j
+		return new ClusteringResult(paraBlock, paraAssignments, paraK);
+	}// Of partitionIfNoEmpty
+
+	/**
+	 ************************* 
+	 * Cluster the given block in using kMeans, skipping distance computation
+	 * with bounds (Hamerly's method). Each instance keeps an upper bound of the
+	 * distance to its center, and a lower bound of the distance to any other
+	 * center. They are loosened by center shifts after each round. If the upper
+	 * bound is less than the lower one, or less than half the distance from the
+	 * center to its closest center, the assignment cannot change. Otherwise
+	 * the instance is compared with all centers. The assignments of each round
+	 * are the same as the standard version. Stop when no center moves further
+	 * than SHIFT_TOLERANCE.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraCenters
+	 *            The given centers.
+	 * @return Clusters
+	 * @throws UnableToClusterInKException
+	 *             If some cluster is empty.
+	 ************************* 
+	 */
+	public ClusteringResult clusterInKAccelerated(BlockView paraBlock, double[][] paraCenters)
+			throws UnableToClusterInKException {
+		int[] tempAssignments = computeAssignmentsAccelerated(paraBlock, paraCenters, false);
+		checkCancelled();
+
+		return partitionIfNoEmpty(paraBlock, tempAssignments, paraCenters.length);
+	}// Of clusterInKAccelerated
+
+	/**
+	 ************************* 
+	 * Compute the assignments of kMeans using Hamerly's method.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraCenters
+	 *            The given centers.
+	 * @param paraRepair
+	 *            Repair empty clusters or not.
+	 * @return The center index of each instance.
+	 ************************* 
+	 */
+	int[] computeAssignmentsAccelerated(BlockView paraBlock, double[][] paraCenters, boolean paraRepair) {
+		int tempK = paraCenters.length;
+		int[] tempAssignments = new int[paraBlock.length()];
+		int[] tempCounters = new int[tempK];
+		double[] tempUpperBounds = new double[paraBlock.length()];
+		double[] tempLowerBounds = new double[paraBlock.length()];
+		double[] tempShifts = new double[tempK];
+		double[] tempHalfGaps = new double[tempK];
+		double[][] tempCenters = new double[tempK][];
+		for (int i = 0; i < tempK; i++) {
+			tempCenters[i] = Arrays.copyOf(paraCenters[i], numConditions);
 		} // Of for i
+		double[][] tempNewCenters = new double[tempK][numConditions];
+		double[][] tempSwap;
 
-		return clusters;
-	}// Of clusterInK
+		// Step 1. The first assignment.
+		for (int i = 0; i < paraBlock.length(); i++) {
+			scanCenters(paraBlock, i, tempCenters, tempAssignments, tempUpperBounds, tempLowerBounds);
+			tempCounters[tempAssignments[i]]++;
+		} // Of for i
+		if (paraRepair) {
+			repairEmptyClusters(tempAssignments, tempCounters, tempUpperBounds, tempLowerBounds);
+		} // Of if
+
+		// Step 2. Cluster
+		SimpleTools.processTrackingOutput("\r\nKMeans.clusterInKAccelerated(), round ");
+		double tempMaxShift, tempSecondMaxShift, tempBound, tempDistance;
+		int tempMaxShiftIndex, tempOldCenter;
+		// The first assignment is the first round.
+		for (int round = 1; (round < MAX_ROUNDS) && !cancelled; round++) {
+			SimpleTools.processTrackingOutput("" + round + ", ");
+			// Step 2.1. Obtain new centers and their shifts.
+			computeCenters(paraBlock, tempAssignments, tempCounters, tempNewCenters);
+			tempMaxShift = 0;
+			tempSecondMaxShift = 0;
+			tempMaxShiftIndex = -1;
+			for (int j = 0; j < tempK; j++) {
+				tempShifts[j] = distanceMeasure.distance(tempCenters[j], tempNewCenters[j]);
+				if (tempShifts[j] > tempMaxShift) {
+					tempSecondMaxShift = tempMaxShift;
+					tempMaxShift = tempShifts[j];
+					tempMaxShiftIndex = j;
+				} else if (tempShifts[j] > tempSecondMaxShift) {
+					tempSecondMaxShift = tempShifts[j];
+				} // Of if
+			} // Of for j
+
+			tempSwap = tempCenters;
+			tempCenters = tempNewCenters;
+			tempNewCenters = tempSwap;
+
+			// Step 2.2. The terminate condition.
+			if (tempMaxShift <= SHIFT_TOLERANCE) {
+				break;
+			} // Of if
+
+			// Step 2.3. Half the distance to the closest other center.
+			Arrays.fill(tempHalfGaps, Double.MAX_VALUE);
+			for (int j = 0; j < tempK; j++) {
+				for (int k = j + 1; k < tempK; k++) {
+					tempDistance = distanceMeasure.distance(tempCenters[j], tempCenters[k]) / 2;
+					if (tempDistance < tempHalfGaps[j]) {
+						tempHalfGaps[j] = tempDistance;
+					} // Of if
+					if (tempDistance < tempHalfGaps[k]) {
+						tempHalfGaps[k] = tempDistance;
+					} // Of if
+				} // Of for k
+			} // Of for j
+
+			// Step 2.4. Update bounds and reassign if necessary.
+			for (int i = 0; i < paraBlock.length(); i++) {
+				tempOldCenter = tempAssignments[i];
+				tempUpperBounds[i] += tempShifts[tempOldCenter];
+				if (tempOldCenter == tempMaxShiftIndex) {
+					tempLowerBounds[i] -= tempSecondMaxShift;
+				} else {
+					tempLowerBounds[i] -= tempMaxShift;
+				} // Of if
+
+				tempBound = Math.max(tempHalfGaps[tempOldCenter], tempLowerBounds[i]);
+				if (tempUpperBounds[i] < tempBound) {
+					continue;
+				} // Of if
+
+				// Tighten the upper bound.
+				tempUpperBounds[i] = distanceMeasure.distance(paraBlock.get(i), tempCenters[tempOldCenter]);
+				if (tempUpperBounds[i] < tempBound) {
+					continue;
+				} // Of if
+
+				scanCenters(paraBlock, i, tempCenters, tempAssignments, tempUpperBounds, tempLowerBounds);
+				if (tempAssignments[i] != tempOldCenter) {
+					tempCounters[tempOldCenter]--;
+					tempCounters[tempAssignments[i]]++;
+				} // Of if
+			} // Of for i
+
+			if (paraRepair) {
+				repairEmptyClusters(tempAssignments, tempCounters, tempUpperBounds, tempLowerBounds);
+			} // Of if
+		} // Of for round
+
+		return tempAssignments;
+	}// Of computeAssignmentsAccelerated
+
+	/**
+	 ************************* 
+	 * Compare the instance with all centers, and set its assignment and
+	 * bounds. For equal distances, the first center is preferred.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraPosition
+	 *            The position of the instance in the block.
+	 * @param paraCenters
+	 *            The centers.
+	 * @param paraAssignments
+	 *            The center index of each instance.
+	 * @param paraUpperBounds
+	 *            The distance to the assigned center.
+	 * @param paraLowerBounds
+	 *            The distance to the second closest center.
+	 ************************* 
+	 */
+	private void scanCenters(BlockView paraBlock, int paraPosition, double[][] paraCenters, int[] paraAssignments,
+			double[] paraUpperBounds, double[] paraLowerBounds) {
+		int tempClosestCenterIndex = -1;
+		double tempMinimalDistance = Double.MAX_VALUE;
+		double tempSecondMinimalDistance = Double.MAX_VALUE;
+		double tempDistance;
+		for (int j = 0; j < paraCenters.length; j++) {
+			tempDistance = distanceMeasure.distance(paraBlock.get(paraPosition), paraCenters[j]);
+			if (tempDistance < tempMinimalDistance) {
+				tempSecondMinimalDistance = tempMinimalDistance;
+				tempMinimalDistance = tempDistance;
+				tempClosestCenterIndex = j;
+			} else if (tempDistance < tempSecondMinimalDistance) {
+				tempSecondMinimalDistance = tempDistance;
+			} // Of if
+		} // Of for j
+
+		paraAssignments[paraPosition] = tempClosestCenterIndex;
+		paraUpperBounds[paraPosition] = tempMinimalDistance;
+		paraLowerBounds[paraPosition] = tempSecondMinimalDistance;
+	}// Of scanCenters
 
 	/**
 	 ************************* 
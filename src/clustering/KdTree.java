@@ -0,0 +1,1107 @@
+package clustering;
+
+import java.io.FileReader;
+import java.util.Arrays;
+
+import common.*;
+import weka.core.Instances;
+
+/**
+ * A k-d tree over a block for radius and nearest neighbor queries. It supports
+ * the Euclidean and the Manhattan distances, and is effective only for
+ * low-dimensional data. Positions in queries and results are indices within
+ * the block, i.e., [0 .. paraBlock.length() - 1]. Distances between instances
+ * are computed in the same way as DistanceMeasure, so a query returns exactly
+ * the same instances as the brute-force scan. The tree is read-only after
+ * construction, hence can be shared by threads.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class KdTree {
+	/**
+	 * The maximal dimensionality for which the tree is employed. For higher
+	 * dimensions almost all leaves are visited.
+	 */
+	public static final int MAX_DIMENSIONS = 8;
+
+	/**
+	 * The minimal block size for which the tree is employed.
+	 */
+	public static final int MIN_BLOCK_SIZE = 64;
+
+	/**
+	 * The maximal number of points in a leaf.
+	 */
+	public static final int LEAF_SIZE = 16;
+
+	/**
+	 * Tolerance for pruning with bounding boxes. Box bounds are computed in a
+	 * different order from distances, so they may differ in the last bits.
+	 */
+	static final double TOLERANCE = 1e-10;
+
+	/**
+	 * The distance measure, EUCLIDEAN or MANHATTAN.
+	 */
+	int measure;
+
+	/**
+	 * The number of dimensions.
+	 */
+	int numDimensions;
+
+	/**
+	 * The number of points, i.e., the block size.
+	 */
+	int numPoints;
+
+	/**
+	 * The block position of each point in tree order.
+	 */
+	int[] positions;
+
+	/**
+	 * The tree order of each block position.
+	 */
+	int[] orders;
+
+	/**
+	 * Coordinates in tree order, packed row-major.
+	 */
+	double[] points;
+
+	/**
+	 * The first point (in tree order) of each node.
+	 */
+	int[] nodeStarts;
+
+	/**
+	 * The point after the last one of each node.
+	 */
+	int[] nodeEnds;
+
+	/**
+	 * The left child of each node, -1 for leaves.
+	 */
+	int[] nodeLefts;
+
+	/**
+	 * The right child of each node, -1 for leaves.
+	 */
+	int[] nodeRights;
+
+	/**
+	 * Lower bounds of the bounding box of each node, packed row-major.
+	 */
+	double[] nodeLowers;
+
+	/**
+	 * Upper bounds of the bounding box of each node, packed row-major.
+	 */
+	double[] nodeUppers;
+
+	/**
+	 * The number of nodes.
+	 */
+	int numNodes;
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure. Its features should have been built.
+	 * @param paraBlock
+	 *            The block.
+	 ********************
+	 */
+	public KdTree(DistanceMeasure paraDistanceMeasure, BlockView paraBlock) {
+		measure = paraDistanceMeasure.getMeasure();
+		if ((measure != DistanceMeasure.EUCLIDEAN) && (measure != DistanceMeasure.MANHATTAN)) {
+			System.out.println("Error occurred in KdTree(). Unsupported distance measure: " + measure);
+			System.exit(0);
+		} // Of if
+
+		numDimensions = paraDistanceMeasure.getNumConditions();
+		numPoints = paraBlock.length();
+
+		// Step 1. Copy coordinates.
+		double[] tempFeatures = paraDistanceMeasure.getFeatures();
+		positions = new int[numPoints];
+		points = new double[numPoints * numDimensions];
+		for (int i = 0; i < numPoints; i++) {
+			positions[i] = i;
+			System.arraycopy(tempFeatures, paraBlock.get(i) * numDimensions, points, i * numDimensions, numDimensions);
+		} // Of for i
+
+		// Step 2. Build nodes. Each leaf holds at least LEAF_SIZE / 2 points.
+		int tempMaxNodes = 2 * (numPoints / (LEAF_SIZE / 2) + 1);
+		nodeStarts = new int[tempMaxNodes];
+		nodeEnds = new int[tempMaxNodes];
+		nodeLefts = new int[tempMaxNodes];
+		nodeRights = new int[tempMaxNodes];
+		nodeLowers = new double[tempMaxNodes * numDimensions];
+		nodeUppers = new double[tempMaxNodes * numDimensions];
+		numNodes = 0;
+		if (numPoints > 0) {
+			buildNode(0, numPoints);
+		} // Of if
+
+		// Step 3. The inverse permutation.
+		orders = new int[numPoints];
+		for (int i = 0; i < numPoints; i++) {
+			orders[positions[i]] = i;
+		} // Of for i
+	}// Of the constructor
+
+	/**
+	 ********************
+	 * Is the tree applicable to the distance measure and the block? Other
+	 * measures, high-dimensional data and small blocks should use brute-force
+	 * scans.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure.
+	 * @param paraBlockSize
+	 *            The size of the block.
+	 * @return True if the tree should be employed.
+	 ********************
+	 */
+	public static boolean isApplicable(DistanceMeasure paraDistanceMeasure, int paraBlockSize) {
+		int tempMeasure = paraDistanceMeasure.getMeasure();
+		if ((tempMeasure != DistanceMeasure.EUCLIDEAN) && (tempMeasure != DistanceMeasure.MANHATTAN)) {
+			return false;
+		} // Of if
+
+		if (paraDistanceMeasure.getFeatures() == null) {
+			return false;
+		} // Of if
+
+		return (paraDistanceMeasure.getNumConditions() <= MAX_DIMENSIONS) && (paraBlockSize >= MIN_BLOCK_SIZE);
+	}// Of isApplicable
+
+	/**
+	 ********************
+	 * Build the node for the given range recursively. The range is split at
+	 * the median of the dimension with the largest spread.
+	 *
+	 * @param paraStart
+	 *            The first point.
+	 * @param paraEnd
+	 *            The point after the last one.
+	 * @return The node index.
+	 ********************
+	 */
+	int buildNode(int paraStart, int paraEnd) {
+		int resultNode = numNodes;
+		numNodes++;
+		nodeStarts[resultNode] = paraStart;
+		nodeEnds[resultNode] = paraEnd;
+		nodeLefts[resultNode] = -1;
+		nodeRights[resultNode] = -1;
+
+		// Step 1. The bounding box.
+		int tempBoxOffset = resultNode * numDimensions;
+		for (int j = 0; j < numDimensions; j++) {
+			nodeLowers[tempBoxOffset + j] = Double.MAX_VALUE;
+			nodeUppers[tempBoxOffset + j] = -Double.MAX_VALUE;
+		} // Of for j
+		double tempValue;
+		for (int i = paraStart; i < paraEnd; i++) {
+			for (int j = 0; j < numDimensions; j++) {
+				tempValue = points[i * numDimensions + j];
+				if (nodeLowers[tempBoxOffset + j] > tempValue) {
+					nodeLowers[tempBoxOffset + j] = tempValue;
+				} // Of if
+				if (nodeUppers[tempBoxOffset + j] < tempValue) {
+					nodeUppers[tempBoxOffset + j] = tempValue;
+				} // Of if
+			} // Of for j
+		} // Of for i
+
+		if (paraEnd - paraStart <= LEAF_SIZE) {
+			return resultNode;
+		} // Of if
+
+		// Step 2. The dimension with the largest spread.
+		int tempDimension = 0;
+		double tempMaxSpread = -1;
+		for (int j = 0; j < numDimensions; j++) {
+			if (tempMaxSpread < nodeUppers[tempBoxOffset + j] - nodeLowers[tempBoxOffset + j]) {
+				tempMaxSpread = nodeUppers[tempBoxOffset + j] - nodeLowers[tempBoxOffset + j];
+				tempDimension = j;
+			} // Of if
+		} // Of for j
+
+		// All points coincide.
+		if (tempMaxSpread <= 0) {
+			return resultNode;
+		} // Of if
+
+		// Step 3. Split at the median.
+		int tempMiddle = (paraStart + paraEnd) >>> 1;
+		select(paraStart, paraEnd, tempMiddle, tempDimension);
+
+		nodeLefts[resultNode] = buildNode(paraStart, tempMiddle);
+		nodeRights[resultNode] = buildNode(tempMiddle, paraEnd);
+
+		return resultNode;
+	}// Of buildNode
+
+	/**
+	 ********************
+	 * Partially sort the range so that the k-th point is in place with respect
+	 * to the given dimension (quick select).
+	 *
+	 * @param paraStart
+	 *            The first point.
+	 * @param paraEnd
+	 *            The point after the last one.
+	 * @param paraK
+	 *            The target position.
+	 * @param paraDimension
+	 *            The dimension.
+	 ********************
+	 */
+	void select(int paraStart, int paraEnd, int paraK, int paraDimension) {
+		int tempLeft = paraStart;
+		int tempRight = paraEnd - 1;
+		int i, j;
+		double tempPivot;
+		while (tempLeft < tempRight) {
+			tempPivot = points[((tempLeft + tempRight) >>> 1) * numDimensions + paraDimension];
+			i = tempLeft;
+			j = tempRight;
+			while (i <= j) {
+				while (points[i * numDimensions + paraDimension] < tempPivot) {
+					i++;
+				} // Of while
+				while (points[j * numDimensions + paraDimension] > tempPivot) {
+					j--;
+				} // Of while
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				} // Of if
+			} // Of while
+
+			if (paraK <= j) {
+				tempRight = j;
+			} else if (paraK >= i) {
+				tempLeft = i;
+			} else {
+				break;
+			} // Of if
+		} // Of while
+	}// Of select
+
+	/**
+	 ********************
+	 * Swap two points in tree order.
+	 *
+	 * @param paraFirst
+	 *            The first point.
+	 * @param paraSecond
+	 *            The second point.
+	 ********************
+	 */
+	void swap(int paraFirst, int paraSecond) {
+		int tempPosition = positions[paraFirst];
+		positions[paraFirst] = positions[paraSecond];
+		positions[paraSecond] = tempPosition;
+
+		int tempFirstOffset = paraFirst * numDimensions;
+		int tempSecondOffset = paraSecond * numDimensions;
+		double tempValue;
+		for (int j = 0; j < numDimensions; j++) {
+			tempValue = points[tempFirstOffset + j];
+			points[tempFirstOffset + j] = points[tempSecondOffset + j];
+			points[tempSecondOffset + j] = tempValue;
+		} // Of for j
+	}// Of swap
+
+	/**
+	 ********************
+	 * The distance between two points in tree order. The computation is the
+	 * same as that of DistanceMeasure.
+	 *
+	 * @param paraFirst
+	 *            The first point.
+	 * @param paraSecond
+	 *            The second point.
+	 * @return The distance.
+	 ********************
+	 */
+	double pointDistance(int paraFirst, int paraSecond) {
+		int tempFirstOffset = paraFirst * numDimensions;
+		int tempSecondOffset = paraSecond * numDimensions;
+		double tempDifference;
+		double resultDistance = 0;
+		Common.runtimes += numDimensions;
+
+		if (measure == DistanceMeasure.EUCLIDEAN) {
+			for (int j = 0; j < numDimensions; j++) {
+				tempDifference = points[tempFirstOffset + j] - points[tempSecondOffset + j];
+				resultDistance += tempDifference * tempDifference;
+			} // Of for j
+			return Math.sqrt(resultDistance);
+		} // Of if
+
+		for (int j = 0; j < numDimensions; j++) {
+			tempDifference = points[tempFirstOffset + j] - points[tempSecondOffset + j];
+			resultDistance += Math.abs(tempDifference);
+		} // Of for j
+		return resultDistance;
+	}// Of pointDistance
+
+	/**
+	 ********************
+	 * The minimal and maximal distances between a point and the bounding box of
+	 * a node.
+	 *
+	 * @param paraPoint
+	 *            The point in tree order.
+	 * @param paraNode
+	 *            The node.
+	 * @param paraBounds
+	 *            For storing the minimal and the maximal distances.
+	 ********************
+	 */
+	void boxDistances(int paraPoint, int paraNode, double[] paraBounds) {
+		int tempPointOffset = paraPoint * numDimensions;
+		int tempBoxOffset = paraNode * numDimensions;
+		double tempValue, tempLowerGap, tempUpperGap, tempNear, tempFar;
+		double tempMin = 0;
+		double tempMax = 0;
+		for (int j = 0; j < numDimensions; j++) {
+			tempValue = points[tempPointOffset + j];
+			tempLowerGap = tempValue - nodeLowers[tempBoxOffset + j];
+			tempUpperGap = nodeUppers[tempBoxOffset + j] - tempValue;
+			if (tempLowerGap < 0) {
+				tempNear = -tempLowerGap;
+			} else if (tempUpperGap < 0) {
+				tempNear = -tempUpperGap;
+			} else {
+				tempNear = 0;
+			} // Of if
+			tempFar = Math.max(Math.abs(tempLowerGap), Math.abs(tempUpperGap));
+
+			if (measure == DistanceMeasure.EUCLIDEAN) {
+				tempMin += tempNear * tempNear;
+				tempMax += tempFar * tempFar;
+			} else {
+				tempMin += tempNear;
+				tempMax += tempFar;
+			} // Of if
+		} // Of for j
+
+		if (measure == DistanceMeasure.EUCLIDEAN) {
+			tempMin = Math.sqrt(tempMin);
+			tempMax = Math.sqrt(tempMax);
+		} // Of if
+		paraBounds[0] = tempMin;
+		paraBounds[1] = tempMax;
+	}// Of boxDistances
+
+	/**
+	 ********************
+	 * Count the points within the radius (inclusive) of the center, including
+	 * the center itself.
+	 *
+	 * @param paraCenter
+	 *            The position of the center within the block.
+	 * @param paraRadius
+	 *            The radius.
+	 * @return The number of points.
+	 ********************
+	 */
+	public int rangeCount(int paraCenter, double paraRadius) {
+		return rangeCount(paraCenter, paraRadius, Integer.MAX_VALUE);
+	}// Of rangeCount
+
+	/**
+	 ********************
+	 * Count the points within the radius (inclusive) of the center, including
+	 * the center itself. Stop as soon as the limit is reached.
+	 *
+	 * @param paraCenter
+	 *            The position of the center within the block.
+	 * @param paraRadius
+	 *            The radius.
+	 * @param paraLimit
+	 *            The count is not increased further after reaching it.
+	 * @return The number of points, no more than paraLimit.
+	 ********************
+	 */
+	public int rangeCount(int paraCenter, double paraRadius, int paraLimit) {
+		if (numPoints == 0) {
+			return 0;
+		} // Of if
+
+		return countInNode(0, orders[paraCenter], paraRadius, paraLimit, 0, new double[2]);
+	}// Of rangeCount
+
+	/**
+	 ********************
+	 * Count the points of the node within the radius.
+	 *
+	 * @param paraNode
+	 *            The node.
+	 * @param paraCenter
+	 *            The center in tree order.
+	 * @param paraRadius
+	 *            The radius.
+	 * @param paraLimit
+	 *            The limit.
+	 * @param paraCount
+	 *            The count so far.
+	 * @param paraBounds
+	 *            The buffer for box distances.
+	 * @return The count after handling this node.
+	 ********************
+	 */
+	int countInNode(int paraNode, int paraCenter, double paraRadius, int paraLimit, int paraCount,
+			double[] paraBounds) {
+		boxDistances(paraCenter, paraNode, paraBounds);
+		if (paraBounds[0] > paraRadius + TOLERANCE) {
+			return paraCount;
+		} // Of if
+
+		// The whole box is inside.
+		if (paraBounds[1] < paraRadius - TOLERANCE) {
+			return Math.min(paraLimit, paraCount + nodeEnds[paraNode] - nodeStarts[paraNode]);
+		} // Of if
+
+		if (nodeLefts[paraNode] == -1) {
+			for (int i = nodeStarts[paraNode]; i < nodeEnds[paraNode]; i++) {
+				if (pointDistance(paraCenter, i) <= paraRadius) {
+					paraCount++;
+					if (paraCount >= paraLimit) {
+						return paraCount;
+					} // Of if
+				} // Of if
+			} // Of for i
+			return paraCount;
+		} // Of if
+
+		paraCount = countInNode(nodeLefts[paraNode], paraCenter, paraRadius, paraLimit, paraCount, paraBounds);
+		if (paraCount >= paraLimit) {
+			return paraCount;
+		} // Of if
+
+		return countInNode(nodeRights[paraNode], paraCenter, paraRadius, paraLimit, paraCount, paraBounds);
+	}// Of countInNode
+
+	/**
+	 ********************
+	 * Find the points within the radius (inclusive) of the center, including
+	 * the center itself. The result is in tree order rather than sorted.
+	 *
+	 * @param paraCenter
+	 *            The position of the center within the block.
+	 * @param paraRadius
+	 *            The radius.
+	 * @param paraNeighbors
+	 *            For storing the positions of neighbors within the block. Its
+	 *            length should be no less than the block size.
+	 * @return The number of neighbors.
+	 ********************
+	 */
+	public int rangeQuery(int paraCenter, double paraRadius, int[] paraNeighbors) {
+		if (numPoints == 0) {
+			return 0;
+		} // Of if
+
+		return queryInNode(0, orders[paraCenter], paraRadius, paraNeighbors, 0, new double[2]);
+	}// Of rangeQuery
+
+	/**
+	 ********************
+	 * Find the points within the radius (inclusive) of the center.
+	 *
+	 * @param paraCenter
+	 *            The position of the center within the block.
+	 * @param paraRadius
+	 *            The radius.
+	 * @return The positions of neighbors within the block in ascending order.
+	 ********************
+	 */
+	public int[] rangeQuery(int paraCenter, double paraRadius) {
+		int[] tempNeighbors = new int[numPoints];
+		int tempCount = rangeQuery(paraCenter, paraRadius, tempNeighbors);
+		int[] resultNeighbors = Arrays.copyOf(tempNeighbors, tempCount);
+		Arrays.sort(resultNeighbors);
+
+		return resultNeighbors;
+	}// Of rangeQuery
+
+	/**
+	 ********************
+	 * Find the points of the node within the radius.
+	 *
+	 * @param paraNode
+	 *            The node.
+	 * @param paraCenter
+	 *            The center in tree order.
+	 * @param paraRadius
+	 *            The radius.
+	 * @param paraNeighbors
+	 *            For storing the neighbors.
+	 * @param paraCount
+	 *            The count so far.
+	 * @param paraBounds
+	 *            The buffer for box distances.
+	 * @return The count after handling this node.
+	 ********************
+	 */
+	int queryInNode(int paraNode, int paraCenter, double paraRadius, int[] paraNeighbors, int paraCount,
+			double[] paraBounds) {
+		boxDistances(paraCenter, paraNode, paraBounds);
+		if (paraBounds[0] > paraRadius + TOLERANCE) {
+			return paraCount;
+		} // Of if
+
+		if (paraBounds[1] < paraRadius - TOLERANCE) {
+			for (int i = nodeStarts[paraNode]; i < nodeEnds[paraNode]; i++) {
+				paraNeighbors[paraCount] = positions[i];
+				paraCount++;
+			} // Of for i
+			return paraCount;
+		} // Of if
+
+		if (nodeLefts[paraNode] == -1) {
+			for (int i = nodeStarts[paraNode]; i < nodeEnds[paraNode]; i++) {
+				if (pointDistance(paraCenter, i) <= paraRadius) {
+					paraNeighbors[paraCount] = positions[i];
+					paraCount++;
+				} // Of if
+			} // Of for i
+			return paraCount;
+		} // Of if
+
+		paraCount = queryInNode(nodeLefts[paraNode], paraCenter, paraRadius, paraNeighbors, paraCount, paraBounds);
+		return queryInNode(nodeRights[paraNode], paraCenter, paraRadius, paraNeighbors, paraCount, paraBounds);
+	}// Of queryInNode
+
+	/**
+	 ********************
+	 * Find the k nearest neighbors of the center, excluding itself. For equal
+	 * distances, the smaller position is preferred.
+	 *
+	 * @param paraCenter
+	 *            The position of the center within the block.
+	 * @param paraK
+	 *            The number of neighbors.
+	 * @return The positions of neighbors within the block, the nearest first.
+	 ********************
+	 */
+	public int[] nearest(int paraCenter, int paraK) {
+		if (paraK > numPoints - 1) {
+			paraK = numPoints - 1;
+		} // Of if
+		if (paraK <= 0) {
+			return new int[0];
+		} // Of if
+
+		// A max-heap, the root is the farthest one.
+		int[] tempHeapPositions = new int[paraK];
+		double[] tempHeapDistances = new double[paraK];
+		int tempSize = nearestInNode(0, orders[paraCenter], paraK, tempHeapPositions, tempHeapDistances, 0,
+				new double[2]);
+
+		// Pop from the farthest.
+		int[] resultNeighbors = new int[tempSize];
+		for (int i = tempSize - 1; i >= 0; i--) {
+			resultNeighbors[i] = tempHeapPositions[0];
+			tempHeapPositions[0] = tempHeapPositions[i];
+			tempHeapDistances[0] = tempHeapDistances[i];
+			siftDown(tempHeapPositions, tempHeapDistances, i);
+		} // Of for i
+
+		return resultNeighbors;
+	}// Of nearest
+
+	/**
+	 ********************
+	 * Search the k nearest neighbors in the node. The nearer child is visited
+	 * first.
+	 *
+	 * @param paraNode
+	 *            The node.
+	 * @param paraCenter
+	 *            The center in tree order.
+	 * @param paraK
+	 *            The number of neighbors.
+	 * @param paraHeapPositions
+	 *            The heap positions.
+	 * @param paraHeapDistances
+	 *            The heap distances.
+	 * @param paraSize
+	 *            The heap size so far.
+	 * @param paraBounds
+	 *            The buffer for box distances.
+	 * @return The heap size after handling this node.
+	 ********************
+	 */
+	int nearestInNode(int paraNode, int paraCenter, int paraK, int[] paraHeapPositions, double[] paraHeapDistances,
+			int paraSize, double[] paraBounds) {
+		if (nodeLefts[paraNode] == -1) {
+			double tempDistance;
+			int tempPosition;
+			for (int i = nodeStarts[paraNode]; i < nodeEnds[paraNode]; i++) {
+				if (i == paraCenter) {
+					continue;
+				} // Of if
+
+				tempDistance = pointDistance(paraCenter, i);
+				tempPosition = positions[i];
+				if (paraSize < paraK) {
+					paraHeapPositions[paraSize] = tempPosition;
+					paraHeapDistances[paraSize] = tempDistance;
+					siftUp(paraHeapPositions, paraHeapDistances, paraSize);
+					paraSize++;
+				} else if ((tempDistance < paraHeapDistances[0])
+						|| ((tempDistance == paraHeapDistances[0]) && (tempPosition < paraHeapPositions[0]))) {
+					paraHeapPositions[0] = tempPosition;
+					paraHeapDistances[0] = tempDistance;
+					siftDown(paraHeapPositions, paraHeapDistances, paraSize);
+				} // Of if
+			} // Of for i
+			return paraSize;
+		} // Of if
+
+		boxDistances(paraCenter, nodeLefts[paraNode], paraBounds);
+		double tempLeftBound = paraBounds[0];
+		boxDistances(paraCenter, nodeRights[paraNode], paraBounds);
+		double tempRightBound = paraBounds[0];
+
+		int tempFirst = nodeLefts[paraNode];
+		int tempSecond = nodeRights[paraNode];
+		double tempSecondBound = tempRightBound;
+		if (tempRightBound < tempLeftBound) {
+			tempFirst = nodeRights[paraNode];
+			tempSecond = nodeLefts[paraNode];
+			tempSecondBound = tempLeftBound;
+		} // Of if
+
+		paraSize = nearestInNode(tempFirst, paraCenter, paraK, paraHeapPositions, paraHeapDistances, paraSize,
+				paraBounds);
+		if ((paraSize < paraK) || (tempSecondBound <= paraHeapDistances[0] + TOLERANCE)) {
+			paraSize = nearestInNode(tempSecond, paraCenter, paraK, paraHeapPositions, paraHeapDistances, paraSize,
+					paraBounds);
+		} // Of if
+
+		return paraSize;
+	}// Of nearestInNode
+
+	/**
+	 ********************
+	 * Is the first heap element farther than the second? For equal distances,
+	 * the larger position is farther.
+	 *
+	 * @param paraHeapPositions
+	 *            The heap positions.
+	 * @param paraHeapDistances
+	 *            The heap distances.
+	 * @param paraFirst
+	 *            The first index in the heap.
+	 * @param paraSecond
+	 *            The second index in the heap.
+	 * @return True if the first one should be closer to the root.
+	 ********************
+	 */
+	static boolean isFarther(int[] paraHeapPositions, double[] paraHeapDistances, int paraFirst, int paraSecond) {
+		if (paraHeapDistances[paraFirst] != paraHeapDistances[paraSecond]) {
+			return paraHeapDistances[paraFirst] > paraHeapDistances[paraSecond];
+		} // Of if
+
+		return paraHeapPositions[paraFirst] > paraHeapPositions[paraSecond];
+	}// Of isFarther
+
+	/**
+	 ********************
+	 * Swap two heap elements.
+	 *
+	 * @param paraHeapPositions
+	 *            The heap positions.
+	 * @param paraHeapDistances
+	 *            The heap distances.
+	 * @param paraFirst
+	 *            The first index in the heap.
+	 * @param paraSecond
+	 *            The second index in the heap.
+	 ********************
+	 */
+	static void swapHeap(int[] paraHeapPositions, double[] paraHeapDistances, int paraFirst, int paraSecond) {
+		int tempPosition = paraHeapPositions[paraFirst];
+		paraHeapPositions[paraFirst] = paraHeapPositions[paraSecond];
+		paraHeapPositions[paraSecond] = tempPosition;
+
+		double tempDistance = paraHeapDistances[paraFirst];
+		paraHeapDistances[paraFirst] = paraHeapDistances[paraSecond];
+		paraHeapDistances[paraSecond] = tempDistance;
+	}// Of swapHeap
+
+	/**
+	 ********************
+	 * Move the element up to restore the heap.
+	 *
+	 * @param paraHeapPositions
+	 *            The heap positions.
+	 * @param paraHeapDistances
+	 *            The heap distances.
+	 * @param paraIndex
+	 *            The index of the new element.
+	 ********************
+	 */
+	static void siftUp(int[] paraHeapPositions, double[] paraHeapDistances, int paraIndex) {
+		int tempParent;
+		while (paraIndex > 0) {
+			tempParent = (paraIndex - 1) >> 1;
+			if (!isFarther(paraHeapPositions, paraHeapDistances, paraIndex, tempParent)) {
+				break;
+			} // Of if
+			swapHeap(paraHeapPositions, paraHeapDistances, paraIndex, tempParent);
+			paraIndex = tempParent;
+		} // Of while
+	}// Of siftUp
+
+	/**
+	 ********************
+	 * Move the root down to restore the heap.
+	 *
+	 * @param paraHeapPositions
+	 *            The heap positions.
+	 * @param paraHeapDistances
+	 *            The heap distances.
+	 * @param paraSize
+	 *            The size of the heap.
+	 ********************
+	 */
+	static void siftDown(int[] paraHeapPositions, double[] paraHeapDistances, int paraSize) {
+		int tempIndex = 0;
+		int tempChild;
+		while (true) {
+			tempChild = 2 * tempIndex + 1;
+			if (tempChild >= paraSize) {
+				break;
+			} // Of if
+			if ((tempChild + 1 < paraSize)
+					&& isFarther(paraHeapPositions, paraHeapDistances, tempChild + 1, tempChild)) {
+				tempChild++;
+			} // Of if
+			if (!isFarther(paraHeapPositions, paraHeapDistances, tempChild, tempIndex)) {
+				break;
+			} // Of if
+			swapHeap(paraHeapPositions, paraHeapDistances, tempIndex, tempChild);
+			tempIndex = tempChild;
+		} // Of while
+	}// Of siftDown
+
+	/**
+	 * Points of the tree ranked by the time they become available, e.g., the
+	 * descending order of density. A nearest neighbor query only considers
+	 * points ranked before a limit. Each node keeps the minimal rank of its
+	 * points, so subtrees without such points are skipped. Ranks do not change
+	 * with queries, so they are computed once and shared by threads, while
+	 * each thread uses its own object for the results.
+	 */
+	public class RankedPoints {
+		/**
+		 * The rank of each point in tree order.
+		 */
+		int[] ranks;
+
+		/**
+		 * The minimal rank of the points of each node.
+		 */
+		int[] nodeMinRanks;
+
+		/**
+		 * Only points ranked before it are considered by the current query.
+		 */
+		int limit;
+
+		/**
+		 * The buffer for box distances.
+		 */
+		double[] bounds;
+
+		/**
+		 * The nearest position found by the last query, -1 if none.
+		 */
+		int nearestPosition;
+
+		/**
+		 * The distance to the nearest position.
+		 */
+		double nearestDistance;
+
+		/**
+		 * Is there another considered point with the same distance?
+		 */
+		boolean nearestTied;
+
+		/**
+		 ********************
+		 * The constructor.
+		 *
+		 * @param paraOrder
+		 *            The positions within the block in the order of ranks.
+		 *            It should cover all points.
+		 ********************
+		 */
+		public RankedPoints(int[] paraOrder) {
+			ranks = new int[numPoints];
+			for (int i = 0; i < paraOrder.length; i++) {
+				ranks[orders[paraOrder[i]]] = i;
+			} // Of for i
+
+			// Children are numbered after their parents.
+			nodeMinRanks = new int[numNodes];
+			for (int i = numNodes - 1; i >= 0; i--) {
+				if (nodeLefts[i] == -1) {
+					nodeMinRanks[i] = Integer.MAX_VALUE;
+					for (int j = nodeStarts[i]; j < nodeEnds[i]; j++) {
+						nodeMinRanks[i] = Math.min(nodeMinRanks[i], ranks[j]);
+					} // Of for j
+				} else {
+					nodeMinRanks[i] = Math.min(nodeMinRanks[nodeLefts[i]], nodeMinRanks[nodeRights[i]]);
+				} // Of if
+			} // Of for i
+
+			bounds = new double[2];
+		}// Of the first constructor
+
+		/**
+		 ********************
+		 * The constructor for copies. Ranks are set by copy().
+		 ********************
+		 */
+		RankedPoints() {
+			bounds = new double[2];
+		}// Of the second constructor
+
+		/**
+		 ********************
+		 * Copy for another thread. Ranks are shared.
+		 *
+		 * @return The copy.
+		 ********************
+		 */
+		public RankedPoints copy() {
+			RankedPoints resultCopy = new RankedPoints();
+			resultCopy.ranks = ranks;
+			resultCopy.nodeMinRanks = nodeMinRanks;
+			return resultCopy;
+		}// Of copy
+
+		/**
+		 ********************
+		 * Find the nearest point ranked before the limit, excluding the center
+		 * itself. For equal distances, the smaller position is preferred.
+		 *
+		 * @param paraCenter
+		 *            The position of the center within the block.
+		 * @param paraLimit
+		 *            Only points with smaller ranks are considered.
+		 * @return The position of the nearest point, -1 if none.
+		 ********************
+		 */
+		public int nearest(int paraCenter, int paraLimit) {
+			limit = paraLimit;
+			nearestPosition = -1;
+			nearestDistance = Double.MAX_VALUE;
+			nearestTied = false;
+			if ((numPoints > 0) && (nodeMinRanks[0] < limit)) {
+				nearestInNode(0, orders[paraCenter]);
+			} // Of if
+
+			return nearestPosition;
+		}// Of nearest
+
+		/**
+		 ********************
+		 * Get the distance to the nearest point of the last query.
+		 *
+		 * @return The distance.
+		 ********************
+		 */
+		public double getNearestDistance() {
+			return nearestDistance;
+		}// Of getNearestDistance
+
+		/**
+		 ********************
+		 * Is the nearest point of the last query tied with another one?
+		 *
+		 * @return True if another considered point has the same distance.
+		 ********************
+		 */
+		public boolean isNearestTied() {
+			return nearestTied;
+		}// Of isNearestTied
+
+		/**
+		 ********************
+		 * Search the nearest considered point in the node. The nearer child is
+		 * visited first.
+		 *
+		 * @param paraNode
+		 *            The node.
+		 * @param paraCenter
+		 *            The center in tree order.
+		 ********************
+		 */
+		void nearestInNode(int paraNode, int paraCenter) {
+			if (nodeLefts[paraNode] == -1) {
+				double tempDistance;
+				int tempPosition;
+				for (int i = nodeStarts[paraNode]; i < nodeEnds[paraNode]; i++) {
+					if ((ranks[i] >= limit) || (i == paraCenter)) {
+						continue;
+					} // Of if
+
+					tempDistance = pointDistance(paraCenter, i);
+					tempPosition = positions[i];
+					if ((nearestPosition == -1) || (tempDistance < nearestDistance)) {
+						nearestPosition = tempPosition;
+						nearestDistance = tempDistance;
+						nearestTied = false;
+					} else if (tempDistance == nearestDistance) {
+						nearestTied = true;
+						if (tempPosition < nearestPosition) {
+							nearestPosition = tempPosition;
+						} // Of if
+					} // Of if
+				} // Of for i
+				return;
+			} // Of if
+
+			int tempFirst = nodeLefts[paraNode];
+			int tempSecond = nodeRights[paraNode];
+			boolean tempFirstConsidered = nodeMinRanks[tempFirst] < limit;
+			boolean tempSecondConsidered = nodeMinRanks[tempSecond] < limit;
+			double tempFirstBound = Double.MAX_VALUE;
+			double tempSecondBound = Double.MAX_VALUE;
+			if (tempFirstConsidered) {
+				boxDistances(paraCenter, tempFirst, bounds);
+				tempFirstBound = bounds[0];
+			} // Of if
+			if (tempSecondConsidered) {
+				boxDistances(paraCenter, tempSecond, bounds);
+				tempSecondBound = bounds[0];
+			} // Of if
+			if (tempSecondBound < tempFirstBound) {
+				tempFirst = nodeRights[paraNode];
+				tempSecond = nodeLefts[paraNode];
+				tempSecondBound = tempFirstBound;
+				tempSecondConsidered = tempFirstConsidered;
+				tempFirstConsidered = true;
+			} // Of if
+
+			if (tempFirstConsidered) {
+				nearestInNode(tempFirst, paraCenter);
+			} // Of if
+			if (tempSecondConsidered
+					&& ((nearestPosition == -1) || (tempSecondBound <= nearestDistance + TOLERANCE))) {
+				nearestInNode(tempSecond, paraCenter);
+			} // Of if
+		}// Of nearestInNode
+	}// Of class RankedPoints
+
+	/**
+	 ********************
+	 * Get the number of nodes.
+	 *
+	 * @return The number of nodes.
+	 ********************
+	 */
+	public int getNumNodes() {
+		return numNodes;
+	}// Of getNumNodes
+
+	/**
+	 ********************
+	 * The test entrance. Results are compared with brute-force scans.
+	 *
+	 * @param args
+	 *            The parameters.
+	 ********************
+	 */
+	public static void main(String[] args) {
+		String tempFilename = "src/data/R15.arff";
+		if (args.length >= 1) {
+			tempFilename = args[0];
+		} // Of if
+
+		Instances tempData = null;
+		try {
+			FileReader tempReader = new FileReader(tempFilename);
+			tempData = new Instances(tempReader);
+			tempReader.close();
+		} catch (Exception ee) {
+			System.out.println("Cannot read the file: " + tempFilename + "\r\n" + ee);
+			System.exit(0);
+		} // Of try
+		tempData.setClassIndex(tempData.numAttributes() - 1);
+
+		int tempNumInstances = tempData.numInstances();
+		BlockView tempBlock = new BlockView(tempNumInstances);
+
+		int[] tempMeasures = { DistanceMeasure.EUCLIDEAN, DistanceMeasure.MANHATTAN };
+		for (int m = 0; m < tempMeasures.length; m++) {
+			DistanceMeasure tempMeasure = new DistanceMeasure(tempData, tempMeasures[m]);
+			KdTree tempTree = new KdTree(tempMeasure, tempBlock);
+			double tempRadius = tempMeasure.distance(0, tempNumInstances - 1) * 0.1;
+
+			long tempStartTime = System.nanoTime();
+			int tempTreeTotal = 0;
+			for (int i = 0; i < tempNumInstances; i++) {
+				tempTreeTotal += tempTree.rangeCount(i, tempRadius);
+			} // Of for i
+			long tempTreeTime = System.nanoTime() - tempStartTime;
+
+			tempStartTime = System.nanoTime();
+			int tempBruteTotal = 0;
+			for (int i = 0; i < tempNumInstances; i++) {
+				for (int j = 0; j < tempNumInstances; j++) {
+					if (tempMeasure.distance(i, j) <= tempRadius) {
+						tempBruteTotal++;
+					} // Of if
+				} // Of for j
+			} // Of for i
+			long tempBruteTime = System.nanoTime() - tempStartTime;
+
+			int tempNumMismatches = 0;
+			for (int i = 0; i < tempNumInstances; i += 7) {
+				int[] tempNeighbors = tempTree.nearest(i, 5);
+				double tempKthDistance = tempMeasure.distance(i, tempNeighbors[tempNeighbors.length - 1]);
+				int tempCloser = 0;
+				for (int j = 0; j < tempNumInstances; j++) {
+					if ((j != i) && (tempMeasure.distance(i, j) < tempKthDistance)) {
+						tempCloser++;
+					} // Of if
+				} // Of for j
+				if (tempCloser >= tempNeighbors.length) {
+					tempNumMismatches++;
+				} // Of if
+			} // Of for i
+
+			System.out.println(tempMeasure + ": " + tempTree.getNumNodes() + " nodes, range count " + tempTreeTotal
+					+ " (" + tempTreeTime / 1000000 + "ms) vs. brute force " + tempBruteTotal + " ("
+					+ tempBruteTime / 1000000 + "ms), nearest neighbor mismatches: " + tempNumMismatches);
+		} // Of for m
+	}// Of main
+}// Of class KdTree
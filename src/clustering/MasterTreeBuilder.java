@@ -0,0 +1,512 @@
+package clustering;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.RecursiveAction;
+
+import common.Common;
+import common.BlockView;
+import common.DistanceMeasure;
+
+/**
+ * Compute the master, i.e., the nearest denser instance, of each instance of a
+ * block. Instances are ranked in the descending order of density. With the
+ * k-d tree, each master is found with one nearest neighbor query limited to
+ * instances ranked before the group of the same density. Ranks are computed
+ * once and shared, so chunks of the density-sorted order are independent and
+ * handled in parallel. Otherwise each instance scans only denser instances,
+ * and rows are handled in parallel. The result is the same as the scan of the whole block: for equal
+ * distances the smaller position is preferred, and instances with equal
+ * densities are not masters of each other. Masters of some instances can also
+ * be resolved alone, when others are known.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+class MasterTreeBuilder {
+	/**
+	 * Instances in the density-sorted order handled by a task with the k-d
+	 * tree.
+	 */
+	public static final int CHUNK_SIZE = 256;
+
+	/**
+	 * Instances handled by a task without further splitting in scans.
+	 */
+	public static final int ROWS_PER_TASK = 64;
+
+	/**
+	 * The distance measure.
+	 */
+	DistanceMeasure distanceMeasure;
+
+	/**
+	 * The density of each instance in the whole data set.
+	 */
+	double[] densities;
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure. It should be thread-safe.
+	 * @param paraDensities
+	 *            The density of each instance.
+	 ********************
+	 */
+	MasterTreeBuilder(DistanceMeasure paraDistanceMeasure, double[] paraDensities) {
+		distanceMeasure = paraDistanceMeasure;
+		densities = paraDensities;
+	}// Of the constructor
+
+	/**
+	 ********************
+	 * Compute masters of the block.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraBound
+	 *            Only masters with distance smaller than the bound are
+	 *            accepted.
+	 * @param paraMasters
+	 *            For storing the master of each instance, indicated by the index
+	 *            within the block. -1 if there is no denser instance within
+	 *            the bound.
+	 * @param paraDistancesToMaster
+	 *            For storing the distance to master, the bound if there is no
+	 *            master.
+	 * @param paraTied
+	 *            For storing whether another denser instance has the same
+	 *            distance as the master. Null if not required.
+	 ********************
+	 */
+	void build(BlockView paraBlock, double paraBound, int[] paraMasters, double[] paraDistancesToMaster,
+			boolean[] paraTied) {
+		// Step 1. Rank in the descending order of density.
+		BuildContext tempContext = new BuildContext(paraBlock, paraBound, paraMasters, paraDistancesToMaster);
+		rank(tempContext);
+		tempContext.tied = paraTied;
+
+		// Step 2. Find masters.
+		if (KdTree.isApplicable(distanceMeasure, paraBlock.length())) {
+			tempContext.rankedPoints = new KdTree(distanceMeasure, paraBlock).new RankedPoints(tempContext.order);
+			Common.forkJoinPool.invoke(new BuildTask(tempContext, 0, paraBlock.length(), CHUNK_SIZE));
+		} else {
+			Common.forkJoinPool.invoke(new BuildTask(tempContext, 0, paraBlock.length(), ROWS_PER_TASK));
+		} // Of if
+	}// Of build
+
+	/**
+	 ********************
+	 * Sort the block in the descending order of density, and find the group of
+	 * equal densities of each rank.
+	 *
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 ********************
+	 */
+	void rank(BuildContext paraContext) {
+		// Step 1. Sort in the descending order of density.
+		final BlockView tempBlock = paraContext.block;
+		Integer[] tempSorted = new Integer[tempBlock.length()];
+		for (int i = 0; i < tempSorted.length; i++) {
+			tempSorted[i] = i;
+		} // Of for i
+		Arrays.sort(tempSorted, new Comparator<Integer>() {
+			public int compare(Integer paraFirst, Integer paraSecond) {
+				return Double.compare(densities[tempBlock.get(paraSecond)], densities[tempBlock.get(paraFirst)]);
+			}// Of compare
+		});
+
+		// Step 2. Instances before the group of equal densities are denser.
+		int[] tempOrder = new int[tempBlock.length()];
+		int[] tempGroupStarts = new int[tempBlock.length()];
+		for (int i = 0; i < tempOrder.length; i++) {
+			tempOrder[i] = tempSorted[i];
+			if ((i > 0) && (densities[tempBlock.get(tempOrder[i])] == densities[tempBlock.get(tempOrder[i - 1])])) {
+				tempGroupStarts[i] = tempGroupStarts[i - 1];
+			} else {
+				tempGroupStarts[i] = i;
+			} // Of if
+		} // Of for i
+
+		paraContext.order = tempOrder;
+		paraContext.groupStarts = tempGroupStarts;
+	}// Of rank
+
+	/**
+	 ********************
+	 * Find masters of a chunk with the k-d tree.
+	 *
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraStart
+	 *            The first rank in the density-sorted order.
+	 * @param paraEnd
+	 *            The rank after the last one.
+	 ********************
+	 */
+	void buildWithTree(BuildContext paraContext, int paraStart, int paraEnd) {
+		int[] tempOrder = paraContext.order;
+		KdTree.RankedPoints tempRankedPoints = paraContext.rankedPoints.copy();
+		int tempInstance, tempMaster;
+		for (int i = paraStart; i < paraEnd; i++) {
+			// Only denser instances are considered.
+			tempInstance = tempOrder[i];
+			tempMaster = tempRankedPoints.nearest(tempInstance, paraContext.groupStarts[i]);
+			if ((tempMaster != -1) && (tempRankedPoints.getNearestDistance() < paraContext.bound)) {
+				paraContext.masters[tempInstance] = tempMaster;
+				paraContext.distancesToMaster[tempInstance] = tempRankedPoints.getNearestDistance();
+			} else {
+				paraContext.masters[tempInstance] = -1;
+				paraContext.distancesToMaster[tempInstance] = paraContext.bound;
+			} // Of if
+
+			if (paraContext.tied != null) {
+				paraContext.tied[tempInstance] = (paraContext.masters[tempInstance] != -1)
+						&& tempRankedPoints.isNearestTied();
+			} // Of if
+		} // Of for i
+	}// Of buildWithTree
+
+	/**
+	 ********************
+	 * Find masters of a chunk by scanning denser instances.
+	 *
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraStart
+	 *            The first rank in the density-sorted order.
+	 * @param paraEnd
+	 *            The rank after the last one.
+	 ********************
+	 */
+	void buildWithScan(BuildContext paraContext, int paraStart, int paraEnd) {
+		BlockView tempBlock = paraContext.block;
+		int[] tempOrder = paraContext.order;
+		int tempInstance, tempCandidate, tempMaster;
+		double tempDistance, tempMinDistance;
+		boolean tempTied;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempInstance = tempOrder[i];
+			tempMaster = -1;
+			tempMinDistance = paraContext.bound;
+			tempTied = false;
+			for (int j = 0; j < paraContext.groupStarts[i]; j++) {
+				tempCandidate = tempOrder[j];
+				tempDistance = distanceMeasure.distance(tempBlock.get(tempInstance), tempBlock.get(tempCandidate));
+				if (tempDistance < tempMinDistance) {
+					tempMinDistance = tempDistance;
+					tempMaster = tempCandidate;
+					tempTied = false;
+				} else if ((tempDistance == tempMinDistance) && (tempMaster != -1)) {
+					tempTied = true;
+					if (tempCandidate < tempMaster) {
+						tempMaster = tempCandidate;
+					} // Of if
+				} // Of if
+			} // Of for j
+
+			paraContext.masters[tempInstance] = tempMaster;
+			paraContext.distancesToMaster[tempInstance] = tempMinDistance;
+			if (paraContext.tied != null) {
+				paraContext.tied[tempInstance] = tempTied;
+			} // Of if
+		} // Of for i
+	}// Of buildWithScan
+
+	/**
+	 ********************
+	 * Compute masters of some instances of the block. Other instances are not
+	 * changed.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraRows
+	 *            Indices within the block of the instances.
+	 * @param paraBound
+	 *            Only masters with distance smaller than the bound are
+	 *            accepted.
+	 * @param paraMasters
+	 *            For storing the master of each instance, indicated by the index
+	 *            within the block.
+	 * @param paraDistancesToMaster
+	 *            For storing the distance to master.
+	 ********************
+	 */
+	void resolve(BlockView paraBlock, int[] paraRows, double paraBound, int[] paraMasters,
+			double[] paraDistancesToMaster) {
+		BuildContext tempContext = new BuildContext(paraBlock, paraBound, paraMasters, paraDistancesToMaster);
+		tempContext.rows = paraRows;
+		Common.forkJoinPool.invoke(new BuildTask(tempContext, 0, paraRows.length, ROWS_PER_TASK));
+	}// Of resolve
+
+	/**
+	 ********************
+	 * Compute masters of some instances of the block with one nearest neighbor
+	 * query each. The block is ranked and the k-d tree is built once, so it
+	 * pays off only for many rows of a large block. Scans are used if the k-d
+	 * tree is not applicable. Other instances are not changed.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraRows
+	 *            Indices within the block of the instances.
+	 * @param paraBound
+	 *            Only masters with distance smaller than the bound are
+	 *            accepted.
+	 * @param paraMasters
+	 *            For storing the master of each instance, indicated by the index
+	 *            within the block.
+	 * @param paraDistancesToMaster
+	 *            For storing the distance to master.
+	 ********************
+	 */
+	void resolveNearest(BlockView paraBlock, int[] paraRows, double paraBound, int[] paraMasters,
+			double[] paraDistancesToMaster) {
+		if (!KdTree.isApplicable(distanceMeasure, paraBlock.length())) {
+			resolve(paraBlock, paraRows, paraBound, paraMasters, paraDistancesToMaster);
+			return;
+		} // Of if
+
+		BuildContext tempContext = new BuildContext(paraBlock, paraBound, paraMasters, paraDistancesToMaster);
+		rank(tempContext);
+		tempContext.ranks = new int[paraBlock.length()];
+		for (int i = 0; i < tempContext.order.length; i++) {
+			tempContext.ranks[tempContext.order[i]] = i;
+		} // Of for i
+		tempContext.rows = paraRows;
+		tempContext.rankedPoints = new KdTree(distanceMeasure, paraBlock).new RankedPoints(tempContext.order);
+		Common.forkJoinPool.invoke(new BuildTask(tempContext, 0, paraRows.length, CHUNK_SIZE));
+	}// Of resolveNearest
+
+	/**
+	 ********************
+	 * Compute masters of the given rows with the k-d tree.
+	 *
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraStart
+	 *            The first row.
+	 * @param paraEnd
+	 *            The row after the last one.
+	 ********************
+	 */
+	void resolveWithTree(BuildContext paraContext, int paraStart, int paraEnd) {
+		KdTree.RankedPoints tempRankedPoints = paraContext.rankedPoints.copy();
+		int tempInstance, tempMaster;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempInstance = paraContext.rows[i];
+			tempMaster = tempRankedPoints.nearest(tempInstance,
+					paraContext.groupStarts[paraContext.ranks[tempInstance]]);
+			if ((tempMaster != -1) && (tempRankedPoints.getNearestDistance() < paraContext.bound)) {
+				paraContext.masters[tempInstance] = tempMaster;
+				paraContext.distancesToMaster[tempInstance] = tempRankedPoints.getNearestDistance();
+			} else {
+				paraContext.masters[tempInstance] = -1;
+				paraContext.distancesToMaster[tempInstance] = paraContext.bound;
+			} // Of if
+		} // Of for i
+	}// Of resolveWithTree
+
+	/**
+	 ********************
+	 * Compute masters of the given rows by scanning the block, the same as
+	 * DensityPeaks.computeMasters() did.
+	 *
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraStart
+	 *            The first row.
+	 * @param paraEnd
+	 *            The row after the last one.
+	 ********************
+	 */
+	void resolveWithScan(BuildContext paraContext, int paraStart, int paraEnd) {
+		BlockView tempBlock = paraContext.block;
+		int tempInstance, tempMaster;
+		double tempDistance, tempMinDistance;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempInstance = paraContext.rows[i];
+			tempMaster = -1;
+			tempMinDistance = paraContext.bound;
+			for (int j = 0; j < tempBlock.length(); j++) {
+				if (densities[tempBlock.get(j)] > densities[tempBlock.get(tempInstance)]) {
+					tempDistance = distanceMeasure.distance(tempBlock.get(tempInstance), tempBlock.get(j));
+					if (tempMinDistance > tempDistance) {
+						tempMinDistance = tempDistance;
+						tempMaster = j;
+					} // Of if
+				} // Of if
+			} // Of for j
+
+			paraContext.masters[tempInstance] = tempMaster;
+			paraContext.distancesToMaster[tempInstance] = tempMinDistance;
+		} // Of for i
+	}// Of resolveWithScan
+
+	/**
+	 * The state of one invocation of build(), resolve() or resolveNearest().
+	 */
+	static class BuildContext {
+		/**
+		 * The given block.
+		 */
+		final BlockView block;
+
+		/**
+		 * The bound of distances to masters.
+		 */
+		final double bound;
+
+		/**
+		 * The resulting masters.
+		 */
+		final int[] masters;
+
+		/**
+		 * The resulting distances to master.
+		 */
+		final double[] distancesToMaster;
+
+		/**
+		 * Indices within the block in the descending order of density. Not
+		 * for resolve().
+		 */
+		int[] order;
+
+		/**
+		 * The first rank of the group with the same density of each rank. Not
+		 * for resolve().
+		 */
+		int[] groupStarts;
+
+		/**
+		 * The rank of each index within the block. Only for resolveNearest().
+		 */
+		int[] ranks;
+
+		/**
+		 * The resulting tie indicators. Null if not required.
+		 */
+		boolean[] tied;
+
+		/**
+		 * Ranks of the k-d tree of the block, shared by tasks. Null if scans
+		 * are used.
+		 */
+		KdTree.RankedPoints rankedPoints;
+
+		/**
+		 * Indices within the block to be resolved. Only for resolve() and
+		 * resolveNearest().
+		 */
+		int[] rows;
+
+		/**
+		 ********************
+		 * The constructor.
+		 *
+		 * @param paraBlock
+		 *            The given block.
+		 * @param paraBound
+		 *            The bound of distances to masters.
+		 * @param paraMasters
+		 *            The resulting masters.
+		 * @param paraDistancesToMaster
+		 *            The resulting distances to master.
+		 ********************
+		 */
+		BuildContext(BlockView paraBlock, double paraBound, int[] paraMasters, double[] paraDistancesToMaster) {
+			block = paraBlock;
+			bound = paraBound;
+			masters = paraMasters;
+			distancesToMaster = paraDistancesToMaster;
+		}// Of the constructor
+	}// Of class BuildContext
+
+	/**
+	 * Find masters of a range of ranks or rows, or split it.
+	 */
+	class BuildTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The context of the current invocation.
+		 */
+		BuildContext context;
+
+		/**
+		 * The first rank or row.
+		 */
+		int start;
+
+		/**
+		 * The rank or row after the last one.
+		 */
+		int end;
+
+		/**
+		 * The maximal number handled without splitting.
+		 */
+		int chunkSize;
+
+		/**
+		 ********************
+		 * The constructor.
+		 *
+		 * @param paraContext
+		 *            The context of the current invocation.
+		 * @param paraStart
+		 *            The first rank or row.
+		 * @param paraEnd
+		 *            The rank or row after the last one.
+		 * @param paraChunkSize
+		 *            The maximal number handled without splitting.
+		 ********************
+		 */
+		BuildTask(BuildContext paraContext, int paraStart, int paraEnd, int paraChunkSize) {
+			context = paraContext;
+			start = paraStart;
+			end = paraEnd;
+			chunkSize = paraChunkSize;
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Find the masters.
+		 ********************
+		 */
+		protected void compute() {
+			if (end - start > chunkSize) {
+				int tempMiddle = (start + end) >>> 1;
+				invokeAll(new BuildTask(context, start, tempMiddle, chunkSize),
+						new BuildTask(context, tempMiddle, end, chunkSize));
+				return;
+			} // Of if
+
+			if ((context.rows != null) && (context.rankedPoints != null)) {
+				resolveWithTree(context, start, end);
+			} else if (context.rows != null) {
+				resolveWithScan(context, start, end);
+			} else if (context.rankedPoints != null) {
+				buildWithTree(context, start, end);
+			} else {
+				buildWithScan(context, start, end);
+			} // Of if
+		}// Of compute
+	}// Of class BuildTask
+}// Of class MasterTreeBuilder
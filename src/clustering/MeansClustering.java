@@ -1,5 +1,8 @@
 package clustering;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import common.*;
 import exception.UnableToClusterInKException;
 import weka.core.Instances;
@@ -17,7 +20,7 @@ import weka.core.Instances;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 10, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public abstract class MeansClustering extends Clustering {
@@ -61,7 +64,7 @@ public abstract class MeansClustering extends Clustering {
 	 *             If fails to cluster.
 	 ************************* 
 	 */
-	public int[][] clusterInTwo(int[] paraBlock) throws UnableToClusterInKException {
+	public ClusteringResult clusterInTwo(BlockView paraBlock) throws UnableToClusterInKException {
 		// Step 1. Select two initial points
 		double[][] tempCenters = getSemiMaximalDistancePair(paraBlock);
 
@@ -79,19 +82,84 @@ public abstract class MeansClustering extends Clustering {
 	 * @return Clusters
 	 ************************* 
 	 */
-	public double[][] getRandomCenters(int[] paraBlock, int paraK) {
-		int[] tempArray = SimpleTools.getRandomOrder(paraBlock.length);
+	public double[][] getRandomCenters(BlockView paraBlock, int paraK) {
+		int[] tempArray = SimpleTools.getRandomOrder(paraBlock.length());
 		double[][] resultCenters = new double[paraK][numConditions];
 
 		for (int i = 0; i < paraK; i++) {
 			for (int j = 0; j < numConditions; j++) {
-				resultCenters[i][j] = data.instance(paraBlock[tempArray[i]]).value(j);
+				resultCenters[i][j] = data.instance(paraBlock.get(tempArray[i])).value(j);
 			} // Of for j
 		} // Of for i
 
 		return resultCenters;
 	}// Of getRandomCenters
 
+	/**
+	 ************************* 
+	 * Select centers by k-means++. The first center is a random instance, each
+	 * following one is an instance selected with probability proportional to
+	 * the squared distance to the closest selected center.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of clusters.
+	 * @param paraRandom
+	 *            The random number generator.
+	 * @return The centers.
+	 ************************* 
+	 */
+	public double[][] getPlusPlusCenters(BlockView paraBlock, int paraK, Random paraRandom) {
+		double[][] resultCenters = new double[paraK][];
+		double[] tempFeatures = distanceMeasure.getFeatures();
+		// The squared distance to the closest selected center.
+		double[] tempWeights = new double[paraBlock.length()];
+		Arrays.fill(tempWeights, Double.MAX_VALUE);
+
+		int tempSelected = paraRandom.nextInt(paraBlock.length());
+		double tempDistance, tempTotal, tempTarget;
+		for (int i = 0; i < paraK; i++) {
+			resultCenters[i] = Arrays.copyOfRange(tempFeatures, paraBlock.get(tempSelected) * numConditions,
+					(paraBlock.get(tempSelected) + 1) * numConditions);
+			if (i == paraK - 1) {
+				break;
+			} // Of if
+
+			// Step 1. Update weights. Compare with the vector to bypass the
+			// distance cache.
+			tempTotal = 0;
+			for (int j = 0; j < paraBlock.length(); j++) {
+				tempDistance = distanceMeasure.distance(paraBlock.get(j), resultCenters[i]);
+				tempDistance *= tempDistance;
+				if (tempDistance < tempWeights[j]) {
+					tempWeights[j] = tempDistance;
+				} // Of if
+				tempTotal += tempWeights[j];
+			} // Of for j
+
+			// Step 2. Select the next one.
+			if (tempTotal <= 0) {
+				// All instances are selected ones.
+				tempSelected = paraRandom.nextInt(paraBlock.length());
+				continue;
+			} // Of if
+
+			tempTarget = paraRandom.nextDouble() * tempTotal;
+			for (int j = 0; j < paraBlock.length(); j++) {
+				if (tempWeights[j] > 0) {
+					tempSelected = j;
+					tempTarget -= tempWeights[j];
+					if (tempTarget < 0) {
+						break;
+					} // Of if
+				} // Of if
+			} // Of for j
+		} // Of for i
+
+		return resultCenters;
+	}// Of getPlusPlusCenters
+
 	/**
 	 ************************* 
 	 * Cluster the given block in using kMeans.
@@ -105,7 +173,7 @@ public abstract class MeansClustering extends Clustering {
 	 *             If fails to cluster.
 	 ************************* 
 	 */
-	public int[][] clusterInK(int[] paraBlock, int paraK) throws UnableToClusterInKException {
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK) throws UnableToClusterInKException {
 		double[][] tempCenters = getRandomCenters(paraBlock, paraK);
 
 		return clusterInK(paraBlock, tempCenters);
@@ -124,6 +192,6 @@ public abstract class MeansClustering extends Clustering {
 	 *             If fails to cluster.
 	 ************************* 
 	 */
-	public abstract int[][] clusterInK(int[] paraBlock, double[][] paraCenters) throws UnableToClusterInKException;
+	public abstract ClusteringResult clusterInK(BlockView paraBlock, double[][] paraCenters) throws UnableToClusterInKException;
 
 }// Of class MeansClustering
@@ -0,0 +1,392 @@
+package clustering;
+
+import java.util.Random;
+
+import common.*;
+import exception.UnableToClusterInKException;
+import weka.core.Instances;
+
+/**
+ * The mini-batch kMeans algorithm. Each step takes a random batch of the
+ * block, assigns its instances to the closest centers, and moves each center
+ * towards its instances with a learning rate of 1/n, where n is the number of
+ * instances the center has taken so far. Only the final assignment sweeps the
+ * whole block. Blocks no larger than FULL_BATCH_THRESHOLD are handled by the
+ * standard kMeans, so the object can replace a KMeans for all blocks. A
+ * streaming model accepts chunks of instances or vectors one by one, e.g.,
+ * from a data source too big to be loaded at once.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class MiniBatchKMeans extends KMeans {
+	/**
+	 * Blocks with more instances are handled with mini-batches.
+	 */
+	public static final int FULL_BATCH_THRESHOLD = 100000;
+
+	/**
+	 * The default number of instances in a batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+
+	/**
+	 * The default number of batches.
+	 */
+	public static final int DEFAULT_NUM_BATCHES = 200;
+
+	/**
+	 * The number of instances sampled for k-means++ seeding.
+	 */
+	public static final int SEEDING_SAMPLE_SIZE = 10000;
+
+	/**
+	 * The number of instances in a batch.
+	 */
+	int batchSize;
+
+	/**
+	 * The maximal number of batches.
+	 */
+	int numBatches;
+
+	/**
+	 ********************
+	 * The constructor for independent running.
+	 *
+	 * @param paraFilename
+	 *            The data set filename.
+	 * @param paraDistanceMeasure
+	 *            The distance measure in integer.
+	 ********************
+	 */
+	public MiniBatchKMeans(String paraFilename, int paraDistanceMeasure) {
+		super(paraFilename, paraDistanceMeasure);
+		batchSize = DEFAULT_BATCH_SIZE;
+		numBatches = DEFAULT_NUM_BATCHES;
+	}// Of the first constructor
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraData
+	 *            The data set.
+	 * @param paraDistanceMeasure
+	 *            The distance measure as an object.
+	 ********************
+	 */
+	public MiniBatchKMeans(Instances paraData, DistanceMeasure paraDistanceMeasure) {
+		super(paraData, paraDistanceMeasure);
+		batchSize = DEFAULT_BATCH_SIZE;
+		numBatches = DEFAULT_NUM_BATCHES;
+	}// Of the second constructor
+
+	/**
+	 *************************
+	 * Set the number of instances in a batch.
+	 *
+	 * @param paraBatchSize
+	 *            The batch size.
+	 *************************
+	 */
+	public void setBatchSize(int paraBatchSize) {
+		batchSize = paraBatchSize;
+	}// Of setBatchSize
+
+	/**
+	 *************************
+	 * Set the maximal number of batches.
+	 *
+	 * @param paraNumBatches
+	 *            The number of batches.
+	 *************************
+	 */
+	public void setNumBatches(int paraNumBatches) {
+		numBatches = paraNumBatches;
+	}// Of setNumBatches
+
+	/**
+	 *************************
+	 * Cluster the given block. Centers of a big block are selected by
+	 * k-means++ on a random sample of it.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of clusters.
+	 * @return Clusters
+	 * @throws UnableToClusterInKException
+	 *             If fails to cluster.
+	 *************************
+	 */
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK) throws UnableToClusterInKException {
+		if (paraBlock.length() <= FULL_BATCH_THRESHOLD) {
+			return super.clusterInK(paraBlock, paraK);
+		} // Of if
+
+		Random tempRandom = new Random(SimpleTools.random.nextLong());
+		int[] tempSample = new int[Math.min(SEEDING_SAMPLE_SIZE, paraBlock.length())];
+		for (int i = 0; i < tempSample.length; i++) {
+			tempSample[i] = paraBlock.get(tempRandom.nextInt(paraBlock.length()));
+		} // Of for i
+		double[][] tempCenters = getPlusPlusCenters(new BlockView(tempSample), paraK, tempRandom);
+
+		return clusterInK(paraBlock, tempCenters, tempRandom);
+	}// Of clusterInK
+
+	/**
+	 *************************
+	 * Cluster the given block.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraCenters
+	 *            The given centers.
+	 * @return Clusters
+	 * @throws UnableToClusterInKException
+	 *             If fails to cluster.
+	 *************************
+	 */
+	public ClusteringResult clusterInK(BlockView paraBlock, double[][] paraCenters) throws UnableToClusterInKException {
+		if (paraBlock.length() <= FULL_BATCH_THRESHOLD) {
+			return super.clusterInK(paraBlock, paraCenters);
+		} // Of if
+
+		return clusterInK(paraBlock, paraCenters, new Random(SimpleTools.random.nextLong()));
+	}// Of clusterInK
+
+	/**
+	 *************************
+	 * Cluster the given block with mini-batches. Empty clusters are repaired in
+	 * the final assignment.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraCenters
+	 *            The given centers.
+	 * @param paraRandom
+	 *            The random number generator for sampling.
+	 * @return Clusters
+	 * @throws UnableToClusterInKException
+	 *             If the block has less instances than clusters.
+	 *************************
+	 */
+	ClusteringResult clusterInK(BlockView paraBlock, double[][] paraCenters, Random paraRandom)
+			throws UnableToClusterInKException {
+		// Step 1. Update centers with sampled batches.
+		StreamingModel tempModel = new StreamingModel(paraCenters);
+		int[] tempBatch = new int[Math.min(batchSize, paraBlock.length())];
+		double tempShift;
+		SimpleTools.processTrackingOutput("\r\nMiniBatchKMeans.clusterInK(), batch ");
+		for (int i = 0; i < numBatches; i++) {
+			checkCancelled();
+			SimpleTools.processTrackingOutput("" + i + ", ");
+			for (int j = 0; j < tempBatch.length; j++) {
+				tempBatch[j] = paraBlock.get(paraRandom.nextInt(paraBlock.length()));
+			} // Of for j
+
+			tempShift = tempModel.update(tempBatch);
+			if (tempShift <= SHIFT_TOLERANCE) {
+				break;
+			} // Of if
+		} // Of for i
+
+		// Step 2. Assign all instances.
+		int tempK = paraCenters.length;
+		int[] tempAssignments = new int[paraBlock.length()];
+		int[] tempCounters = new int[tempK];
+		double[] tempDistances = new double[paraBlock.length()];
+		assignToClosest(paraBlock, tempModel.centers, tempAssignments, tempCounters, tempDistances);
+		repairEmptyClusters(tempAssignments, tempCounters, tempDistances, null);
+
+		return partitionIfNoEmpty(paraBlock, tempAssignments, tempK);
+	}// Of clusterInK
+
+	/**
+	 *************************
+	 * Create a streaming model.
+	 *
+	 * @param paraCenters
+	 *            The initial centers. They are copied.
+	 * @return The model.
+	 *************************
+	 */
+	public StreamingModel newStreamingModel(double[][] paraCenters) {
+		return new StreamingModel(paraCenters);
+	}// Of newStreamingModel
+
+	/**
+	 * Centers updated by chunks. A chunk is handled as one mini-batch.
+	 */
+	public class StreamingModel {
+		/**
+		 * The centers.
+		 */
+		double[][] centers;
+
+		/**
+		 * The number of instances taken by each center.
+		 */
+		long[] counts;
+
+		/**
+		 ********************
+		 * The constructor.
+		 *
+		 * @param paraCenters
+		 *            The initial centers. They are copied.
+		 ********************
+		 */
+		public StreamingModel(double[][] paraCenters) {
+			centers = new double[paraCenters.length][];
+			for (int i = 0; i < paraCenters.length; i++) {
+				centers[i] = paraCenters[i].clone();
+			} // Of for i
+			counts = new long[paraCenters.length];
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Update centers with a chunk of instances of the data.
+		 *
+		 * @param paraInstances
+		 *            The instances.
+		 * @return The maximal shift of centers.
+		 ********************
+		 */
+		public double update(int[] paraInstances) {
+			double[] tempFeatures = distanceMeasure.getFeatures();
+			double[][] tempVectors = new double[paraInstances.length][numConditions];
+			for (int i = 0; i < paraInstances.length; i++) {
+				System.arraycopy(tempFeatures, paraInstances[i] * numConditions, tempVectors[i], 0, numConditions);
+			} // Of for i
+
+			return update(tempVectors);
+		}// Of update
+
+		/**
+		 ********************
+		 * Update centers with a chunk of vectors, e.g., read from a big file in
+		 * the same form as the data.
+		 *
+		 * @param paraVectors
+		 *            The vectors of conditional attributes.
+		 * @return The maximal shift of centers.
+		 ********************
+		 */
+		public double update(double[][] paraVectors) {
+			// Step 1. Assign with the current centers.
+			int[] tempAssignments = new int[paraVectors.length];
+			for (int i = 0; i < paraVectors.length; i++) {
+				tempAssignments[i] = nearest(paraVectors[i]);
+			} // Of for i
+
+			// Step 2. Move centers.
+			double[][] tempOldCenters = new double[centers.length][];
+			for (int i = 0; i < centers.length; i++) {
+				tempOldCenters[i] = centers[i].clone();
+			} // Of for i
+
+			double[] tempCenter;
+			double tempRate;
+			for (int i = 0; i < paraVectors.length; i++) {
+				counts[tempAssignments[i]]++;
+				tempRate = 1.0 / counts[tempAssignments[i]];
+				tempCenter = centers[tempAssignments[i]];
+				for (int j = 0; j < numConditions; j++) {
+					tempCenter[j] += tempRate * (paraVectors[i][j] - tempCenter[j]);
+				} // Of for j
+			} // Of for i
+
+			// Step 3. Compute the maximal shift.
+			double resultShift = 0;
+			double tempShift;
+			for (int i = 0; i < centers.length; i++) {
+				tempShift = distanceMeasure.distance(tempOldCenters[i], centers[i]);
+				if (tempShift > resultShift) {
+					resultShift = tempShift;
+				} // Of if
+			} // Of for i
+
+			return resultShift;
+		}// Of update
+
+		/**
+		 ********************
+		 * Get the closest center.
+		 *
+		 * @param paraVector
+		 *            The vector of conditional attributes.
+		 * @return The index of the center.
+		 ********************
+		 */
+		public int nearest(double[] paraVector) {
+			int resultNearest = -1;
+			double tempMinimalDistance = Double.MAX_VALUE;
+			double tempDistance;
+			for (int i = 0; i < centers.length; i++) {
+				tempDistance = distanceMeasure.distance(paraVector, centers[i]);
+				if (tempDistance < tempMinimalDistance) {
+					tempMinimalDistance = tempDistance;
+					resultNearest = i;
+				} // Of if
+			} // Of for i
+
+			return resultNearest;
+		}// Of nearest
+
+		/**
+		 ********************
+		 * Get a copy of the centers.
+		 *
+		 * @return The centers.
+		 ********************
+		 */
+		public double[][] getCenters() {
+			double[][] resultCenters = new double[centers.length][];
+			for (int i = 0; i < centers.length; i++) {
+				resultCenters[i] = centers[i].clone();
+			} // Of for i
+
+			return resultCenters;
+		}// Of getCenters
+	}// Of class StreamingModel
+
+	/**
+	 *************************
+	 * Test this class.
+	 *
+	 * @param args
+	 *            The parameters.
+	 *************************
+	 */
+	public static void main(String[] args) {
+		SimpleTools.consoleOutput("Hello, mini-batch kMeans.");
+		String tempFilename = "src/data/iris.arff";
+		if (args.length >= 1) {
+			tempFilename = args[0];
+			SimpleTools.consoleOutput("The filename is: " + tempFilename);
+		} // Of if
+
+		MiniBatchKMeans tempKMeans = new MiniBatchKMeans(tempFilename, DistanceMeasure.EUCLIDEAN);
+		tempKMeans.setBatchSize(16);
+		BlockView tempBlock = tempKMeans.wholeBlock;
+		try {
+			ClusteringResult tempResult = tempKMeans.clusterInK(tempBlock,
+					tempKMeans.getPlusPlusCenters(tempBlock, 3, new Random()), new Random());
+			System.out.println("The clusters are: " + tempResult);
+		} catch (UnableToClusterInKException ee) {
+			System.out.println(ee);
+		} // Of try
+	}// Of main
+}// Of class MiniBatchKMeans
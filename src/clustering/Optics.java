@@ -0,0 +1,706 @@
+package clustering;
+
+import java.util.Arrays;
+
+import common.BlockView;
+import common.DistanceMeasure;
+import common.SimpleTools;
+import exception.UnableToClusterInKException;
+import weka.core.Instances;
+
+/**
+ * The OPTICS algorithm. The reachability ordering of a block is computed once
+ * with the maximal epsilon, and the DBScan partition for any smaller epsilon
+ * is extracted from it in O(n). Hence the epsilon sweep of WekaDBScan takes
+ * one pass instead of one DBScan for each epsilon. Cores and noise are the
+ * same as DBScan, while a border instance may be assigned to another adjacent
+ * cluster, as DBScan itself depends on the order of instances. No density is
+ * required, so only the epsilon sweep is estimated on construction, relative
+ * to the average distance.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class Optics extends Clustering {
+	/**
+	 * The default minimal number of instances in the neighborhood of a core,
+	 * including itself. It is the same as Weka DBScan.
+	 */
+	public static final int DEFAULT_MIN_POINTS = 6;
+
+	/**
+	 * The default ratio of the starting epsilon to the average distance.
+	 */
+	public static final double DEFAULT_EPSILON_RATIO = 0.2;
+
+	/**
+	 * The ratio of the maximal epsilon of the sweep to the average distance.
+	 * With the average distance about 0.5, as on normalized data of a few
+	 * attributes, the sweep ends at 0.5 as in the Weka version.
+	 */
+	public static final double MAX_EPSILON_RATIO = 1.0;
+
+	/**
+	 * The ratio of the step of the epsilon sweep to the average distance.
+	 */
+	public static final double EPSILON_STEP_RATIO = 0.2;
+
+	/**
+	 * The undefined core distance or reachability distance.
+	 */
+	public static final double UNDEFINED = Double.MAX_VALUE;
+
+	/**
+	 * The label for noise.
+	 */
+	public static final int NOISE = -1;
+
+	/**
+	 * The minimal number of instances in the neighborhood of a core.
+	 */
+	int minPoints;
+
+	/**
+	 * The first epsilon of the sweep.
+	 */
+	double startEpsilon;
+
+	/**
+	 * The last epsilon of the sweep.
+	 */
+	double maxEpsilon;
+
+	/**
+	 * The step of the sweep.
+	 */
+	double epsilonStep;
+
+	/**
+	 ********************
+	 * The constructor for independent running.
+	 *
+	 * @param paraFilename
+	 *            The data set filename.
+	 * @param paraDistanceMeasure
+	 *            The distance measure as an object.
+	 ********************
+	 */
+	public Optics(String paraFilename, int paraDistanceMeasure) {
+		this(paraFilename, paraDistanceMeasure, DEFAULT_EPSILON_RATIO);
+	}// Of the first constructor
+
+	/**
+	 ********************
+	 * The constructor for independent running.
+	 *
+	 * @param paraFilename
+	 *            The data set filename.
+	 * @param paraDistanceMeasure
+	 *            The distance measure as an object.
+	 * @param paraEpsilonRatio
+	 *            The ratio of the starting epsilon to the average distance.
+	 ********************
+	 */
+	public Optics(String paraFilename, int paraDistanceMeasure, double paraEpsilonRatio) {
+		super(paraFilename, paraDistanceMeasure);
+		minPoints = DEFAULT_MIN_POINTS;
+		setAdaptiveEpsilon(paraEpsilonRatio);
+	}// Of the second constructor
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraData
+	 *            The data set.
+	 * @param paraDistanceMeasure
+	 *            The distance measure as an object.
+	 ********************
+	 */
+	public Optics(Instances paraData, DistanceMeasure paraDistanceMeasure) {
+		this(paraData, paraDistanceMeasure, DEFAULT_EPSILON_RATIO);
+	}// Of the third constructor
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraData
+	 *            The data set.
+	 * @param paraDistanceMeasure
+	 *            The distance measure as an object.
+	 * @param paraEpsilonRatio
+	 *            The ratio of the starting epsilon to the average distance.
+	 ********************
+	 */
+	public Optics(Instances paraData, DistanceMeasure paraDistanceMeasure, double paraEpsilonRatio) {
+		super(paraData, paraDistanceMeasure);
+		minPoints = DEFAULT_MIN_POINTS;
+		setAdaptiveEpsilon(paraEpsilonRatio);
+	}// Of the fourth constructor
+
+	/**
+	 ********************
+	 * Set the epsilon sweep according to the average distance of random pairs
+	 * of the data set. The sweep does not depend on the scale of the data.
+	 *
+	 * @param paraRatio
+	 *            The ratio of the starting epsilon to the average distance.
+	 ********************
+	 */
+	public void setAdaptiveEpsilon(double paraRatio) {
+		double tempAverageDistance = getSemiAverageDistance(wholeBlock);
+		startEpsilon = tempAverageDistance * paraRatio;
+		maxEpsilon = tempAverageDistance * MAX_EPSILON_RATIO;
+		epsilonStep = tempAverageDistance * EPSILON_STEP_RATIO;
+	}// Of setAdaptiveEpsilon
+
+	/**
+	 ********************
+	 * Set the starting epsilon. The last epsilon and the step are not changed.
+	 *
+	 * @param paraEpsilon
+	 *            The given epsilon.
+	 ********************
+	 */
+	public void setStartEpsilon(double paraEpsilon) {
+		startEpsilon = paraEpsilon;
+	}// Of setStartEpsilon
+
+	/**
+	 ********************
+	 * Set the minimal number of instances in the neighborhood of a core.
+	 *
+	 * @param paraMinPoints
+	 *            The given number.
+	 ********************
+	 */
+	public void setMinPoints(int paraMinPoints) {
+		minPoints = paraMinPoints;
+	}// Of setMinPoints
+
+	/**
+	 *************************
+	 * Cluster the given block in k. Epsilon values from startEpsilon to
+	 * maxEpsilon are tried in order on the same ordering, and the first one
+	 * with at least k clusters is adopted. Noise instances join the first
+	 * cluster, the same as Weka DBScan.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of clusters.
+	 * @return The clusters.
+	 * @throws UnableToClusterInKException
+	 *             If no epsilon works.
+	 *************************
+	 */
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK) throws UnableToClusterInKException {
+		// Step 1. The largest epsilon of the sweep.
+		int tempNumEpsilons = 0;
+		double tempTolerance = epsilonStep * 0.01;
+		for (double tempEpsilon = startEpsilon; tempEpsilon <= maxEpsilon + tempTolerance; tempEpsilon += epsilonStep) {
+			tempNumEpsilons++;
+		} // Of for tempEpsilon
+		if (tempNumEpsilons == 0) {
+			throw new UnableToClusterInKException("Optics.clusterInK(): epsilon = " + startEpsilon + " exceeds " + maxEpsilon);
+		} // Of if
+
+		// Step 2. The ordering.
+		ReachabilityOrdering tempOrdering = computeOrdering(paraBlock,
+				startEpsilon + (tempNumEpsilons - 1) * epsilonStep);
+		checkCancelled();
+
+		// Step 3. Try epsilon values.
+		int[] tempAssignments = new int[paraBlock.length()];
+		Exception tempEe = null;
+		double tempEpsilon = startEpsilon;
+		for (int i = 0; i < tempNumEpsilons; i++, tempEpsilon += epsilonStep) {
+			tempOrdering.extractDBScan(tempEpsilon, tempAssignments);
+			for (int j = 0; j < tempAssignments.length; j++) {
+				if (tempAssignments[j] == NOISE) {
+					tempAssignments[j] = 0;
+				} // Of if
+			} // Of for j
+
+			try {
+				return blockInformationToResult(paraBlock, tempAssignments, paraK);
+			} catch (Exception ee) {
+				tempEe = ee;
+			} // Of try
+		} // Of for i
+
+		throw new UnableToClusterInKException(tempEe.toString());
+	}// Of clusterInK
+
+	/**
+	 *************************
+	 * Compute the reachability ordering of the block.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraMaxEpsilon
+	 *            The generating distance, i.e., the largest epsilon to be
+	 *            extracted.
+	 * @return The ordering, partial if cancelled.
+	 *************************
+	 */
+	public ReachabilityOrdering computeOrdering(BlockView paraBlock, double paraMaxEpsilon) {
+		// Step 1. Initialize.
+		int tempLength = paraBlock.length();
+		KdTree tempKdTree = null;
+		if (KdTree.isApplicable(distanceMeasure, tempLength)) {
+			tempKdTree = new KdTree(distanceMeasure, paraBlock);
+		} // Of if
+
+		ReachabilityOrdering resultOrdering = new ReachabilityOrdering(tempLength);
+		boolean[] tempProcessedArray = new boolean[tempLength];
+		int[] tempNeighbors = new int[tempLength];
+		double[] tempDistances = new double[tempLength];
+		double[] tempSmallestDistances = new double[minPoints];
+		SeedHeap tempSeeds = new SeedHeap(tempLength);
+
+		// Step 2. Expand from each unprocessed instance in the order of the
+		// block.
+		int tempNumOrdered = 0;
+		int tempCurrent, tempNumNeighbors;
+		double tempCoreDistance, tempReachability;
+		for (int i = 0; (i < tempLength) && !cancelled; i++) {
+			if (tempProcessedArray[i]) {
+				continue;
+			} // Of if
+
+			tempSeeds.insertOrDecrease(i, UNDEFINED);
+			while (!tempSeeds.isEmpty()) {
+				// Step 2.1 Take out the one with the minimal reachability.
+				tempReachability = tempSeeds.minimalKey();
+				tempCurrent = tempSeeds.removeMinimal();
+				tempProcessedArray[tempCurrent] = true;
+
+				// Step 2.2 The core distance.
+				tempNumNeighbors = rangeQuery(paraBlock, tempKdTree, tempCurrent, paraMaxEpsilon, tempNeighbors,
+						tempDistances);
+				tempCoreDistance = UNDEFINED;
+				if (tempNumNeighbors >= minPoints) {
+					tempCoreDistance = computeCoreDistance(tempDistances, tempNumNeighbors, tempSmallestDistances);
+				} // Of if
+
+				resultOrdering.orders[tempNumOrdered] = tempCurrent;
+				resultOrdering.reachabilities[tempNumOrdered] = tempReachability;
+				resultOrdering.coreDistances[tempNumOrdered] = tempCoreDistance;
+				tempNumOrdered++;
+
+				// Step 2.3 Update seeds.
+				if (tempCoreDistance == UNDEFINED) {
+					continue;
+				} // Of if
+				for (int j = 0; j < tempNumNeighbors; j++) {
+					tempReachability = Math.max(tempCoreDistance, tempDistances[j]);
+					if (!tempProcessedArray[tempNeighbors[j]]) {
+						tempSeeds.insertOrDecrease(tempNeighbors[j], tempReachability);
+					} else if (tempReachability < resultOrdering.borderReachabilities[tempNeighbors[j]]) {
+						// Processed before the core, it may be a border.
+						resultOrdering.borderReachabilities[tempNeighbors[j]] = tempReachability;
+						resultOrdering.borderCores[tempNeighbors[j]] = tempCurrent;
+					} // Of if
+				} // Of for j
+			} // Of while
+		} // Of for i
+
+		return resultOrdering;
+	}// Of computeOrdering
+
+	/**
+	 *************************
+	 * Compute the core distance, i.e., the distance to the minPoints-th
+	 * nearest neighbor, including the instance itself.
+	 *
+	 * @param paraDistances
+	 *            The distances to neighbors.
+	 * @param paraNumNeighbors
+	 *            The number of neighbors, no less than minPoints.
+	 * @param paraSmallestDistances
+	 *            The buffer of length minPoints.
+	 * @return The core distance.
+	 *************************
+	 */
+	private double computeCoreDistance(double[] paraDistances, int paraNumNeighbors,
+			double[] paraSmallestDistances) {
+		// Keep the smallest ones in ascending order with insertion.
+		int tempNumKept = 0;
+		int j;
+		for (int i = 0; i < paraNumNeighbors; i++) {
+			if ((tempNumKept == minPoints) && (paraDistances[i] >= paraSmallestDistances[minPoints - 1])) {
+				continue;
+			} // Of if
+
+			if (tempNumKept < minPoints) {
+				tempNumKept++;
+			} // Of if
+			for (j = tempNumKept - 1; (j > 0) && (paraSmallestDistances[j - 1] > paraDistances[i]); j--) {
+				paraSmallestDistances[j] = paraSmallestDistances[j - 1];
+			} // Of for j
+			paraSmallestDistances[j] = paraDistances[i];
+		} // Of for i
+
+		return paraSmallestDistances[minPoints - 1];
+	}// Of computeCoreDistance
+
+	/**
+	 *************************
+	 * Find the neighbors within the radius, including the center itself.
+	 *
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraKdTree
+	 *            The k-d tree of the block, null for the brute-force scan.
+	 * @param paraCenter
+	 *            The position of the center within the block.
+	 * @param paraRadius
+	 *            The radius.
+	 * @param paraNeighbors
+	 *            For storing positions of neighbors.
+	 * @param paraDistances
+	 *            For storing respective distances.
+	 * @return The number of neighbors.
+	 *************************
+	 */
+	private int rangeQuery(BlockView paraBlock, KdTree paraKdTree, int paraCenter, double paraRadius,
+			int[] paraNeighbors, double[] paraDistances) {
+		int resultNumNeighbors = 0;
+		if (paraKdTree != null) {
+			resultNumNeighbors = paraKdTree.rangeQuery(paraCenter, paraRadius, paraNeighbors);
+			for (int i = 0; i < resultNumNeighbors; i++) {
+				paraDistances[i] = distanceMeasure.distance(paraBlock.get(paraCenter), paraBlock.get(paraNeighbors[i]));
+			} // Of for i
+
+			return resultNumNeighbors;
+		} // Of if
+
+		double tempDistance;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			tempDistance = distanceMeasure.distance(paraBlock.get(paraCenter), paraBlock.get(i));
+			if (tempDistance <= paraRadius) {
+				paraNeighbors[resultNumNeighbors] = i;
+				paraDistances[resultNumNeighbors] = tempDistance;
+				resultNumNeighbors++;
+			} // Of if
+		} // Of for i
+
+		return resultNumNeighbors;
+	}// Of rangeQuery
+
+	/**
+	 * The reachability ordering of a block. It is immutable after
+	 * computeOrdering(), and can be shared by threads.
+	 */
+	public static class ReachabilityOrdering {
+		/**
+		 * The positions within the block in the processing order.
+		 */
+		final int[] orders;
+
+		/**
+		 * The reachability distance of each one in the order.
+		 */
+		final double[] reachabilities;
+
+		/**
+		 * The core distance of each one in the order.
+		 */
+		final double[] coreDistances;
+
+		/**
+		 * For each position within the block, the minimal reachability from
+		 * cores processed after it. It is UNDEFINED if there is no such core.
+		 */
+		final double[] borderReachabilities;
+
+		/**
+		 * The respective core of each position.
+		 */
+		final int[] borderCores;
+
+		/**
+		 ********************
+		 * The constructor.
+		 *
+		 * @param paraLength
+		 *            The block size.
+		 ********************
+		 */
+		ReachabilityOrdering(int paraLength) {
+			orders = new int[paraLength];
+			reachabilities = new double[paraLength];
+			coreDistances = new double[paraLength];
+			borderReachabilities = new double[paraLength];
+			Arrays.fill(borderReachabilities, UNDEFINED);
+			borderCores = new int[paraLength];
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Extract the DBScan partition for the epsilon, which should be no
+		 * larger than the generating distance.
+		 *
+		 * @param paraEpsilon
+		 *            The epsilon.
+		 * @param paraAssignments
+		 *            For storing the cluster number of each position within
+		 *            the block, NOISE for noise.
+		 * @return The number of clusters.
+		 ********************
+		 */
+		public int extractDBScan(double paraEpsilon, int[] paraAssignments) {
+			// Step 1. Scan the ordering.
+			int tempClusterNumber = NOISE;
+			for (int i = 0; i < orders.length; i++) {
+				if (reachabilities[i] > paraEpsilon) {
+					if (coreDistances[i] <= paraEpsilon) {
+						tempClusterNumber++;
+						paraAssignments[orders[i]] = tempClusterNumber;
+					} else {
+						paraAssignments[orders[i]] = NOISE;
+					} // Of if
+				} else {
+					paraAssignments[orders[i]] = tempClusterNumber;
+				} // Of if
+			} // Of for i
+
+			// Step 2. A border processed before its core is not reached in
+			// the ordering. The core is a core for the epsilon, so it is
+			// already assigned.
+			for (int i = 0; i < paraAssignments.length; i++) {
+				if ((paraAssignments[i] == NOISE) && (borderReachabilities[i] <= paraEpsilon)) {
+					paraAssignments[i] = paraAssignments[borderCores[i]];
+				} // Of if
+			} // Of for i
+
+			return tempClusterNumber + 1;
+		}// Of extractDBScan
+
+		/**
+		 ********************
+		 * Show the ordering.
+		 ********************
+		 */
+		public String toString() {
+			return "Orders: " + Arrays.toString(orders) + "\r\nReachabilities: " + Arrays.toString(reachabilities);
+		}// Of toString
+	}// Of class ReachabilityOrdering
+
+	/**
+	 * The seeds keyed by the reachability distance. It is a binary heap
+	 * supporting the decrease of keys. Equal keys are ordered by positions,
+	 * so the ordering is deterministic.
+	 */
+	static class SeedHeap {
+		/**
+		 * Positions in the heap.
+		 */
+		int[] heap;
+
+		/**
+		 * The index of each position in the heap, -1 if absent.
+		 */
+		int[] indices;
+
+		/**
+		 * The key of each position.
+		 */
+		double[] keys;
+
+		/**
+		 * The size of the heap.
+		 */
+		int size;
+
+		/**
+		 ********************
+		 * The constructor.
+		 *
+		 * @param paraCapacity
+		 *            The block size.
+		 ********************
+		 */
+		SeedHeap(int paraCapacity) {
+			heap = new int[paraCapacity];
+			indices = new int[paraCapacity];
+			Arrays.fill(indices, -1);
+			keys = new double[paraCapacity];
+			size = 0;
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Is the heap empty?
+		 *
+		 * @return True if empty.
+		 ********************
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}// Of isEmpty
+
+		/**
+		 ********************
+		 * Get the minimal key.
+		 *
+		 * @return The key of the top.
+		 ********************
+		 */
+		double minimalKey() {
+			return keys[heap[0]];
+		}// Of minimalKey
+
+		/**
+		 ********************
+		 * Is the first position before the second one?
+		 *
+		 * @param paraFirst
+		 *            The first position.
+		 * @param paraSecond
+		 *            The second position.
+		 * @return True if the first key is smaller, or the keys are equal and
+		 *         the first position is smaller.
+		 ********************
+		 */
+		private boolean less(int paraFirst, int paraSecond) {
+			if (keys[paraFirst] != keys[paraSecond]) {
+				return keys[paraFirst] < keys[paraSecond];
+			} // Of if
+
+			return paraFirst < paraSecond;
+		}// Of less
+
+		/**
+		 ********************
+		 * Insert a position, or decrease its key.
+		 *
+		 * @param paraPosition
+		 *            The position.
+		 * @param paraKey
+		 *            The new key. It is ignored if not smaller than the
+		 *            current one.
+		 ********************
+		 */
+		void insertOrDecrease(int paraPosition, double paraKey) {
+			if (indices[paraPosition] == -1) {
+				keys[paraPosition] = paraKey;
+				heap[size] = paraPosition;
+				indices[paraPosition] = size;
+				size++;
+			} else if (paraKey < keys[paraPosition]) {
+				keys[paraPosition] = paraKey;
+			} else {
+				return;
+			} // Of if
+
+			siftUp(indices[paraPosition]);
+		}// Of insertOrDecrease
+
+		/**
+		 ********************
+		 * Remove the top.
+		 *
+		 * @return The position with the minimal key.
+		 ********************
+		 */
+		int removeMinimal() {
+			int resultPosition = heap[0];
+			indices[resultPosition] = -1;
+			size--;
+			if (size > 0) {
+				heap[0] = heap[size];
+				indices[heap[0]] = 0;
+				siftDown(0);
+			} // Of if
+
+			return resultPosition;
+		}// Of removeMinimal
+
+		/**
+		 ********************
+		 * Move an element up.
+		 *
+		 * @param paraIndex
+		 *            The index in the heap.
+		 ********************
+		 */
+		private void siftUp(int paraIndex) {
+			int tempPosition = heap[paraIndex];
+			int tempParent;
+			while (paraIndex > 0) {
+				tempParent = (paraIndex - 1) >> 1;
+				if (!less(tempPosition, heap[tempParent])) {
+					break;
+				} // Of if
+				heap[paraIndex] = heap[tempParent];
+				indices[heap[paraIndex]] = paraIndex;
+				paraIndex = tempParent;
+			} // Of while
+			heap[paraIndex] = tempPosition;
+			indices[tempPosition] = paraIndex;
+		}// Of siftUp
+
+		/**
+		 ********************
+		 * Move an element down.
+		 *
+		 * @param paraIndex
+		 *            The index in the heap.
+		 ********************
+		 */
+		private void siftDown(int paraIndex) {
+			int tempPosition = heap[paraIndex];
+			int tempChild;
+			while (true) {
+				tempChild = paraIndex * 2 + 1;
+				if (tempChild >= size) {
+					break;
+				} // Of if
+				if ((tempChild + 1 < size) && less(heap[tempChild + 1], heap[tempChild])) {
+					tempChild++;
+				} // Of if
+				if (!less(heap[tempChild], tempPosition)) {
+					break;
+				} // Of if
+				heap[paraIndex] = heap[tempChild];
+				indices[heap[paraIndex]] = paraIndex;
+				paraIndex = tempChild;
+			} // Of while
+			heap[paraIndex] = tempPosition;
+			indices[tempPosition] = paraIndex;
+		}// Of siftDown
+	}// Of class SeedHeap
+
+	/**
+	 *************************
+	 * Test this class.
+	 *
+	 * @param args
+	 *            The parameters.
+	 *************************
+	 */
+	public static void main(String[] args) {
+		SimpleTools.consoleOutput("Hello, OPTICS.");
+		String tempFilename = "src/data/iris.arff";
+
+		if (args.length >= 1) {
+			tempFilename = args[0];
+			SimpleTools.consoleOutput("The filename is: " + tempFilename);
+		} // Of if
+
+		Optics tempOptics = new Optics(tempFilename, DistanceMeasure.EUCLIDEAN);
+		tempOptics.testClusterInK(2);
+	}// Of main
+}// Of class Optics
@@ -3,6 +3,7 @@ package clustering;
 import java.util.Arrays;
 
 import weka.core.Instances;
+import common.BlockView;
 import common.DistanceMeasure;
 import exception.LessBlocksThanRequiredException;
 import exception.UnableToClusterInKException;
@@ -21,10 +22,31 @@ import matrix.*;
  * Progress: The simple version finished. In some cases it cannot cluster the
  * block in two. Maybe we should fix it in the future. <br>
  * Written time: July 25, 2019. <br>
- * Last modify time: July 25, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class RandomWalks extends Clustering {
+	/**
+	 * The number of neighbors for constructing the matrix.
+	 */
+	public static final int MIN_NEIGHBORS = 50;
+
+	/**
+	 * The rounds for random walk, each round update the weights, however does
+	 * not change the topology.
+	 */
+	public static final int NUM_ROUNDS = 3;
+
+	/**
+	 * Links smaller than the threshold will break.
+	 */
+	public static final double CUT_THRESHOLD = 9.0;
+
+	/**
+	 * Use the CSR matrix instead of the linked one.
+	 */
+	boolean useCsrMatrix = true;
+
 	/**
 	 ********************
 	 * The constructor for independent running.
@@ -118,6 +140,18 @@ public class RandomWalks extends Clustering {
 	 *            walk: " + ee); }//Of try }// Of randomWalk
 	 */
 
+	/**
+	 *********************
+	 * Use the CSR matrix or the linked one.
+	 * 
+	 * @param paraUseCsrMatrix
+	 *            True for the CSR matrix.
+	 *********************
+	 */
+	public void setUseCsrMatrix(boolean paraUseCsrMatrix) {
+		useCsrMatrix = paraUseCsrMatrix;
+	}// Of setUseCsrMatrix
+
 	/**
 	 *********************
 	 * Cluster into k blocks.
@@ -129,22 +163,83 @@ public class RandomWalks extends Clustering {
 	 *********************
 	 * 
 	 */
-	public int[][] clusterInK(int[] paraBlock, int paraK) throws UnableToClusterInKException {
-		int tempMinNeighbors = 50;
-		int tempNumRounds = 3;
-		double tempCutThreshold = 9.0;
-
-		// Step 1. Reconstruct data and the matrix.
-		Instances tempData = new Instances(dataHeader);
-		for (int i = 0; i < paraBlock.length; i++) {
-			tempData.add(data.instance(paraBlock[i]));
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK) throws UnableToClusterInKException {
+		int[] tempBlockInformation;
+		if (useCsrMatrix) {
+			tempBlockInformation = computeBlockInformationCsr(paraBlock, paraK);
+		} else {
+			tempBlockInformation = computeBlockInformationLinked(paraBlock, paraK);
+		} // Of if
+		checkCancelled();
+
+		ClusteringResult resultBlocks = null;
+		try {
+			resultBlocks = blockInformationToResult(paraBlock, tempBlockInformation, paraK);
+		} catch (LessBlocksThanRequiredException ee) {
+			throw new UnableToClusterInKException(ee.toString(), paraK);
+		} // Of try
+
+		return resultBlocks;
+	}// Of clusterInK
+
+	/**
+	 *********************
+	 * Random walk on the CSR matrix.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of sub-blocks, also the maximal times for matrix
+	 *            multiplication.
+	 * @return The cluster number of each instance in the block.
+	 *********************
+	 */
+	int[] computeBlockInformationCsr(BlockView paraBlock, int paraK) {
+		// Step 1. Construct the matrix of the block.
+		CsrMatrix tempMatrix = KnnGraphBuilder.buildSymmetricCsr(distanceMeasure, paraBlock, MIN_NEIGHBORS);
+		CsrMatrix tempCombinedTransitionMatrix;
+
+		// Step 2. Run a number of rounds to obtain new matrices
+		for (int i = 0; (i < NUM_ROUNDS) && !cancelled; i++) {
+			// Step 2.1 Compute probability matrix
+			CsrMatrix tempProbabilityMatrix = tempMatrix.computeTransitionProbabilities();
+
+			// Step 2.2 P + P^2 + ... + P^k with parallel fused multiply-and-add.
+			tempCombinedTransitionMatrix = CsrMatrix.powerSeries(tempProbabilityMatrix, paraK);
+
+			// Step 2.3 Distance between adjacent nodes
+			for (int j = 0; j < tempMatrix.numRows; j++) {
+				for (int k = tempMatrix.rowPtr[j]; k < tempMatrix.rowPtr[j + 1]; k++) {
+					tempMatrix.values[k] = tempCombinedTransitionMatrix.neighborhoodSimilarity(j,
+							tempMatrix.colIdx[k], paraK);
+				} // Of for k
+			} // Of for j
 		} // Of for i
-		CompressedMatrix tempMatrix = new CompressedMatrix(tempData, distanceMeasure, tempMinNeighbors);
+
+		// Step 3. Width-first clustering.
+		return tempMatrix.widthFirstClustering(CUT_THRESHOLD);
+	}// Of computeBlockInformationCsr
+
+	/**
+	 *********************
+	 * Random walk on the linked matrix.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of sub-blocks, also the maximal times for matrix
+	 *            multiplication.
+	 * @return The cluster number of each instance in the block.
+	 *********************
+	 */
+	int[] computeBlockInformationLinked(BlockView paraBlock, int paraK) {
+		// Step 1. Construct the matrix of the block.
+		CompressedMatrix tempMatrix = new CompressedMatrix(distanceMeasure, paraBlock, MIN_NEIGHBORS);
 		// System.out.println("The original matrix is: " + tempMatrix);
 		CompressedMatrix tempMultiplexion, tempCombinedTransitionMatrix;
 
 		// Step 2. Run a number of rounds to obtain new matrices
-		for (int i = 0; i < tempNumRounds; i++) {
+		for (int i = 0; (i < NUM_ROUNDS) && !cancelled; i++) {
 			// Step 2.1 Compute probability matrix
 			CompressedMatrix tempProbabilityMatrix = tempMatrix.computeTransitionProbabilities();
 			// System.out.println("\r\nThe probability matrix is:" +
@@ -183,22 +278,15 @@ public class RandomWalks extends Clustering {
 		// Step 3'. Width-first clustering and output
 		int[] tempBlockInformation = null;
 		try {
-			tempBlockInformation = tempMatrix.widthFirstClustering(tempCutThreshold);
+			tempBlockInformation = tempMatrix.widthFirstClustering(CUT_THRESHOLD);
 			// System.out.println("tempBlockInformation = " +
 			// Arrays.toString(tempBlockInformation));
 		} catch (Exception ee) {
 			System.out.println("Error occurred in random walk: " + ee);
 		} // Of try
 
-		int[][] resultBlocks = null;
-		try {
-			resultBlocks = blockInformationToBlocks(paraBlock, tempBlockInformation, paraK);
-		} catch (LessBlocksThanRequiredException ee) {
-			throw new UnableToClusterInKException(ee.toString(), paraK);
-		} // Of try
-
-		return resultBlocks;
-	}// Of clusterInK
+		return tempBlockInformation;
+	}// Of computeBlockInformationLinked
 
 	public static void main(String args[]) {
 		System.out.println("Let's randomly walk!");
@@ -242,18 +330,18 @@ public class RandomWalks extends Clustering {
 
 		//RandomWalks randomWalk = new RandomWalks("src/data/spiral.arff", DistanceMeasure.MANHATTAN);
 		RandomWalks randomWalk = new RandomWalks("src/data/mushroom.arff", DistanceMeasure.EUCLIDEAN);
-		int[][] resultBlocks = null;
+		BlockView[] resultBlocks = null;
 		try {
-			resultBlocks = randomWalk.clusterInK(2);
+			resultBlocks = randomWalk.clusterInK(2).split();
 		} catch (UnableToClusterInKException ee) {
 			System.out.println(ee);
 		} // Of try
 
 		System.out.print("Sizes: ");
 		for (int i = 0; i < resultBlocks.length; i++) {
-			System.out.print("" + resultBlocks[i].length + ", ");
+			System.out.print("" + resultBlocks[i].length() + ", ");
 		}//Of for i
 		
-		System.out.println("\r\nResult: " + Arrays.deepToString(resultBlocks));
+		System.out.println("\r\nResult: " + Arrays.toString(resultBlocks));
 	}// Of main
 }// Of class RandomWalk
@@ -1,6 +1,9 @@
 package clustering;
 
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import common.*;
 import exception.UnableToClusterInKException;
@@ -19,7 +22,7 @@ import weka.core.*;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 10, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class SmaleDBScan extends DensityClustering {
@@ -28,6 +31,11 @@ public class SmaleDBScan extends DensityClustering {
 	 */
 	public static final double DEFAULT_EPS_RATIO = 0.1;
 
+	/**
+	 * Instances handled by a task without further splitting.
+	 */
+	public static final int ROWS_PER_TASK = 64;
+
 	/**
 	 * The EPS ratio.
 	 */
@@ -39,56 +47,6 @@ public class SmaleDBScan extends DensityClustering {
 	 */
 	int coreThrehold;
 
-	/**
-	 * The search mark.
-	 */
-	boolean[] isVisitedALL;
-
-	/**
-	 * The EPS.
-	 */
-	double EPS;
-
-	/**
-	 * The distance matrix.
-	 */
-	double[][] disMatrix;
-
-	/**
-	 * The instances type. True for core, and false for otherwise.
-	 */
-	boolean[] isCoreArray;
-
-	/**
-	 * A boolean array indicating which instances have been visited.
-	 */
-	boolean[] isVisitedArray;
-
-	/**
-	 * An int array for the queue.
-	 */
-	int[] coreQueue;
-
-	/**
-	 * The cluster number of the instances.
-	 */
-	int[] clusterNumberArray;
-
-	/**
-	 * The density threshold of being a core.
-	 */
-	int coreDensityThreshold;
-
-	/**
-	 * The head of the queue.
-	 */
-	int head;
-
-	/**
-	 * The tail of the queue.
-	 */
-	int tail;
-
 	/**
 	 ********************
 	 * The constructor for independent running.
@@ -126,6 +84,7 @@ public class SmaleDBScan extends DensityClustering {
 		super(paraFilename, paraDistanceMeasure, AVERAGE_FOR_DC, 0.1,
 				paraKernel);
 		SimpleTools.normalizeDecisionSystem(data);
+		distanceMeasure.buildFeatures();
 		epsRatio = paraEpsRatio;
 	}// Of the second constructor
 
@@ -169,36 +128,18 @@ public class SmaleDBScan extends DensityClustering {
 
 	/**
 	 ********************
-	 * The constructor for independent running.
+	 * The copy constructor. Densities are shared rather than computed again.
 	 * 
-	 * @param paraCenter
-	 *            Current search instance.
-	 * @param paraBlock
-	 *            The current data set.
-	 * @param paraNowCluster
-	 *            The current cluster set.
+	 * @param paraDBScan
+	 *            The given object.
 	 ********************
 	 */
-	void SearchNeighbor(int paraCenter, int[] paraBlock,
-			ArrayList<Integer> paraNowCluster) {
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (i == paraCenter) {
-				continue;
-			} // Of if
+	public SmaleDBScan(SmaleDBScan paraDBScan) {
+		super(paraDBScan);
 
-			if (disMatrix[paraCenter][i] < EPS && isVisitedALL[i] == false
-					&& !isCoreArray[i]) {
-				paraNowCluster.add(i);
-				isVisitedALL[i] = true;
-
-			} else if (disMatrix[paraCenter][i] < EPS
-					&& isVisitedALL[i] == false && isCoreArray[i]) {
-				paraNowCluster.add(i);
-				isVisitedALL[i] = true;
-				SearchNeighbor(i, paraBlock, paraNowCluster);
-			} // Of else if
-		} // Of for i
-	}// Of SearchNeighbor
+		epsRatio = paraDBScan.epsRatio;
+		coreThrehold = paraDBScan.coreThrehold;
+	}// Of the copy constructor
 
 	/**
 	 ********************
@@ -209,158 +150,227 @@ public class SmaleDBScan extends DensityClustering {
 	 */
 	int[] cluster() {
 		//SimpleTools.consoleOutput("The data is: \r\n" + data);
-		System.out.println("The data is: \r\n" + data);
-		int[] tempInitialIndexArray = new int[data.numInstances()];
-		for (int i = 0; i < tempInitialIndexArray.length; i++) {
-			tempInitialIndexArray[i] = i;
-		} // Of for i
-
-		return clusterByQueue(tempInitialIndexArray);
+		SimpleTools.processTrackingOutput("The data is: \r\n" + data + "\r\n");
+		return clusterByQueue(new BlockView(data.numInstances()));
 	}// Of cluster
 
 	/**
 	 ********************
 	 * Cluster in two using the default initial index array.
 	 * 
-	 * @return An array indicating the block index of each instance.
+	 * @return Two blocks.
 	 ********************
 	 */
-	public int[][] clusterInTwo() {
+	public ClusteringResult clusterInTwo() {
 		SimpleTools.consoleOutput("The data is: \r\n" + data);
-		int[] tempInitialIndexArray = new int[data.numInstances()];
-		for (int i = 0; i < tempInitialIndexArray.length; i++) {
-			tempInitialIndexArray[i] = i;
-		} // Of for i
-
-		return clusterInTwo(tempInitialIndexArray);
+		return clusterInTwo(new BlockView(data.numInstances()));
 	}// Of cluster
 
 	/**
 	 ********************
-	 * Set the cluster number of instances that can be reached by the core.
+	 * Build the neighbor list of each instance within dc, including the
+	 * instance itself, and mark cores. Lists are built once in parallel, and
+	 * shared by core detection and cluster assembly.
 	 * 
-	 * @param paraCore
-	 *            The given core.
-	 * @param paraNumber
-	 *            The cluster number.
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraCoreDensityThreshold
+	 *            Instances with no less neighbors are core.
+	 * @return The number of cores.
 	 ********************
 	 */
-	private void setClusterNumberUsingCore(int[] paraBlock, int paraCore,
-			int paraNumber) {
-		// Step 3.2 Initialize the queue.
-		head = 0;
-		coreQueue[0] = paraCore;
-		clusterNumberArray[paraCore] = paraNumber;
-		isVisitedArray[paraCore] = true;
-		tail = 1;
-		int tempCurrentCore;
-
-		while (head < tail) {
-			// Step 3.3.1 Take out the head. Dequeue.
-			tempCurrentCore = coreQueue[head];
-			head++;
-
-			// Step 3.3.2 Put the neighbors to the tail. Enqueue.
-			for (int i = 0; i < paraBlock.length; i++) {
-				if (i == tempCurrentCore) {
-					continue;
-				} // Of if
-
-				if (isVisitedArray[i]) {
-					continue;
-				} // Of if
+	int buildNeighborLists(ScanContext paraContext, int paraCoreDensityThreshold) {
+		Common.forkJoinPool.invoke(new NeighborTask(paraContext, 0, paraContext.block.length()));
+
+		int resultNumCores = 0;
+		for (int i = 0; i < paraContext.block.length(); i++) {
+			paraContext.isCoreArray[i] = paraContext.neighborLists[i].length >= paraCoreDensityThreshold;
+			if (paraContext.isCoreArray[i]) {
+				resultNumCores++;
+			} // Of if
+		} // Of for i
 
-				if (distanceMeasure.distance(paraBlock[tempCurrentCore],
-						paraBlock[i]) <= dc) {
-					clusterNumberArray[i] = paraNumber;
-					isVisitedArray[i] = true;
-					// System.out.println("The core queue is: "
-					// + Arrays.toString(coreQueue));
+		return resultNumCores;
+	}// Of buildNeighborLists
 
-					if (isCoreArray[i]) {
-						coreQueue[tail] = i;
-						tail++;
-					} // Of if
-				} // Of if
-			} // Of for j
-		} // Of while
-	}// Of setClusterNumberUsingCore
+	/**
+	 ********************
+	 * Is there any core within dc? Only neighbors are counted, and the search
+	 * stops at the first core, so no list is built for a dc to be discarded.
+	 * 
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraCoreDensityThreshold
+	 *            Instances with no less neighbors are core.
+	 * @return True if a core exists.
+	 ********************
+	 */
+	boolean hasCore(ScanContext paraContext, int paraCoreDensityThreshold) {
+		AtomicBoolean tempFound = new AtomicBoolean(false);
+		Common.forkJoinPool.invoke(
+				new CoreSearchTask(paraContext, paraCoreDensityThreshold, tempFound, 0, paraContext.block.length()));
+		return tempFound.get();
+	}// Of hasCore
 
 	/**
 	 ********************
-	 * Cluster using a queue
+	 * Count the neighbors of an instance within dc, including itself.
 	 * 
-	 * @param tempInitialIndexArray
-	 *            The given
-	 * @param paraDistanceMeasure
-	 *            The distance measure as an object.
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraIndex
+	 *            The index of the instance within the block.
+	 * @param paraLimit
+	 *            Counting stops after reaching it.
+	 * @return The number of neighbors, no more than paraLimit.
 	 ********************
 	 */
-	int[] clusterByQueue(int[] paraBlock) {
-		setAdaptiveDc(paraBlock, 0.1);
+	int countNeighbors(ScanContext paraContext, int paraIndex, int paraLimit) {
+		if (paraContext.kdTree != null) {
+			return paraContext.kdTree.rangeCount(paraIndex, paraContext.dc, paraLimit);
+		} // Of if
 
-		// Step 1. Assign space for all arrays and initialize.
-		isVisitedArray = new boolean[paraBlock.length];
-		coreQueue = new int[paraBlock.length + 1];
-		clusterNumberArray = new int[paraBlock.length];
-		Arrays.fill(clusterNumberArray, -1);
-		coreDensityThreshold = (int) Math.sqrt(paraBlock.length) + 1;
-
-		System.out.println("coreDensityThreshold = "
-						+ coreDensityThreshold);
-		//SimpleTools.consoleOutput("coreDensityThreshold = "
-		//		+ coreDensityThreshold);
+		BlockView tempBlock = paraContext.block;
+		int resultCount = 0;
+		for (int j = 0; (j < tempBlock.length()) && (resultCount < paraLimit); j++) {
+			if (distanceMeasure.distance(tempBlock.get(paraIndex), tempBlock.get(j)) <= paraContext.dc) {
+				resultCount++;
+			} // Of if
+		} // Of for j
 
-		// Step 2. Which ones are core?
-		isCoreArray = new boolean[paraBlock.length];
-		int tempNumNeighbors;
-		for (int i = 0; i < paraBlock.length; i++) {
-			tempNumNeighbors = 0;
-			for (int j = 0; j < paraBlock.length; j++) {
-				if (distanceMeasure.distance(paraBlock[i], paraBlock[j]) <= dc) {
+		return resultCount;
+	}// Of countNeighbors
+
+	/**
+	 ********************
+	 * Compute the neighbor list of an instance.
+	 * 
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @param paraIndex
+	 *            The index of the instance within the block.
+	 * @param paraBuffer
+	 *            The buffer with length no less than the block size.
+	 * @return The indices of neighbors within the block.
+	 ********************
+	 */
+	int[] computeNeighbors(ScanContext paraContext, int paraIndex, int[] paraBuffer) {
+		int tempNumNeighbors = 0;
+		if (paraContext.kdTree != null) {
+			tempNumNeighbors = paraContext.kdTree.rangeQuery(paraIndex, paraContext.dc, paraBuffer);
+		} else {
+			BlockView tempBlock = paraContext.block;
+			for (int j = 0; j < tempBlock.length(); j++) {
+				if (distanceMeasure.distance(tempBlock.get(paraIndex), tempBlock.get(j)) <= paraContext.dc) {
+					paraBuffer[tempNumNeighbors] = j;
 					tempNumNeighbors++;
-					if (tempNumNeighbors >= coreDensityThreshold) {
-						isCoreArray[i] = true;
-						System.out.println("Core instance: " + i);
-						break;
-					} // Of if
 				} // Of if
 			} // Of for j
-		} // Of for i
+		} // Of if
+
+		return Arrays.copyOf(paraBuffer, tempNumNeighbors);
+	}// Of computeNeighbors
+
+	/**
+	 ********************
+	 * Union cores within dc of each other. Clusters of cores are the connected
+	 * components.
+	 * 
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 ********************
+	 */
+	void unionCores(ScanContext paraContext) {
+		Common.forkJoinPool.invoke(new UnionTask(paraContext, 0, paraContext.block.length()));
+	}// Of unionCores
 
-		// Step 3. Initialize the queue to include only one core.
-		int tempCurrentBlockNumber = -1;
-		for (int i = 0; i < paraBlock.length; i++) {
-			// Step 3.1 Handle other cases.
-			// Already visited.
-			if (isVisitedArray[i]) {
+	/**
+	 ********************
+	 * Number clusters in the order of their first cores. A border instance
+	 * belongs to the first cluster with a core within dc, and a noise instance
+	 * is -1. It is the same as expanding clusters from cores in the order of
+	 * the block.
+	 * 
+	 * @param paraContext
+	 *            The context of the current invocation.
+	 * @return The number of clusters.
+	 ********************
+	 */
+	int numberClusters(ScanContext paraContext) {
+		int[] tempClusterNumberArray = paraContext.clusterNumberArray;
+		boolean[] tempIsCoreArray = paraContext.isCoreArray;
+
+		// Step 1. Cores. The root of a cluster is its first core.
+		int resultNumClusters = 0;
+		int tempRoot;
+		for (int i = 0; i < tempClusterNumberArray.length; i++) {
+			if (!tempIsCoreArray[i]) {
 				continue;
 			} // Of if
 
-			// Not a core.
-			if (!isCoreArray[i]) {
+			tempRoot = paraContext.find(i);
+			if (tempRoot == i) {
+				tempClusterNumberArray[i] = resultNumClusters;
+				resultNumClusters++;
+			} else {
+				tempClusterNumberArray[i] = tempClusterNumberArray[tempRoot];
+			} // Of if
+		} // Of for i
+
+		// Step 2. Borders.
+		int[] tempNeighbors;
+		for (int i = 0; i < tempClusterNumberArray.length; i++) {
+			if (tempIsCoreArray[i]) {
 				continue;
 			} // Of if
 
-			tempCurrentBlockNumber++;
+			tempNeighbors = paraContext.neighborLists[i];
+			for (int j = 0; j < tempNeighbors.length; j++) {
+				if (!tempIsCoreArray[tempNeighbors[j]]) {
+					continue;
+				} // Of if
 
-			// Step 3.2 Set the cluster number of instances reached by instance
-			// paraBlock[i].
-			setClusterNumberUsingCore(paraBlock, i, tempCurrentBlockNumber);
+				if ((tempClusterNumberArray[i] == -1)
+						|| (tempClusterNumberArray[tempNeighbors[j]] < tempClusterNumberArray[i])) {
+					tempClusterNumberArray[i] = tempClusterNumberArray[tempNeighbors[j]];
+				} // Of if
+			} // Of for j
 		} // Of for i
 
-		// System.out
-		// .println("The core array is: " + Arrays.toString(isCoreArray));
-		// System.out.println("The core queue is: " +
-		// Arrays.toString(coreQueue));
-		// System.out.println("The visited array is: "
-		// + Arrays.toString(isVisitedArray));
-		
+		return resultNumClusters;
+	}// Of numberClusters
+
+	/**
+	 ********************
+	 * Cluster with neighbor lists and union-find of cores.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @return The cluster number of each instance in the block.
+	 ********************
+	 */
+	int[] clusterByQueue(BlockView paraBlock) {
+		// Step 1. Assign space for all arrays and initialize.
+		ScanContext tempContext = new ScanContext(distanceMeasure, paraBlock, computeAdaptiveDc(paraBlock, 0.1));
+		int tempCoreDensityThreshold = (int) Math.sqrt(paraBlock.length()) + 1;
+
+		SimpleTools.processTrackingOutput("coreDensityThreshold = "
+				+ tempCoreDensityThreshold + "\r\n");
+		//SimpleTools.consoleOutput("coreDensityThreshold = "
+		//		+ coreDensityThreshold);
+
+		// Step 2. Which ones are core?
+		buildNeighborLists(tempContext, tempCoreDensityThreshold);
+
+		// Step 3. Connect cores and number clusters.
+		unionCores(tempContext);
+		int tempNumClusters = numberClusters(tempContext);
+
 		//SimpleTools.consoleOutput("There are " + (tempCurrentBlockNumber + 1)
 		//		+ " blocks.");
-		System.out.println("There are " + (tempCurrentBlockNumber + 1)
-				+ " blocks.");
-		return clusterNumberArray;
+		SimpleTools.processTrackingOutput("There are " + tempNumClusters
+				+ " blocks.\r\n");
+		return tempContext.clusterNumberArray;
 	}// Of clusterByQueue
 
 	/**
@@ -369,66 +379,52 @@ public class SmaleDBScan extends DensityClustering {
 	 * 
 	 * @param paraBlock
 	 *            The given block.
-	 * @return Two blocks
+	 * @return Two blocks, null if the algorithm fails.
 	 ************************* 
 	 */
-	public int[][] clusterInTwo(int[] paraBlock) {
+	public ClusteringResult clusterInTwo(BlockView paraBlock) {
 		double tempDcRatio = DEFAULT_DC_RATIO;
-		setAdaptiveDc(paraBlock, tempDcRatio);
 
 		// Step 1. Assign space for all arrays and initialize.
-		isVisitedArray = new boolean[paraBlock.length];
-		coreQueue = new int[paraBlock.length];
-		clusterNumberArray = new int[paraBlock.length];
-		Arrays.fill(clusterNumberArray, -1);
-		coreDensityThreshold = (int) Math.sqrt(paraBlock.length) + 1;
-
-		// Step 2. Which ones are core?
-		isCoreArray = new boolean[paraBlock.length];
-		int tempNumNeighbors;
+		ScanContext tempContext = new ScanContext(distanceMeasure, paraBlock, computeAdaptiveDc(paraBlock, tempDcRatio));
+		boolean[] tempIsCoreArray = tempContext.isCoreArray;
+		int[] tempClusterNumberArray = tempContext.clusterNumberArray;
+		int tempCoreDensityThreshold = (int) Math.sqrt(paraBlock.length()) + 1;
 
+		// Step 2. Find a dc with cores. Only neighbors are counted here.
 		boolean tempHasCore = false;
-		while (tempDcRatio < 1) {
-			for (int i = 0; i < paraBlock.length; i++) {
-				tempNumNeighbors = 0;
-				for (int j = 0; j < paraBlock.length; j++) {
-					if (distanceMeasure.distance(paraBlock[i], paraBlock[j]) <= dc) {
-						tempNumNeighbors++;
-						if (tempNumNeighbors >= coreDensityThreshold) {
-							isCoreArray[i] = true;
-							tempHasCore = true;
-							break;
-						} // Of if
-					} // Of if
-				} // Of for j
-			} // Of for i
-
-			if (tempHasCore) {
-				System.out.println("tempDcRatio = " + tempDcRatio);
+		while ((tempDcRatio < 1) && !cancelled) {
+			if (hasCore(tempContext, tempCoreDensityThreshold)) {
+				tempHasCore = true;
+				SimpleTools.processTrackingOutput("tempDcRatio = " + tempDcRatio + "\r\n");
 				break;
 			} // Of if
 
 			// Adjust tempDcRatio and respective dc
 			tempDcRatio *= 1.5;
-			setAdaptiveDc(paraBlock, tempDcRatio);
+			tempContext.dc = computeAdaptiveDc(paraBlock, tempDcRatio);
 		} // Of while
 
 		// Never find a core? Why?
 		if (!tempHasCore) {
 			System.out.println("Warning: The block is: "
-					+ Arrays.toString(paraBlock));
+					+ paraBlock);
 			System.out.println("The core density threhold "
-					+ coreDensityThreshold + " can never be met.");
+					+ tempCoreDensityThreshold + " can never be met.");
 			// Fail.
 			return null;
 		} // Of if
 
-		// Step 3. Handle the first queue.
+		// Step 2.1 Which ones are core? Lists are built once for the final dc.
+		buildNeighborLists(tempContext, tempCoreDensityThreshold);
+		unionCores(tempContext);
+
+		// Step 3. Handle the first cluster.
 		// Step 3.1 Find the first core
 		int tempFirstCore = -1;
-		for (int i = 0; i < paraBlock.length; i++) {
+		for (int i = 0; i < paraBlock.length(); i++) {
 			// Not a core.
-			if (!isCoreArray[i]) {
+			if (!tempIsCoreArray[i]) {
 				continue;
 			} else {
 				tempFirstCore = i;
@@ -436,32 +432,23 @@ public class SmaleDBScan extends DensityClustering {
 			} // Of if
 		} // Of for i
 
-		if (tempFirstCore == -1) {
-			System.out
-					.println("Error occurred in DBScan.clusterInTwo(int[]). There is no core.");
-			System.out.println(Arrays.toString(isCoreArray));
-			System.exit(0);
-		} // Of if
-
-		setClusterNumberUsingCore(paraBlock, tempFirstCore, 0);
-
-		// Step 4. Handle the second queue.
+		// Step 4. Handle the second cluster.
 		// Step 4.1 Find the second core, it is the farthest core from the first
 		// one.
 		double tempMaxDistance = -1;
 		int tempSecondCore = -1;
 		double tempDistance;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (!isCoreArray[i]) {
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (!tempIsCoreArray[i]) {
 				continue;
 			} // Of if
 
-			if (isVisitedArray[i]) {
+			if (tempContext.find(i) == tempFirstCore) {
 				continue;
 			} // Of if
 
-			tempDistance = distanceMeasure.distance(paraBlock[tempFirstCore],
-					paraBlock[i]);
+			tempDistance = distanceMeasure.distance(paraBlock.get(tempFirstCore),
+					paraBlock.get(i));
 			if (tempDistance > tempMaxDistance) {
 				tempMaxDistance = tempDistance;
 				tempSecondCore = i;
@@ -472,70 +459,69 @@ public class SmaleDBScan extends DensityClustering {
 			SimpleTools
 					.consoleOutput("Error occurred in DBSCan! Cannot find the next core.");
 			SimpleTools.consoleOutput("The core array is: "
-					+ Arrays.toString(isCoreArray));
-			SimpleTools.consoleOutput("The visited array is: "
-					+ Arrays.toString(isVisitedArray));
+					+ Arrays.toString(tempIsCoreArray));
 
 			// The algorithm fails.
 			return null;
 		} // Of if
 
-		setClusterNumberUsingCore(paraBlock, tempSecondCore, 1);
+		// Step 4.2 Instances reached by the first cluster are 0, and then
+		// those reached by the second cluster are 1.
+		int tempSecondRoot = tempContext.find(tempSecondCore);
+		int[] tempNeighbors;
+		int tempRoot;
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (tempIsCoreArray[i]) {
+				tempRoot = tempContext.find(i);
+				if (tempRoot == tempFirstCore) {
+					tempClusterNumberArray[i] = 0;
+				} else if (tempRoot == tempSecondRoot) {
+					tempClusterNumberArray[i] = 1;
+				} // Of if
+				continue;
+			} // Of if
+
+			tempNeighbors = tempContext.neighborLists[i];
+			for (int j = 0; j < tempNeighbors.length; j++) {
+				if (!tempIsCoreArray[tempNeighbors[j]]) {
+					continue;
+				} // Of if
+
+				tempRoot = tempContext.find(tempNeighbors[j]);
+				if (tempRoot == tempFirstCore) {
+					tempClusterNumberArray[i] = 0;
+					break;
+				} else if (tempRoot == tempSecondRoot) {
+					tempClusterNumberArray[i] = 1;
+				} // Of if
+			} // Of for j
+		} // Of for i
 
 		// Step 5. Assign cluster number for other instances
 		// Now use the simplest strategy, i.e., only compare the distances to
 		// the first and the second cores.
 		double tempDistanceToFirst, tempDistanceToSecond;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (isVisitedArray[i]) {
+		for (int i = 0; i < paraBlock.length(); i++) {
+			if (tempClusterNumberArray[i] != -1) {
 				continue;
 			} // Of if
 
 			// Find nearest neighbors
-			tempDistanceToFirst = distanceMeasure.distance(paraBlock[i],
-					paraBlock[tempFirstCore]);
-			tempDistanceToSecond = distanceMeasure.distance(paraBlock[i],
-					paraBlock[tempSecondCore]);
+			tempDistanceToFirst = distanceMeasure.distance(paraBlock.get(i),
+					paraBlock.get(tempFirstCore));
+			tempDistanceToSecond = distanceMeasure.distance(paraBlock.get(i),
+					paraBlock.get(tempSecondCore));
 
 			if (tempDistanceToFirst <= tempDistanceToSecond) {
-				clusterNumberArray[i] = 0;
+				tempClusterNumberArray[i] = 0;
 			} else {
-				clusterNumberArray[i] = 1;
-			} // Of if
-		} // Of for i
-
-		// Step 6. Int array to int matrix.
-		int tempFirstBlockSize = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (clusterNumberArray[i] == 0) {
-				tempFirstBlockSize++;
+				tempClusterNumberArray[i] = 1;
 			} // Of if
 		} // Of for i
 
-		int[][] resultBlocks = new int[2][];
-		resultBlocks[0] = new int[tempFirstBlockSize];
-		resultBlocks[1] = new int[paraBlock.length - tempFirstBlockSize];
-
-		int tempFirstBlockIndex = 0;
-		int tempSecondBlockIndex = 0;
-		for (int i = 0; i < paraBlock.length; i++) {
-			if (clusterNumberArray[i] == 0) {
-				resultBlocks[0][tempFirstBlockIndex] = paraBlock[i];
-				tempFirstBlockIndex++;
-			} else {
-				resultBlocks[1][tempSecondBlockIndex] = paraBlock[i];
-				tempSecondBlockIndex++;
-			} // Of for i
-		} // Of for i
-
-		// System.out
-		// .println("The core array is: " + Arrays.toString(isCoreArray));
-		// System.out.println("The core queue is: " +
-		// Arrays.toString(coreQueue));
-		// System.out.println("The visited array is: "
-		// + Arrays.toString(isVisitedArray));
-		SimpleTools.consoleOutput("The result blocks are: "
-				+ Arrays.deepToString(resultBlocks));
+		// Step 6. Int array to blocks.
+		ClusteringResult resultBlocks = new ClusteringResult(paraBlock, tempClusterNumberArray, 2);
+		SimpleTools.consoleOutput("The result blocks are: " + resultBlocks);
 		return resultBlocks;
 	}// Of clusterInTwo
 
@@ -548,7 +534,7 @@ public class SmaleDBScan extends DensityClustering {
 	 * @return Two blocks
 	 ************************* 
 	 */
-	public int[][] clusterInK(int[] paraBlock, int paraK) {
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK) {
 		return null;
 	}// Of clusterInK
 
@@ -564,6 +550,344 @@ public class SmaleDBScan extends DensityClustering {
 		epsRatio = paraEpsRasio;
 	}// Of setEPSRatio
 
+	/**
+	 * The scratch state of one invocation. It is created for each block
+	 * instead of being stored in fields, so that different blocks can be
+	 * clustered concurrently.
+	 */
+	static class ScanContext {
+		/**
+		 * The given block.
+		 */
+		final BlockView block;
+
+		/**
+		 * The distance threshold for the block.
+		 */
+		double dc;
+
+		/**
+		 * The instances type. True for core, and false for otherwise.
+		 */
+		final boolean[] isCoreArray;
+
+		/**
+		 * The neighbors within dc of each instance, including itself.
+		 */
+		final int[][] neighborLists;
+
+		/**
+		 * The parent of each core in the union-find forest. A root is the
+		 * first core of its cluster.
+		 */
+		final AtomicIntegerArray parents;
+
+		/**
+		 * The cluster number of the instances.
+		 */
+		final int[] clusterNumberArray;
+
+		/**
+		 * The k-d tree of the block. Null if brute-force scans are used.
+		 */
+		final KdTree kdTree;
+
+		/**
+		 ********************
+		 * The constructor. The k-d tree is built if it is applicable.
+		 *
+		 * @param paraDistanceMeasure
+		 *            The distance measure.
+		 * @param paraBlock
+		 *            The given block.
+		 * @param paraDc
+		 *            The initial distance threshold.
+		 ********************
+		 */
+		ScanContext(DistanceMeasure paraDistanceMeasure, BlockView paraBlock, double paraDc) {
+			block = paraBlock;
+			dc = paraDc;
+			isCoreArray = new boolean[paraBlock.length()];
+			neighborLists = new int[paraBlock.length()][];
+			parents = new AtomicIntegerArray(paraBlock.length());
+			for (int i = 0; i < paraBlock.length(); i++) {
+				parents.set(i, i);
+			} // Of for i
+			clusterNumberArray = new int[paraBlock.length()];
+			Arrays.fill(clusterNumberArray, -1);
+
+			if (KdTree.isApplicable(paraDistanceMeasure, paraBlock.length())) {
+				kdTree = new KdTree(paraDistanceMeasure, paraBlock);
+			} else {
+				kdTree = null;
+			} // Of if
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Find the root with path halving. It is lock-free.
+		 *
+		 * @param paraIndex
+		 *            The index within the block.
+		 * @return The root.
+		 ********************
+		 */
+		int find(int paraIndex) {
+			int tempParent = parents.get(paraIndex);
+			int tempGrandParent;
+			while (tempParent != paraIndex) {
+				tempGrandParent = parents.get(tempParent);
+				parents.compareAndSet(paraIndex, tempParent, tempGrandParent);
+				paraIndex = tempParent;
+				tempParent = tempGrandParent;
+			} // Of while
+
+			return paraIndex;
+		}// Of find
+
+		/**
+		 ********************
+		 * Union two sets. The larger root is linked to the smaller one, so the
+		 * root is the minimal index of the set whatever the order of unions.
+		 *
+		 * @param paraFirst
+		 *            The first index.
+		 * @param paraSecond
+		 *            The second index.
+		 ********************
+		 */
+		void union(int paraFirst, int paraSecond) {
+			int tempFirstRoot, tempSecondRoot;
+			while (true) {
+				tempFirstRoot = find(paraFirst);
+				tempSecondRoot = find(paraSecond);
+				if (tempFirstRoot == tempSecondRoot) {
+					return;
+				} // Of if
+
+				if (tempFirstRoot < tempSecondRoot) {
+					if (parents.compareAndSet(tempSecondRoot, tempSecondRoot, tempFirstRoot)) {
+						return;
+					} // Of if
+				} else if (parents.compareAndSet(tempFirstRoot, tempFirstRoot, tempSecondRoot)) {
+					return;
+				} // Of if
+			} // Of while
+		}// Of union
+	}// Of class ScanContext
+
+	/**
+	 * Build neighbor lists of a range of instances, or split it.
+	 */
+	class NeighborTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The context of the current invocation.
+		 */
+		ScanContext context;
+
+		/**
+		 * The first index.
+		 */
+		int start;
+
+		/**
+		 * The index after the last one.
+		 */
+		int end;
+
+		/**
+		 ********************
+		 * The constructor.
+		 * 
+		 * @param paraContext
+		 *            The context of the current invocation.
+		 * @param paraStart
+		 *            The first index.
+		 * @param paraEnd
+		 *            The index after the last one.
+		 ********************
+		 */
+		NeighborTask(ScanContext paraContext, int paraStart, int paraEnd) {
+			context = paraContext;
+			start = paraStart;
+			end = paraEnd;
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Build the lists.
+		 ********************
+		 */
+		protected void compute() {
+			if (end - start > ROWS_PER_TASK) {
+				int tempMiddle = (start + end) >>> 1;
+				invokeAll(new NeighborTask(context, start, tempMiddle), new NeighborTask(context, tempMiddle, end));
+				return;
+			} // Of if
+
+			int[] tempBuffer = new int[context.block.length()];
+			for (int i = start; i < end; i++) {
+				context.neighborLists[i] = computeNeighbors(context, i, tempBuffer);
+			} // Of for i
+		}// Of compute
+	}// Of class NeighborTask
+
+	/**
+	 * Search cores in a range of instances, or split it.
+	 */
+	class CoreSearchTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The context of the current invocation.
+		 */
+		ScanContext context;
+
+		/**
+		 * Instances with no less neighbors are core.
+		 */
+		int coreDensityThreshold;
+
+		/**
+		 * Set once a core is found by any task.
+		 */
+		AtomicBoolean found;
+
+		/**
+		 * The first index.
+		 */
+		int start;
+
+		/**
+		 * The index after the last one.
+		 */
+		int end;
+
+		/**
+		 ********************
+		 * The constructor.
+		 * 
+		 * @param paraContext
+		 *            The context of the current invocation.
+		 * @param paraCoreDensityThreshold
+		 *            Instances with no less neighbors are core.
+		 * @param paraFound
+		 *            Set once a core is found.
+		 * @param paraStart
+		 *            The first index.
+		 * @param paraEnd
+		 *            The index after the last one.
+		 ********************
+		 */
+		CoreSearchTask(ScanContext paraContext, int paraCoreDensityThreshold, AtomicBoolean paraFound,
+				int paraStart, int paraEnd) {
+			context = paraContext;
+			coreDensityThreshold = paraCoreDensityThreshold;
+			found = paraFound;
+			start = paraStart;
+			end = paraEnd;
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Search until a core is found.
+		 ********************
+		 */
+		protected void compute() {
+			if (end - start > ROWS_PER_TASK) {
+				int tempMiddle = (start + end) >>> 1;
+				invokeAll(new CoreSearchTask(context, coreDensityThreshold, found, start, tempMiddle),
+						new CoreSearchTask(context, coreDensityThreshold, found, tempMiddle, end));
+				return;
+			} // Of if
+
+			for (int i = start; (i < end) && !found.get(); i++) {
+				if (countNeighbors(context, i, coreDensityThreshold) >= coreDensityThreshold) {
+					found.set(true);
+				} // Of if
+			} // Of for i
+		}// Of compute
+	}// Of class CoreSearchTask
+
+	/**
+	 * Union cores of a range with their core neighbors, or split it.
+	 */
+	static class UnionTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The context of the current invocation.
+		 */
+		ScanContext context;
+
+		/**
+		 * The first index.
+		 */
+		int start;
+
+		/**
+		 * The index after the last one.
+		 */
+		int end;
+
+		/**
+		 ********************
+		 * The constructor.
+		 * 
+		 * @param paraContext
+		 *            The context of the current invocation.
+		 * @param paraStart
+		 *            The first index.
+		 * @param paraEnd
+		 *            The index after the last one.
+		 ********************
+		 */
+		UnionTask(ScanContext paraContext, int paraStart, int paraEnd) {
+			context = paraContext;
+			start = paraStart;
+			end = paraEnd;
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Union the cores. Each core-core edge is handled once by its smaller
+		 * end.
+		 ********************
+		 */
+		protected void compute() {
+			if (end - start > ROWS_PER_TASK) {
+				int tempMiddle = (start + end) >>> 1;
+				invokeAll(new UnionTask(context, start, tempMiddle), new UnionTask(context, tempMiddle, end));
+				return;
+			} // Of if
+
+			int[] tempNeighbors;
+			for (int i = start; i < end; i++) {
+				if (!context.isCoreArray[i]) {
+					continue;
+				} // Of if
+
+				tempNeighbors = context.neighborLists[i];
+				for (int j = 0; j < tempNeighbors.length; j++) {
+					if ((tempNeighbors[j] > i) && context.isCoreArray[tempNeighbors[j]]) {
+						context.union(i, tempNeighbors[j]);
+					} // Of if
+				} // Of for j
+			} // Of for i
+		}// Of compute
+	}// Of class UnionTask
+
 	/**
 	 ************************* 
 	 * The main entrance.
@@ -595,8 +919,8 @@ public class SmaleDBScan extends DensityClustering {
 		System.out.println("It is: " + (Common.endTime - Common.startTime)
 				+ "ms.");
 
-		int[][] tempBlocks = tempDBScan.clusterInTwo();
-		System.out.println("Cluster in two. The results are: " + Arrays.deepToString(tempBlocks));
+		ClusteringResult tempBlocks = tempDBScan.clusterInTwo();
+		System.out.println("Cluster in two. The results are: " + tempBlocks);
 		
 	}// Of main
 }// Of SmaleDBScan
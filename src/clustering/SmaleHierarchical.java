@@ -2,8 +2,8 @@ package clustering;
 
 import java.util.Arrays;
 
+import common.BlockView;
 import common.DistanceMeasure;
-import common.IntegerNode;
 import common.SimpleTools;
 import exception.UnableToClusterInKException;
 import weka.core.Instances;
@@ -19,13 +19,19 @@ import weka.core.Instances;
  * Southwest Petroleum University, Chengdu 610500, China.<br>
  * Project: The cost-sensitive active learning project.
  * <p>
- * Progress: The simple version finished. clusterInK not implemented yet.<br>
+ * Progress: Done.<br>
  * Written time: April 10, 2019. <br>
- * Last modify time: July 28, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class SmaleHierarchical extends Clustering {
 
+	/**
+	 * Use Ward linkage with the nearest-neighbor chain instead of the
+	 * level-wise merging.
+	 */
+	boolean wardLinkage;
+
 	/**
 	 ********************
 	 * The constructor for independent running.
@@ -55,10 +61,56 @@ public class SmaleHierarchical extends Clustering {
 		super(paraData, paraDistanceMeasure);
 	}// Of the constructor
 
+	/**
+	 ************************* 
+	 * Use Ward linkage with the nearest-neighbor chain or not. Ward linkage is
+	 * the increase of the sum of squared errors, which is valid only for the
+	 * Euclidean distance.
+	 * 
+	 * @param paraWardLinkage
+	 *            True for Ward linkage, false for the level-wise merging.
+	 ************************* 
+	 */
+	public void setWardLinkage(boolean paraWardLinkage) {
+		if (paraWardLinkage && (distanceMeasure.getMeasure() != DistanceMeasure.EUCLIDEAN)) {
+			System.out.println("Fatal error in SmaleHierarchical.setWardLinkage(boolean):"
+					+ "\r\nWard linkage requires the Euclidean distance, while the measure is "
+					+ distanceMeasure.getMeasure());
+			System.exit(0);
+		} // Of if
+
+		wardLinkage = paraWardLinkage;
+	}// Of setWardLinkage
+
+	/**
+	 ************************* 
+	 * Cluster the given block in k using the hierarchical clustering
+	 * algorithm.
+	 * 
+	 * @param paraBlock
+	 *            The given block.
+	 * @param paraK
+	 *            The number of clusters.
+	 * @return A partition of the block.
+	 * @throws UnableToClusterInKException
+	 *             If the data cannot be clustered in k.
+	 ************************* 
+	 */
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK)
+			throws UnableToClusterInKException {
+		if (wardLinkage) {
+			return clusterInKWard(paraBlock, paraK);
+		} // Of if
+
+		return clusterInKLevelwise(paraBlock, paraK);
+	}// Of clusterInK
+
 	/**
 	 ************************* 
 	 * Cluster the given block in k using the hierarchical clustering
-	 * algorithm. Each time merge the two blocks in the same level.
+	 * algorithm. Each time merge the two blocks in the same level. The sum
+	 * and the centroid of each cluster are kept and updated on merging, so
+	 * each comparison costs one distance computation.
 	 * 
 	 * @param paraBlock
 	 *            The given block.
@@ -69,16 +121,16 @@ public class SmaleHierarchical extends Clustering {
 	 *             If the data cannot be clustered in k.
 	 ************************* 
 	 */
-	public int[][] clusterInK(int[] paraBlock, int paraK)
+	public ClusteringResult clusterInKLevelwise(BlockView paraBlock, int paraK)
 			throws UnableToClusterInKException {
 		// Step 1. Initialize.
-		int tempBlockLength = paraBlock.length;
-		IntegerNode[] tempNodeArray = new IntegerNode[tempBlockLength];
+		int tempBlockLength = paraBlock.length();
+		ClusterChains tempChains = new ClusterChains(paraBlock);
+		// Heads of the current level in ascending order.
+		int[] tempHeads = new int[tempBlockLength];
 		for (int i = 0; i < tempBlockLength; i++) {
-			tempNodeArray[i] = new IntegerNode(i);
+			tempHeads[i] = i;
 		} // Of for i
-		boolean[] tempHead = new boolean[tempBlockLength];
-		Arrays.fill(tempHead, true);
 		int tempNumHeads = tempBlockLength;
 		boolean[] tempCurrentLevelAvailable = new boolean[tempBlockLength];
 
@@ -86,102 +138,77 @@ public class SmaleHierarchical extends Clustering {
 		// blocks
 		double tempMinDistance;
 		double tempDistance;
+		int tempFirstPosition;
 		int tempFirstClusterHead = -1;
 		int tempSecondClusterHead = -1;
-		IntegerNode tempTail;
-		
+
 		// Handle the current level.
 		while (tempNumHeads > paraK) {
-			// System.out.println("New level");
+			checkCancelled();
 			// Step 2.1 Initialize. All heads are available.
-			for (int i = 0; i < tempCurrentLevelAvailable.length; i++) {
-				tempCurrentLevelAvailable[i] = tempHead[i];
+			for (int i = 0; i < tempNumHeads; i++) {
+				tempCurrentLevelAvailable[tempHeads[i]] = true;
 			} // Of for i
 
 			// Step 2.2 Merge tempNumHeads/2 times
+			tempFirstPosition = 0;
 			for (int i = 0; i < tempNumHeads / 2; i++) {
 				// Step 2.2.1 Initialize
 				tempMinDistance = Double.MAX_VALUE;
 
 				// Step 2.2.2 Find the two clusters to be merged.
-				tempFirstClusterHead = -1;
-				for (int j = 0; j < tempBlockLength; j++) {
-					if (tempCurrentLevelAvailable[j]) {
-						tempFirstClusterHead = j;
-						break;
-					} // Of if
-				} // Of for j
+				while (!tempCurrentLevelAvailable[tempHeads[tempFirstPosition]]) {
+					tempFirstPosition++;
+				} // Of while
+				tempFirstClusterHead = tempHeads[tempFirstPosition];
 
 				tempSecondClusterHead = -1;
-				for (int j = tempFirstClusterHead + 1; j < tempBlockLength; j++) {
-					if (!tempCurrentLevelAvailable[j]) {
+				for (int j = tempFirstPosition + 1; j < tempNumHeads; j++) {
+					if (!tempCurrentLevelAvailable[tempHeads[j]]) {
 						continue;
 					} // Of if
 
-					tempDistance = clusterDistance(paraBlock,
-							tempNodeArray[tempFirstClusterHead],
-							tempNodeArray[j]);
+					tempDistance = distanceMeasure.distance(
+							tempChains.centroids[tempFirstClusterHead],
+							tempChains.centroids[tempHeads[j]]);
 					if (tempDistance < tempMinDistance + 1e-6) {
-						tempSecondClusterHead = j;
+						tempSecondClusterHead = tempHeads[j];
 						tempMinDistance = tempDistance;
-						// System.out.println("The distance between block " + j
-						// + " and " + k + " is: " + tempDistance);
 					} // Of if
 				} // Of for j
 
 				// Step 2.2.3 Now merge them.
-				// Search the tail of the first cluster.
-				tempTail = tempNodeArray[tempFirstClusterHead];
-				while (tempTail.next != null) {
-					tempTail = tempTail.next;
-				} // Of while
-
-				// Step 2.3 Link to the head of the second cluster.
-				tempTail.next = tempNodeArray[tempSecondClusterHead];
+				tempChains.merge(tempFirstClusterHead, tempSecondClusterHead);
 
 				// Step 2.2.4 Set respective indicators
-				tempHead[tempSecondClusterHead] = false;
 				tempCurrentLevelAvailable[tempFirstClusterHead] = false;
 				tempCurrentLevelAvailable[tempSecondClusterHead] = false;
 			} // Of for i
 
-			tempNumHeads -= tempNumHeads / 2;
+			// Step 2.3 Keep heads of the next level.
+			int tempNumNewHeads = 0;
+			for (int i = 0; i < tempNumHeads; i++) {
+				if (tempChains.isHead(tempHeads[i])) {
+					tempHeads[tempNumNewHeads] = tempHeads[i];
+					tempNumNewHeads++;
+				} // Of if
+			} // Of for i
+			tempNumHeads = tempNumNewHeads;
 		} // Of while
 
 		// Step 3. Construct the block information array.
-		int[] tempBlockInformationArray = new int[paraBlock.length];
-		int tempClusterNumber = 0;
-		IntegerNode tempNode = null;
-		for (int i = 0; i < tempNodeArray.length; i++) {
-			if (!tempHead[i]) {
-				continue;
-			} // Of if
-
-			tempNode = tempNodeArray[i];
-			while (tempNode != null) {
-				tempBlockInformationArray[tempNode.value] = tempClusterNumber;
-				tempNode = tempNode.next;
-			} // Of while
-
-			tempClusterNumber++;
-		} // Of for i
-
-		int[][] resultBlocks = null;
-		try {
-			resultBlocks = blockInformationToBlocks(paraBlock,
-					tempBlockInformationArray, paraK);
-		} catch (Exception ee) {
-			throw new UnableToClusterInKException("Hierarchical.clusterInK(): "
-					+ ee.toString());
-		} // Of try
+		return tempChains.toResult(paraK);
+	}// Of clusterInKLevelwise
 
-		return resultBlocks;
-	}// Of clusterInK	
-	
 	/**
 	 ************************* 
-	 * Cluster the given block in k using the hierarchical clustering
-	 * algorithm. Each time merge the two blocks in the same level.
+	 * Cluster the given block in k using Ward linkage, i.e., merge the two
+	 * clusters with the minimal increase of the sum of squared errors,
+	 * (|A| * |B| / (|A| + |B|)) * d(cA, cB)^2. The Lance-Williams update of
+	 * Ward linkage equals the value computed from the merged centroid and
+	 * size, so centroids are kept instead of a distance matrix, taking O(n)
+	 * memory. Merges are found with the nearest-neighbor chain, which is
+	 * valid since Ward linkage is reducible, taking O(n^2) comparisons.
 	 * 
 	 * @param paraBlock
 	 *            The given block.
@@ -192,161 +219,221 @@ public class SmaleHierarchical extends Clustering {
 	 *             If the data cannot be clustered in k.
 	 ************************* 
 	 */
-	public int[][] clusterInKLevelwise(int[] paraBlock, int paraK)
+	public ClusteringResult clusterInKWard(BlockView paraBlock, int paraK)
 			throws UnableToClusterInKException {
 		// Step 1. Initialize.
-		int tempBlockLength = paraBlock.length;
-		IntegerNode[] tempNodeArray = new IntegerNode[tempBlockLength];
-		for (int i = 0; i < tempBlockLength; i++) {
-			tempNodeArray[i] = new IntegerNode(i);
-		} // Of for i
-		boolean[] tempHead = new boolean[tempBlockLength];
-		Arrays.fill(tempHead, true);
-		int tempNumHeads = tempBlockLength;
-		boolean[] tempCurrentLevelAvailable = new boolean[tempBlockLength];
-
-		// Step 2. Merge a few levels until the current level has exactly paraK
-		// blocks
-		double tempMinDistance;
-		double tempDistance;
-		int tempFirstClusterHead = -1;
-		int tempSecondClusterHead = -1;
-		IntegerNode tempTail;
-		
-		// Handle the current level.
-		while (tempNumHeads > paraK) {
-			// System.out.println("New level");
-			// Step 2.1 Initialize. All heads are available.
-			for (int i = 0; i < tempCurrentLevelAvailable.length; i++) {
-				tempCurrentLevelAvailable[i] = tempHead[i];
-			} // Of for i
-
-			// Step 2.2 Merge tempNumHeads/2 times
-			for (int i = 0; i < tempNumHeads / 2; i++) {
-				// Step 2.2.1 Initialize
-				tempMinDistance = Double.MAX_VALUE;
-
-				// Step 2.2.2 Find the two clusters to be merged.
-				tempFirstClusterHead = -1;
-				for (int j = 0; j < tempBlockLength; j++) {
-					if (tempCurrentLevelAvailable[j]) {
-						tempFirstClusterHead = j;
+		int tempBlockLength = paraBlock.length();
+		ClusterChains tempChains = new ClusterChains(paraBlock);
+		int[] tempChain = new int[tempBlockLength];
+		int tempChainLength = 0;
+		int tempNumClusters = tempBlockLength;
+
+		// Step 2. Merge reciprocal nearest neighbors.
+		int tempTop, tempPrevious, tempNearest;
+		double tempMinDistance, tempDistance;
+		while (tempNumClusters > paraK) {
+			checkCancelled();
+			if (tempChainLength == 0) {
+				for (int i = 0; i < tempBlockLength; i++) {
+					if (tempChains.isHead(i)) {
+						tempChain[0] = i;
+						tempChainLength = 1;
 						break;
 					} // Of if
-				} // Of for j
-
-				tempSecondClusterHead = -1;
-				for (int j = tempFirstClusterHead + 1; j < tempBlockLength; j++) {
-					if (!tempCurrentLevelAvailable[j]) {
-						continue;
-					} // Of if
-
-					tempDistance = clusterDistance(paraBlock,
-							tempNodeArray[tempFirstClusterHead],
-							tempNodeArray[j]);
-					if (tempDistance < tempMinDistance + 1e-6) {
-						tempSecondClusterHead = j;
-						tempMinDistance = tempDistance;
-						// System.out.println("The distance between block " + j
-						// + " and " + k + " is: " + tempDistance);
-					} // Of if
-				} // Of for j
-
-				// Step 2.2.3 Now merge them.
-				// Search the tail of the first cluster.
-				tempTail = tempNodeArray[tempFirstClusterHead];
-				while (tempTail.next != null) {
-					tempTail = tempTail.next;
-				} // Of while
-
-				// Step 2.3 Link to the head of the second cluster.
-				tempTail.next = tempNodeArray[tempSecondClusterHead];
+				} // Of for i
+			} // Of if
 
-				// Step 2.2.4 Set respective indicators
-				tempHead[tempSecondClusterHead] = false;
-				tempCurrentLevelAvailable[tempFirstClusterHead] = false;
-				tempCurrentLevelAvailable[tempSecondClusterHead] = false;
+			// Step 2.1 The nearest neighbor of the top. The previous one is
+			// preferred for equal distances, so the chain stops growing.
+			tempTop = tempChain[tempChainLength - 1];
+			tempPrevious = (tempChainLength > 1) ? tempChain[tempChainLength - 2] : -1;
+			tempNearest = tempPrevious;
+			tempMinDistance = (tempPrevious == -1) ? Double.MAX_VALUE
+					: wardDistance(tempChains, tempTop, tempPrevious);
+			for (int i = 0; i < tempBlockLength; i++) {
+				if ((i == tempTop) || (i == tempPrevious) || !tempChains.isHead(i)) {
+					continue;
+				} // Of if
+
+				tempDistance = wardDistance(tempChains, tempTop, i);
+				if ((tempNearest == -1) || (tempDistance < tempMinDistance)) {
+					tempMinDistance = tempDistance;
+					tempNearest = i;
+				} // Of if
 			} // Of for i
 
-			tempNumHeads -= tempNumHeads / 2;
+			// Step 2.2 Merge or grow the chain.
+			if (tempNearest == tempPrevious) {
+				tempChainLength -= 2;
+				tempChains.merge(Math.min(tempTop, tempPrevious), Math.max(tempTop, tempPrevious));
+				tempNumClusters--;
+			} else {
+				tempChain[tempChainLength] = tempNearest;
+				tempChainLength++;
+			} // Of if
 		} // Of while
 
 		// Step 3. Construct the block information array.
-		int[] tempBlockInformationArray = new int[paraBlock.length];
-		int tempClusterNumber = 0;
-		IntegerNode tempNode = null;
-		for (int i = 0; i < tempNodeArray.length; i++) {
-			if (!tempHead[i]) {
-				continue;
-			} // Of if
-
-			tempNode = tempNodeArray[i];
-			while (tempNode != null) {
-				tempBlockInformationArray[tempNode.value] = tempClusterNumber;
-				tempNode = tempNode.next;
-			} // Of while
-
-			tempClusterNumber++;
-		} // Of for i
-
-		int[][] resultBlocks = null;
-		try {
-			resultBlocks = blockInformationToBlocks(paraBlock,
-					tempBlockInformationArray, paraK);
-		} catch (Exception ee) {
-			throw new UnableToClusterInKException("Hierarchical.clusterInK(): "
-					+ ee.toString());
-		} // Of try
-
-		return resultBlocks;
-	}// Of clusterInKLevelwise
+		return tempChains.toResult(paraK);
+	}// Of clusterInKWard
 
 	/**
 	 ************************* 
-	 * Compute the distance between two cluster centers.
+	 * Compute the Ward distance between two clusters.
 	 * 
-	 * @param paraFirstCluster
-	 *            The first cluster indicated by a reference of IntegerNode.
-	 * @param paraSecondCluster
-	 *            The second cluster indicated by a reference of IntegerNode.
+	 * @param paraChains
+	 *            The clusters.
+	 * @param paraFirst
+	 *            The head of the first cluster.
+	 * @param paraSecond
+	 *            The head of the second cluster.
+	 * @return The increase of the sum of squared errors if they are merged.
 	 ************************* 
 	 */
-	private double clusterDistance(int[] paraBlock,
-			IntegerNode paraFirstCluster, IntegerNode paraSecondCluster) {
-		// Step 1. Compute centers.
-		double[] tempFirstCenter = new double[data.numAttributes() - 1];
-		double[] tempSecondCenter = new double[data.numAttributes() - 1];
-
-		// Step 1.1 First center
-		int tempCounter = 0;
-		while (paraFirstCluster != null) {
-			for (int i = 0; i < data.numAttributes() - 1; i++) {
-				tempFirstCenter[i] += data.instance(
-						paraBlock[paraFirstCluster.value]).value(i);
-			} // Of for i
-			tempCounter++;
-			paraFirstCluster = paraFirstCluster.next;
-		} // Of while
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempFirstCenter[i] /= tempCounter;
-		} // Of for i
+	private double wardDistance(ClusterChains paraChains, int paraFirst, int paraSecond) {
+		double tempDistance = distanceMeasure.distance(paraChains.centroids[paraFirst],
+				paraChains.centroids[paraSecond]);
+		double tempFirstSize = paraChains.sizes[paraFirst];
+		double tempSecondSize = paraChains.sizes[paraSecond];
 
-		// Step 1.2 Second center
-		tempCounter = 0;
-		while (paraSecondCluster != null) {
-			for (int i = 0; i < data.numAttributes() - 1; i++) {
-				tempSecondCenter[i] += data.instance(
-						paraBlock[paraSecondCluster.value]).value(i);
+		return tempFirstSize * tempSecondSize / (tempFirstSize + tempSecondSize) * tempDistance * tempDistance;
+	}// Of wardDistance
+
+	/**
+	 * Clusters of a block as chains of positions. Each cluster is identified
+	 * by the position of its head, and keeps its size, the sum and the
+	 * centroid of its instances. Only states of one invocation are stored.
+	 */
+	class ClusterChains {
+		/**
+		 * The given block.
+		 */
+		BlockView block;
+
+		/**
+		 * The next position in the same cluster, -1 for the last one.
+		 */
+		int[] nexts;
+
+		/**
+		 * The last position of each cluster.
+		 */
+		int[] tails;
+
+		/**
+		 * The size of each cluster, 0 if the position is not a head.
+		 */
+		int[] sizes;
+
+		/**
+		 * The sum of each cluster.
+		 */
+		double[][] sums;
+
+		/**
+		 * The centroid of each cluster.
+		 */
+		double[][] centroids;
+
+		/**
+		 ********************
+		 * The constructor. Each position is a cluster.
+		 * 
+		 * @param paraBlock
+		 *            The given block.
+		 ********************
+		 */
+		ClusterChains(BlockView paraBlock) {
+			block = paraBlock;
+			nexts = new int[paraBlock.length()];
+			Arrays.fill(nexts, -1);
+			tails = new int[paraBlock.length()];
+			sizes = new int[paraBlock.length()];
+			sums = new double[paraBlock.length()][];
+			centroids = new double[paraBlock.length()][];
+			double[] tempFeatures = distanceMeasure.getFeatures();
+			for (int i = 0; i < paraBlock.length(); i++) {
+				tails[i] = i;
+				sizes[i] = 1;
+				sums[i] = Arrays.copyOfRange(tempFeatures, paraBlock.get(i) * numConditions,
+						(paraBlock.get(i) + 1) * numConditions);
+				centroids[i] = sums[i].clone();
 			} // Of for i
-			tempCounter++;
-			paraSecondCluster = paraSecondCluster.next;
-		} // Of while
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempSecondCenter[i] /= tempCounter;
-		} // Of for i
+		}// Of the constructor
+
+		/**
+		 ********************
+		 * Is the position the head of a cluster?
+		 * 
+		 * @param paraPosition
+		 *            The position.
+		 * @return True if it is a head.
+		 ********************
+		 */
+		boolean isHead(int paraPosition) {
+			return sizes[paraPosition] > 0;
+		}// Of isHead
+
+		/**
+		 ********************
+		 * Append the second cluster to the first one.
+		 * 
+		 * @param paraFirst
+		 *            The head of the first cluster.
+		 * @param paraSecond
+		 *            The head of the second cluster.
+		 ********************
+		 */
+		void merge(int paraFirst, int paraSecond) {
+			nexts[tails[paraFirst]] = paraSecond;
+			tails[paraFirst] = tails[paraSecond];
+			sizes[paraFirst] += sizes[paraSecond];
+			sizes[paraSecond] = 0;
+
+			for (int i = 0; i < numConditions; i++) {
+				sums[paraFirst][i] += sums[paraSecond][i];
+				centroids[paraFirst][i] = sums[paraFirst][i] / sizes[paraFirst];
+			} // Of for i
+			sums[paraSecond] = null;
+			centroids[paraSecond] = null;
+		}// Of merge
+
+		/**
+		 ********************
+		 * Convert to the clustering result. Clusters are numbered in the order
+		 * of heads.
+		 * 
+		 * @param paraK
+		 *            The number of clusters.
+		 * @return The result.
+		 * @throws UnableToClusterInKException
+		 *             If the number of clusters is not paraK.
+		 ********************
+		 */
+		ClusteringResult toResult(int paraK) throws UnableToClusterInKException {
+			int[] tempBlockInformationArray = new int[block.length()];
+			int tempClusterNumber = 0;
+			for (int i = 0; i < block.length(); i++) {
+				if (!isHead(i)) {
+					continue;
+				} // Of if
+
+				for (int j = i; j != -1; j = nexts[j]) {
+					tempBlockInformationArray[j] = tempClusterNumber;
+				} // Of for j
+				tempClusterNumber++;
+			} // Of for i
+
+			ClusteringResult resultBlocks = null;
+			try {
+				resultBlocks = blockInformationToResult(block, tempBlockInformationArray, paraK);
+			} catch (Exception ee) {
+				throw new UnableToClusterInKException("Hierarchical.clusterInK(): " + ee.toString());
+			} // Of try
 
-		return distanceMeasure.distance(tempFirstCenter, tempSecondCenter);
-	}// Of clusterDistance
+			return resultBlocks;
+		}// Of toResult
+	}// Of class ClusterChains
 
 	/**
 	 ************************* 
@@ -354,7 +441,7 @@ public class SmaleHierarchical extends Clustering {
 	 ************************* 
 	 */
 	public void testClusterInTwo() {
-		int[] tempBlock = wholeBlock;
+		BlockView tempBlock = wholeBlock;
 		// int[] tempBlock = { 1, 3, 49, 56, 88, 89, 99, 121, 123, 133 };
 		// int[] tempBlock = {1, 3, 88, 89, 99, 121, 123, 133};
 		// int[] tempBlock = {1, 88, 89, 99, 123, 133};
@@ -362,9 +449,9 @@ public class SmaleHierarchical extends Clustering {
 		// int[] tempBlock = {1, 3, 49, 56, 88, 89, 99};
 
 		System.out.println("The original data is:");
-		for (int i = 0; i < tempBlock.length; i++) {
+		for (int i = 0; i < tempBlock.length(); i++) {
 			for (int j = 0; j < numConditions; j++) {
-				System.out.print(" " + data.instance(tempBlock[i]).value(j));
+				System.out.print(" " + data.instance(tempBlock.get(i)).value(j));
 			} // Of for j
 			System.out.println("\r\n");
 		} // Of for i
@@ -372,7 +459,7 @@ public class SmaleHierarchical extends Clustering {
 		System.out.println("Before clustering.");
 
 		// int[][] tempPartition = clusterInTwo(tempBlock);
-		int[][] tempPartition = null;
+		ClusteringResult tempPartition = null;
 		try {
 			tempPartition = clusterInTwo(tempBlock);
 		} catch (Exception ee) {
@@ -382,7 +469,7 @@ public class SmaleHierarchical extends Clustering {
 		System.out.println("After clustering.");
 
 		System.out.println("With hierachical, the partition is: ");
-		System.out.println(Arrays.deepToString(tempPartition));
+		System.out.println(tempPartition);
 	}// Of testClusterInTwo
 
 	/**
@@ -1,24 +1,22 @@
 package clustering;
 
-import java.util.Arrays;
-
 import common.DistanceMeasure;
 import common.SimpleTools;
-import weka.clusterers.DBScan;
-import weka.clusterers.SimpleKMeans;
-import weka.core.Instance;
 import weka.core.Instances;
-import exception.UnableToClusterInKException;
-
-public class WekaDBScan extends DensityClustering {
-	/**
-	 * The EPS ratio.
-	 */
-	public static final double DEFAULT_EPS_RATIO = 0.1;
 
+/**
+ * DBScan with the epsilon sweep of the Weka version. Instead of building a
+ * Weka DBScan for each epsilon, the partitions are extracted from one OPTICS
+ * ordering of the block, with the distance measure of this library. The sweep
+ * starts from the dc of the Weka version, i.e., AVERAGE_DC_RATIO of the average
+ * distance. No density is computed, so kernels are not supported.
+ */
+public class WekaDBScan extends Optics {
 	/**
-	 * The EPS ratio. double epsRatio;
+	 * The ratio of the starting epsilon to the average distance. It is the dc
+	 * ratio of the Weka version with DensityClustering.AVERAGE_FOR_DC.
 	 */
+	public static final double AVERAGE_DC_RATIO = 0.2;
 
 	/**
 	 ********************
@@ -29,13 +27,15 @@ public class WekaDBScan extends DensityClustering {
 	 * @param paraDistanceMeasure
 	 *            The distance measure as an object.
 	 * @param paraKernel
-	 *            The kernel function.
+	 *            The kernel function. It is ignored.
+	 * @deprecated No density is computed. Use
+	 *             {@link #WekaDBScan(String, int)} instead.
 	 ********************
 	 */
+	@Deprecated
 	public WekaDBScan(String paraFilename, int paraDistanceMeasure,
 			int paraKernel) {
-		super(paraFilename, paraDistanceMeasure, AVERAGE_FOR_DC, 0.2,
-				paraKernel);
+		this(paraFilename, paraDistanceMeasure);
 	}// Of the first constructor
 
 	/**
@@ -49,107 +49,62 @@ public class WekaDBScan extends DensityClustering {
 	 ********************
 	 */
 	public WekaDBScan(String paraFilename, int paraDistanceMeasure) {
-		this(paraFilename, paraDistanceMeasure, CUTOFF_KERNEL);
+		super(paraFilename, paraDistanceMeasure, AVERAGE_DC_RATIO);
 	}// Of the second constructor
 
 	/**
 	 ********************
-	 * The constructor for independent running.
+	 * The constructor.
 	 * 
-	 * @param paraFilename
-	 *            The data set filename.
+	 * @param paraData
+	 *            The data set.
 	 * @param paraDistanceMeasure
 	 *            The distance measure as an object.
 	 ********************
 	 */
 	public WekaDBScan(Instances paraData, DistanceMeasure paraDistanceMeasure) {
-		super(paraData, paraDistanceMeasure, AVERAGE_FOR_DC, 0.2, 0);
+		this(paraData, paraDistanceMeasure, AVERAGE_DC_RATIO);
 	}// Of the third constructor
 
 	/**
 	 ********************
-	 * The constructor for independent running.
+	 * The constructor.
 	 * 
-	 * @param paraFilename
-	 *            The data set filename.
+	 * @param paraData
+	 *            The data set.
 	 * @param paraDistanceMeasure
 	 *            The distance measure as an object.
-	 * @param paraKernel
-	 *            The given kernel.
+	 * @param paraAdaptiveRatio
+	 *            The ratio of the starting epsilon to the average distance.
 	 ********************
 	 */
 	public WekaDBScan(Instances paraData, DistanceMeasure paraDistanceMeasure,
-			double paraAdaptiveRatio, int paraKernel) {
-		super(paraData, paraDistanceMeasure, AVERAGE_FOR_DC, paraAdaptiveRatio,
-				paraKernel);
-	}// Of the third constructor
+			double paraAdaptiveRatio) {
+		super(paraData, paraDistanceMeasure, paraAdaptiveRatio);
+	}// Of the fourth constructor
 
 	/**
-	 ************************* 
-	 * Cluster the given block in using kMeans.
+	 ********************
+	 * The constructor.
 	 * 
-	 * @param paraBlock
-	 *            The given block.
-	 * @param paraCenters
-	 *            The given centers.
-	 * @return Clusters
-	 ************************* 
+	 * @param paraData
+	 *            The data set.
+	 * @param paraDistanceMeasure
+	 *            The distance measure as an object.
+	 * @param paraAdaptiveRatio
+	 *            The ratio of the starting epsilon to the average distance.
+	 * @param paraKernel
+	 *            The given kernel. It is ignored.
+	 * @deprecated No density is computed. Use
+	 *             {@link #WekaDBScan(Instances, DistanceMeasure, double)}
+	 *             instead.
+	 ********************
 	 */
-	public int[][] clusterInK(int[] paraBlock, int paraK)
-			throws UnableToClusterInKException {
-		// Step 1. Build the new data.
-		Instances tempInstances = constructSubset(paraBlock);
-		tempInstances.setClassIndex(-1);
-		tempInstances.deleteAttributeAt(numConditions);
-		// System.out.println("Small block constructed.");
-
-		// Step 2. Cluster.
-		DBScan tempDBSCan = new DBScan();
-		double tempEpsilon;
-		boolean tempSuccess = false;
-		Exception tempEe = null;
-		for (tempEpsilon = dc; tempEpsilon <= 0.501; tempEpsilon += 0.1) {
-			tempDBSCan.setEpsilon(tempEpsilon);
-			int[] tempAssignments = new int[paraBlock.length];
-			Instance tempInstance;
-			try {
-				tempDBSCan.buildClusterer(tempInstances);
-				// System.out.println("DBScan built.");
-
-				for (int i = 0; i < paraBlock.length; i++) {
-					tempInstance = tempInstances.instance(i);
-					// System.out.print("Trying to cluster " + +paraBlock[i] +
-					// ": "
-					// + tempInstance);
-					try {
-						tempAssignments[i] = tempDBSCan
-								.clusterInstance(tempInstance);
-					} catch (Exception ee) {
-						// Use default.
-						tempAssignments[i] = 0;
-					}// Of try
-				}// Of for i
-
-				// System.out.println("Assignment determined: "
-				// + Arrays.toString(tempAssignments));
-				clusters = blockInformationToBlocks(paraBlock, tempAssignments,
-						paraK);
-
-				// No exception
-				System.out.println("tempEpsilon = " + tempEpsilon);
-				tempSuccess = true;
-				break;
-			} catch (Exception ee) {
-				tempEe = ee;
-			}// Of try
-		}// Of for tempEpsilon
-
-		if (!tempSuccess) {
-			throw new UnableToClusterInKException(tempEe.toString());
-		}// Of if
-
-		return clusters;
-	}// Of clusterInK
+	@Deprecated
+	public WekaDBScan(Instances paraData, DistanceMeasure paraDistanceMeasure,
+			double paraAdaptiveRatio, int paraKernel) {
+		this(paraData, paraDistanceMeasure, paraAdaptiveRatio);
+	}// Of the fifth constructor
 
 	/**
 	 ************************* 
@@ -161,7 +116,7 @@ public class WekaDBScan extends DensityClustering {
 	 ************************* 
 	 */
 	public static void main(String[] args) {
-		SimpleTools.consoleOutput("Hello, kMeans.");
+		SimpleTools.consoleOutput("Hello, WekaDBScan.");
 		String tempFilename = "src/data/iris.arff";
 		// String tempFilename = "src/data/DLA.arff";
 
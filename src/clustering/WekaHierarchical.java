@@ -2,6 +2,7 @@ package clustering;
 
 import java.util.Arrays;
 
+import common.BlockView;
 import common.DistanceMeasure;
 import common.SimpleTools;
 import weka.clusterers.HierarchicalClusterer;
@@ -52,7 +53,7 @@ public class WekaHierarchical extends Clustering {
 	 * @return Clusters
 	 ************************* 
 	 */
-	public int[][] clusterInK(int[] paraBlock, int paraK)
+	public ClusteringResult clusterInK(BlockView paraBlock, int paraK)
 			throws UnableToClusterInKException {
 		// Step 1. Build the new data.
 		Instances tempInstances = constructSubset(paraBlock);
@@ -66,13 +67,14 @@ public class WekaHierarchical extends Clustering {
 		System.out.println("tempDistanceFunction is " + tempDistanceFunction);
 		tempHierarchical.setNumClusters(2);
 
-		int[] tempAssignments = new int[paraBlock.length];
+		int[] tempAssignments = new int[paraBlock.length()];
+		ClusteringResult resultClusters = null;
 		Instance tempInstance;
 		try {
 			tempHierarchical.buildClusterer(tempInstances);
 			// System.out.println("Hierarchical built.");
 
-			for (int i = 0; i < paraBlock.length; i++) {
+			for (int i = 0; i < paraBlock.length(); i++) {
 				tempInstance = tempInstances.instance(i);
 				try {
 					tempAssignments[i] = tempHierarchical
@@ -85,13 +87,13 @@ public class WekaHierarchical extends Clustering {
 
 			// System.out.println("Assignment determined: "
 			// + Arrays.toString(tempAssignments));
-			clusters = blockInformationToBlocks(paraBlock, tempAssignments,
+			resultClusters = blockInformationToResult(paraBlock, tempAssignments,
 					paraK);
 		} catch (Exception ee) {
 			throw new UnableToClusterInKException(ee.toString());
 		}// Of try
 
-		return clusters;
+		return resultClusters;
 	}// Of clusterInK
 
 	/**
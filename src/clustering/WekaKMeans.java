@@ -2,6 +2,7 @@ package clustering;
 
 import weka.clusterers.SimpleKMeans;
 import weka.core.Instances;
+import common.BlockView;
 import common.DistanceMeasure;
 import common.SimpleTools;
 import exception.UnableToClusterInKException;
@@ -47,7 +48,7 @@ public class WekaKMeans extends MeansClustering {
 	 * @return Clusters
 	 ************************* 
 	 */
-	public int[][] clusterInK(int[] paraBlock, double[][] paraCenters) throws UnableToClusterInKException {
+	public ClusteringResult clusterInK(BlockView paraBlock, double[][] paraCenters) throws UnableToClusterInKException {
 		// Number of blocks.
 		int tempK = paraCenters.length;
 		
@@ -59,17 +60,18 @@ public class WekaKMeans extends MeansClustering {
 		//Step 2. Cluster.
 		SimpleKMeans tempKMeans = new SimpleKMeans();
 		int[] tempAssignments = null;
+		ClusteringResult resultClusters = null;
 		try {
 			tempKMeans.setPreserveInstancesOrder(true);
 			tempKMeans.setNumClusters(tempK);
 			tempKMeans.buildClusterer(tempIntances);
 			tempAssignments = tempKMeans.getAssignments();
-			clusters = blockInformationToBlocks(paraBlock, tempAssignments, tempK);
+			resultClusters = blockInformationToResult(paraBlock, tempAssignments, tempK);
 		} catch (Exception ee) {
 			throw new UnableToClusterInKException(ee.toString());
 		}//Of try
 		
-		return clusters;
+		return resultClusters;
 	}// Of clusterInK
 	
 	/**
@@ -12,7 +12,7 @@ package common;
  * <p>
  * Progress: Almost finished, further revision is possible.<br>
  * Written time: July 21, 2019. <br>
- * Last modify time: July 21, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class BlockQueue {
@@ -24,7 +24,7 @@ public class BlockQueue {
 	/**
 	 * The current queue. It is a queue of blocks.
 	 */
-	int[][] currentQueue;
+	BlockView[] currentQueue;
 
 	/**
 	 * The length of the queue. It should not be exceeded.
@@ -48,7 +48,7 @@ public class BlockQueue {
 	 */
 	public BlockQueue() {
 		queueLength = DEFAULT_QUEUE_LENGTH;
-		currentQueue = new int[queueLength][];
+		currentQueue = new BlockView[queueLength];
 		head = 0;
 		tail = 0;
 	}// Of the constructor
@@ -61,8 +61,8 @@ public class BlockQueue {
 	 *            The block to enqueue.
 	 ****************** 
 	 */
-	public void enqueue(int[] paraBlock) {
-		SimpleTools.consoleOutput("Enqueue a block with " + paraBlock.length + " instances");
+	public void enqueue(BlockView paraBlock) {
+		SimpleTools.consoleOutput("Enqueue a block with " + paraBlock.length() + " instances");
 		currentQueue[head] = paraBlock;
 		head++;
 		if (head == currentQueue.length) {
@@ -79,7 +79,7 @@ public class BlockQueue {
 	 * @return The block to at the tail.
 	 ****************** 
 	 */
-	public int[] dequeue() {
+	public BlockView dequeue() {
 		tail++;
 		if (tail > head) {
 			System.out.println("Fatal error occurred in SpecifiedLabelsAlgorithmSelection.dequeue(): " + "head = "
@@ -87,7 +87,7 @@ public class BlockQueue {
 			System.exit(0);
 		} // Of if
 
-		SimpleTools.consoleOutput("dequeue a block with " + currentQueue[tail - 1].length + " instances");
+		SimpleTools.consoleOutput("dequeue a block with " + currentQueue[tail - 1].length() + " instances");
 		return currentQueue[tail - 1];
 	}// Of dequeue
 
@@ -0,0 +1,243 @@
+package common;
+
+/**
+ * A block as a range of a permutation of instances. All blocks of a block tree
+ * are ranges of the same permutation, and a split partitions the range of the
+ * parent in place, like quicksort. So a split of n instances takes no array of
+ * n elements, and the blocks are disjoint ranges which can be split
+ * concurrently.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public final class BlockView {
+	/**
+	 * The permutation shared by all blocks of the tree.
+	 */
+	private final int[] instances;
+
+	/**
+	 * The buffer for partitioning, shared like the permutation. Null if the
+	 * permutation is given by the caller, and then a buffer is allocated for
+	 * each split.
+	 */
+	private final int[] buffer;
+
+	/**
+	 * The start of the block in the permutation.
+	 */
+	private final int offset;
+
+	/**
+	 * The number of instances.
+	 */
+	private final int length;
+
+	/**
+	 ********************
+	 * The constructor. The block of all instances, i.e., the root of a block
+	 * tree.
+	 *
+	 * @param paraNumInstances
+	 *            The number of instances.
+	 ********************
+	 */
+	public BlockView(int paraNumInstances) {
+		instances = new int[paraNumInstances];
+		for (int i = 0; i < paraNumInstances; i++) {
+			instances[i] = i;
+		} // Of for i
+		buffer = new int[paraNumInstances];
+		offset = 0;
+		length = paraNumInstances;
+	}// Of the first constructor
+
+	/**
+	 ********************
+	 * The constructor. The given array is not copied, and it is reordered by
+	 * splits.
+	 *
+	 * @param paraInstances
+	 *            The instances.
+	 ********************
+	 */
+	public BlockView(int[] paraInstances) {
+		this(paraInstances, null, 0, paraInstances.length);
+	}// Of the second constructor
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraInstances
+	 *            The permutation.
+	 * @param paraBuffer
+	 *            The buffer for partitioning.
+	 * @param paraOffset
+	 *            The start of the block.
+	 * @param paraLength
+	 *            The number of instances.
+	 ********************
+	 */
+	private BlockView(int[] paraInstances, int[] paraBuffer, int paraOffset, int paraLength) {
+		instances = paraInstances;
+		buffer = paraBuffer;
+		offset = paraOffset;
+		length = paraLength;
+	}// Of the third constructor
+
+	/**
+	 ********************
+	 * Get the number of instances.
+	 *
+	 * @return The number.
+	 ********************
+	 */
+	public int length() {
+		return length;
+	}// Of length
+
+	/**
+	 ********************
+	 * Get an instance.
+	 *
+	 * @param paraPosition
+	 *            The position within the block.
+	 * @return The index of the instance.
+	 ********************
+	 */
+	public int get(int paraPosition) {
+		return instances[offset + paraPosition];
+	}// Of get
+
+	/**
+	 ********************
+	 * Get a part of the block. Nothing is copied.
+	 *
+	 * @param paraStart
+	 *            The first position.
+	 * @param paraLength
+	 *            The number of instances.
+	 * @return The sub-block.
+	 ********************
+	 */
+	public BlockView subBlock(int paraStart, int paraLength) {
+		return new BlockView(instances, buffer, offset + paraStart, paraLength);
+	}// Of subBlock
+
+	/**
+	 ********************
+	 * Partition the block in place according to the cluster indices. It is a
+	 * stable counting sort, i.e., instances of a cluster keep their order in
+	 * the block. The block itself should not be used afterwards, since its
+	 * positions are changed.
+	 *
+	 * @param paraClusterIndices
+	 *            The cluster index of each position of the block.
+	 * @param paraSizes
+	 *            The size of each cluster.
+	 * @return The sub-blocks, some of which may be empty.
+	 ********************
+	 */
+	public BlockView[] partition(int[] paraClusterIndices, int[] paraSizes) {
+		// Step 1. The start of each cluster.
+		int[] tempPositions = new int[paraSizes.length];
+		BlockView[] resultBlocks = new BlockView[paraSizes.length];
+		int tempStart = 0;
+		for (int i = 0; i < paraSizes.length; i++) {
+			tempPositions[i] = tempStart;
+			resultBlocks[i] = subBlock(tempStart, paraSizes[i]);
+			tempStart += paraSizes[i];
+		} // Of for i
+
+		// Step 2. Place in the buffer and copy back.
+		int[] tempBuffer = buffer;
+		int tempBufferOffset = offset;
+		if (tempBuffer == null) {
+			tempBuffer = new int[length];
+			tempBufferOffset = 0;
+		} // Of if
+		for (int i = 0; i < length; i++) {
+			tempBuffer[tempBufferOffset + tempPositions[paraClusterIndices[i]]] = instances[offset + i];
+			tempPositions[paraClusterIndices[i]]++;
+		} // Of for i
+		System.arraycopy(tempBuffer, tempBufferOffset, instances, offset, length);
+
+		return resultBlocks;
+	}// Of partition
+
+	/**
+	 ********************
+	 * Undo partition() with the same cluster indices and sizes, so that the
+	 * block can be used again. Sub-blocks of the partition should not be used
+	 * afterwards.
+	 *
+	 * @param paraClusterIndices
+	 *            The cluster index of each position of the block.
+	 * @param paraSizes
+	 *            The size of each cluster.
+	 ********************
+	 */
+	public void merge(int[] paraClusterIndices, int[] paraSizes) {
+		// Step 1. The start of each cluster.
+		int[] tempPositions = new int[paraSizes.length];
+		int tempStart = 0;
+		for (int i = 0; i < paraSizes.length; i++) {
+			tempPositions[i] = tempStart;
+			tempStart += paraSizes[i];
+		} // Of for i
+
+		// Step 2. Take from the clusters in the original order.
+		int[] tempBuffer = buffer;
+		int tempBufferOffset = offset;
+		if (tempBuffer == null) {
+			tempBuffer = new int[length];
+			tempBufferOffset = 0;
+		} // Of if
+		for (int i = 0; i < length; i++) {
+			tempBuffer[tempBufferOffset + i] = instances[offset + tempPositions[paraClusterIndices[i]]];
+			tempPositions[paraClusterIndices[i]]++;
+		} // Of for i
+		System.arraycopy(tempBuffer, tempBufferOffset, instances, offset, length);
+	}// Of merge
+
+	/**
+	 ********************
+	 * Copy the instances to an array.
+	 *
+	 * @return The array.
+	 ********************
+	 */
+	public int[] toArray() {
+		int[] resultArray = new int[length];
+		System.arraycopy(instances, offset, resultArray, 0, length);
+		return resultArray;
+	}// Of toArray
+
+	/**
+	 ********************
+	 * Show the instances.
+	 ********************
+	 */
+	public String toString() {
+		StringBuilder resultBuilder = new StringBuilder("[");
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				resultBuilder.append(", ");
+			} // Of if
+			resultBuilder.append(instances[offset + i]);
+		} // Of for i
+		resultBuilder.append("]");
+
+		return resultBuilder.toString();
+	}// Of toString
+}// Of class BlockView
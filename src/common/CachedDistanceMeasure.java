@@ -0,0 +1,463 @@
+package common;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import weka.core.Instances;
+
+/**
+ * A distance measure memorizing distances between instances. Recursive
+ * splitting evaluates the same pair of instances many times, e.g., in density
+ * computation and master finding for each block. For small data sets, all
+ * distances are stored in a condensed upper triangular array. For large data
+ * sets, a bounded set-associative cache with CLOCK replacement is employed.
+ * The cache is divided into stripes with their own locks so that it can be
+ * shared by threads. A lookup is not free, so the cache is enabled only on
+ * request, e.g., by ActiveLearning.setDistanceCacheSize(long).
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class CachedDistanceMeasure extends DistanceMeasure {
+	/**
+	 * The default maximal number of cached distances. 16M entries cost about
+	 * 128MB for the full matrix, and about 300MB for the bounded cache.
+	 */
+	public static final long DEFAULT_MAX_ENTRIES = 1 << 24;
+
+	/**
+	 * The number of ways in each set of the bounded cache.
+	 */
+	public static final int NUM_WAYS = 4;
+
+	/**
+	 * The number of stripes (locks) of the bounded cache.
+	 */
+	public static final int NUM_STRIPES = 64;
+
+	/**
+	 * The maximal length of a cache array, a multiple of NUM_WAYS.
+	 */
+	static final long MAX_ARRAY_LENGTH = (Integer.MAX_VALUE - 8) / NUM_WAYS * NUM_WAYS;
+
+	/**
+	 * Indicate an empty slot in the bounded cache.
+	 */
+	static final long EMPTY_KEY = -1;
+
+	/**
+	 * Indicate an uncomputed distance in the full matrix. The cosine measure
+	 * may be negative, so -1 is not used.
+	 */
+	static final double UNCOMPUTED = Double.NaN;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * The maximal number of cached distances.
+	 */
+	long maxEntries;
+
+	/**
+	 * The condensed upper triangular distance matrix. Null if the bounded
+	 * cache is used.
+	 */
+	double[] condensedMatrix;
+
+	/**
+	 * Keys of the bounded cache, min * numInstances + max.
+	 */
+	long[] cacheKeys;
+
+	/**
+	 * Values of the bounded cache.
+	 */
+	double[] cacheValues;
+
+	/**
+	 * Reference bits of the bounded cache for CLOCK replacement.
+	 */
+	boolean[] cacheReferenced;
+
+	/**
+	 * The clock hand of each set.
+	 */
+	byte[] clockHands;
+
+	/**
+	 * The number of sets of the bounded cache.
+	 */
+	int numSets;
+
+	/**
+	 * Locks of the bounded cache. Set i is protected by locks[i % NUM_STRIPES].
+	 */
+	Object[] locks;
+
+	/**
+	 * Are hits and misses counted? Counting costs an atomic operation per
+	 * lookup, so it is disabled by default.
+	 */
+	boolean statisticsEnabled;
+
+	/**
+	 * The number of cache hits.
+	 */
+	AtomicLong numHits;
+
+	/**
+	 * The number of cache misses.
+	 */
+	AtomicLong numMisses;
+
+	/**
+	 ********************
+	 * The constructor.
+	 *
+	 * @param paraMeasure
+	 *            The distance measure to wrap.
+	 * @param paraMaxEntries
+	 *            The maximal number of cached distances. The full matrix is
+	 *            used if all pairs fit in. It is clamped to the maximal array
+	 *            length.
+	 ********************
+	 */
+	public CachedDistanceMeasure(DistanceMeasure paraMeasure, long paraMaxEntries) {
+		super(paraMeasure);
+		maxEntries = Math.max(0, Math.min(paraMaxEntries, MAX_ARRAY_LENGTH));
+		statisticsEnabled = false;
+		numHits = new AtomicLong();
+		numMisses = new AtomicLong();
+		initializeCache();
+	}// Of the first constructor
+
+	/**
+	 ********************
+	 * The constructor with the default cache size.
+	 *
+	 * @param paraMeasure
+	 *            The distance measure to wrap.
+	 ********************
+	 */
+	public CachedDistanceMeasure(DistanceMeasure paraMeasure) {
+		this(paraMeasure, DEFAULT_MAX_ENTRIES);
+	}// Of the second constructor
+
+	/**
+	 *************************
+	 * Allocate the cache according to the data size.
+	 *************************
+	 */
+	void initializeCache() {
+		numInstances = data.numInstances();
+		long tempNumPairs = (long) numInstances * (numInstances - 1) / 2;
+
+		condensedMatrix = null;
+		cacheKeys = null;
+		cacheValues = null;
+		cacheReferenced = null;
+		clockHands = null;
+
+		if (tempNumPairs <= maxEntries) {
+			condensedMatrix = new double[(int) tempNumPairs];
+			Arrays.fill(condensedMatrix, UNCOMPUTED);
+			return;
+		} // Of if
+
+		numSets = (int) Math.max(1, maxEntries / NUM_WAYS);
+		int tempLength = numSets * NUM_WAYS;
+		cacheKeys = new long[tempLength];
+		Arrays.fill(cacheKeys, EMPTY_KEY);
+		cacheValues = new double[tempLength];
+		cacheReferenced = new boolean[tempLength];
+		clockHands = new byte[numSets];
+		locks = new Object[NUM_STRIPES];
+		for (int i = 0; i < NUM_STRIPES; i++) {
+			locks[i] = new Object();
+		} // Of for i
+	}// Of initializeCache
+
+	/**
+	 *************************
+	 * Rebuild the features and discard all cached distances since the data has
+	 * changed.
+	 *************************
+	 */
+	public void buildFeatures() {
+		super.buildFeatures();
+		if (numHits != null) {
+			initializeCache();
+		} // Of if
+	}// Of buildFeatures
+
+	/**
+	 *************************
+	 * Compute the distance between two instances, or look it up.
+	 *
+	 * @param paraFirstIndex
+	 *            The first instance index.
+	 * @param paraSecondIndex
+	 *            The second instance index.
+	 * @return The distance.
+	 *************************
+	 */
+	public double distance(int paraFirstIndex, int paraSecondIndex) {
+		if (paraFirstIndex == paraSecondIndex) {
+			return super.distance(paraFirstIndex, paraSecondIndex);
+		} // Of if
+
+		int tempMin = paraFirstIndex;
+		int tempMax = paraSecondIndex;
+		if (tempMin > tempMax) {
+			tempMin = paraSecondIndex;
+			tempMax = paraFirstIndex;
+		} // Of if
+
+		if (condensedMatrix != null) {
+			return lookupCondensed(tempMin, tempMax);
+		} // Of if
+
+		return lookupBounded(tempMin, tempMax);
+	}// Of distance
+
+	/**
+	 *************************
+	 * Look up the condensed matrix. Concurrent writers store the same value, so
+	 * no lock is required.
+	 *
+	 * @param paraMin
+	 *            The smaller index.
+	 * @param paraMax
+	 *            The larger index.
+	 * @return The distance.
+	 *************************
+	 */
+	double lookupCondensed(int paraMin, int paraMax) {
+		long tempLongIndex = (long) paraMin * numInstances - (long) paraMin * (paraMin + 1) / 2 + paraMax - paraMin - 1;
+		int tempIndex = (int) tempLongIndex;
+
+		double resultDistance = condensedMatrix[tempIndex];
+		if (!Double.isNaN(resultDistance)) {
+			if (statisticsEnabled) {
+				numHits.incrementAndGet();
+			} // Of if
+			return resultDistance;
+		} // Of if
+
+		if (statisticsEnabled) {
+			numMisses.incrementAndGet();
+		} // Of if
+		resultDistance = super.distance(paraMin, paraMax);
+		condensedMatrix[tempIndex] = resultDistance;
+
+		return resultDistance;
+	}// Of lookupCondensed
+
+	/**
+	 *************************
+	 * Look up the bounded cache. The distance is computed outside the lock.
+	 *
+	 * @param paraMin
+	 *            The smaller index.
+	 * @param paraMax
+	 *            The larger index.
+	 * @return The distance.
+	 *************************
+	 */
+	double lookupBounded(int paraMin, int paraMax) {
+		long tempKey = (long) paraMin * numInstances + paraMax;
+		int tempSet = hashToSet(tempKey);
+		int tempStart = tempSet * NUM_WAYS;
+		Object tempLock = locks[tempSet % NUM_STRIPES];
+
+		// Step 1. Look up.
+		synchronized (tempLock) {
+			for (int i = tempStart; i < tempStart + NUM_WAYS; i++) {
+				if (cacheKeys[i] == tempKey) {
+					cacheReferenced[i] = true;
+					if (statisticsEnabled) {
+						numHits.incrementAndGet();
+					} // Of if
+					return cacheValues[i];
+				} // Of if
+			} // Of for i
+		} // Of synchronized
+
+		// Step 2. Compute.
+		if (statisticsEnabled) {
+			numMisses.incrementAndGet();
+		} // Of if
+		double resultDistance = super.distance(paraMin, paraMax);
+
+		// Step 3. Insert. The victim is selected by the clock hand.
+		synchronized (tempLock) {
+			int tempHand = clockHands[tempSet];
+			int tempSlot;
+			while (true) {
+				tempSlot = tempStart + tempHand;
+				tempHand = (tempHand + 1) % NUM_WAYS;
+				if (cacheKeys[tempSlot] == tempKey) {
+					// Inserted by another thread.
+					break;
+				} // Of if
+				if ((cacheKeys[tempSlot] == EMPTY_KEY) || (!cacheReferenced[tempSlot])) {
+					cacheKeys[tempSlot] = tempKey;
+					cacheValues[tempSlot] = resultDistance;
+					break;
+				} // Of if
+				cacheReferenced[tempSlot] = false;
+			} // Of while
+			cacheReferenced[tempSlot] = true;
+			clockHands[tempSet] = (byte) tempHand;
+		} // Of synchronized
+
+		return resultDistance;
+	}// Of lookupBounded
+
+	/**
+	 *************************
+	 * Hash the key to a set.
+	 *
+	 * @param paraKey
+	 *            The key.
+	 * @return The set index.
+	 *************************
+	 */
+	int hashToSet(long paraKey) {
+		long tempHash = paraKey * 0x9E3779B97F4A7C15L;
+		tempHash ^= (tempHash >>> 32);
+		return (int) ((tempHash & Long.MAX_VALUE) % numSets);
+	}// Of hashToSet
+
+	/**
+	 *************************
+	 * Is the full matrix used?
+	 *
+	 * @return True if all distances can be stored.
+	 *************************
+	 */
+	public boolean isFullMatrix() {
+		return condensedMatrix != null;
+	}// Of isFullMatrix
+
+	/**
+	 *************************
+	 * Enable or disable counting of hits and misses.
+	 *
+	 * @param paraStatisticsEnabled
+	 *            True to count.
+	 *************************
+	 */
+	public void setStatisticsEnabled(boolean paraStatisticsEnabled) {
+		statisticsEnabled = paraStatisticsEnabled;
+	}// Of setStatisticsEnabled
+
+	/**
+	 *************************
+	 * Get the number of cache hits. It is counted only if statistics are
+	 * enabled.
+	 *
+	 * @return The number of hits.
+	 *************************
+	 */
+	public long getNumHits() {
+		return numHits.get();
+	}// Of getNumHits
+
+	/**
+	 *************************
+	 * Get the number of cache misses, i.e., the number of computed distances.
+	 * It is counted only if statistics are enabled.
+	 *
+	 * @return The number of misses.
+	 *************************
+	 */
+	public long getNumMisses() {
+		return numMisses.get();
+	}// Of getNumMisses
+
+	/**
+	 *************************
+	 * Reset the hit/miss counters. Cached distances are kept.
+	 *************************
+	 */
+	public void resetCounters() {
+		numHits.set(0);
+		numMisses.set(0);
+	}// Of resetCounters
+
+	/**
+	 *************************
+	 * Display the distance measure and the cache statistics.
+	 *
+	 * @return The distance measure.
+	 *************************
+	 */
+	public String toString() {
+		String resultString = super.toString();
+		resultString += " (cached";
+		if (isFullMatrix()) {
+			resultString += ", full matrix";
+		} else {
+			resultString += ", " + (numSets * NUM_WAYS) + " entries";
+		} // Of if
+		if (statisticsEnabled) {
+			resultString += ", hits = " + numHits.get() + ", misses = " + numMisses.get();
+		} // Of if
+		resultString += ")";
+
+		return resultString;
+	}// Of toString
+
+	/**
+	 *************************
+	 * The test entrance.
+	 *
+	 * @param args
+	 *            The parameters.
+	 * @throws IOException
+	 *             The IOException for data reading.
+	 *************************
+	 */
+	public static void main(String[] args) throws IOException {
+		FileReader tempReader = new FileReader("src/data/iris.arff");
+		Instances tempData = new Instances(tempReader);
+		tempReader.close();
+		tempData.setClassIndex(tempData.numAttributes() - 1);
+
+		DistanceMeasure tempMeasure = new DistanceMeasure(tempData, EUCLIDEAN);
+		CachedDistanceMeasure tempFullCache = new CachedDistanceMeasure(tempMeasure);
+		tempFullCache.setStatisticsEnabled(true);
+		// A small cache to test the replacement.
+		CachedDistanceMeasure tempBoundedCache = new CachedDistanceMeasure(tempMeasure, 1000);
+		tempBoundedCache.setStatisticsEnabled(true);
+
+		double tempDifference = 0;
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < tempData.numInstances(); i++) {
+				for (int j = 0; j < tempData.numInstances(); j++) {
+					tempDifference += Math.abs(tempFullCache.distance(i, j) - tempMeasure.distance(i, j));
+					tempDifference += Math.abs(tempBoundedCache.distance(j, i) - tempMeasure.distance(i, j));
+				} // Of for j
+			} // Of for i
+		} // Of for round
+
+		System.out.println(tempFullCache);
+		System.out.println(tempBoundedCache);
+		System.out.println("Total difference: " + tempDifference);
+	}// Of main
+}// Of class CachedDistanceMeasure
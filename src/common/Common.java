@@ -7,6 +7,7 @@ package common;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Provides basic settings along with some other important data for the whole
@@ -21,7 +22,7 @@ import java.util.*;
  * <p>
  * Progress: Changing all the time.<br>
  * Written time: October 20, 2008. <br>
- * Last modify time: July 27, 2019.
+ * Last modify time: October 18, 2026.
  */
 
 public class Common extends Object {
@@ -58,6 +59,12 @@ public class Common extends Object {
 	 */
 	public static Random random = new Random();
 
+	/**
+	 * The fork-join pool shared by parallel computations. Its parallelism is
+	 * the number of available processors.
+	 */
+	public static ForkJoinPool forkJoinPool = new ForkJoinPool();
+
 	/**
 	 * Anything changed?
 	 */
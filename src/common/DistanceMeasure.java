@@ -3,6 +3,7 @@ package common;
 import java.io.FileReader;
 import java.io.IOException;
 
+import Jama.CholeskyDecomposition;
 import Jama.Matrix;
 import weka.core.Instances;
 
@@ -18,7 +19,9 @@ import weka.core.Instances;
  * <p>
  * Progress: Three measures are implemented. More are desired.<br>
  * Written time: May 20, 2019. <br>
- * Last modify time: July 27, 2019.
+ * Last modify time: October 18, 2026. Conditional values are packed in a
+ * primitive array to avoid Weka accessors in distance kernels. The Mahalanobis
+ * distance works on pre-whitened instances.
  */
 
 public class DistanceMeasure {
@@ -57,6 +60,29 @@ public class DistanceMeasure {
 	 */
 	Matrix inverseMeansMatrix;
 
+	/**
+	 * The number of conditional attributes. The last attribute is the class.
+	 */
+	int numConditions;
+
+	/**
+	 * Conditional attribute values stored row by row. The value of attribute j
+	 * of instance i is features[i * numConditions + j].
+	 */
+	double[] features;
+
+	/**
+	 * The Cholesky factor M of the inverse covariance matrix, i.e., inverse =
+	 * M * M^T. It is lower triangular. Only for the Mahalanobis distance.
+	 */
+	double[][] whiteningMatrix;
+
+	/**
+	 * Instances multiplied by the whitening matrix, stored in the same way as
+	 * features. Only for the Mahalanobis distance.
+	 */
+	double[] whitenedFeatures;
+
 	/**
 	 ********************
 	 * The constructor.
@@ -71,7 +97,92 @@ public class DistanceMeasure {
 		data = paraData;
 		measure = paraMeasure;
 		inverseMeansMatrix = null;
-	}// Of the constructor
+		buildFeatures();
+	}// Of the first constructor
+
+	/**
+	 ********************
+	 * The copy constructor. Features are shared rather than copied. It is
+	 * employed by wrappers such as CachedDistanceMeasure.
+	 * 
+	 * @param paraMeasure
+	 *            The given distance measure.
+	 ********************
+	 */
+	public DistanceMeasure(DistanceMeasure paraMeasure) {
+		data = paraMeasure.data;
+		measure = paraMeasure.measure;
+		inverseMeansMatrix = paraMeasure.inverseMeansMatrix;
+		numConditions = paraMeasure.numConditions;
+		features = paraMeasure.features;
+		whiteningMatrix = paraMeasure.whiteningMatrix;
+		whitenedFeatures = paraMeasure.whitenedFeatures;
+	}// Of the second constructor
+
+	/**
+	 ************************* 
+	 * Pack conditional attribute values into the feature array. It should be
+	 * invoked again if the data is changed (e.g., normalized) after the
+	 * construction of this object.
+	 ************************* 
+	 */
+	public void buildFeatures() {
+		int tempNumInstances = data.numInstances();
+		numConditions = data.numAttributes() - 1;
+		features = new double[tempNumInstances * numConditions];
+
+		int tempOffset = 0;
+		for (int i = 0; i < tempNumInstances; i++) {
+			for (int j = 0; j < numConditions; j++) {
+				features[tempOffset] = data.instance(i).value(j);
+				tempOffset++;
+			} // Of for j
+		} // Of for i
+
+		whiteningMatrix = null;
+		whitenedFeatures = null;
+		if (measure == MAHALANOBIS) {
+			initializeMahalanobis();
+		} // Of if
+	}// Of buildFeatures
+
+	/**
+	 ************************* 
+	 * Get the number of conditional attributes.
+	 * 
+	 * @return The number of conditional attributes.
+	 ************************* 
+	 */
+	public int getNumConditions() {
+		return numConditions;
+	}// Of getNumConditions
+
+	/**
+	 ************************* 
+	 * Get the packed feature array. It is shared rather than copied, so do not
+	 * modify it.
+	 * 
+	 * @return The feature array.
+	 ************************* 
+	 */
+	public double[] getFeatures() {
+		return features;
+	}// Of getFeatures
+
+	/**
+	 ************************* 
+	 * Get the value of the given conditional attribute of the given instance.
+	 * 
+	 * @param paraIndex
+	 *            The instance index.
+	 * @param paraAttribute
+	 *            The attribute index.
+	 * @return The value.
+	 ************************* 
+	 */
+	public double getValue(int paraIndex, int paraAttribute) {
+		return features[paraIndex * numConditions + paraAttribute];
+	}// Of getValue
 
 	/**
 	 ************************* 
@@ -224,12 +335,14 @@ public class DistanceMeasure {
 	public double euclideanDistance(int paraFirstIndex, int paraSecondIndex) {
 		double tempDifference = 0;
 		double tempDistance = 0;
+		int tempFirstOffset = paraFirstIndex * numConditions;
+		int tempSecondOffset = paraSecondIndex * numConditions;
 
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempDifference = data.instance(paraFirstIndex).value(i) - data.instance(paraSecondIndex).value(i);
+		for (int i = 0; i < numConditions; i++) {
+			tempDifference = features[tempFirstOffset + i] - features[tempSecondOffset + i];
 			tempDistance += tempDifference * tempDifference;
-			Common.runtimes++;
 		} // Of for i
+		Common.runtimes += numConditions;
 
 		return Math.sqrt(tempDistance);
 	}// Of euclideanDistance
@@ -248,12 +361,13 @@ public class DistanceMeasure {
 	public double euclideanDistance(int paraIndex, double[] paraArray) {
 		double tempDifference = 0;
 		double tempDistance = 0;
+		int tempOffset = paraIndex * numConditions;
 
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempDifference = data.instance(paraIndex).value(i) - paraArray[i];
+		for (int i = 0; i < numConditions; i++) {
+			tempDifference = features[tempOffset + i] - paraArray[i];
 			tempDistance += tempDifference * tempDifference;
-			Common.runtimes++;
 		} // Of for i
+		Common.runtimes += numConditions;
 
 		return Math.sqrt(tempDistance);
 	}// Of euclideanDistance
@@ -295,9 +409,11 @@ public class DistanceMeasure {
 	public double manhattanDistance(int paraFirstIndex, int paraSecondIndex) {
 		double tempDifference = 0;
 		double tempDistance = 0;
+		int tempFirstOffset = paraFirstIndex * numConditions;
+		int tempSecondOffset = paraSecondIndex * numConditions;
 
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempDifference = data.instance(paraFirstIndex).value(i) - data.instance(paraSecondIndex).value(i);
+		for (int i = 0; i < numConditions; i++) {
+			tempDifference = features[tempFirstOffset + i] - features[tempSecondOffset + i];
 			tempDistance += Math.abs(tempDifference);
 		} // Of for i
 
@@ -318,9 +434,10 @@ public class DistanceMeasure {
 	public double manhattanDistance(int paraIndex, double[] paraArray) {
 		double tempDifference = 0;
 		double tempDistance = 0;
+		int tempOffset = paraIndex * numConditions;
 
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempDifference = data.instance(paraIndex).value(i) - paraArray[i];
+		for (int i = 0; i < numConditions; i++) {
+			tempDifference = features[tempOffset + i] - paraArray[i];
 			tempDistance += Math.abs(tempDifference);
 		} // Of for i
 
@@ -367,15 +484,22 @@ public class DistanceMeasure {
 	 ************************* 
 	 */
 	public double cosineDistance(int paraFirstIndex, int paraSecondIndex) {
-		double tempDistance = 0;
-		double[] paraOneIndexArray = new double[data.numAttributes() - 1];
-		double[] paraTwoIndexArray = new double[data.numAttributes() - 1];
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			paraOneIndexArray[i] = data.instance(paraFirstIndex).value(i);
-			paraTwoIndexArray[i] = data.instance(paraSecondIndex).value(i);
+		double tempNumerator = 0;
+		double tempRecordX = 0;
+		double tempRecordY = 0;
+		double tempFirstValue, tempSecondValue;
+		int tempFirstOffset = paraFirstIndex * numConditions;
+		int tempSecondOffset = paraSecondIndex * numConditions;
+
+		for (int i = 0; i < numConditions; i++) {
+			tempFirstValue = features[tempFirstOffset + i];
+			tempSecondValue = features[tempSecondOffset + i];
+			tempNumerator += tempFirstValue * tempSecondValue;
+			tempRecordX += tempFirstValue * tempFirstValue;
+			tempRecordY += tempSecondValue * tempSecondValue;
 		} // Of for i
-		tempDistance = cosineDistance(paraOneIndexArray, paraTwoIndexArray);
-		return tempDistance;
+
+		return tempNumerator / (Math.sqrt(tempRecordX) * Math.sqrt(tempRecordY));
 	}// Of cosineDistance
 
 	/**
@@ -390,120 +514,172 @@ public class DistanceMeasure {
 	 ************************* 
 	 */
 	public double cosineDistance(int paraIndex, double[] paraArray) {
-		double tempDistance = 0;
-		double[] tempArray = new double[data.numAttributes() - 1];
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempArray[i] = data.instance(paraIndex).value(i);
+		double tempNumerator = 0;
+		double tempRecordX = 0;
+		double tempRecordY = 0;
+		double tempValue;
+		int tempOffset = paraIndex * numConditions;
+
+		for (int i = 0; i < numConditions; i++) {
+			tempValue = features[tempOffset + i];
+			tempNumerator += tempValue * paraArray[i];
+			tempRecordX += tempValue * tempValue;
+			tempRecordY += paraArray[i] * paraArray[i];
 		} // Of for i
-		tempDistance = cosineDistance(tempArray, paraArray);
-		return tempDistance;
+
+		return tempNumerator / (Math.sqrt(tempRecordX) * Math.sqrt(tempRecordY));
 	}// Of cosineDistance
 
 	/**
 	 ************************* 
-	 * Compute the Mahalanobis distance between two vectors.
-	 * 
-	 * @param paraFirstArray
-	 *            The first array.
-	 * @param paraSecondArray
-	 *            The second array.
+	 * Prepare for the Mahalanobis distance. The inverse covariance matrix is
+	 * factored as M * M^T using Cholesky decomposition, hence (x - y) * inverse
+	 * * (x - y)^T = ||x * M - y * M||^2. All instances are whitened (multiplied
+	 * by M) once, and the Mahalanobis distance between two instances becomes
+	 * the Euclidean distance between their whitened vectors.
 	 ************************* 
 	 */
-	double MahalanobisDistence(double[] paraFirstArray, double[] paraSecondArray) {
-		if (inverseMeansMatrix == null) {
-			// Initialize it
-			double[] tempMeans = new double[data.numAttributes() - 1];
-			Matrix oriData = new Matrix(data.numInstances(), data.numAttributes() - 1);
-
-			for (int i = 0; i < data.numInstances(); i++) {
-				for (int j = 0; j < data.numAttributes() - 1; j++) {
-					tempMeans[j] += data.instance(i).value(j);
-					oriData.set(i, j, data.instance(i).value(j));
-				} // Of for j
-			} // Of for i
-
-			for (int j = 0; j < data.numAttributes() - 1; j++) {
-				tempMeans[j] /= data.numInstances();
+	void initializeMahalanobis() {
+		int tempNumInstances = data.numInstances();
+
+		// Step 1. The centralized data.
+		double[] tempMeans = new double[numConditions];
+		for (int i = 0; i < tempNumInstances; i++) {
+			for (int j = 0; j < numConditions; j++) {
+				tempMeans[j] += features[i * numConditions + j];
 			} // Of for j
+		} // Of for i
 
-			for (int i = 0; i < data.numInstances(); i++) {
-				for (int j = 0; j < data.numAttributes() - 1; j++) {
-					oriData.set(i, j, oriData.get(i, j) - tempMeans[j]);
-				} // Of for j
-			} // Of for i
-
-			Matrix meansMartrix = oriData;
+		for (int j = 0; j < numConditions; j++) {
+			tempMeans[j] /= tempNumInstances;
+		} // Of for j
 
-			Matrix covarianceMatrix = (meansMartrix.transpose()).times(meansMartrix);
+		Matrix tempCentralizedMatrix = new Matrix(tempNumInstances, numConditions);
+		for (int i = 0; i < tempNumInstances; i++) {
+			for (int j = 0; j < numConditions; j++) {
+				tempCentralizedMatrix.set(i, j, features[i * numConditions + j] - tempMeans[j]);
+			} // Of for j
+		} // Of for i
 
-			inverseMeansMatrix = covarianceMatrix.inverse();
+		// Step 2. The inverse of the covariance matrix.
+		Matrix tempCovarianceMatrix = (tempCentralizedMatrix.transpose()).times(tempCentralizedMatrix);
+		inverseMeansMatrix = tempCovarianceMatrix.inverse();
 
+		// Step 3. Factor it.
+		CholeskyDecomposition tempDecomposition = inverseMeansMatrix.chol();
+		if (!tempDecomposition.isSPD()) {
+			System.out.println("Error occurred in DistanceMeasure.initializeMahalanobis(): "
+					+ "the inverse covariance matrix is not symmetric positive definite.");
+			System.exit(0);
 		} // Of if
+		whiteningMatrix = tempDecomposition.getL().getArray();
+
+		// Step 4. Whiten all instances.
+		whitenedFeatures = new double[tempNumInstances * numConditions];
+		int tempOffset;
+		double tempSum;
+		for (int i = 0; i < tempNumInstances; i++) {
+			tempOffset = i * numConditions;
+			for (int j = 0; j < numConditions; j++) {
+				tempSum = 0;
+				// M is lower triangular.
+				for (int k = j; k < numConditions; k++) {
+					tempSum += features[tempOffset + k] * whiteningMatrix[k][j];
+				} // Of for k
+				whitenedFeatures[tempOffset + j] = tempSum;
+			} // Of for j
+		} // Of for i
+	}// Of initializeMahalanobis
 
-		double[][] tempMar1 = new double[1][paraFirstArray.length];
-		double[][] tempMar2 = new double[1][paraSecondArray.length];
-		for (int i = 0; i < paraFirstArray.length; i++) {
-			tempMar1[0][i] = paraFirstArray[i];
-			tempMar2[0][i] = paraSecondArray[i];
-		}
-
-		Matrix tempMatrix1 = new Matrix(tempMar1);
-		Matrix tempMatrix2 = new Matrix(tempMar2);
-
-		Matrix tempDifference = tempMatrix1.minus(tempMatrix2);
-
-		Matrix tempMatrixResult = ((tempDifference).times(inverseMeansMatrix)).times(tempDifference.transpose());
+	/**
+	 ************************* 
+	 * Compute the Mahalanobis distance between two vectors. No memory is
+	 * allocated.
+	 * 
+	 * @param paraFirstArray
+	 *            The first array.
+	 * @param paraSecondArray
+	 *            The second array.
+	 * @return The distance.
+	 ************************* 
+	 */
+	double MahalanobisDistence(double[] paraFirstArray, double[] paraSecondArray) {
+		if (whitenedFeatures == null) {
+			initializeMahalanobis();
+		} // Of if
 
-		double result = Math.sqrt(tempMatrixResult.get(0, 0));
+		double tempDistance = 0;
+		double tempDifference;
+		for (int j = 0; j < numConditions; j++) {
+			tempDifference = 0;
+			for (int k = j; k < numConditions; k++) {
+				tempDifference += (paraFirstArray[k] - paraSecondArray[k]) * whiteningMatrix[k][j];
+			} // Of for k
+			tempDistance += tempDifference * tempDifference;
+		} // Of for j
 
-		// System.out.println("Distance between " +
-		// Arrays.toString(paraFirstArray) + " and "
-		// + Arrays.toString(paraSecondArray) + " is " + result);
-		return result;
+		return Math.sqrt(tempDistance);
 	}// Of MahalanobisDistence
 
 	/**
 	 ************************* 
-	 * Compute the Mahalanobis distance between an instances and a vector.
+	 * Compute the Mahalanobis distance between an instances and a vector. Only
+	 * the vector is whitened on the fly.
 	 * 
 	 * @param paraIndex
 	 *            The instance index.
 	 * @param paraArray
 	 *            The array.
+	 * @return The distance.
 	 ************************* 
 	 */
-	double MahalanobisDistence(int paraIndex, double[] paraSecondArray) {
-		double result = 0;
-		double[] paraIndexArray = new double[paraSecondArray.length];
-		for (int i = 0; i < paraSecondArray.length; i++) {
-			paraIndexArray[i] = data.instance(paraIndex).value(i);
-		} // Of for i
+	double MahalanobisDistence(int paraIndex, double[] paraArray) {
+		if (whitenedFeatures == null) {
+			initializeMahalanobis();
+		} // Of if
 
-		result = MahalanobisDistence(paraIndexArray, paraSecondArray);
-		return result;
+		int tempOffset = paraIndex * numConditions;
+		double tempDistance = 0;
+		double tempDifference;
+		for (int j = 0; j < numConditions; j++) {
+			tempDifference = whitenedFeatures[tempOffset + j];
+			for (int k = j; k < numConditions; k++) {
+				tempDifference -= paraArray[k] * whiteningMatrix[k][j];
+			} // Of for k
+			tempDistance += tempDifference * tempDifference;
+		} // Of for j
+
+		return Math.sqrt(tempDistance);
 	}// Of MahalanobisDistence
 
 	/**
 	 ************************* 
-	 * Compute the Mahalanobis distance between two instances.
+	 * Compute the Mahalanobis distance between two instances. It is the
+	 * Euclidean distance between whitened instances.
 	 * 
 	 * @param paraFirstIndex
 	 *            The first instance index.
-	 * @param paraSceondIndex
+	 * @param paraSecondIndex
 	 *            The second instance index.
+	 * @return The distance.
 	 ************************* 
 	 */
-	double MahalanobisDistence(int paraIndex1, int paraIndex2) {
-		double result = 0;
-		double[] tempFirstArray = new double[data.numAttributes() - 1];
-		double[] tempSecondArray = new double[data.numAttributes() - 1];
-		for (int i = 0; i < data.numAttributes() - 1; i++) {
-			tempFirstArray[i] = data.instance(paraIndex1).value(i);
-			tempSecondArray[i] = data.instance(paraIndex2).value(i);
+	double MahalanobisDistence(int paraFirstIndex, int paraSecondIndex) {
+		if (whitenedFeatures == null) {
+			initializeMahalanobis();
+		} // Of if
+
+		double tempDifference = 0;
+		double tempDistance = 0;
+		int tempFirstOffset = paraFirstIndex * numConditions;
+		int tempSecondOffset = paraSecondIndex * numConditions;
+
+		for (int i = 0; i < numConditions; i++) {
+			tempDifference = whitenedFeatures[tempFirstOffset + i] - whitenedFeatures[tempSecondOffset + i];
+			tempDistance += tempDifference * tempDifference;
 		} // Of for i
 
-		result = MahalanobisDistence(tempFirstArray, tempSecondArray);
-		return result;
+		return Math.sqrt(tempDistance);
 	}// Of MahalanobisDistence
 
 	/**
@@ -3,6 +3,7 @@ package matrix;
 import java.io.FileReader;
 import java.util.Arrays;
 
+import common.BlockView;
 import common.DistanceMeasure;
 
 import weka.core.*;
@@ -110,13 +111,8 @@ public class CompressedMatrix {
 
 		totalInserted = 0;
 
-		// Initialize matrix
-		matrix = new Triple[data.numInstances()];
-
-		// Scan the data to construct the matrix
-		for (int i = 0; i < matrix.length; i++) {
-			matrix[i] = kNearestNeighbors(i, paraK);
-		} // Of for i
+		// Construct the matrix in parallel
+		matrix = KnnGraphBuilder.build(distanceMeasure, data.numInstances(), paraK);
 
 		// System.out.println(this);
 		symmetrize();
@@ -140,21 +136,37 @@ public class CompressedMatrix {
 
 		totalInserted = 0;
 
-		// Initialize matrix
-		matrix = new Triple[data.numInstances()];
-		for (int i = 0; i < matrix.length; i++) {
-			matrix[i] = new Triple();
-		} // Of for i
-
-		// kNearestNeighbors(0, 3);
-		// Scan the data to construct the matrix
-		for (int i = 0; i < matrix.length; i++) {
-			matrix[i] = kNearestNeighbors(i, paraK);
-		} // Of for i
+		// Construct the matrix in parallel
+		matrix = KnnGraphBuilder.build(distanceMeasure, data.numInstances(), paraK);
 
 		symmetrize();
 	}// of the fourth constructor
 
+	/**
+	 *********************
+	 * The constructor. Node i of the matrix corresponds to instance
+	 * paraBlock.get(i). No data copy is required.
+	 * 
+	 * @param paraDistanceMeasure
+	 *            The distance measure.
+	 * @param paraBlock
+	 *            The instance indices.
+	 * @param paraK
+	 *            The k value for computing neighbors.
+	 *********************
+	 */
+	public CompressedMatrix(DistanceMeasure paraDistanceMeasure, BlockView paraBlock, int paraK) {
+		data = null;
+		distanceMeasure = paraDistanceMeasure;
+
+		totalInserted = 0;
+
+		// Construct the matrix in parallel
+		matrix = KnnGraphBuilder.build(distanceMeasure, paraBlock, paraK);
+
+		symmetrize();
+	}// of the fifth constructor
+
 	/**
 	 *********************
 	 * Initialize some variables.
@@ -166,86 +178,6 @@ public class CompressedMatrix {
 		visited = null;
 	}// Of initialize
 
-	/**
-	 *********************
-	 * Compute the k-nearest neighbors of the node.
-	 *********************
-	 */
-	Triple kNearestNeighbors(int paraNode, int paraK) {
-		Triple resultHeader = new Triple();
-		Triple tempReference = resultHeader;
-
-		int[] tempIndices = new int[paraK + 1];
-		double[] tempWeights = new double[paraK + 1];
-		double tempSimilarity = 0;
-
-		for (int i = 0; i < data.numInstances(); i++) {
-			if (i == paraNode) {
-				continue;
-			} // Of if
-
-			double tempDistance = distanceMeasure.distance(paraNode, i);
-			if (tempDistance < 1e-10) {
-				tempSimilarity = MAX_WEIGHT;
-			} else {
-				tempSimilarity = 1.0 / tempDistance;
-			} // Of else
-				// System.out.println("tempSimilarity = " + tempSimilarity);
-			for (int j = 0; j < paraK; j++) {
-				if (tempSimilarity > tempWeights[j]) {
-					// Move the tail
-					for (int k = paraK; k > j; k--) {
-						tempIndices[k] = tempIndices[k - 1];
-						tempWeights[k] = tempWeights[k - 1];
-					} // Of for k
-
-					// Now insert
-					tempIndices[j] = i;
-					tempWeights[j] = tempSimilarity;
-
-					break;
-				} // Of if
-			} // Of for j
-		} // Of for i
-
-		// System.out.println("Indices: " + Arrays.toString(tempIndices) + ",
-		// weights " + Arrays.toString(tempWeights));
-
-		boolean[] tempProcessed = new boolean[paraK];
-		int tempMinimalIndex = Integer.MAX_VALUE;
-		double tempWeight = -1;
-		int tempIndexInInicesArray = -1;
-		// Search the whole array
-		for (int i = 0; i < paraK; i++) {
-			tempMinimalIndex = Integer.MAX_VALUE;
-			// Find the minimal index
-			for (int j = 0; j < paraK; j++) {
-				if (tempProcessed[j]) {
-					continue;
-				} // Of if
-
-				if (tempIndices[j] < tempMinimalIndex) {
-					tempMinimalIndex = tempIndices[j];
-					tempWeight = tempWeights[j];
-					tempIndexInInicesArray = j;
-				} // Of if
-			} // of for j
-
-			Triple tempNewTriple = new Triple();
-			tempNewTriple.column = tempMinimalIndex;
-			tempNewTriple.weight = tempWeight;
-			tempProcessed[tempIndexInInicesArray] = true;
-
-			// Link it now!
-			tempReference.next = tempNewTriple;
-			tempReference = tempNewTriple;
-		} // Of for i
-
-		// System.out.println("The vector is: " + resultHeader);
-
-		return resultHeader;
-	}// Of kNearestNeighbors
-
 	/**
 	 *********************
 	 * Compute the Manhattan distance between two data points. The decision
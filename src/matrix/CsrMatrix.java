@@ -0,0 +1,855 @@
+package matrix;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import common.Common;
+
+/**
+ * A sparse matrix in the compressed sparse row (CSR) format. The columns of
+ * row i are colIdx[rowPtr[i]] to colIdx[rowPtr[i + 1] - 1] in ascending order,
+ * and their values are stored in values with the same positions. Compared with
+ * CompressedMatrix, no object is created for each non-zero element. The
+ * multiplication can be run row-parallel, and the power series P + P^2 + ... +
+ * P^k is computed with fused multiply-and-add operations.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class CsrMatrix {
+	/**
+	 * Rows handled by one task of the parallel multiplication.
+	 */
+	public static final int ROWS_PER_TASK = 256;
+
+	/**
+	 * Row accumulators of threads. They are reused by all multiplications.
+	 */
+	static final ThreadLocal<RowAccumulator> ACCUMULATORS = new ThreadLocal<RowAccumulator>();
+
+	/**
+	 * The number of rows.
+	 */
+	public int numRows;
+
+	/**
+	 * The number of columns.
+	 */
+	public int numColumns;
+
+	/**
+	 * The start position of each row. The length is numRows + 1.
+	 */
+	public int[] rowPtr;
+
+	/**
+	 * The column of each element.
+	 */
+	public int[] colIdx;
+
+	/**
+	 * The value of each element.
+	 */
+	public double[] values;
+
+	/**
+	 *********************
+	 * The constructor. The arrays are used directly rather than copied.
+	 *
+	 * @param paraNumRows
+	 *            The number of rows.
+	 * @param paraNumColumns
+	 *            The number of columns.
+	 * @param paraRowPtr
+	 *            The start position of each row.
+	 * @param paraColIdx
+	 *            The column of each element.
+	 * @param paraValues
+	 *            The value of each element.
+	 *********************
+	 */
+	public CsrMatrix(int paraNumRows, int paraNumColumns, int[] paraRowPtr, int[] paraColIdx, double[] paraValues) {
+		numRows = paraNumRows;
+		numColumns = paraNumColumns;
+		rowPtr = paraRowPtr;
+		colIdx = paraColIdx;
+		values = paraValues;
+	}// Of the first constructor
+
+	/**
+	 *********************
+	 * Convert a compressed matrix. The matrix is square.
+	 *
+	 * @param paraMatrix
+	 *            The given matrix.
+	 *********************
+	 */
+	public CsrMatrix(CompressedMatrix paraMatrix) {
+		numRows = paraMatrix.matrix.length;
+		numColumns = numRows;
+		rowPtr = new int[numRows + 1];
+
+		// Step 1. Count.
+		Triple tempTriple;
+		for (int i = 0; i < numRows; i++) {
+			rowPtr[i + 1] = rowPtr[i];
+			tempTriple = paraMatrix.matrix[i].next;
+			while (tempTriple != null) {
+				rowPtr[i + 1]++;
+				tempTriple = tempTriple.next;
+			} // Of while
+		} // Of for i
+
+		// Step 2. Copy.
+		colIdx = new int[rowPtr[numRows]];
+		values = new double[rowPtr[numRows]];
+		int tempPosition = 0;
+		for (int i = 0; i < numRows; i++) {
+			tempTriple = paraMatrix.matrix[i].next;
+			while (tempTriple != null) {
+				colIdx[tempPosition] = tempTriple.column;
+				values[tempPosition] = tempTriple.weight;
+				tempPosition++;
+				tempTriple = tempTriple.next;
+			} // Of while
+		} // Of for i
+	}// Of the second constructor
+
+	/**
+	 *********************
+	 * Make a copy.
+	 *
+	 * @param paraMatrix
+	 *            The given matrix.
+	 *********************
+	 */
+	public CsrMatrix(CsrMatrix paraMatrix) {
+		this(paraMatrix.numRows, paraMatrix.numColumns, paraMatrix.rowPtr.clone(), paraMatrix.colIdx.clone(),
+				paraMatrix.values.clone());
+	}// Of the third constructor
+
+	/**
+	 *********************
+	 * Get the number of non-zero elements.
+	 *
+	 * @return The number of stored elements.
+	 *********************
+	 */
+	public int getNumNonZeros() {
+		return rowPtr[numRows];
+	}// Of getNumNonZeros
+
+	/**
+	 *********************
+	 * Convert to a compressed matrix.
+	 *
+	 * @return The compressed matrix.
+	 *********************
+	 */
+	public CompressedMatrix toCompressedMatrix() {
+		CompressedMatrix resultMatrix = new CompressedMatrix(numRows);
+		Triple tempTail;
+		for (int i = 0; i < numRows; i++) {
+			tempTail = resultMatrix.matrix[i];
+			for (int j = rowPtr[i]; j < rowPtr[i + 1]; j++) {
+				tempTail.next = new Triple(colIdx[j], values[j], null);
+				tempTail = tempTail.next;
+			} // Of for j
+		} // Of for i
+
+		return resultMatrix;
+	}// Of toCompressedMatrix
+
+	/**
+	 *********************
+	 * Multiply matrices with Gustavson's algorithm. Each row of the result is
+	 * accumulated in a dense array, so no transposition or ordered insertion
+	 * is required.
+	 *
+	 * @param paraMatrix1
+	 *            The first matrix.
+	 * @param paraMatrix2
+	 *            The second matrix.
+	 * @return The result matrix.
+	 *********************
+	 */
+	public static CsrMatrix multiply(CsrMatrix paraMatrix1, CsrMatrix paraMatrix2) {
+		int tempNumRows = paraMatrix1.numRows;
+		int tempNumColumns = paraMatrix2.numColumns;
+		int[] resultRowPtr = new int[tempNumRows + 1];
+		int tempCapacity = Math.max(16, paraMatrix1.getNumNonZeros() + paraMatrix2.getNumNonZeros());
+		int[] resultColIdx = new int[tempCapacity];
+		double[] resultValues = new double[tempCapacity];
+
+		// The dense accumulator and the row it is marked by.
+		double[] tempAccumulator = new double[tempNumColumns];
+		int[] tempMarkers = new int[tempNumColumns];
+		Arrays.fill(tempMarkers, -1);
+
+		int tempSize = 0;
+		int tempMiddle, tempColumn;
+		double tempWeight;
+		for (int i = 0; i < tempNumRows; i++) {
+			// Step 1. Accumulate the row.
+			int tempRowStart = tempSize;
+			for (int j = paraMatrix1.rowPtr[i]; j < paraMatrix1.rowPtr[i + 1]; j++) {
+				tempMiddle = paraMatrix1.colIdx[j];
+				tempWeight = paraMatrix1.values[j];
+				for (int k = paraMatrix2.rowPtr[tempMiddle]; k < paraMatrix2.rowPtr[tempMiddle + 1]; k++) {
+					tempColumn = paraMatrix2.colIdx[k];
+					if (tempMarkers[tempColumn] != i) {
+						tempMarkers[tempColumn] = i;
+						tempAccumulator[tempColumn] = 0;
+						if (tempSize == resultColIdx.length) {
+							resultColIdx = Arrays.copyOf(resultColIdx, tempSize * 2);
+							resultValues = Arrays.copyOf(resultValues, tempSize * 2);
+						} // Of if
+						resultColIdx[tempSize] = tempColumn;
+						tempSize++;
+					} // Of if
+					tempAccumulator[tempColumn] += tempWeight * paraMatrix2.values[k];
+				} // Of for k
+			} // Of for j
+
+			// Step 2. Sort columns and gather values.
+			Arrays.sort(resultColIdx, tempRowStart, tempSize);
+			for (int j = tempRowStart; j < tempSize; j++) {
+				resultValues[j] = tempAccumulator[resultColIdx[j]];
+			} // Of for j
+			resultRowPtr[i + 1] = tempSize;
+		} // Of for i
+
+		return new CsrMatrix(tempNumRows, tempNumColumns, resultRowPtr, Arrays.copyOf(resultColIdx, tempSize),
+				Arrays.copyOf(resultValues, tempSize));
+	}// Of multiply
+
+	/**
+	 *********************
+	 * Multiply matrices and add the third one, i.e., A * B + C. Rows are
+	 * computed in parallel. Each thread has its own dense accumulator, and the
+	 * addend is accumulated before the row is emitted, hence A * B is never
+	 * materialized.
+	 *
+	 * @param paraFirstMatrix
+	 *            The first matrix A.
+	 * @param paraSecondMatrix
+	 *            The second matrix B.
+	 * @param paraAddend
+	 *            The addend C with the same shape as A * B. Null for pure
+	 *            multiplication.
+	 * @return The result matrix.
+	 *********************
+	 */
+	public static CsrMatrix multiplyAndAdd(CsrMatrix paraFirstMatrix, CsrMatrix paraSecondMatrix,
+			CsrMatrix paraAddend) {
+		int tempNumRows = paraFirstMatrix.numRows;
+		int tempNumTasks = (tempNumRows + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+		int[] tempRowCounts = new int[tempNumRows];
+
+		// Step 1. Compute rows in tasks.
+		MultiplyTask[] tempTasks = new MultiplyTask[tempNumTasks];
+		for (int i = 0; i < tempNumTasks; i++) {
+			tempTasks[i] = new MultiplyTask(paraFirstMatrix, paraSecondMatrix, paraAddend, tempRowCounts,
+					i * ROWS_PER_TASK, Math.min(tempNumRows, (i + 1) * ROWS_PER_TASK));
+		} // Of for i
+
+		if (tempNumTasks == 1) {
+			tempTasks[0].compute();
+		} else {
+			final MultiplyTask[] tempFinalTasks = tempTasks;
+			Common.forkJoinPool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = -2460815829371412436L;
+
+				protected void compute() {
+					invokeAll(tempFinalTasks);
+				}// Of compute
+			});
+		} // Of if
+
+		// Step 2. Row pointers.
+		int[] resultRowPtr = new int[tempNumRows + 1];
+		for (int i = 0; i < tempNumRows; i++) {
+			resultRowPtr[i + 1] = resultRowPtr[i] + tempRowCounts[i];
+		} // Of for i
+
+		// Step 3. Concatenate the outputs of tasks.
+		int[] resultColIdx = new int[resultRowPtr[tempNumRows]];
+		double[] resultValues = new double[resultRowPtr[tempNumRows]];
+		int tempPosition = 0;
+		for (int i = 0; i < tempNumTasks; i++) {
+			System.arraycopy(tempTasks[i].localColIdx, 0, resultColIdx, tempPosition, tempTasks[i].localSize);
+			System.arraycopy(tempTasks[i].localValues, 0, resultValues, tempPosition, tempTasks[i].localSize);
+			tempPosition += tempTasks[i].localSize;
+		} // Of for i
+
+		return new CsrMatrix(tempNumRows, paraSecondMatrix.numColumns, resultRowPtr, resultColIdx, resultValues);
+	}// Of multiplyAndAdd
+
+	/**
+	 *********************
+	 * Multiply matrices in parallel.
+	 *
+	 * @param paraFirstMatrix
+	 *            The first matrix.
+	 * @param paraSecondMatrix
+	 *            The second matrix.
+	 * @return The result matrix.
+	 *********************
+	 */
+	public static CsrMatrix parallelMultiply(CsrMatrix paraFirstMatrix, CsrMatrix paraSecondMatrix) {
+		return multiplyAndAdd(paraFirstMatrix, paraSecondMatrix, null);
+	}// Of parallelMultiply
+
+	/**
+	 *********************
+	 * Compute P + P^2 + ... + P^k in the Horner form S_1 = P, S_j = P * S_(j-1)
+	 * + P. Each step is one fused multiply-and-add, and no power of P is
+	 * stored.
+	 *
+	 * @param paraMatrix
+	 *            The square matrix P.
+	 * @param paraK
+	 *            The highest power.
+	 * @return The sum of powers.
+	 *********************
+	 */
+	public static CsrMatrix powerSeries(CsrMatrix paraMatrix, int paraK) {
+		CsrMatrix resultMatrix = paraMatrix;
+		for (int i = 2; i <= paraK; i++) {
+			resultMatrix = multiplyAndAdd(paraMatrix, resultMatrix, paraMatrix);
+		} // Of for i
+
+		return resultMatrix;
+	}// Of powerSeries
+
+	/**
+	 *********************
+	 * Add matrices with the same shape.
+	 *
+	 * @param paraMatrix1
+	 *            The first matrix.
+	 * @param paraMatrix2
+	 *            The second matrix.
+	 * @return The result matrix.
+	 *********************
+	 */
+	public static CsrMatrix add(CsrMatrix paraMatrix1, CsrMatrix paraMatrix2) {
+		int tempNumRows = paraMatrix1.numRows;
+		int[] resultRowPtr = new int[tempNumRows + 1];
+		int tempCapacity = paraMatrix1.getNumNonZeros() + paraMatrix2.getNumNonZeros();
+		int[] resultColIdx = new int[tempCapacity];
+		double[] resultValues = new double[tempCapacity];
+
+		int tempSize = 0;
+		int tempFirst, tempFirstEnd, tempSecond, tempSecondEnd;
+		for (int i = 0; i < tempNumRows; i++) {
+			tempFirst = paraMatrix1.rowPtr[i];
+			tempFirstEnd = paraMatrix1.rowPtr[i + 1];
+			tempSecond = paraMatrix2.rowPtr[i];
+			tempSecondEnd = paraMatrix2.rowPtr[i + 1];
+
+			// Merge the two ordered rows
+			while ((tempFirst < tempFirstEnd) && (tempSecond < tempSecondEnd)) {
+				if (paraMatrix1.colIdx[tempFirst] < paraMatrix2.colIdx[tempSecond]) {
+					resultColIdx[tempSize] = paraMatrix1.colIdx[tempFirst];
+					resultValues[tempSize] = paraMatrix1.values[tempFirst];
+					tempFirst++;
+				} else if (paraMatrix2.colIdx[tempSecond] < paraMatrix1.colIdx[tempFirst]) {
+					resultColIdx[tempSize] = paraMatrix2.colIdx[tempSecond];
+					resultValues[tempSize] = paraMatrix2.values[tempSecond];
+					tempSecond++;
+				} else {
+					resultColIdx[tempSize] = paraMatrix1.colIdx[tempFirst];
+					resultValues[tempSize] = paraMatrix1.values[tempFirst] + paraMatrix2.values[tempSecond];
+					tempFirst++;
+					tempSecond++;
+				} // Of if
+				tempSize++;
+			} // Of while
+
+			// Copy the remaining parts
+			while (tempFirst < tempFirstEnd) {
+				resultColIdx[tempSize] = paraMatrix1.colIdx[tempFirst];
+				resultValues[tempSize] = paraMatrix1.values[tempFirst];
+				tempFirst++;
+				tempSize++;
+			} // Of while
+			while (tempSecond < tempSecondEnd) {
+				resultColIdx[tempSize] = paraMatrix2.colIdx[tempSecond];
+				resultValues[tempSize] = paraMatrix2.values[tempSecond];
+				tempSecond++;
+				tempSize++;
+			} // Of while
+
+			resultRowPtr[i + 1] = tempSize;
+		} // Of for i
+
+		return new CsrMatrix(tempNumRows, paraMatrix1.numColumns, resultRowPtr, Arrays.copyOf(resultColIdx, tempSize),
+				Arrays.copyOf(resultValues, tempSize));
+	}// Of add
+
+	/**
+	 *********************
+	 * Transpose a matrix with counting sort. Columns of the result are ordered
+	 * naturally.
+	 *
+	 * @param paraMatrix
+	 *            The given matrix.
+	 * @return The transposed matrix.
+	 *********************
+	 */
+	public static CsrMatrix transpose(CsrMatrix paraMatrix) {
+		int tempNumNonZeros = paraMatrix.getNumNonZeros();
+		int[] resultRowPtr = new int[paraMatrix.numColumns + 1];
+		int[] resultColIdx = new int[tempNumNonZeros];
+		double[] resultValues = new double[tempNumNonZeros];
+
+		// Step 1. Count the elements of each column.
+		for (int i = 0; i < tempNumNonZeros; i++) {
+			resultRowPtr[paraMatrix.colIdx[i] + 1]++;
+		} // Of for i
+		for (int i = 0; i < paraMatrix.numColumns; i++) {
+			resultRowPtr[i + 1] += resultRowPtr[i];
+		} // Of for i
+
+		// Step 2. Scatter.
+		int[] tempNextPositions = Arrays.copyOf(resultRowPtr, paraMatrix.numColumns);
+		int tempPosition;
+		for (int i = 0; i < paraMatrix.numRows; i++) {
+			for (int j = paraMatrix.rowPtr[i]; j < paraMatrix.rowPtr[i + 1]; j++) {
+				tempPosition = tempNextPositions[paraMatrix.colIdx[j]];
+				resultColIdx[tempPosition] = i;
+				resultValues[tempPosition] = paraMatrix.values[j];
+				tempNextPositions[paraMatrix.colIdx[j]]++;
+			} // Of for j
+		} // Of for i
+
+		return new CsrMatrix(paraMatrix.numColumns, paraMatrix.numRows, resultRowPtr, resultColIdx, resultValues);
+	}// Of transpose
+
+	/**
+	 *********************
+	 * Compute the transition probabilities. Each row is divided by its sum.
+	 *
+	 * @return The transition probabilities represented by a new matrix.
+	 *********************
+	 */
+	public CsrMatrix computeTransitionProbabilities() {
+		double[] resultValues = new double[values.length];
+		double tempRowSum;
+		for (int i = 0; i < numRows; i++) {
+			tempRowSum = 0;
+			for (int j = rowPtr[i]; j < rowPtr[i + 1]; j++) {
+				tempRowSum += values[j];
+			} // Of for j
+
+			for (int j = rowPtr[i]; j < rowPtr[i + 1]; j++) {
+				resultValues[j] = values[j] / tempRowSum;
+			} // Of for j
+		} // Of for i
+
+		// The structure is shared.
+		return new CsrMatrix(numRows, numColumns, rowPtr, colIdx, resultValues);
+	}// Of computeTransitionProbabilities
+
+	/**
+	 *********************
+	 * The Manhattan distance between two rows.
+	 *
+	 * @param paraFirstRow
+	 *            The first row.
+	 * @param paraSecondRow
+	 *            The second row.
+	 * @return The distance.
+	 *********************
+	 */
+	public double manhattan(int paraFirstRow, int paraSecondRow) {
+		double resultValue = 0;
+		int tempFirst = rowPtr[paraFirstRow];
+		int tempFirstEnd = rowPtr[paraFirstRow + 1];
+		int tempSecond = rowPtr[paraSecondRow];
+		int tempSecondEnd = rowPtr[paraSecondRow + 1];
+
+		while ((tempFirst < tempFirstEnd) && (tempSecond < tempSecondEnd)) {
+			if (colIdx[tempFirst] < colIdx[tempSecond]) {
+				resultValue += values[tempFirst];
+				tempFirst++;
+			} else if (colIdx[tempSecond] < colIdx[tempFirst]) {
+				resultValue += values[tempSecond];
+				tempSecond++;
+			} else {
+				resultValue += Math.abs(values[tempFirst] - values[tempSecond]);
+				tempFirst++;
+				tempSecond++;
+			} // Of if
+		} // Of while
+
+		while (tempFirst < tempFirstEnd) {
+			resultValue += values[tempFirst];
+			tempFirst++;
+		} // Of while
+		while (tempSecond < tempSecondEnd) {
+			resultValue += values[tempSecond];
+			tempSecond++;
+		} // Of while
+
+		return resultValue;
+	}// Of manhattan
+
+	/**
+	 *********************
+	 * Compute the neighborhood similarity with the use of Manhattan distance.
+	 * similarity = Math.exp(2 * paraK - distance(paraI, paraJ)) - 1.
+	 *
+	 * @param paraI
+	 *            The index of the first instance.
+	 * @param paraJ
+	 *            The index of the second instance.
+	 * @param paraK
+	 *            A value employed to compute the similarity from the distance.
+	 * @return The similarity between the two instances.
+	 *********************
+	 */
+	public double neighborhoodSimilarity(int paraI, int paraJ, int paraK) {
+		return Math.exp(2 * paraK - manhattan(paraI, paraJ)) - 1;
+	}// Of neighborhoodSimilarity
+
+	/**
+	 *********************
+	 * Width-first clustering. Links no greater than the threshold are cut.
+	 *
+	 * @param paraCutThreshold
+	 *            The threshold for cutting the graph.
+	 * @return The cluster number of each node, starting from 0.
+	 *********************
+	 */
+	public int[] widthFirstClustering(double paraCutThreshold) {
+		int[] resultClusterNumbers = new int[numRows];
+		Arrays.fill(resultClusterNumbers, -1);
+		int[] tempQueue = new int[numRows];
+		int tempHead, tempTail;
+
+		int tempNumber = 0;
+		int tempNode, tempColumn;
+		for (int i = 0; i < numRows; i++) {
+			if (resultClusterNumbers[i] >= 0) {
+				continue;
+			} // Of if
+
+			// Each node enters the queue at most once.
+			tempHead = 0;
+			tempTail = 0;
+			tempQueue[tempTail] = i;
+			tempTail++;
+			resultClusterNumbers[i] = tempNumber;
+			while (tempHead < tempTail) {
+				tempNode = tempQueue[tempHead];
+				tempHead++;
+
+				for (int j = rowPtr[tempNode]; j < rowPtr[tempNode + 1]; j++) {
+					tempColumn = colIdx[j];
+					if ((resultClusterNumbers[tempColumn] < 0) && (values[j] > paraCutThreshold)) {
+						resultClusterNumbers[tempColumn] = tempNumber;
+						tempQueue[tempTail] = tempColumn;
+						tempTail++;
+					} // Of if
+				} // Of for j
+			} // Of while
+
+			tempNumber++;
+		} // Of for i
+
+		return resultClusterNumbers;
+	}// Of widthFirstClustering
+
+	/**
+	 *********************
+	 * For output.
+	 *********************
+	 */
+	public String toString() {
+		StringBuilder resultBuilder = new StringBuilder();
+		for (int i = 0; i < numRows; i++) {
+			resultBuilder.append("\r\n" + i + ":");
+			for (int j = rowPtr[i]; j < rowPtr[i + 1]; j++) {
+				resultBuilder.append("(" + colIdx[j] + "," + values[j] + "); ");
+			} // Of for j
+		} // Of for i
+
+		return resultBuilder.toString();
+	}// Of toString
+
+	/**
+	 * The dense accumulator of a thread for computing one row at a time.
+	 */
+	static class RowAccumulator {
+		/**
+		 * The accumulated values indexed by column.
+		 */
+		double[] values;
+
+		/**
+		 * The stamp of the row each column was last touched by.
+		 */
+		int[] markers;
+
+		/**
+		 * The touched columns of the current row.
+		 */
+		int[] columns;
+
+		/**
+		 * The number of touched columns.
+		 */
+		int size;
+
+		/**
+		 * The stamp of the current row.
+		 */
+		int stamp;
+
+		/**
+		 *********************
+		 * The constructor.
+		 *
+		 * @param paraNumColumns
+		 *            The number of columns.
+		 *********************
+		 */
+		RowAccumulator(int paraNumColumns) {
+			values = new double[paraNumColumns];
+			markers = new int[paraNumColumns];
+			columns = new int[paraNumColumns];
+			stamp = 0;
+		}// Of the constructor
+
+		/**
+		 *********************
+		 * Start a new row. Touched columns are forgotten without clearing.
+		 *********************
+		 */
+		void startRow() {
+			size = 0;
+			stamp++;
+			if (stamp == Integer.MAX_VALUE) {
+				Arrays.fill(markers, 0);
+				stamp = 1;
+			} // Of if
+		}// Of startRow
+
+		/**
+		 *********************
+		 * Accumulate a value.
+		 *
+		 * @param paraColumn
+		 *            The column.
+		 * @param paraValue
+		 *            The value.
+		 *********************
+		 */
+		void accumulate(int paraColumn, double paraValue) {
+			if (markers[paraColumn] != stamp) {
+				markers[paraColumn] = stamp;
+				values[paraColumn] = paraValue;
+				columns[size] = paraColumn;
+				size++;
+			} else {
+				values[paraColumn] += paraValue;
+			} // Of if
+		}// Of accumulate
+	}// Of class RowAccumulator
+
+	/**
+	 *********************
+	 * Get the accumulator of the current thread.
+	 *
+	 * @param paraNumColumns
+	 *            The number of columns.
+	 * @return The accumulator with enough space.
+	 *********************
+	 */
+	static RowAccumulator getAccumulator(int paraNumColumns) {
+		RowAccumulator resultAccumulator = ACCUMULATORS.get();
+		if ((resultAccumulator == null) || (resultAccumulator.values.length < paraNumColumns)) {
+			resultAccumulator = new RowAccumulator(paraNumColumns);
+			ACCUMULATORS.set(resultAccumulator);
+		} // Of if
+
+		return resultAccumulator;
+	}// Of getAccumulator
+
+	/**
+	 * Compute a range of rows of A * B + C.
+	 */
+	static class MultiplyTask extends RecursiveAction {
+		/**
+		 * For serialization.
+		 */
+		private static final long serialVersionUID = 6086296532624377520L;
+
+		/**
+		 * The first matrix.
+		 */
+		CsrMatrix firstMatrix;
+
+		/**
+		 * The second matrix.
+		 */
+		CsrMatrix secondMatrix;
+
+		/**
+		 * The addend, may be null.
+		 */
+		CsrMatrix addend;
+
+		/**
+		 * The number of elements of each row, shared by all tasks.
+		 */
+		int[] rowCounts;
+
+		/**
+		 * The first row.
+		 */
+		int startRow;
+
+		/**
+		 * The row after the last one.
+		 */
+		int endRow;
+
+		/**
+		 * The columns of the computed rows.
+		 */
+		int[] localColIdx;
+
+		/**
+		 * The values of the computed rows.
+		 */
+		double[] localValues;
+
+		/**
+		 * The number of computed elements.
+		 */
+		int localSize;
+
+		/**
+		 *********************
+		 * The constructor.
+		 *
+		 * @param paraFirstMatrix
+		 *            The first matrix.
+		 * @param paraSecondMatrix
+		 *            The second matrix.
+		 * @param paraAddend
+		 *            The addend, may be null.
+		 * @param paraRowCounts
+		 *            The number of elements of each row.
+		 * @param paraStartRow
+		 *            The first row.
+		 * @param paraEndRow
+		 *            The row after the last one.
+		 *********************
+		 */
+		MultiplyTask(CsrMatrix paraFirstMatrix, CsrMatrix paraSecondMatrix, CsrMatrix paraAddend,
+				int[] paraRowCounts, int paraStartRow, int paraEndRow) {
+			firstMatrix = paraFirstMatrix;
+			secondMatrix = paraSecondMatrix;
+			addend = paraAddend;
+			rowCounts = paraRowCounts;
+			startRow = paraStartRow;
+			endRow = paraEndRow;
+		}// Of the constructor
+
+		/**
+		 *********************
+		 * Compute the rows.
+		 *********************
+		 */
+		protected void compute() {
+			RowAccumulator tempAccumulator = getAccumulator(secondMatrix.numColumns);
+			localColIdx = new int[16];
+			localValues = new double[16];
+			localSize = 0;
+
+			int tempMiddle;
+			double tempWeight;
+			for (int i = startRow; i < endRow; i++) {
+				// Step 1. Accumulate the row.
+				tempAccumulator.startRow();
+				for (int j = firstMatrix.rowPtr[i]; j < firstMatrix.rowPtr[i + 1]; j++) {
+					tempMiddle = firstMatrix.colIdx[j];
+					tempWeight = firstMatrix.values[j];
+					for (int k = secondMatrix.rowPtr[tempMiddle]; k < secondMatrix.rowPtr[tempMiddle + 1]; k++) {
+						tempAccumulator.accumulate(secondMatrix.colIdx[k], tempWeight * secondMatrix.values[k]);
+					} // Of for k
+				} // Of for j
+
+				if (addend != null) {
+					for (int j = addend.rowPtr[i]; j < addend.rowPtr[i + 1]; j++) {
+						tempAccumulator.accumulate(addend.colIdx[j], addend.values[j]);
+					} // Of for j
+				} // Of if
+
+				// Step 2. Emit the row ordered by column.
+				Arrays.sort(tempAccumulator.columns, 0, tempAccumulator.size);
+				if (localSize + tempAccumulator.size > localColIdx.length) {
+					int tempNewLength = Math.max(localColIdx.length * 2, localSize + tempAccumulator.size);
+					localColIdx = Arrays.copyOf(localColIdx, tempNewLength);
+					localValues = Arrays.copyOf(localValues, tempNewLength);
+				} // Of if
+				for (int j = 0; j < tempAccumulator.size; j++) {
+					localColIdx[localSize] = tempAccumulator.columns[j];
+					localValues[localSize] = tempAccumulator.values[tempAccumulator.columns[j]];
+					localSize++;
+				} // Of for j
+				rowCounts[i] = tempAccumulator.size;
+			} // Of for i
+		}// Of compute
+	}// Of class MultiplyTask
+
+	/**
+	 *********************
+	 * The test method. Compare with CompressedMatrix.
+	 *
+	 * @param args
+	 *            The parameters.
+	 *********************
+	 */
+	public static void main(String args[]) {
+		System.out.println("Testing CsrMatrix!");
+		CompressedMatrix tempMatrix = new CompressedMatrix("src/data/iris.arff", 5);
+		CompressedMatrix tempProbabilityMatrix = tempMatrix.computeTransitionProbabilities();
+		CompressedMatrix tempSquare = CompressedMatrix.multiply(tempProbabilityMatrix, tempProbabilityMatrix);
+		CompressedMatrix tempSum = CompressedMatrix.add(tempProbabilityMatrix, tempSquare);
+
+		CsrMatrix tempCsrProbabilityMatrix = new CsrMatrix(tempMatrix).computeTransitionProbabilities();
+		CsrMatrix tempCsrSquare = multiply(tempCsrProbabilityMatrix, tempCsrProbabilityMatrix);
+		CsrMatrix tempCsrSum = add(tempCsrProbabilityMatrix, tempCsrSquare);
+
+		System.out.println("Same product: " + tempSquare.toString().equals(tempCsrSquare.toString()));
+		System.out.println("Same sum: " + tempSum.toString().equals(tempCsrSum.toString()));
+		System.out.println("Same transposition: " + CompressedMatrix.transpose(tempSum).toString()
+				.equals(transpose(tempCsrSum).toString()));
+		System.out.println("Same parallel product: "
+				+ tempCsrSquare.toString().equals(parallelMultiply(tempCsrProbabilityMatrix, tempCsrProbabilityMatrix).toString()));
+
+		CsrMatrix tempPowerSum = add(tempCsrProbabilityMatrix, tempCsrSquare);
+		tempPowerSum = add(tempPowerSum, multiply(tempCsrSquare, tempCsrProbabilityMatrix));
+		CsrMatrix tempHornerSum = powerSeries(tempCsrProbabilityMatrix, 3);
+		double tempMaxDifference = 0;
+		for (int i = 0; i < tempPowerSum.values.length; i++) {
+			tempMaxDifference = Math.max(tempMaxDifference, Math.abs(tempPowerSum.values[i] - tempHornerSum.values[i]));
+		} // Of for i
+		System.out.println("Power series: same structure " + Arrays.equals(tempPowerSum.colIdx, tempHornerSum.colIdx)
+				+ ", maximal difference " + tempMaxDifference);
+	}// Of main
+}// Of class CsrMatrix
@@ -0,0 +1,490 @@
+package matrix;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import common.BlockView;
+import common.Common;
+import common.DistanceMeasure;
+
+/**
+ * Build the k-nearest neighbor graph in parallel. Rows are partitioned across
+ * the shared fork-join pool. For each row, the k most similar nodes are kept in
+ * a bounded heap whose root is the least similar one, and finally ordered by
+ * column. Neighbors are stored in flat arrays, from which either linked rows or
+ * a symmetric CSR matrix are built.
+ * <p>
+ * Author: <b>Fan Min</b> minfanphd@163.com, minfan@swpu.edu.cn <br>
+ * Copyright: The source code and all documents are open and free. PLEASE keep
+ * this header while revising the program. <br>
+ * Organization: <a href=http://www.fansmale.com/>Lab of Machine Learning</a>,
+ * Southwest Petroleum University, Chengdu 610500, China.<br>
+ * Project: The cost-sensitive active learning project.
+ * <p>
+ * Progress: Done.<br>
+ * Written time: October 18, 2026. <br>
+ * Last modify time: October 18, 2026.
+ */
+
+public class KnnGraphBuilder extends RecursiveAction {
+	/**
+	 * For serialization.
+	 */
+	private static final long serialVersionUID = 4473211804563185472L;
+
+	/**
+	 * Rows handled by a task without further splitting.
+	 */
+	public static final int ROWS_PER_TASK = 32;
+
+	/**
+	 * The distance measure.
+	 */
+	DistanceMeasure distanceMeasure;
+
+	/**
+	 * The instance index of each node.
+	 */
+	BlockView instanceIndices;
+
+	/**
+	 * The number of neighbors.
+	 */
+	int k;
+
+	/**
+	 * The neighbors of node i are neighbors[i * k] to neighbors[i * k +
+	 * numNeighbors[i] - 1] in ascending order.
+	 */
+	int[] neighbors;
+
+	/**
+	 * The respective weights.
+	 */
+	double[] weights;
+
+	/**
+	 * The number of neighbors of each node.
+	 */
+	int[] numNeighbors;
+
+	/**
+	 * The first row of this task.
+	 */
+	int startRow;
+
+	/**
+	 * The row after the last row of this task.
+	 */
+	int endRow;
+
+	/**
+	 *********************
+	 * The constructor.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure.
+	 * @param paraInstanceIndices
+	 *            The instance index of each node.
+	 * @param paraK
+	 *            The number of neighbors.
+	 * @param paraNeighbors
+	 *            The resulting neighbors.
+	 * @param paraWeights
+	 *            The resulting weights.
+	 * @param paraNumNeighbors
+	 *            The resulting number of neighbors of each node.
+	 * @param paraStartRow
+	 *            The first row of this task.
+	 * @param paraEndRow
+	 *            The row after the last row of this task.
+	 *********************
+	 */
+	KnnGraphBuilder(DistanceMeasure paraDistanceMeasure, BlockView paraInstanceIndices, int paraK, int[] paraNeighbors,
+			double[] paraWeights, int[] paraNumNeighbors, int paraStartRow, int paraEndRow) {
+		distanceMeasure = paraDistanceMeasure;
+		instanceIndices = paraInstanceIndices;
+		k = paraK;
+		neighbors = paraNeighbors;
+		weights = paraWeights;
+		numNeighbors = paraNumNeighbors;
+		startRow = paraStartRow;
+		endRow = paraEndRow;
+	}// Of the constructor
+
+	/**
+	 *********************
+	 * Compute the neighbors of all nodes. The weight is the reciprocal of the
+	 * distance, or CompressedMatrix.MAX_WEIGHT for duplicate instances.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure. It should be thread-safe.
+	 * @param paraInstanceIndices
+	 *            The instance index of each node.
+	 * @param paraK
+	 *            The number of neighbors.
+	 * @return The finished root task holding the neighbors.
+	 *********************
+	 */
+	static KnnGraphBuilder computeNeighbors(DistanceMeasure paraDistanceMeasure, BlockView paraInstanceIndices,
+			int paraK) {
+		int tempNumNodes = paraInstanceIndices.length();
+		KnnGraphBuilder resultBuilder = new KnnGraphBuilder(paraDistanceMeasure, paraInstanceIndices, paraK,
+				new int[tempNumNodes * paraK], new double[tempNumNodes * paraK], new int[tempNumNodes], 0,
+				tempNumNodes);
+		Common.forkJoinPool.invoke(resultBuilder);
+
+		return resultBuilder;
+	}// Of computeNeighbors
+
+	/**
+	 *********************
+	 * Build the k-nearest neighbor graph as linked rows. The weight is the
+	 * reciprocal of the distance, or CompressedMatrix.MAX_WEIGHT for duplicate
+	 * instances.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure. It should be thread-safe.
+	 * @param paraInstanceIndices
+	 *            The instance index of each node.
+	 * @param paraK
+	 *            The number of neighbors.
+	 * @return The rows, each with a head node.
+	 *********************
+	 */
+	public static Triple[] build(DistanceMeasure paraDistanceMeasure, BlockView paraInstanceIndices, int paraK) {
+		KnnGraphBuilder tempBuilder = computeNeighbors(paraDistanceMeasure, paraInstanceIndices, paraK);
+
+		Triple[] resultRows = new Triple[paraInstanceIndices.length()];
+		Triple tempTail;
+		for (int i = 0; i < resultRows.length; i++) {
+			resultRows[i] = new Triple();
+			tempTail = resultRows[i];
+			for (int j = i * paraK; j < i * paraK + tempBuilder.numNeighbors[i]; j++) {
+				tempTail.next = new Triple(tempBuilder.neighbors[j], tempBuilder.weights[j], null);
+				tempTail = tempTail.next;
+			} // Of for j
+		} // Of for i
+
+		return resultRows;
+	}// Of build
+
+	/**
+	 *********************
+	 * Build the symmetrized k-nearest neighbor graph as a CSR matrix, without
+	 * linked rows. The result is the same as CompressedMatrix.symmetrize(): the
+	 * reverse edge (j, i) of a neighbor j of i is added to row j if it is not
+	 * there, and some column of the original row j is greater than i.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure. It should be thread-safe.
+	 * @param paraInstanceIndices
+	 *            The instance index of each node.
+	 * @param paraK
+	 *            The number of neighbors.
+	 * @return The matrix.
+	 *********************
+	 */
+	public static CsrMatrix buildSymmetricCsr(DistanceMeasure paraDistanceMeasure, BlockView paraInstanceIndices,
+			int paraK) {
+		KnnGraphBuilder tempBuilder = computeNeighbors(paraDistanceMeasure, paraInstanceIndices, paraK);
+		int tempNumNodes = paraInstanceIndices.length();
+		int[] tempNeighbors = tempBuilder.neighbors;
+		double[] tempWeights = tempBuilder.weights;
+		int[] tempNumNeighbors = tempBuilder.numNeighbors;
+
+		// Step 1. Count reverse edges to add.
+		int[] tempReversePtr = new int[tempNumNodes + 1];
+		int tempTarget;
+		for (int i = 0; i < tempNumNodes; i++) {
+			for (int j = i * paraK; j < i * paraK + tempNumNeighbors[i]; j++) {
+				tempTarget = tempNeighbors[j];
+				if (isReverseAdded(tempBuilder, tempTarget, i)) {
+					tempReversePtr[tempTarget + 1]++;
+				} // Of if
+			} // Of for j
+		} // Of for i
+		for (int i = 0; i < tempNumNodes; i++) {
+			tempReversePtr[i + 1] += tempReversePtr[i];
+		} // Of for i
+
+		// Step 2. Fill reverse edges. Rows are scanned in ascending order, so
+		// each list is sorted.
+		int[] tempReverseColumns = new int[tempReversePtr[tempNumNodes]];
+		double[] tempReverseWeights = new double[tempReversePtr[tempNumNodes]];
+		int[] tempFillPositions = Arrays.copyOf(tempReversePtr, tempNumNodes);
+		for (int i = 0; i < tempNumNodes; i++) {
+			for (int j = i * paraK; j < i * paraK + tempNumNeighbors[i]; j++) {
+				tempTarget = tempNeighbors[j];
+				if (isReverseAdded(tempBuilder, tempTarget, i)) {
+					tempReverseColumns[tempFillPositions[tempTarget]] = i;
+					tempReverseWeights[tempFillPositions[tempTarget]] = tempWeights[j];
+					tempFillPositions[tempTarget]++;
+				} // Of if
+			} // Of for j
+		} // Of for i
+
+		// Step 3. Merge each original row with its reverse edges.
+		int[] resultRowPtr = new int[tempNumNodes + 1];
+		for (int i = 0; i < tempNumNodes; i++) {
+			resultRowPtr[i + 1] = resultRowPtr[i] + tempNumNeighbors[i] + tempReversePtr[i + 1] - tempReversePtr[i];
+		} // Of for i
+		int[] resultColIdx = new int[resultRowPtr[tempNumNodes]];
+		double[] resultValues = new double[resultRowPtr[tempNumNodes]];
+		int tempPosition, tempOriginal, tempOriginalEnd, tempReverse;
+		for (int i = 0; i < tempNumNodes; i++) {
+			tempPosition = resultRowPtr[i];
+			tempOriginal = i * paraK;
+			tempOriginalEnd = tempOriginal + tempNumNeighbors[i];
+			tempReverse = tempReversePtr[i];
+			while ((tempOriginal < tempOriginalEnd) || (tempReverse < tempReversePtr[i + 1])) {
+				if ((tempReverse == tempReversePtr[i + 1]) || ((tempOriginal < tempOriginalEnd)
+						&& (tempNeighbors[tempOriginal] < tempReverseColumns[tempReverse]))) {
+					resultColIdx[tempPosition] = tempNeighbors[tempOriginal];
+					resultValues[tempPosition] = tempWeights[tempOriginal];
+					tempOriginal++;
+				} else {
+					resultColIdx[tempPosition] = tempReverseColumns[tempReverse];
+					resultValues[tempPosition] = tempReverseWeights[tempReverse];
+					tempReverse++;
+				} // Of if
+				tempPosition++;
+			} // Of while
+		} // Of for i
+
+		return new CsrMatrix(tempNumNodes, tempNumNodes, resultRowPtr, resultColIdx, resultValues);
+	}// Of buildSymmetricCsr
+
+	/**
+	 *********************
+	 * Is the reverse edge added to the row during symmetrization?
+	 *
+	 * @param paraBuilder
+	 *            The finished builder.
+	 * @param paraRow
+	 *            The row.
+	 * @param paraColumn
+	 *            The column of the reverse edge.
+	 * @return True if the column is not a neighbor of the row, and less than
+	 *         the last neighbor.
+	 *********************
+	 */
+	static boolean isReverseAdded(KnnGraphBuilder paraBuilder, int paraRow, int paraColumn) {
+		int tempStart = paraRow * paraBuilder.k;
+		int tempEnd = tempStart + paraBuilder.numNeighbors[paraRow];
+		if ((tempStart == tempEnd) || (paraBuilder.neighbors[tempEnd - 1] <= paraColumn)) {
+			return false;
+		} // Of if
+
+		return Arrays.binarySearch(paraBuilder.neighbors, tempStart, tempEnd, paraColumn) < 0;
+	}// Of isReverseAdded
+
+	/**
+	 *********************
+	 * Build the k-nearest neighbor graph for the first given number of
+	 * instances.
+	 *
+	 * @param paraDistanceMeasure
+	 *            The distance measure. It should be thread-safe.
+	 * @param paraNumInstances
+	 *            The number of instances.
+	 * @param paraK
+	 *            The number of neighbors.
+	 * @return The rows, each with a head node.
+	 *********************
+	 */
+	public static Triple[] build(DistanceMeasure paraDistanceMeasure, int paraNumInstances, int paraK) {
+		return build(paraDistanceMeasure, new BlockView(paraNumInstances), paraK);
+	}// Of build
+
+	/**
+	 *********************
+	 * Compute rows of this task, or split it.
+	 *********************
+	 */
+	protected void compute() {
+		if (endRow - startRow > ROWS_PER_TASK) {
+			int tempMiddle = (startRow + endRow) >>> 1;
+			invokeAll(
+					new KnnGraphBuilder(distanceMeasure, instanceIndices, k, neighbors, weights, numNeighbors,
+							startRow, tempMiddle),
+					new KnnGraphBuilder(distanceMeasure, instanceIndices, k, neighbors, weights, numNeighbors,
+							tempMiddle, endRow));
+			return;
+		} // Of if
+
+		// Buffers are shared by rows of this task.
+		int[] tempHeapNodes = new int[k];
+		double[] tempHeapWeights = new double[k];
+		long[] tempSortKeys = new long[k];
+		for (int i = startRow; i < endRow; i++) {
+			kNearestNeighbors(i, tempHeapNodes, tempHeapWeights, tempSortKeys);
+		} // Of for i
+	}// Of compute
+
+	/**
+	 *********************
+	 * Compute the k-nearest neighbors of the node and store them in column
+	 * order. For equal weights, the node with smaller index is preferred.
+	 *
+	 * @param paraNode
+	 *            The given node.
+	 * @param paraHeapNodes
+	 *            The buffer for heap nodes.
+	 * @param paraHeapWeights
+	 *            The buffer for heap weights.
+	 * @param paraSortKeys
+	 *            The buffer for sorting.
+	 *********************
+	 */
+	void kNearestNeighbors(int paraNode, int[] paraHeapNodes, double[] paraHeapWeights, long[] paraSortKeys) {
+		int tempSize = 0;
+		int tempInstance = instanceIndices.get(paraNode);
+		double tempDistance, tempSimilarity;
+
+		// Step 1. Keep the k most similar nodes in the heap.
+		for (int i = 0; i < instanceIndices.length(); i++) {
+			if (i == paraNode) {
+				continue;
+			} // Of if
+
+			tempDistance = distanceMeasure.distance(tempInstance, instanceIndices.get(i));
+			if (tempDistance < 1e-10) {
+				tempSimilarity = CompressedMatrix.MAX_WEIGHT;
+			} else {
+				tempSimilarity = 1.0 / tempDistance;
+			} // Of if
+
+			if (tempSize < k) {
+				paraHeapNodes[tempSize] = i;
+				paraHeapWeights[tempSize] = tempSimilarity;
+				siftUp(paraHeapNodes, paraHeapWeights, tempSize);
+				tempSize++;
+			} else if (tempSimilarity > paraHeapWeights[0]) {
+				// Later nodes never replace an equally similar one.
+				paraHeapNodes[0] = i;
+				paraHeapWeights[0] = tempSimilarity;
+				siftDown(paraHeapNodes, paraHeapWeights, tempSize);
+			} // Of if
+		} // Of for i
+
+		// Step 2. Sort by column. The position is stored in the low bits.
+		for (int i = 0; i < tempSize; i++) {
+			paraSortKeys[i] = (((long) paraHeapNodes[i]) << 32) | i;
+		} // Of for i
+		Arrays.sort(paraSortKeys, 0, tempSize);
+
+		// Step 3. Store them.
+		int tempStart = paraNode * k;
+		int tempPosition;
+		for (int i = 0; i < tempSize; i++) {
+			tempPosition = (int) (paraSortKeys[i] & 0xFFFFFFFFL);
+			neighbors[tempStart + i] = paraHeapNodes[tempPosition];
+			weights[tempStart + i] = paraHeapWeights[tempPosition];
+		} // Of for i
+		numNeighbors[paraNode] = tempSize;
+	}// Of kNearestNeighbors
+
+	/**
+	 *********************
+	 * Is the first heap element less similar than the second? For equal
+	 * weights, the larger node is less preferred.
+	 *
+	 * @param paraHeapNodes
+	 *            The heap nodes.
+	 * @param paraHeapWeights
+	 *            The heap weights.
+	 * @param paraFirst
+	 *            The first position.
+	 * @param paraSecond
+	 *            The second position.
+	 * @return True if the first one should be closer to the root.
+	 *********************
+	 */
+	static boolean isWorse(int[] paraHeapNodes, double[] paraHeapWeights, int paraFirst, int paraSecond) {
+		if (paraHeapWeights[paraFirst] != paraHeapWeights[paraSecond]) {
+			return paraHeapWeights[paraFirst] < paraHeapWeights[paraSecond];
+		} // Of if
+
+		return paraHeapNodes[paraFirst] > paraHeapNodes[paraSecond];
+	}// Of isWorse
+
+	/**
+	 *********************
+	 * Swap two heap elements.
+	 *
+	 * @param paraHeapNodes
+	 *            The heap nodes.
+	 * @param paraHeapWeights
+	 *            The heap weights.
+	 * @param paraFirst
+	 *            The first position.
+	 * @param paraSecond
+	 *            The second position.
+	 *********************
+	 */
+	static void swap(int[] paraHeapNodes, double[] paraHeapWeights, int paraFirst, int paraSecond) {
+		int tempNode = paraHeapNodes[paraFirst];
+		paraHeapNodes[paraFirst] = paraHeapNodes[paraSecond];
+		paraHeapNodes[paraSecond] = tempNode;
+
+		double tempWeight = paraHeapWeights[paraFirst];
+		paraHeapWeights[paraFirst] = paraHeapWeights[paraSecond];
+		paraHeapWeights[paraSecond] = tempWeight;
+	}// Of swap
+
+	/**
+	 *********************
+	 * Move the element up to restore the heap.
+	 *
+	 * @param paraHeapNodes
+	 *            The heap nodes.
+	 * @param paraHeapWeights
+	 *            The heap weights.
+	 * @param paraPosition
+	 *            The position of the new element.
+	 *********************
+	 */
+	static void siftUp(int[] paraHeapNodes, double[] paraHeapWeights, int paraPosition) {
+		int tempParent;
+		while (paraPosition > 0) {
+			tempParent = (paraPosition - 1) >> 1;
+			if (!isWorse(paraHeapNodes, paraHeapWeights, paraPosition, tempParent)) {
+				break;
+			} // Of if
+			swap(paraHeapNodes, paraHeapWeights, paraPosition, tempParent);
+			paraPosition = tempParent;
+		} // Of while
+	}// Of siftUp
+
+	/**
+	 *********************
+	 * Move the root down to restore the heap.
+	 *
+	 * @param paraHeapNodes
+	 *            The heap nodes.
+	 * @param paraHeapWeights
+	 *            The heap weights.
+	 * @param paraSize
+	 *            The size of the heap.
+	 *********************
+	 */
+	static void siftDown(int[] paraHeapNodes, double[] paraHeapWeights, int paraSize) {
+		int tempPosition = 0;
+		int tempChild;
+		while (true) {
+			tempChild = 2 * tempPosition + 1;
+			if (tempChild >= paraSize) {
+				break;
+			} // Of if
+			if ((tempChild + 1 < paraSize) && isWorse(paraHeapNodes, paraHeapWeights, tempChild + 1, tempChild)) {
+				tempChild++;
+			} // Of if
+			if (!isWorse(paraHeapNodes, paraHeapWeights, tempChild, tempPosition)) {
+				break;
+			} // Of if
+			swap(paraHeapNodes, paraHeapWeights, tempPosition, tempChild);
+			tempPosition = tempChild;
+		} // Of while
+	}// Of siftDown
+}// Of class KnnGraphBuilder